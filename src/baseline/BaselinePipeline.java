@@ -4,6 +4,9 @@ import iitb.Annotation;
 import iitb.IITBDataset;
 import index.EntityLinksIndex;
 import index.EntityTFIDFIndex;
+import index.IndexRegistry;
+import index.MappedEntityPairsIndex;
+import index.MappedEntityTFIDFStore;
 import index.MentionIndex;
 import index.TermDocumentFrequencyIndex;
 
@@ -18,6 +21,7 @@ import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
 
 import md.MentionDetection;
+import md.MentionSpotter;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -64,8 +68,11 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
   public static class Map extends MapReduceBase implements Mapper<Text, Text, Text, Text> {
 
   	private static MentionIndex mentionIndex;
+  	private static MentionSpotter spotter;
   	private static EntityLinksIndex entityLinksIndex;
+  	private static MappedEntityPairsIndex entityPairsIndex;
   	private static EntityTFIDFIndex entityTFIDFIndex;
+  	private static MappedEntityTFIDFStore entityVectorStore;
   	private static TermDocumentFrequencyIndex dfIndex;
   	private static IITBDataset iitb;
   	private static String testFilesPath;
@@ -74,7 +81,9 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 		public void configure(JobConf job) {
 			String mentionIndexPath = job.get(MENTION_FILE_SYMLINK);
 			String entityLinksIndexPath = job.get(ENTITY_LINKS_FILE_SYMLINK);
+			String entityPairsIndexPath = job.get(ENTITY_PAIRS_FILE_SYMLINK);
 			String tfidfEntitiesIndexPath = job.get(TFIDF_ENTITIES_FILE_SYMLINK);
+			String tfidfEntitiesStorePath = job.get(TFIDF_ENTITIES_STORE_FILE_SYMLINK);
 			String dfTermIndexPath = job.get(DF_TERM_FILE_SYMLINK);
 			String annotationsFilePath = job.get(ANNOTATIONS_FILE_SYMLINK);
 			String titlesIndexPath = job.get(TITLES_FILE_SYMLINK);
@@ -82,12 +91,35 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 			testFilesPath = job.get(TEST_FILES_PATH);
 			
 			try {
-				mentionIndex = MentionIndex.load(mentionIndexPath);
-				entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
-				entityTFIDFIndex = new EntityTFIDFIndex(new Configuration(), null);
-				entityTFIDFIndex.load(new Path(tfidfEntitiesIndexPath));
-				dfIndex = TermDocumentFrequencyIndex.load(dfTermIndexPath);
-				iitb = new IITBDataset(titlesIndexPath, redirectsIndexPath);
+				// Map tasks of one reused JVM share the indices.
+				IndexRegistry registry = IndexRegistry.getInstance();
+				registry.loadMentionIndex(mentionIndexPath);
+				registry.loadTokenPrefixSet(mentionIndexPath);
+				registry.loadEntityLinksIndex(entityLinksIndexPath);
+				if (entityPairsIndexPath != null) {
+					registry.loadMappedEntityPairsIndex(entityPairsIndexPath);
+				}
+				// The mapped store replaces the tf-idf index if given.
+				if (tfidfEntitiesStorePath != null) {
+					registry.loadMappedEntityTFIDFStore(tfidfEntitiesStorePath);
+				} else {
+					registry.loadEntityTFIDFIndex(null, tfidfEntitiesIndexPath);
+				}
+				registry.loadTermDocumentFrequencyIndex(dfTermIndexPath);
+				registry.loadTitleResolver(titlesIndexPath, redirectsIndexPath);
+				mentionIndex = registry.getMentionIndex(mentionIndexPath);
+				spotter = new MentionSpotter(registry.getTokenPrefixSet(mentionIndexPath));
+				entityLinksIndex = registry.getEntityLinksIndex(entityLinksIndexPath);
+				if (entityPairsIndexPath != null) {
+					entityPairsIndex = registry.getMappedEntityPairsIndex(entityPairsIndexPath);
+				}
+				if (tfidfEntitiesStorePath != null) {
+					entityVectorStore = registry.getMappedEntityTFIDFStore(tfidfEntitiesStorePath);
+				} else {
+					entityTFIDFIndex = registry.getEntityTFIDFIndex(null, tfidfEntitiesIndexPath);
+				}
+				dfIndex = registry.getTermDocumentFrequencyIndex(dfTermIndexPath);
+				iitb = new IITBDataset(registry.getTitleResolver(titlesIndexPath, redirectsIndexPath));
 				iitb.load(annotationsFilePath, testFilesPath, true);
 			} catch (IOException e1) {
 				e1.printStackTrace();
@@ -108,7 +140,9 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
   			
   		MentionDetection md = new MentionDetection(content.toString(), mentionIndex, entityTFIDFIndex, 
   				dfIndex);
-  		RandomGraphWalk baseline = new RandomGraphWalk(entityLinksIndex);
+  		md.setSpotter(spotter);
+  		md.setEntityVectorStore(entityVectorStore);
+  		RandomGraphWalk baseline = new RandomGraphWalk(entityLinksIndex, entityPairsIndex);
   		baseline.solve(md.solve());
   		Set<Annotation> solution = baseline.getSolutionAnnotations(filename.toString());
   		Verifier<Annotation> verifier = new Verifier<Annotation>();
@@ -126,10 +160,15 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 	private static final String MENTION_OPTION = "mentions";
 	// Location of entity links file. @See index.EntityLinksIndex
 	private static final String ENTITY_LINK_OPTION = "entity_links";
+	// Location of precomputed relatedness of entity pairs, optional. @See index.MappedEntityPairsIndex
+	private static final String ENTITY_PAIRS_OPTION = "entity_pairs";
 	// Location of tf-idf of entities index. @See index.EntityTFIDFIndex
 	private static final String TFIDF_ENTITIES_OPTION = "tfidf_entities_index";
 	// Location of tf-idf entities files of the index.
 	private static final String TFIDF_ENTITIES_PATH_OPTION = "tfidf_entities_path";
+	// Location of the mapped tf-idf of entities, used instead of the index if given.
+	// @See index.MappedEntityTFIDFStore
+	private static final String TFIDF_ENTITIES_STORE_OPTION = "tfidf_entities_store";
 	// Location of term document frequency index. @See index.TermDocumentFrequencyIndex
 	private static final String DF_TERM_OPTION = "df";
 	// Location of wiki titles file
@@ -150,7 +189,9 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 	// Symlinks used by the distributed cache
 	private static final String MENTION_FILE_SYMLINK = "m";
 	private static final String ENTITY_LINKS_FILE_SYMLINK = "e";
+	private static final String ENTITY_PAIRS_FILE_SYMLINK = "ep";
 	private static final String TFIDF_ENTITIES_FILE_SYMLINK = "t";
+	private static final String TFIDF_ENTITIES_STORE_FILE_SYMLINK = "ts";
 	private static final String DF_TERM_FILE_SYMLINK = "d";
 	private static final String ANNOTATIONS_FILE_SYMLINK = "a";
 	private static final String TITLES_FILE_SYMLINK = "tt";
@@ -170,8 +211,14 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 				"mention to keyphraseness and candidate entities index file").create(MENTION_OPTION));
 		options.addOption(OptionBuilder.withArgName("path").hasArg()
 				.withDescription("index of entity links file").create(ENTITY_LINK_OPTION));
+		options.addOption(OptionBuilder.withArgName("path").hasArg()
+				.withDescription("precomputed relatedness of entity pairs file")
+				.create(ENTITY_PAIRS_OPTION));
 		options.addOption(OptionBuilder.withArgName("path").hasArg()
 				.withDescription("index of tfidf of entities file").create(TFIDF_ENTITIES_OPTION));
+		options.addOption(OptionBuilder.withArgName("path").hasArg()
+				.withDescription("mapped tfidf of entities file, replaces the index")
+				.create(TFIDF_ENTITIES_STORE_OPTION));
 		options.addOption(OptionBuilder.withArgName("path").hasArg()
 				.withDescription("index of document frequency for terms").create(DF_TERM_OPTION));
 		options.addOption(OptionBuilder.withArgName("path").hasArg()
@@ -227,7 +274,9 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 				tmp, 
 				mentionIndexFile,
 				entityLinksIndexFile,
+				cmdline.getOptionValue(ENTITY_PAIRS_OPTION),
 				tfidfEntitiesFile,
+				cmdline.getOptionValue(TFIDF_ENTITIES_STORE_OPTION),
 				termDFFile,
 				annotationsFile,
 				cmdline.getOptionValue(OUTPUT_OPTION, output)
@@ -273,6 +322,23 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
     writer.close();
 	}
 	
+	public void task1(
+			Configuration config, 
+			String titlesPath,
+			String redirectsPath,
+			String entityTFIDFDirectoryPath, // Directory containing entity tf-idf index files. 
+			String inputFile, // File created by the createSequenceFile()
+			String mentionIndexFile, 
+			String entityLinksIndexFile,
+			String tfidfEntitiesFile, 
+			String termDFFile, 
+			String annotationsFile, 
+			String outputPath) 
+					throws IOException, URISyntaxException {
+		task1(config, titlesPath, redirectsPath, entityTFIDFDirectoryPath, inputFile, mentionIndexFile,
+				entityLinksIndexFile, null, tfidfEntitiesFile, null, termDFFile, annotationsFile, outputPath);
+	}
+	
 	@SuppressWarnings("deprecation")
 	public void task1(
 			Configuration config, 
@@ -282,7 +348,9 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 			String inputFile, // File created by the createSequenceFile()
 			String mentionIndexFile, 
 			String entityLinksIndexFile,
+			String entityPairsFile, // May be null.
 			String tfidfEntitiesFile, 
+			String tfidfEntitiesStoreFile, // May be null, replaces the tf-idf index if given.
 			String termDFFile, 
 			String annotationsFile, 
 			String outputPath) 
@@ -327,18 +395,35 @@ private static final Logger LOG = Logger.getLogger(BaselinePipeline.class);
 	  		new URI(entityLinksIndexFile + "#" + ENTITY_LINKS_FILE_SYMLINK), 
 	  		conf
 	  );
-		DistributedCache.addCacheFile(
-				new URI(tfidfEntitiesFile + "#" + TFIDF_ENTITIES_FILE_SYMLINK), 
-				conf
-		);
+		if (tfidfEntitiesStoreFile != null) {
+			DistributedCache.addCacheFile(
+					new URI(tfidfEntitiesStoreFile + "#" + TFIDF_ENTITIES_STORE_FILE_SYMLINK), 
+					conf
+			);
+			conf.set(TFIDF_ENTITIES_STORE_FILE_SYMLINK, TFIDF_ENTITIES_STORE_FILE_SYMLINK);
+		} else {
+			DistributedCache.addCacheFile(
+					new URI(tfidfEntitiesFile + "#" + TFIDF_ENTITIES_FILE_SYMLINK), 
+					conf
+			);
+		}
+		if (entityPairsFile != null) {
+			DistributedCache.addCacheFile(
+					new URI(entityPairsFile + "#" + ENTITY_PAIRS_FILE_SYMLINK), 
+					conf
+			);
+			conf.set(ENTITY_PAIRS_FILE_SYMLINK, ENTITY_PAIRS_FILE_SYMLINK);
+		}
 		FileSystem fs = FileSystem.get(conf);
-	  for (FileStatus file: fs.listStatus(new Path(entityTFIDFDirectoryPath))) {
-	  	if (!file.isDirectory()) {
-	  		String filename = file.getPath().getName();
-	  		String filepath = file.getPath().toString();
-	  		DistributedCache.addCacheFile(new URI(filepath + '#' + filename), conf);
-	  	}
-	  }
+		if (tfidfEntitiesStoreFile == null) {
+			for (FileStatus file: fs.listStatus(new Path(entityTFIDFDirectoryPath))) {
+				if (!file.isDirectory()) {
+					String filename = file.getPath().getName();
+					String filepath = file.getPath().toString();
+					DistributedCache.addCacheFile(new URI(filepath + '#' + filename), conf);
+				}
+			}
+		}
 	  
 		conf.set(MENTION_FILE_SYMLINK, MENTION_FILE_SYMLINK);
 		conf.set(ENTITY_LINKS_FILE_SYMLINK, ENTITY_LINKS_FILE_SYMLINK);
@@ -3,6 +3,7 @@ package baseline;
 import iitb.Annotation;
 import iitb.NameAnnotation;
 import index.EntityLinksIndex;
+import index.MappedEntityPairsIndex;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -18,13 +19,14 @@ import org.apache.commons.collections15.Transformer;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import com.google.common.primitives.Ints;
+
 import debug.CandidateEntity;
 import edu.uci.ics.jung.algorithms.cluster.WeakComponentClusterer;
 import edu.uci.ics.jung.algorithms.scoring.PageRankWithPriors;
 import edu.uci.ics.jung.graph.DirectedSparseGraph;
 import edu.uci.ics.jung.graph.util.EdgeType;
 import edu.uci.ics.jung.graph.util.Pair;
-import edu.umd.cloud9.io.pair.PairOfInts;
 import evaluation.VerifyBaseline;
 import md.Mention;
 
@@ -45,16 +47,22 @@ public class RandomGraphWalk {
 	public static final double ALPHA = 0.1;
 	public static final double EPS = 0.00001;
 	
-	public static double MAP_MAX = 18000;
-	
 	public static int DEBUG_CANDIDATES = 10;
 	
 	private EntityLinksIndex entityLinksIndex;
+	// Precomputed relatedness, consulted before entityLinksIndex. Can be null.
+	private MappedEntityPairsIndex pairsIndex;
 	
 	private HashMap<Mention, Integer> solution;
 	
 	public RandomGraphWalk(EntityLinksIndex entityLinksIndex) throws IOException {
+		this(entityLinksIndex, null);
+	}
+	
+	public RandomGraphWalk(EntityLinksIndex entityLinksIndex, MappedEntityPairsIndex pairsIndex) 
+			throws IOException {
 		this.entityLinksIndex = entityLinksIndex;
+		this.pairsIndex = pairsIndex;
 		LOG.setLevel(Level.INFO);
 	}	
 	
@@ -230,44 +238,47 @@ public class RandomGraphWalk {
 		}
 		LOG.info("EL Graph Mentions: " + mentions.size() + " Entities: " + noEntities);
 		
-		HashMap<PairOfInts, Double> relatednessMap = null;
-		boolean useMap = false;
-		if (graph.getVertexCount() < MAP_MAX) {
-			relatednessMap = new HashMap<PairOfInts, Double>(1000000);
-			useMap = true;
-
-		}		
-		for (Mention mention1: mentions) {
+		int[][] candidates = new int[mentions.size()][];
+		for (int i = 0; i < mentions.size(); ++i) {
+			candidates[i] = Ints.toArray(mentions.get(i).getCandidateEntities());
+		}
+		double[][] relatedness = new double[mentions.size()][];
+		for (int i = 0; i < mentions.size(); ++i) {
+			Mention mention1 = mentions.get(i);
 			if (mention1.getCandidatesCount() > 2000) {
 				System.out.println("Mention " + mention1.getNgram() + " has " + 
 						mention1.getCandidatesCount() + " candidates");
 			}
 			
-			for (Integer entity1: mention1.getCandidateEntities()) {
-				double sumRelatedness = 0;				
-				for (Mention mention2: mentions) {
-					if (mention2 == mention1) {
+			for (int entity1: candidates[i]) {
+				// Relatedness to the candidates of every other mention, one batch per mention.
+				double sumRelatedness = 0;
+				for (int j = 0; j < mentions.size(); ++j) {
+					if (j == i) {
 						continue;
-					}		
-					for (Integer entity2: mention2.getCandidateEntities()) {
-						double relatedness = computeRelatedness(entity1, entity2, relatednessMap, useMap);
-						if (relatedness > EPS) {
-							sumRelatedness += relatedness;
+					}
+					relatedness[j] = pairsIndex != null ?
+							pairsIndex.getSemanticRelatedness(entity1, candidates[j], entityLinksIndex) :
+							entityLinksIndex.getSemanticRelatedness(entity1, candidates[j]);
+					for (double value: relatedness[j]) {
+						if (value > EPS) {
+							sumRelatedness += value;
 						}
 					}
 				}
 				
-				for (Mention mention2: mentions) {
-					if (mention2 == mention1) {
+				for (int j = 0; j < mentions.size(); ++j) {
+					if (j == i) {
 						continue;
 					}
-					for (Integer entity2: mention2.getCandidateEntities()) {
-						double relatedness = computeRelatedness(entity1, entity2, relatednessMap, useMap);
-						if (relatedness > EPS) {
-							LOG.debug(entity1 + " to "  + entity2 + " Relatedness:" + relatedness);
+					Mention mention2 = mentions.get(j);
+					for (int k = 0; k < candidates[j].length; ++k) {
+						int entity2 = candidates[j][k];
+						if (relatedness[j][k] > EPS) {
+							LOG.debug(entity1 + " to "  + entity2 + " Relatedness:" + relatedness[j][k]);
 							Vertex vertex1 = new Vertex(entity1, mention1);
 							Vertex vertex2 = new Vertex(entity2, mention2);
-							Edge edge = new Edge(new BigDecimal(relatedness / sumRelatedness));
+							Edge edge = new Edge(new BigDecimal(relatedness[j][k] / sumRelatedness));
 							graph.addEdge(edge, new Pair<Vertex>(vertex1, vertex2), EdgeType.DIRECTED);
 						}
 					}
@@ -319,24 +330,6 @@ public class RandomGraphWalk {
 		}
 	}
 	
-	public double computeRelatedness(int entity1, int entity2, 
-			HashMap<PairOfInts, Double> relatednessMap, boolean useMap) {
-		if (!useMap) {
-			return entityLinksIndex.getSemanticRelatedness(entity1, entity2);
-		}
-		
-		PairOfInts pair = new PairOfInts(
-				Math.min(entity1, entity2),
-				Math.max(entity1, entity2)
-		);
-		if (relatednessMap.containsKey(pair)) {
-			return relatednessMap.get(pair);
-		}
-		double relatedness = entityLinksIndex.getSemanticRelatedness(entity1, entity2);
-		relatednessMap.put(pair, relatedness);
-		return relatedness;
-	}
-	
 	public void printInfoRandomGraphWalk(DirectedSparseGraph<Vertex, Edge> graph) {
 		WeakComponentClusterer<Vertex, Edge> clusterer = new WeakComponentClusterer<Vertex, Edge>();
     Set<Set<Vertex>> components = clusterer.transform(graph);
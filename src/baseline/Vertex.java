@@ -6,7 +6,7 @@ import md.Mention;
  * Vertex of the Referent Graph for Entity Linking.
  * Represents a mention or an entity.
  * If it represents a mention the prior is set to the mentions importance. Otherwise it is set to 0.
- * Mentions have negative ids. An entity id is it's integer mapping. See @index.TitlesIndex .
+ * Mentions have negative ids. An entity id is it's integer mapping. See @index.TitleDictionary .
  */
 public class Vertex {
 	public static final int NOT_SET = -1;
@@ -0,0 +1,166 @@
+package data;
+
+import java.util.Arrays;
+
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+
+/**
+ * Sparse tf-idf vector over the term ids of @see index.TermDocumentFrequencyIndex , with float
+ * weights in increasing term id order, held in arrays. The norm is kept with the weights, so
+ * readers need no pass over them; @see #normalize makes it 1. The norm may include terms without
+ * an id, which never match another vector but count for cosine similarity.
+ * Free of Hadoop classes: contexts are built as this type, @see SparseVector adds the Writable
+ * form for the MapReduce jobs and the tf-idf collections.
+ */
+public class ArraySparseVector implements TermIdVector {
+	int size = 0;
+	int[] termIds = new int[0];
+	float[] weights = new float[0];
+	double squaredNorm = 0;
+
+	public ArraySparseVector() {
+	}
+
+	/**
+	 * Vector of the first size term ids and weights, in any order. Term ids must be distinct.
+	 */
+	public ArraySparseVector(int[] termIds, float[] weights, int size) {
+		set(termIds, weights, size, 0.0);
+	}
+
+	/**
+	 * @param unindexedSquaredNorm sum of the squared weights of terms without an id
+	 */
+	public void set(final int[] termIds, final float[] weights, int size,
+			double unindexedSquaredNorm) {
+		final int[] order = new int[size];
+		for (int i = 0; i < size; ++i) {
+			order[i] = i;
+		}
+		GenericSorting.quickSort(0, size, new IntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				int first = termIds[order[a]];
+				int second = termIds[order[b]];
+				return first < second ? -1 : (first == second ? 0 : 1);
+			}
+		}, new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				int value = order[a];
+				order[a] = order[b];
+				order[b] = value;
+			}
+		});
+		this.size = size;
+		this.termIds = new int[size];
+		this.weights = new float[size];
+		squaredNorm = unindexedSquaredNorm;
+		for (int i = 0; i < size; ++i) {
+			this.termIds[i] = termIds[order[i]];
+			this.weights[i] = weights[order[i]];
+			squaredNorm += (double) this.weights[i] * this.weights[i];
+		}
+	}
+
+	void ensureCapacity(int capacity) {
+		if (termIds.length < capacity) {
+			termIds = new int[capacity];
+			weights = new float[capacity];
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getTermId(int position) {
+		return termIds[position];
+	}
+
+	@Override
+	public float getWeight(int position) {
+		return weights[position];
+	}
+
+	@Override
+	public double getNorm() {
+		return Math.sqrt(squaredNorm);
+	}
+
+	/**
+	 * Scales the weights to a norm of 1, unless the vector is 0.
+	 */
+	public void normalize() {
+		double norm = getNorm();
+		if (norm == 0) {
+			return;
+		}
+		for (int i = 0; i < size; ++i) {
+			weights[i] = (float) (weights[i] / norm);
+		}
+		squaredNorm = 1.0;
+	}
+
+	/**
+	 * Dot product, merging the two term id lists.
+	 */
+	public double dot(ArraySparseVector other) {
+		double result = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			int first = termIds[i];
+			int second = other.termIds[j];
+			if (first == second) {
+				result += (double) weights[i++] * other.weights[j++];
+			} else if (first < second) {
+				++i;
+			} else {
+				++j;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Approximate heap size, for caches bounded in bytes.
+	 */
+	public long getSizeInBytes() {
+		return 16 + 2 * 16 + 8L * termIds.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for (int i = 0; i < size; ++i) {
+			result.append(i > 0 ? ", " : "").append(termIds[i]).append(":").append(weights[i]);
+		}
+		return result.append("]").toString();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ArraySparseVector)) {
+			return false;
+		}
+		ArraySparseVector vector = (ArraySparseVector) other;
+		return size == vector.size &&
+				Arrays.equals(Arrays.copyOf(termIds, size), Arrays.copyOf(vector.termIds, size)) &&
+				Arrays.equals(Arrays.copyOf(weights, size), Arrays.copyOf(vector.weights, size));
+	}
+
+	@Override
+	public int hashCode() {
+		int result = size;
+		for (int i = 0; i < size; ++i) {
+			result = 31 * result + termIds[i];
+			result = 31 * result + Float.floatToIntBits(weights[i]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,74 @@
+package data;
+
+import java.util.Map;
+
+/**
+ * Immutable tf-idf vector kept as parallel arrays of terms and weights, several times smaller
+ * than the equivalent @see TFIDFEntry . Used for cached entity vectors.
+ */
+public class CompactTFIDFEntry {
+	// Object header and fields of this object and its two arrays.
+	private static final long OVERHEAD = 16 + 2 * 24;
+	// Reference, weight and String object with its char array header, without the characters.
+	private static final long TERM_OVERHEAD = 4 + 8 + 40;
+
+	private final String[] terms;
+	private final double[] weights;
+	private final long sizeInBytes;
+
+	public CompactTFIDFEntry(String[] terms, double[] weights) {
+		if (terms.length != weights.length) {
+			throw new IllegalArgumentException("Terms and weights have different lengths.");
+		}
+		this.terms = terms;
+		this.weights = weights;
+		sizeInBytes = computeSizeInBytes();
+	}
+
+	public CompactTFIDFEntry(Map<String, Double> entry) {
+		terms = new String[entry.size()];
+		weights = new double[entry.size()];
+		int position = 0;
+		for (Map.Entry<String, Double> term: entry.entrySet()) {
+			terms[position] = term.getKey();
+			weights[position] = term.getValue();
+			++position;
+		}
+		sizeInBytes = computeSizeInBytes();
+	}
+
+	public int size() {
+		return terms.length;
+	}
+
+	public String getTerm(int position) {
+		return terms[position];
+	}
+
+	public double getWeight(int position) {
+		return weights[position];
+	}
+
+	public TFIDFEntry toTFIDFEntry() {
+		TFIDFEntry result = new TFIDFEntry(terms.length);
+		for (int i = 0; i < terms.length; ++i) {
+			result.put(terms[i], weights[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Approximate heap size, for caches bounded in bytes.
+	 */
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	private long computeSizeInBytes() {
+		long size = OVERHEAD;
+		for (String term: terms) {
+			size += TERM_OVERHEAD + 2 * term.length();
+		}
+		return size;
+	}
+}
@@ -0,0 +1,84 @@
+package data;
+
+/**
+ * Projects sparse vectors over term ids to dense float vectors of a fixed number of dimensions:
+ * every term adds its weight, with a sign, to a few dimensions chosen by hashing the term id.
+ * Inner products are preserved in expectation, so the dot product of two projected unit vectors
+ * approximates their cosine similarity. Nothing but the parameters needs to be stored, and the
+ * entity vectors and the contexts are projected the same way given the same parameters.
+ */
+public class HashedProjection {
+	public static final int DEFAULT_DIMENSIONS = 256;
+	public static final int DEFAULT_HASHES = 4;
+	public static final long DEFAULT_SEED = 0x5eedL;
+
+	private final int dimensions;
+	private final int hashes;
+	private final long seed;
+	private final double scale;
+
+	public HashedProjection(int dimensions, int hashes, long seed) {
+		if (dimensions <= 0 || hashes <= 0) {
+			throw new IllegalArgumentException(
+					"Need positive dimensions and hashes: " + dimensions + ", " + hashes);
+		}
+		this.dimensions = dimensions;
+		this.hashes = hashes;
+		this.seed = seed;
+		scale = 1 / Math.sqrt(hashes);
+	}
+
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	public int getHashes() {
+		return hashes;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Writes the projection of the vector, scaled to unit length unless it is 0, into result.
+	 */
+	public void project(TermIdVector vector, float[] result) {
+		double[] sums = new double[dimensions];
+		for (int i = 0; i < vector.size(); ++i) {
+			int termId = vector.getTermId(i);
+			double weight = scale * vector.getWeight(i);
+			for (int hash = 0; hash < hashes; ++hash) {
+				long bits = mix(seed + 0x9e3779b97f4a7c15L * (((long) termId << 32) | hash));
+				int dimension = (int) ((bits >>> 1) % dimensions);
+				sums[dimension] += (bits & 1) == 0 ? weight : -weight;
+			}
+		}
+		double norm = 0;
+		for (double sum: sums) {
+			norm += sum * sum;
+		}
+		norm = norm > 0 ? Math.sqrt(norm) : 1;
+		for (int dimension = 0; dimension < dimensions; ++dimension) {
+			result[dimension] = (float) (sums[dimension] / norm);
+		}
+	}
+
+	public float[] project(TermIdVector vector) {
+		float[] result = new float[dimensions];
+		project(vector, result);
+		return result;
+	}
+
+	/**
+	 * Finalizer of the 64 bit MurmurHash3.
+	 */
+	private static long mix(long bits) {
+		bits ^= bits >>> 33;
+		bits *= 0xff51afd7ed558ccdL;
+		bits ^= bits >>> 33;
+		bits *= 0xc4ceb9fe1a85ec53L;
+		bits ^= bits >>> 33;
+		return bits;
+	}
+}
@@ -0,0 +1,77 @@
+package data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read only view of a sparse vector stored in a memory mapped buffer, see
+ * @see index.MappedEntityTFIDFStore . Nothing is copied: term ids and weights are read from the
+ * buffer when used.
+ * Record layout (big endian): double norm, int size, int[size] increasing term ids,
+ * float[size] weights.
+ */
+public class MappedSparseVector implements TermIdVector {
+	public static final int HEADER_SIZE = 12;
+
+	private final ByteBuffer buffer;
+	private final int termIdsStart;
+	private final int weightsStart;
+	private final int size;
+	private final double norm;
+
+	public MappedSparseVector(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		norm = buffer.getDouble(offset);
+		size = buffer.getInt(offset + 8);
+		termIdsStart = offset + HEADER_SIZE;
+		weightsStart = termIdsStart + 4 * size;
+	}
+
+	/**
+	 * Size in bytes of the record of a vector with the given number of terms.
+	 */
+	public static long getRecordSize(int size) {
+		return HEADER_SIZE + 8L * size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getTermId(int position) {
+		return buffer.getInt(termIdsStart + 4 * position);
+	}
+
+	@Override
+	public float getWeight(int position) {
+		return buffer.getFloat(weightsStart + 4 * position);
+	}
+
+	@Override
+	public double getNorm() {
+		return norm;
+	}
+
+	/**
+	 * Dot product, merging the two term id lists.
+	 */
+	public double dot(ArraySparseVector other) {
+		double result = 0;
+		int i = 0;
+		int j = 0;
+		int otherSize = other.size();
+		while (i < size && j < otherSize) {
+			int first = getTermId(i);
+			int second = other.getTermId(j);
+			if (first == second) {
+				result += (double) getWeight(i++) * other.getWeight(j++);
+			} else if (first < second) {
+				++i;
+			} else {
+				++j;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,56 @@
+package data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * @see ArraySparseVector as a Writable, the values of the sparse tf-idf collections.
+ * Serialized as: number of terms, norm, term ids delta encoded as variable length ints, weights.
+ * readFields reuses the arrays of the vector, so a vector can be read repeatedly without
+ * allocating.
+ */
+public class SparseVector extends ArraySparseVector implements Writable {
+	public SparseVector() {
+	}
+
+	/**
+	 * Vector of the first size term ids and weights, in any order. Term ids must be distinct.
+	 */
+	public SparseVector(int[] termIds, float[] weights, int size) {
+		super(termIds, weights, size);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		size = WritableUtils.readVInt(in);
+		ensureCapacity(size);
+		double norm = in.readDouble();
+		squaredNorm = norm * norm;
+		int termId = 0;
+		for (int i = 0; i < size; ++i) {
+			termId += WritableUtils.readVInt(in);
+			termIds[i] = termId;
+		}
+		for (int i = 0; i < size; ++i) {
+			weights[i] = in.readFloat();
+		}
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, size);
+		out.writeDouble(getNorm());
+		int previous = 0;
+		for (int i = 0; i < size; ++i) {
+			WritableUtils.writeVInt(out, termIds[i] - previous);
+			previous = termIds[i];
+		}
+		for (int i = 0; i < size; ++i) {
+			out.writeFloat(weights[i]);
+		}
+	}
+}
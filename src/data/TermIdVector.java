@@ -0,0 +1,15 @@
+package data;
+
+/**
+ * Read access to a vector over the term ids of @see index.TermDocumentFrequencyIndex , with term
+ * ids in increasing order.
+ */
+public interface TermIdVector {
+	public int size();
+
+	public int getTermId(int position);
+
+	public float getWeight(int position);
+
+	public double getNorm();
+}
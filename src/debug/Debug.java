@@ -10,8 +10,7 @@ import org.xml.sax.SAXException;
 import iitb.Annotation;
 import iitb.IITBDataset;
 import index.MentionEntitiesFrequencyIndex;
-import index.TitleIDsIndex;
-import index.TitlesIndex;
+import index.TitleDictionary;
 
 public class Debug {
 	private static String annotationsFilePath = "/home/marinah/input/CSAW_Annotations (original).xml";
@@ -42,7 +41,7 @@ public class Debug {
 		dataset.load(annotationsFilePath, testFilesFolder, false);
 		System.out.println("Loaded annotations.");
 		
-		TitleIDsIndex titleIdsIndex = TitleIDsIndex.load("/home/marinah/wikipedia/enwiki-titles.txt"); 
+		TitleDictionary titleIdsIndex = TitleDictionary.load("/home/marinah/wikipedia/enwiki-titles.txt"); 
 		System.out.println("Loaded title ids index.");
 		
 		HashSet<Spot> spots = new HashSet<Spot>();
@@ -80,7 +79,7 @@ public class Debug {
 		System.out.println("Loaded annotations.");
 		
 		for (Annotation annotation: dataset.getAnnotations()) {
-			if (annotation.getEntity() == TitlesIndex.NOT_CANONICAL_TITLE) {
+			if (annotation.getEntity() == TitleDictionary.NOT_CANONICAL_TITLE) {
 				String content = IITBDataset.getFileContent(testFilesFolder + annotation.getFilename());
 				String tokenSpan = content.substring(
 						annotation.getOffset(), 
@@ -30,8 +30,7 @@ import iitb.Annotation;
 import iitb.IITBDataset;
 import iitb.NameAnnotation;
 import index.MentionIndex;
-import index.TitleIDsIndex;
-import index.TitlesIndex;
+import index.TitleDictionary;
 
 public class MentionDetectionDebug {
 	private static String annotationsFilePath = "/home/marinah/input/CSAW_Annotations (original).xml";
@@ -56,7 +55,7 @@ public class MentionDetectionDebug {
 				"/home/marinah/wikipedia/mention-entity-keyphraseness.txt");
 		System.out.println("Loaded mention index.");
 		
-		TitleIDsIndex titleIdsIndex = TitleIDsIndex.load("/home/marinah/wikipedia/enwiki-titles.txt"); 
+		TitleDictionary titleIdsIndex = TitleDictionary.load("/home/marinah/wikipedia/enwiki-titles.txt"); 
 		System.out.println("Loaded titles index.");
 		
 		System.out.println("Potential false negatives from ground truth due to low keyphraseness:");
@@ -163,7 +162,7 @@ public class MentionDetectionDebug {
 	}
 	
 	public static void removeAnnotation(NameAnnotation input, Map<String, Set<Mention>> map) {
-		if (input.getEntity() == TitlesIndex.NOT_CANONICAL_TITLE) {
+		if (input.getEntity() == TitleDictionary.NOT_CANONICAL_TITLE) {
 			return;
 		}
 		String filename = input.getFilename();
@@ -1,14 +1,16 @@
 package debug;
 
+import java.io.File;
 import java.io.IOException;
 
 import iitb.IITBDataset;
 import iitb.NameAnnotation;
 import index.EntityLinksIndex;
 import index.EntityTFIDFIndex;
+import index.MappedEntityPairsIndex;
 import index.MentionIndex;
 import index.TermDocumentFrequencyIndex;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 import md.MentionDetection;
 
 import org.apache.hadoop.fs.Path;
@@ -25,9 +27,11 @@ public class SingleDocumentDebug {
 			"/home/marinah/wikipedia/mention-entity-keyphraseness.txt";
 	private static final String entityLinksIndexPath = 
 			"/home/marinah/wikipedia/entity-entity-index.txt";
+	private static final String entityPairsIndexPath = 
+			"/home/marinah/wikipedia/entity-pairs-index.bin";
 	private static final String titlesFilePath = "/home/marinah/wikipedia/enwiki-titles.txt";
 	
-	public static TitleIDsIndex titleIdsIndex;
+	public static TitleDictionary titleIdsIndex;
 	
 	public static void main(String args[]) throws IOException {
 		
@@ -44,14 +48,19 @@ public class SingleDocumentDebug {
 		EntityLinksIndex entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
 		System.out.println("Loaded entity links index.");
 
-		titleIdsIndex = TitleIDsIndex.load(titlesFilePath); 
+		// Optional, the scorers do without it.
+		MappedEntityPairsIndex entityPairsIndex = new File(entityPairsIndexPath).exists() ?
+				MappedEntityPairsIndex.load(entityPairsIndexPath) : null;
+		System.out.println("Loaded entity pairs index.");
+
+		titleIdsIndex = TitleDictionary.load(titlesFilePath); 
 		System.out.println("Loaded title ids index.");
 
 	  String content = IITBDataset.getFileContent(
 	  		"/home/marinah/input/crawledDocs/ganeshTestDoc.txt");
 	  MentionDetection md = new MentionDetection(content, mentionIndex, entityTFIDFIndex, dfIndex);
 	  md.setThreshold(0.8, true);
-		RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex);
+		RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex, entityPairsIndex);
 		rgw.solve(md.solve());
 		
 		System.out.println("Solution");
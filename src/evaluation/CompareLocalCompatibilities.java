@@ -0,0 +1,143 @@
+package evaluation;
+
+import iitb.Annotation;
+import iitb.IITBDataset;
+import index.IndexRegistry;
+import index.MentionEntitiesFrequencyIndex;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import md.Mention;
+import md.MentionDetection;
+import md.Token;
+
+import org.apache.commons.io.FilenameUtils;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares the local compatibility rankings of the candidates of the ground truth mentions under
+ * the exact tf-idf cosine similarity and under an alternative @see MentionDetection set up by the
+ * subclass. Reports how often the top candidate is the same, how often it is the annotated entity
+ * under each, the mean absolute change of the scores and the time spent scoring with each.
+ */
+public abstract class CompareLocalCompatibilities extends VerifyEntityDisambiguationAbstract {
+	/**
+	 * Starts loading the indices of the alternative, see @see index.IndexRegistry .
+	 */
+	protected abstract void loadAlternativeIndices();
+
+	protected abstract MentionDetection createAlternative(String content,
+			MentionEntitiesFrequencyIndex mentionIndex) throws IOException;
+
+	/**
+	 * Prints statistics of the alternative's indices after the results, none by default.
+	 */
+	protected void printAlternativeStats() throws IOException {
+	}
+
+	public void run() throws ParserConfigurationException, SAXException, IOException {
+		configureLogging();
+
+		IndexRegistry registry = IndexRegistry.getInstance();
+		registry.loadMentionEntitiesFrequencyIndex(mentionFreqIndexPath);
+		loadAlternativeIndices();
+
+		loadIndices();
+		MentionEntitiesFrequencyIndex mentionIndex =
+				registry.getMentionEntitiesFrequencyIndex(mentionFreqIndexPath);
+		System.out.println("Loaded mention index:" + mentionFreqIndexPath);
+
+		int mentionsTotal = 0;
+		int sameTop = 0;
+		int correctExact = 0;
+		int correctAlternative = 0;
+		long scores = 0;
+		double scoreDifference = 0;
+		long exactTime = 0;
+		long alternativeTime = 0;
+		int total = 0;
+		for (String filename: iitb.getFilenames()) {
+			System.out.println("Solving for document:" + filename + " Number:" + (++total));
+
+			Map<Integer, Integer> groundTruth = new HashMap<Integer, Integer>();
+			for (Annotation annotation: iitb.getAnnotations(filename)) {
+				groundTruth.put(annotation.getOffset(), annotation.getEntity());
+			}
+			String content = IITBDataset.getFileContent(
+					FilenameUtils.normalize(testFilesFolder + filename));
+			List<Token> tokens = MentionDetection.tokenizeText(content);
+			List<Mention> mentions = getGroundTruthNameAnnotations(filename, mentionIndex);
+			List<Integer[]> candidates = new ArrayList<Integer[]>();
+			for (Mention mention: mentions) {
+				candidates.add(mention.getCandidateEntities().toArray(
+						new Integer[mention.getCandidatesCount()]));
+			}
+
+			// Scored again, to time the exact scores with the same warm caches as the alternative.
+			MentionDetection exact = new MentionDetection(content, mentionIndex, entityTFIDFIndex,
+					dfIndex);
+			long start = System.nanoTime();
+			exact.computeLocalCompatibilities(mentions, candidates, tokens);
+			exactTime += System.nanoTime() - start;
+			List<Map<Integer, BigDecimal>> exactScores = new ArrayList<Map<Integer, BigDecimal>>();
+			for (Mention mention: mentions) {
+				Map<Integer, BigDecimal> mentionScores = new HashMap<Integer, BigDecimal>();
+				for (Map.Entry<Integer, BigDecimal> entry: mention.getEntitiesAndScores()) {
+					mentionScores.put(entry.getKey(), entry.getValue());
+				}
+				exactScores.add(mentionScores);
+			}
+
+			MentionDetection alternative = createAlternative(content, mentionIndex);
+			start = System.nanoTime();
+			alternative.computeLocalCompatibilities(mentions, candidates, tokens);
+			alternativeTime += System.nanoTime() - start;
+
+			for (int i = 0; i < mentions.size(); ++i) {
+				Mention mention = mentions.get(i);
+				Integer exactTop = null;
+				Integer alternativeTop = null;
+				for (Map.Entry<Integer, BigDecimal> entry: exactScores.get(i).entrySet()) {
+					int entity = entry.getKey();
+					BigDecimal alternativeScore = mention.getEntityCompatibilityScore(entity);
+					if (exactTop == null ||
+							entry.getValue().compareTo(exactScores.get(i).get(exactTop)) > 0) {
+						exactTop = entity;
+					}
+					if (alternativeTop == null || alternativeScore.compareTo(
+							mention.getEntityCompatibilityScore(alternativeTop)) > 0) {
+						alternativeTop = entity;
+					}
+					scoreDifference += Math.abs(entry.getValue().doubleValue() -
+							alternativeScore.doubleValue());
+					++scores;
+				}
+				++mentionsTotal;
+				Integer entity = groundTruth.get(mention.getOffset());
+				sameTop += exactTop != null && exactTop.equals(alternativeTop) ? 1 : 0;
+				correctExact += exactTop != null && exactTop.equals(entity) ? 1 : 0;
+				correctAlternative += alternativeTop != null && alternativeTop.equals(entity) ? 1 : 0;
+			}
+		}
+
+		System.out.println("=============== RESULTS =================");
+		System.out.println("Mentions: " + mentionsTotal);
+		System.out.println("Same top candidate: " + (double) sameTop / mentionsTotal);
+		System.out.println("Top candidate correct, exact: " +
+				(double) correctExact / mentionsTotal);
+		System.out.println("Top candidate correct, " + getClass().getSimpleName() + ": " +
+				(double) correctAlternative / mentionsTotal);
+		System.out.println("Mean absolute score difference: " + scoreDifference / scores);
+		System.out.println("Scoring time exact: " + exactTime / 1000000 + " ms, alternative: " +
+				alternativeTime / 1000000 + " ms");
+		System.out.println("Entity tf-idf cache " + entityTFIDFIndex.getCacheStats());
+		printAlternativeStats();
+	}
+}
@@ -4,10 +4,12 @@ import iitb.Annotation;
 import iitb.IITBDataset;
 import iitb.NameAnnotation;
 import index.EntityLinksIndex;
-import index.EntityTFIDFIndex;
+import index.IndexRegistry;
+import index.MappedEntityPairsIndex;
+import index.MappedEntityTFIDFStore;
 import index.MentionIndex;
 import index.TermDocumentFrequencyIndex;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -18,9 +20,9 @@ import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
 
 import md.MentionDetection;
+import md.MentionSpotter;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.hadoop.fs.Path;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Category;
 import org.apache.log4j.Level;
@@ -38,17 +40,19 @@ public class VerifyBaseline {
 	private static final String testFilesFolder = "/home/marinah/input/crawledDocs/";
 	private static final String titlesFilePath = "/home/marinah/wikipedia/enwiki-titles.txt";
 	private static final String termDFIndexPath = "/home/marinah/wikipedia/df-index.txt";
-	private static final String entityTfIDFFilesPath = "/home/marinah/wikipedia/tf-idf-entity";
-	private static final String entityTfIDFIndexPath = 
-			"/home/marinah/wikipedia/tf-idf-entity-index.txt";
+	// Built by knowledgebase.MappedEntityTFIDFStoreBuilder from the tf-idf entity files.
+	private static final String entityTfIDFStorePath = 
+			"/home/marinah/wikipedia/tf-idf-entity-store.bin";
 	private static final String redirectsFilePath = 
 			"/home/marinah/wikipedia/enwiki-redirect-normalized.txt";
 	private static final String mentionIndexPath = 
 			"/home/marinah/wikipedia/mention-entity-keyphraseness-limited25.txt";
 	private static final String entityLinksIndexPath = 
 			"/home/marinah/wikipedia/entity-entity-index.txt";
+	private static final String entityPairsIndexPath = 
+			"/home/marinah/wikipedia/entity-pairs-index.bin";
 	
-	public static TitleIDsIndex titleIdsIndex;
+	public static TitleDictionary titleIdsIndex;
 	
 	public static PrintWriter out;
 	
@@ -67,25 +71,40 @@ public class VerifyBaseline {
 
 		System.out.println("VerifyBaseline - mention index:" + mentionIndexPath);
 		
-		EntityTFIDFIndex entityTFIDFIndex = new EntityTFIDFIndex(entityTfIDFFilesPath);
-		entityTFIDFIndex.load(new Path(entityTfIDFIndexPath));
-		System.out.println("Loaded tf-idf entity index.");
+		IndexRegistry registry = IndexRegistry.getInstance();
+		registry.loadMappedEntityTFIDFStore(entityTfIDFStorePath);
+		registry.loadTitleResolver(titlesFilePath, redirectsFilePath);
+		registry.loadMentionIndex(mentionIndexPath);
+		registry.loadTokenPrefixSet(mentionIndexPath);
+		registry.loadTermDocumentFrequencyIndex(termDFIndexPath);
+		registry.loadEntityLinksIndex(entityLinksIndexPath);
+		registry.loadMappedEntityPairsIndexIfExists(entityPairsIndexPath);
+		
+		MappedEntityTFIDFStore entityVectorStore = 
+				registry.getMappedEntityTFIDFStore(entityTfIDFStorePath);
+		System.out.println("Loaded tf-idf entity store.");
 		    
-		IITBDataset iitb = new IITBDataset(titlesFilePath, redirectsFilePath);
+		IITBDataset iitb = new IITBDataset(registry.getTitleResolver(titlesFilePath, redirectsFilePath));
 		iitb.load(annotationsFilePath, testFilesFolder, true);
 		System.out.println("Loaded IITB dataset.");
 		
-		MentionIndex mentionIndex = MentionIndex.load(mentionIndexPath);
+		MentionIndex mentionIndex = registry.getMentionIndex(mentionIndexPath);
+		MentionSpotter spotter = new MentionSpotter(registry.getTokenPrefixSet(mentionIndexPath));
 		System.out.println("Loaded mention index.");
 		
-		TermDocumentFrequencyIndex dfIndex = TermDocumentFrequencyIndex.load(termDFIndexPath);
+		TermDocumentFrequencyIndex dfIndex = registry.getTermDocumentFrequencyIndex(termDFIndexPath);
 		System.out.println("Loaded term document frequency index.");
 
-		EntityLinksIndex entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
+		EntityLinksIndex entityLinksIndex = registry.getEntityLinksIndex(entityLinksIndexPath);
 		System.out.println("Loaded entity links index.");
 		
-		titleIdsIndex = TitleIDsIndex.load(titlesFilePath); 
+		MappedEntityPairsIndex entityPairsIndex = 
+				registry.getMappedEntityPairsIndexIfExists(entityPairsIndexPath);
+		System.out.println("Loaded entity pairs index.");
+		
+		titleIdsIndex = registry.getTitleDictionary(titlesFilePath); 
 		System.out.println("Loaded title ids index.");
+		registry.logLoadTimes();
 
 		for (double threshold = 0.9; threshold >= 0.1; threshold -= 0.01) 
 		{
@@ -100,10 +119,11 @@ public class VerifyBaseline {
 				
 				String filePath = FilenameUtils.normalize(testFilesFolder + filename);
 				String content = IITBDataset.getFileContent(filePath);
-				MentionDetection md = new MentionDetection(content, mentionIndex, entityTFIDFIndex, 
-						dfIndex);
+				MentionDetection md = new MentionDetection(content, mentionIndex, null, dfIndex);
+				md.setEntityVectorStore(entityVectorStore);
+				md.setSpotter(spotter);
 				md.setThreshold(threshold, true);
-				RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex);
+				RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex, entityPairsIndex);
 				rgw.solve(md.solve());
 				Set<NameAnnotation> currentSolution = rgw.getSolutionNameAnnotations(filename);
 				solution.addAll(currentSolution);
@@ -17,7 +17,6 @@ import md.Token;
 import normalizer.Normalizer;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.hadoop.fs.Path;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Category;
 import org.apache.log4j.Level;
@@ -33,9 +32,10 @@ import iitb.NameAnnotation;
 import index.CandidatesIndex;
 import index.EntityLinksIndex;
 import index.EntityTFIDFIndex;
+import index.IndexRegistry;
 import index.LinksIndex;
 import index.TermDocumentFrequencyIndex;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 public abstract class VerifyEntityDisambiguationAbstract {
 	public static String annotationsFilePath = "/home/marinah/input/CSAW_Annotations (original).xml";
@@ -54,12 +54,14 @@ public abstract class VerifyEntityDisambiguationAbstract {
 			"/mnt/local/marinah/wikipedia/entityLinksIndex.txt";
 	public static final String entityLinksIndexPath = 
 			"/mnt/local/marinah/wikipedia/entity-entity-index.txt";
+	public static final String entityPairsIndexPath = 
+			"/mnt/local/marinah/wikipedia/entity-pairs-index.bin";
 	
 	public IITBDataset iitb;
 	public EntityTFIDFIndex entityTFIDFIndex;
 	public TermDocumentFrequencyIndex dfIndex;
 	public LinksIndex entityLinksIndex;
-	public TitleIDsIndex titleIdsIndex;
+	public TitleDictionary titleIdsIndex;
 	
 	public HashSet<String> missing;
 	
@@ -80,20 +82,29 @@ public abstract class VerifyEntityDisambiguationAbstract {
 		}
 	}
 	
+	/**
+	 * Loads the indices shared by all methods concurrently, through @see index.IndexRegistry .
+	 * Indices started by subclasses before calling this are loaded at the same time.
+	 */
 	public void loadIndices() throws ParserConfigurationException, SAXException, IOException {
-		iitb = new IITBDataset(titlesFilePath, redirectsFilePath);
+		IndexRegistry registry = IndexRegistry.getInstance();
+		registry.loadTitleResolver(titlesFilePath, redirectsFilePath);
+		registry.loadEntityTFIDFIndex(entityTfIDFFilesPath, entityTfIDFIndexPath);
+		registry.loadTermDocumentFrequencyIndex(termDFIndexPath);
+		
+		iitb = new IITBDataset(registry.getTitleResolver(titlesFilePath, redirectsFilePath));
 		iitb.load(annotationsFilePath, testFilesFolder, true);
 		System.out.println("Loaded IITB dataset.");
 		
-		entityTFIDFIndex = new EntityTFIDFIndex(entityTfIDFFilesPath);
-		entityTFIDFIndex.load(new Path(entityTfIDFIndexPath));
+		entityTFIDFIndex = registry.getEntityTFIDFIndex(entityTfIDFFilesPath, entityTfIDFIndexPath);
 		System.out.println("Loaded tf-idf entity index:" + entityTfIDFFilesPath);
 		
-		dfIndex = TermDocumentFrequencyIndex.load(termDFIndexPath);
+		dfIndex = registry.getTermDocumentFrequencyIndex(termDFIndexPath);
 		System.out.println("Loaded term document frequency index:" + termDFIndexPath);
 		
-		titleIdsIndex = TitleIDsIndex.load(titlesFilePath); 
+		titleIdsIndex = registry.getTitleDictionary(titlesFilePath); 
 		System.out.println("Loaded title ids index:" + titlesFilePath);
+		registry.logLoadTimes();
 	} 
 	
 	public List<Mention> getGroundTruthNameAnnotations(String filename, CandidatesIndex mentionIndex) 
@@ -104,6 +115,9 @@ public abstract class VerifyEntityDisambiguationAbstract {
 		MentionDetection md = new MentionDetection(content, mentionIndex, entityTFIDFIndex, dfIndex);
 		List<Token> tokens = MentionDetection.tokenizeText(content);
 		List<Mention> groundTruthMentions = new ArrayList<Mention>();
+		List<Mention> mentions = new ArrayList<Mention>();
+		List<Integer[]> mentionCandidates = new ArrayList<Integer[]>();
+		Set<Integer> entities = new HashSet<Integer>();
 		for (Annotation annotation: iitb.getAnnotations(filename)) {
 			int offset = annotation.getOffset();
 			int length = annotation.getLength();
@@ -126,10 +140,17 @@ public abstract class VerifyEntityDisambiguationAbstract {
 			Mention mention = new Mention(normalizedTokenSpan, offset, length);
 			mention.setOriginalNgram(tokenSpan);
 			mention.computeKeyphrasenessAndDF(mentionIndex);
-			for (Integer entity: candidates) {
-				BigDecimal score = md.getLocalMentionEntityCompatibility(mention, entity, tokens);
-				mention.setEntityCompatibilityScore(entity, score);
-			}
+			mentions.add(mention);
+			mentionCandidates.add(candidates);
+			entities.addAll(Arrays.asList(candidates));
+		}
+		md.prefetchCandidates(entities);
+		try {
+			md.computeLocalCompatibilities(mentions, mentionCandidates, tokens);
+		} finally {
+			md.endPrefetch();
+		}
+		for (Mention mention: mentions) {
 			if (skipZeroCompatibilityMentions && 
 					mention.computeSumCompatibilities().compareTo(BigDecimal.ZERO) == 0) {
 				continue;
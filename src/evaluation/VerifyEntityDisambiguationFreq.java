@@ -2,6 +2,7 @@ package evaluation;
 
 import iitb.NameAnnotation;
 import index.EntityLinksIndex;
+import index.IndexRegistry;
 import index.MentionEntitiesFrequencyIndex;
 
 import java.io.IOException;
@@ -27,14 +28,16 @@ public class VerifyEntityDisambiguationFreq extends VerifyEntityDisambiguationAb
 	public void run() throws ParserConfigurationException, SAXException, IOException {
 		configureLogging();
 		
-		MentionEntitiesFrequencyIndex mentionIndex = 
-				MentionEntitiesFrequencyIndex.load(mentionIndexPath);
-		System.out.println("Loaded mention index:" + mentionIndexPath);
-		
+		IndexRegistry registry = IndexRegistry.getInstance();
+		registry.loadMentionEntitiesFrequencyIndex(mentionIndexPath);
 		System.out.println("Loading entity links index:" + entityLinksIndexPath);
-		entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
+		registry.loadEntityLinksIndex(entityLinksIndexPath);
 		
 		loadIndices();
+		MentionEntitiesFrequencyIndex mentionIndex = 
+				registry.getMentionEntitiesFrequencyIndex(mentionIndexPath);
+		System.out.println("Loaded mention index:" + mentionIndexPath);
+		entityLinksIndex = registry.getEntityLinksIndex(entityLinksIndexPath);
 		
 		int total = 0;
 		double averagePrecision = 0;
@@ -61,5 +64,6 @@ public class VerifyEntityDisambiguationFreq extends VerifyEntityDisambiguationAb
 		System.out.println("Average Precision: " + averagePrecision);
 		System.out.println("Average Recall: " + averageRecall);
 		System.out.println("Maximum achievable recall " + getMaximumAchievableRecall());
+		System.out.println("Entity tf-idf cache " + entityTFIDFIndex.getCacheStats());
 	}
 }
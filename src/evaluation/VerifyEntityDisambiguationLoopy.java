@@ -3,6 +3,8 @@ package evaluation;
 import iitb.NameAnnotation;
 import index.EntityLinksFrequencyIndex;
 import index.EntityLinksIndex;
+import index.IndexRegistry;
+import index.MappedEntityPairsIndex;
 import index.MentionEntitiesFrequencyIndex;
 
 import java.io.IOException;
@@ -32,14 +34,21 @@ public class VerifyEntityDisambiguationLoopy extends VerifyEntityDisambiguationA
 		
 		configureLogging();
 		
+		IndexRegistry registry = IndexRegistry.getInstance();
 		System.out.println("Loading mention index:" + mentionFreqIndexPath);
-		MentionEntitiesFrequencyIndex mentionIndex = 
-				MentionEntitiesFrequencyIndex.load(mentionFreqIndexPath);
-		
+		registry.loadMentionEntitiesFrequencyIndex(mentionFreqIndexPath);
 		System.out.println("Loading entity links index:" + entityLinksIndexPath);
-		entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
+		registry.loadEntityLinksIndex(entityLinksIndexPath);
+		System.out.println("Loading entity pairs index:" + entityPairsIndexPath);
+		registry.loadMappedEntityPairsIndexIfExists(entityPairsIndexPath);
 		
 		loadIndices();
+		MentionEntitiesFrequencyIndex mentionIndex = 
+				registry.getMentionEntitiesFrequencyIndex(mentionFreqIndexPath);
+		EntityLinksIndex entityLinksIndex = registry.getEntityLinksIndex(entityLinksIndexPath);
+		this.entityLinksIndex = entityLinksIndex;
+		MappedEntityPairsIndex entityPairsIndex = 
+				registry.getMappedEntityPairsIndexIfExists(entityPairsIndexPath);
 
 		Double betas[] = new Double[]{0.000001, 0.0001, 0.01, 0.1, 1.0, 10.0, 100.0, 1000.0};
 		
@@ -57,9 +66,12 @@ public class VerifyEntityDisambiguationLoopy extends VerifyEntityDisambiguationA
 				for (String filename: iitb.getFilenames()) {
 					System.out.println("Solving for document:" + filename + " Number:" + (++total));
 					List<Mention> groundTruthMentions = getGroundTruthNameAnnotations(filename, mentionIndex);
-					// ScorerBasic scorer = new ScorerBasic(groundTruthMentions, entityLinksIndex);
-					ScorerFull scorer = new ScorerFull(groundTruthMentions, entityLinksIndex, mentionIndex);
-					// ScorerMaxEnt scorer = new ScorerMaxEnt(groundTruthMentions, entityLinksIndex);
+					// ScorerBasic scorer = new ScorerBasic(groundTruthMentions, entityLinksIndex,
+					// 		entityPairsIndex);
+					ScorerFull scorer = new ScorerFull(groundTruthMentions, entityLinksIndex, mentionIndex,
+							entityPairsIndex);
+					// ScorerMaxEnt scorer = new ScorerMaxEnt(groundTruthMentions, entityLinksIndex,
+					// 		entityPairsIndex);
 					// scorer.setThreshold(threshold);
 					scorer.setBeta(beta);
 					scorer.setTitlesIdIndex(titleIdsIndex);
@@ -85,6 +97,7 @@ public class VerifyEntityDisambiguationLoopy extends VerifyEntityDisambiguationA
 				System.out.println("Average Precision: " + averagePrecision);
 				System.out.println("Average Recall: " + averageRecall);
 				System.out.println("Maximum achievable recall " + getMaximumAchievableRecall());
+				System.out.println("Entity tf-idf cache " + entityTFIDFIndex.getCacheStats());
 				
 				double fscore = (averagePrecision + averageRecall) / 2;
 				if (fscore > bestFscore) {
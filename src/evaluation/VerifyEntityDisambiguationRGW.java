@@ -2,8 +2,10 @@ package evaluation;
 
 import iitb.NameAnnotation;
 import index.EntityLinksIndex;
+import index.IndexRegistry;
+import index.MappedEntityPairsIndex;
 import index.MentionIndex;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 import java.io.IOException;
 import java.util.List;
@@ -18,7 +20,7 @@ import org.xml.sax.SAXException;
 import baseline.RandomGraphWalk;
 
 public class VerifyEntityDisambiguationRGW extends VerifyEntityDisambiguationAbstract {
-	public static TitleIDsIndex titleIdsIndex;
+	public static TitleDictionary titleIdsIndex;
 		
 	public static void main(String args[]) 
 			throws ParserConfigurationException, SAXException, IOException {
@@ -30,15 +32,21 @@ public class VerifyEntityDisambiguationRGW extends VerifyEntityDisambiguationAbs
 
 		configureLogging();
 		
-		MentionIndex mentionIndex = MentionIndex.load(mentionIndexPath);
-		System.out.println("Loaded mention index:" + mentionIndexPath);
-		
+		IndexRegistry registry = IndexRegistry.getInstance();
+		registry.loadMentionIndex(mentionIndexPath);
 		System.out.println("Loading entity links index:" + entityLinksIndexPath);
-		EntityLinksIndex entityLinksIndex = EntityLinksIndex.load(entityLinksIndexPath);
+		registry.loadEntityLinksIndex(entityLinksIndexPath);
+		System.out.println("Loading entity pairs index:" + entityPairsIndexPath);
+		registry.loadMappedEntityPairsIndexIfExists(entityPairsIndexPath);
 		
 		loadIndices();
+		MentionIndex mentionIndex = registry.getMentionIndex(mentionIndexPath);
+		System.out.println("Loaded mention index:" + mentionIndexPath);
+		EntityLinksIndex entityLinksIndex = registry.getEntityLinksIndex(entityLinksIndexPath);
+		MappedEntityPairsIndex entityPairsIndex = 
+				registry.getMappedEntityPairsIndexIfExists(entityPairsIndexPath);
 		
-		RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex);
+		RandomGraphWalk rgw = new RandomGraphWalk(entityLinksIndex, entityPairsIndex);
 		
 		double averagePrecision = 0;
 		double averageRecall = 0;
@@ -64,5 +72,6 @@ public class VerifyEntityDisambiguationRGW extends VerifyEntityDisambiguationAbs
 		System.out.println("Average Precision: " + averagePrecision);
 		System.out.println("Average Recall: " + averageRecall);
 		System.out.println("Maximum achievable recall " + getMaximumAchievableRecall());
+		System.out.println("Entity tf-idf cache " + entityTFIDFIndex.getCacheStats());
 	}
 }
@@ -0,0 +1,49 @@
+package evaluation;
+
+import index.IndexRegistry;
+import index.MentionEntitiesFrequencyIndex;
+
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import md.MentionDetection;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Compares the rankings of candidates under the exact tf-idf cosine similarity and under the
+ * approximate dot product of @see index.MappedEntityEmbeddings , with the scoring time of each.
+ * See @see CompareLocalCompatibilities for what is reported.
+ * Usage: VerifyEntityEmbeddings <embeddings-file>
+ */
+public class VerifyEntityEmbeddings extends CompareLocalCompatibilities {
+	private String embeddingsPath;
+
+	public VerifyEntityEmbeddings(String embeddingsPath) {
+		this.embeddingsPath = embeddingsPath;
+	}
+
+	public static void main(String args[])
+			throws ParserConfigurationException, SAXException, IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: java VerifyEntityEmbeddings <embeddings-file>");
+			return;
+		}
+		System.out.println("VerifyEntityEmbeddings");
+		new VerifyEntityEmbeddings(args[0]).run();
+	}
+
+	@Override
+	protected void loadAlternativeIndices() {
+		IndexRegistry.getInstance().loadMappedEntityEmbeddings(embeddingsPath);
+	}
+
+	@Override
+	protected MentionDetection createAlternative(String content,
+			MentionEntitiesFrequencyIndex mentionIndex) throws IOException {
+		MentionDetection md = new MentionDetection(content, mentionIndex, null, dfIndex);
+		md.setEntityEmbeddings(IndexRegistry.getInstance().getMappedEntityEmbeddings(embeddingsPath));
+		return md;
+	}
+}
@@ -0,0 +1,90 @@
+package evaluation;
+
+import java.io.File;
+import java.io.IOException;
+
+import normalizer.Normalizer;
+import normalizer.StreamingNormalizer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage.Link;
+
+/**
+ * Checks that @see normalizer.StreamingNormalizer gives the same output as the multi pass
+ * normalizer on the contents and anchor texts of the pages of a Wikipedia sequence file, as read
+ * by the index builders, and compares the time spent by each. Also counts the texts the streaming
+ * normalizer had to unescape first or leave to the multi pass normalizer.
+ * Usage: VerifyNormalizer <wikipedia-sequence-file> [max-pages]
+ */
+public class VerifyNormalizer {
+	private static final int MAX_REPORTED = 10;
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java VerifyNormalizer <wikipedia-sequence-file> [max-pages]");
+			return;
+		}
+		int maxPages = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+		Configuration conf = new Configuration();
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+				SequenceFile.Reader.file(new Path(new File(args[0]).getAbsolutePath())));
+		Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+		WikipediaPage page = (WikipediaPage) ReflectionUtils.newInstance(
+				reader.getValueClass(), conf);
+
+		int pages = 0;
+		int texts = 0;
+		int mismatches = 0;
+		long streamingTime = 0;
+		long multiPassTime = 0;
+		long fallbacks = StreamingNormalizer.getFallbacks();
+		long unescapedScans = StreamingNormalizer.getUnescapedScans();
+		while (pages < maxPages && reader.next(key, page)) {
+			if (!page.isArticle()) {
+				continue;
+			}
+			++pages;
+			String content = page.getContent();
+			for (int keepDelimiters = 0; keepDelimiters < 2; ++keepDelimiters) {
+				long start = System.nanoTime();
+				String streaming = keepDelimiters == 1 ?
+						Normalizer.normalize(content) : Normalizer.normalizeNoDelimiters(content);
+				streamingTime += System.nanoTime() - start;
+				start = System.nanoTime();
+				String multiPass = Normalizer.normalizeMultiPass(content, keepDelimiters == 1);
+				multiPassTime += System.nanoTime() - start;
+				++texts;
+				if (!streaming.equals(multiPass) && ++mismatches <= MAX_REPORTED) {
+					System.out.println("Mismatch in content of page " + page.getDocid() +
+							", keep delimiters " + (keepDelimiters == 1));
+				}
+			}
+			for (Link link: page.extractLinks()) {
+				String anchorText = link.getAnchorText();
+				++texts;
+				if (!Normalizer.processAnchorText(anchorText).equals(
+						Normalizer.normalizeMultiPass(anchorText, true)) &&
+						++mismatches <= MAX_REPORTED) {
+					System.out.println("Mismatch in anchor text: " + anchorText);
+				}
+			}
+		}
+		reader.close();
+		fallbacks = StreamingNormalizer.getFallbacks() - fallbacks;
+		unescapedScans = StreamingNormalizer.getUnescapedScans() - unescapedScans;
+
+		System.out.println("=============== RESULTS =================");
+		System.out.println("Pages: " + pages + ", texts: " + texts + ", mismatches: " + mismatches);
+		System.out.println("Content normalization time streaming: " + streamingTime / 1000000 +
+				" ms, multi pass: " + multiPassTime / 1000000 + " ms");
+		System.out.println("Streaming texts unescaped first: " + unescapedScans +
+				", normalized by the multi pass normalizer: " + fallbacks + " (" +
+				(double) fallbacks / texts + ")");
+	}
+}
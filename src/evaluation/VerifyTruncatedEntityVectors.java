@@ -0,0 +1,60 @@
+package evaluation;
+
+import index.EntityTFIDFIndex;
+import index.IndexRegistry;
+import index.MentionEntitiesFrequencyIndex;
+
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import md.MentionDetection;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Compares the rankings of candidates under the full entity tf-idf vectors and under vectors
+ * truncated with -max_terms or -max_mass of @see knowledgebase.EntityTFIDFBuilder , to pick a cap
+ * with a measured accuracy impact. See @see CompareLocalCompatibilities for what is reported.
+ * Usage: VerifyTruncatedEntityVectors <truncated-tf-idf-directory> <truncated-tf-idf-index>
+ */
+public class VerifyTruncatedEntityVectors extends CompareLocalCompatibilities {
+	private String truncatedFilesPath;
+	private String truncatedIndexPath;
+
+	public VerifyTruncatedEntityVectors(String truncatedFilesPath, String truncatedIndexPath) {
+		this.truncatedFilesPath = truncatedFilesPath;
+		this.truncatedIndexPath = truncatedIndexPath;
+	}
+
+	public static void main(String args[])
+			throws ParserConfigurationException, SAXException, IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: java VerifyTruncatedEntityVectors " +
+					"<truncated-tf-idf-directory> <truncated-tf-idf-index>");
+			return;
+		}
+		System.out.println("VerifyTruncatedEntityVectors");
+		new VerifyTruncatedEntityVectors(args[0], args[1]).run();
+	}
+
+	@Override
+	protected void loadAlternativeIndices() {
+		IndexRegistry.getInstance().loadEntityTFIDFIndex(truncatedFilesPath, truncatedIndexPath);
+	}
+
+	@Override
+	protected MentionDetection createAlternative(String content,
+			MentionEntitiesFrequencyIndex mentionIndex) throws IOException {
+		EntityTFIDFIndex truncatedIndex = IndexRegistry.getInstance().getEntityTFIDFIndex(
+				truncatedFilesPath, truncatedIndexPath);
+		return new MentionDetection(content, mentionIndex, truncatedIndex, dfIndex);
+	}
+
+	@Override
+	protected void printAlternativeStats() throws IOException {
+		EntityTFIDFIndex truncatedIndex = IndexRegistry.getInstance().getEntityTFIDFIndex(
+				truncatedFilesPath, truncatedIndexPath);
+		System.out.println("Truncated entity tf-idf cache " + truncatedIndex.getCacheStats());
+	}
+}
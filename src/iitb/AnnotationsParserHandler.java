@@ -1,7 +1,6 @@
 package iitb;
 
-import index.RedirectPagesIndex;
-import index.TitlesIndex;
+import index.TitleResolver;
 
 import java.io.IOException;
 import java.util.HashSet;
@@ -41,17 +40,19 @@ public class AnnotationsParserHandler extends DefaultHandler {
 	private int offset;
 	private int length;
 	
-	private TitlesIndex titlesIndex;
-	private RedirectPagesIndex redirectIndex;
+	private TitleResolver resolver;
  
 	public AnnotationsParserHandler(
 			String titlesIndexPath, String redirectIndexPath, boolean skipNonCanonical) 
 					throws IOException {
+		this(TitleResolver.build(titlesIndexPath, redirectIndexPath), skipNonCanonical);
+	}
+	
+	public AnnotationsParserHandler(TitleResolver resolver, boolean skipNonCanonical) {
 		this.spots = new HashSet<Spot>();
 		this.annotations = new HashSet<Annotation>();
 		this.filenames = new HashSet<String>();
-		this.titlesIndex = TitlesIndex.load(titlesIndexPath);
-		this.redirectIndex = RedirectPagesIndex.load(redirectIndexPath);
+		this.resolver = resolver;
 		this.skipNonCanonical = skipNonCanonical;
 	}
 	
@@ -80,8 +81,8 @@ public class AnnotationsParserHandler extends DefaultHandler {
 		
 		// Annotations with no corresponding entity are skipped.
 		if (qName.equals(ANNOTATION_TAG) && !entityName.equals("")) {
-			int entityId = titlesIndex.getTitleId(redirectIndex.getCanonicalURL(entityName));
-			if (entityId == TitlesIndex.NOT_CANONICAL_TITLE && skipNonCanonical) {
+			int entityId = resolver.resolve(entityName);
+			if (entityId == TitleResolver.NOT_CANONICAL_TITLE && skipNonCanonical) {
 				return;
 			}
 			Annotation annotation = new Annotation(entityId, offset, length, docName);
@@ -1,5 +1,7 @@
 package iitb;
 
+import index.TitleResolver;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
@@ -20,6 +22,7 @@ public class IITBDataset {
 
 	private String titlesIndex;
 	private String redirectIndex;
+	private TitleResolver resolver;
 	private String testFilesFolder;
 	
 	private Set<NameAnnotation> nameAnnotations;
@@ -31,12 +34,21 @@ public class IITBDataset {
 		this.redirectIndex = redirectIndex;
 	}
 	
+	/**
+	 * Resolves annotated entities with an already loaded resolver instead of the titles and redirect
+	 * files.
+	 */
+	public IITBDataset(TitleResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	public void load(String annotationsFilePath, String testFilesFolder, boolean skipNonCanonical) 
 			throws ParserConfigurationException, SAXException, IOException {
 		this.testFilesFolder = testFilesFolder;
 		SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
-		AnnotationsParserHandler handler = new AnnotationsParserHandler(
-				titlesIndex, redirectIndex, skipNonCanonical);
+		AnnotationsParserHandler handler = resolver != null ?
+				new AnnotationsParserHandler(resolver, skipNonCanonical) :
+				new AnnotationsParserHandler(titlesIndex, redirectIndex, skipNonCanonical);
 		saxParser.parse(annotationsFilePath, handler);	
 		annotations = handler.getAnnotations();
 		filenames = handler.getFilenames();
@@ -1,6 +1,6 @@
 package iitb;
 
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -60,7 +60,7 @@ public class NameAnnotation {
 	}
 	
 	public static String outputAnnotations(List<NameAnnotation> annotations, 
-			TitleIDsIndex titleIdsIndex) {
+			TitleDictionary titleIdsIndex) {
 		StringBuilder result = new StringBuilder();
 		for (NameAnnotation annotation: annotations) {
 			result.append("Name:" + annotation.getName() + " Entity id:" + annotation.getEntity() + 
@@ -0,0 +1,9 @@
+package index;
+
+/**
+ * Membership test for anchor texts.
+ * @see index.AnchorTextIndex , @see index.SignedAnchorTextIndex
+ */
+public interface AnchorTextDictionary {
+	public boolean contains(Object key);
+}
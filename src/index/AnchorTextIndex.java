@@ -9,7 +9,7 @@ import java.util.HashSet;
  * Index containing all possible name mentions. Should load the file computed by 
  * @see knowledgebase.EntityMentionIndexBuilder
  */
-public class AnchorTextIndex extends HashSet<String> {
+public class AnchorTextIndex extends HashSet<String> implements AnchorTextDictionary {
 	private static final long serialVersionUID = -2835232426707302378L;
 	private static final int INITIAL_SIZE = 9202002;
 	
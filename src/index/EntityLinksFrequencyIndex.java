@@ -1,95 +1,454 @@
 package index;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 import org.apache.commons.lang3.StringUtils;
 
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
 import data.EntityLinksEntry;
-import edu.umd.cloud9.io.pair.PairOfInts;
 
 /**
- * Stores a mapping of (entity1, number of entities that link to the key).
- * Can be used to compute semantic relatedness between two entities.
- * The file loaded should be produced by @see knowledgebase.EntityMentionIndexBuilder .
+ * Stores for every entity the entities that link to it together with the number of links, the total
+ * number of links to it and the number of links inside its page.
+ * Storage is columnar: per entity attributes are arrays sorted by entity, linking entities are
+ * delta encoded varints in one byte array and frequencies are varints in a parallel byte array.
+ * Links are only read through @see LinksCursor , which decodes both arrays in step.
+ * The file loaded should be produced by @see knowledgebase.EntityLinksIndexBuilder (entity \t
+ * @see data.EntityLinksEntry ) or be a binary snapshot written by @see #save .
  */
-public class EntityLinksFrequencyIndex extends HashMap<Integer, EntityLinksEntry> 
-		implements LinksIndex {
-	private static final long serialVersionUID = 2718316266900207592L;
-	private static final int INITIAL_SIZE = 3794882;
+public class EntityLinksFrequencyIndex implements LinksIndex {
 	public static final String SEPARATOR = "\t";
-	
-	public EntityLinksFrequencyIndex(int size) {
-    super(size);
+	public static final int SNAPSHOT_MAGIC = 0x454c4631;
+	public static final int SNAPSHOT_VERSION = 1;
+	public static final int NOT_FOUND = -1;
+	private static final int INITIAL_SIZE = 3794882;
+
+	private final int[] entities;
+	private final int[] totalFrequencies;
+	private final int[] noLinks;
+	private final int[] linksOffsets;
+	private final int[] frequenciesOffsets;
+	private final byte[] links;
+	private final byte[] frequencies;
+
+	private EntityLinksFrequencyIndex(int[] entities, int[] totalFrequencies, int[] noLinks,
+			int[] linksOffsets, int[] frequenciesOffsets, byte[] links, byte[] frequencies) {
+		this.entities = entities;
+		this.totalFrequencies = totalFrequencies;
+		this.noLinks = noLinks;
+		this.linksOffsets = linksOffsets;
+		this.frequenciesOffsets = frequenciesOffsets;
+		this.links = links;
+		this.frequencies = frequencies;
 	}
-	
+
+	/**
+	 * Iterates over the links to an entity in increasing order of linking entity.
+	 */
+	public class LinksCursor {
+		private int linksPosition;
+		private int linksEnd;
+		private int frequenciesPosition;
+		private int entity;
+		private int frequency;
+
+		private LinksCursor(int position) {
+			if (position != NOT_FOUND) {
+				linksPosition = linksOffsets[position];
+				linksEnd = linksOffsets[position + 1];
+				frequenciesPosition = frequenciesOffsets[position];
+			}
+		}
+
+		public boolean next() {
+			if (linksPosition >= linksEnd) {
+				return false;
+			}
+			int value = 0;
+			int shift = 0;
+			byte current;
+			do {
+				current = links[linksPosition++];
+				value |= (current & 0x7f) << shift;
+				shift += 7;
+			} while (current < 0);
+			entity += value;
+
+			frequency = 0;
+			shift = 0;
+			do {
+				current = frequencies[frequenciesPosition++];
+				frequency |= (current & 0x7f) << shift;
+				shift += 7;
+			} while (current < 0);
+			return true;
+		}
+
+		public int getEntity() {
+			return entity;
+		}
+
+		public int getFrequency() {
+			return frequency;
+		}
+	}
+
+	/**
+	 * Loads either the text file or a binary snapshot.
+	 */
 	public static EntityLinksFrequencyIndex load(String path)  throws IOException {
-		EntityLinksFrequencyIndex dictionary = new EntityLinksFrequencyIndex(INITIAL_SIZE * 4 / 3 + 1);
+		DataInputStream in = new DataInputStream(new FileInputStream(path));
+		int magic;
+		try {
+			magic = in.readInt();
+		} catch (IOException e) {
+			magic = 0;
+		} finally {
+			in.close();
+		}
+		return magic == SNAPSHOT_MAGIC ? loadSnapshot(path) : loadText(path);
+	}
+
+	/**
+	 * Entities may come in any order. Links are encoded in file order and reordered by entity once
+	 * all of them are read.
+	 */
+	private static EntityLinksFrequencyIndex loadText(String path) throws IOException {
+		final Columns columns = new Columns();
 		BufferedReader in = new BufferedReader(new FileReader(path));
 		String line;
+		long[] lineLinks = new long[16];
+		while ((line = in.readLine()) != null) {
+			String[] tokens = StringUtils.split(line, SEPARATOR);
+			int count = tokens.length - 3;
+			if (count > lineLinks.length) {
+				lineLinks = new long[Math.max(count, 2 * lineLinks.length)];
+			}
+			for (int i = 0; i < count; ++i) {
+				String link = tokens[i + 3];
+				int separator = link.indexOf(EntityLinksEntry.INTRA_ENTRY_SEPARATOR);
+				long entity = Integer.parseInt(link.substring(0, separator));
+				long frequency = Integer.parseInt(link.substring(separator + 1));
+				lineLinks[i] = (entity << 32) | frequency;
+			}
+			// Sorts by linking entity, ids being positive.
+			Arrays.sort(lineLinks, 0, count);
+			columns.add(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]),
+					Integer.parseInt(tokens[2]), lineLinks, count);
+		}
+		in.close();
+		return columns.build();
+	}
+
+	/**
+	 * Accumulates encoded entries in the order they are read.
+	 */
+	private static class Columns {
+		int size = 0;
+		int[] entities = new int[INITIAL_SIZE];
+		int[] totalFrequencies = new int[INITIAL_SIZE];
+		int[] noLinks = new int[INITIAL_SIZE];
+		int[] linksStarts = new int[INITIAL_SIZE];
+		int[] linksEnds = new int[INITIAL_SIZE];
+		int[] frequenciesStarts = new int[INITIAL_SIZE];
+		int[] frequenciesEnds = new int[INITIAL_SIZE];
+		byte[] links = new byte[1 << 20];
+		int linksLength = 0;
+		byte[] frequencies = new byte[1 << 20];
+		int frequenciesLength = 0;
+
+		void add(int entity, int totalFrequency, int entityNoLinks, long[] entityLinks, int count)
+				throws IOException {
+			if (size == entities.length) {
+				entities = Arrays.copyOf(entities, 2 * size);
+				totalFrequencies = Arrays.copyOf(totalFrequencies, 2 * size);
+				noLinks = Arrays.copyOf(noLinks, 2 * size);
+				linksStarts = Arrays.copyOf(linksStarts, 2 * size);
+				linksEnds = Arrays.copyOf(linksEnds, 2 * size);
+				frequenciesStarts = Arrays.copyOf(frequenciesStarts, 2 * size);
+				frequenciesEnds = Arrays.copyOf(frequenciesEnds, 2 * size);
+			}
+			entities[size] = entity;
+			totalFrequencies[size] = totalFrequency;
+			noLinks[size] = entityNoLinks;
+			linksStarts[size] = linksLength;
+			frequenciesStarts[size] = frequenciesLength;
+			int previous = 0;
+			for (int i = 0; i < count; ++i) {
+				int linkingEntity = (int) (entityLinks[i] >>> 32);
+				writeLink(linkingEntity - previous);
+				writeFrequency((int) entityLinks[i]);
+				previous = linkingEntity;
+			}
+			linksEnds[size] = linksLength;
+			frequenciesEnds[size] = frequenciesLength;
+			++size;
+		}
+
+		private void writeLink(int value) throws IOException {
+			if (linksLength + 5 > links.length) {
+				links = Arrays.copyOf(links, grow(links.length));
+			}
+			linksLength = writeVarInt(links, linksLength, value);
+		}
+
+		private void writeFrequency(int value) throws IOException {
+			if (frequenciesLength + 5 > frequencies.length) {
+				frequencies = Arrays.copyOf(frequencies, grow(frequencies.length));
+			}
+			frequenciesLength = writeVarInt(frequencies, frequenciesLength, value);
+		}
+
+		private static int grow(int length) throws IOException {
+			if (length == Integer.MAX_VALUE) {
+				throw new IOException("Entity links are too large for one array.");
+			}
+			return (int) Math.min(2L * length, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Sorts entries by entity, keeping the last of equal entities, and lays out the encoded
+		 * links in the same order.
+		 */
+		EntityLinksFrequencyIndex build() {
+			GenericSorting.mergeSort(0, size, new IntComparator() {
+				@Override
+				public int compare(int a, int b) {
+					return entities[a] < entities[b] ? -1 : (entities[a] == entities[b] ? 0 : 1);
+				}
+			}, new Swapper() {
+				@Override
+				public void swap(int a, int b) {
+					swapElements(entities, a, b);
+					swapElements(totalFrequencies, a, b);
+					swapElements(noLinks, a, b);
+					swapElements(linksStarts, a, b);
+					swapElements(linksEnds, a, b);
+					swapElements(frequenciesStarts, a, b);
+					swapElements(frequenciesEnds, a, b);
+				}
+			});
+
+			int distinct = 0;
+			for (int i = 0; i < size; ++i) {
+				if (i + 1 < size && entities[i] == entities[i + 1]) {
+					continue;
+				}
+				entities[distinct] = entities[i];
+				totalFrequencies[distinct] = totalFrequencies[i];
+				noLinks[distinct] = noLinks[i];
+				linksStarts[distinct] = linksStarts[i];
+				linksEnds[distinct] = linksEnds[i];
+				frequenciesStarts[distinct] = frequenciesStarts[i];
+				frequenciesEnds[distinct] = frequenciesEnds[i];
+				++distinct;
+			}
+
+			int[] linksOffsets = new int[distinct + 1];
+			int[] frequenciesOffsets = new int[distinct + 1];
+			for (int i = 0; i < distinct; ++i) {
+				linksOffsets[i + 1] = linksOffsets[i] + linksEnds[i] - linksStarts[i];
+				frequenciesOffsets[i + 1] = frequenciesOffsets[i] + frequenciesEnds[i] - frequenciesStarts[i];
+			}
+			byte[] sortedLinks = new byte[linksOffsets[distinct]];
+			byte[] sortedFrequencies = new byte[frequenciesOffsets[distinct]];
+			for (int i = 0; i < distinct; ++i) {
+				System.arraycopy(links, linksStarts[i], sortedLinks, linksOffsets[i],
+						linksEnds[i] - linksStarts[i]);
+				System.arraycopy(frequencies, frequenciesStarts[i], sortedFrequencies,
+						frequenciesOffsets[i], frequenciesEnds[i] - frequenciesStarts[i]);
+			}
+			return new EntityLinksFrequencyIndex(Arrays.copyOf(entities, distinct),
+					Arrays.copyOf(totalFrequencies, distinct), Arrays.copyOf(noLinks, distinct),
+					linksOffsets, frequenciesOffsets, sortedLinks, sortedFrequencies);
+		}
+
+		private static void swapElements(int[] array, int a, int b) {
+			int value = array[a];
+			array[a] = array[b];
+			array[b] = value;
+		}
+	}
+
+	/**
+	 * Writes value as a varint at position. Returns the position after it.
+	 */
+	private static int writeVarInt(byte[] bytes, int position, int value) {
+		while ((value & ~0x7f) != 0) {
+			bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[position++] = (byte) value;
+		return position;
+	}
+
+	private static EntityLinksFrequencyIndex loadSnapshot(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(IndexFiles.BUFFER_SIZE);
+			buffer.limit(20);
+			IndexFiles.readFully(channel, buffer);
+			buffer.flip();
+			buffer.getInt();
+			int version = buffer.getInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported entity links frequency snapshot version: " + version);
+			}
+			int size = buffer.getInt();
+			byte[] links = new byte[buffer.getInt()];
+			byte[] frequencies = new byte[buffer.getInt()];
+			int[] entities = new int[size];
+			int[] totalFrequencies = new int[size];
+			int[] noLinks = new int[size];
+			int[] linksOffsets = new int[size + 1];
+			int[] frequenciesOffsets = new int[size + 1];
+			IndexFiles.readInts(channel, buffer, entities);
+			IndexFiles.readInts(channel, buffer, totalFrequencies);
+			IndexFiles.readInts(channel, buffer, noLinks);
+			IndexFiles.readInts(channel, buffer, linksOffsets);
+			IndexFiles.readInts(channel, buffer, frequenciesOffsets);
+			IndexFiles.readBytes(channel, buffer, links);
+			IndexFiles.readBytes(channel, buffer, frequencies);
+			return new EntityLinksFrequencyIndex(entities, totalFrequencies, noLinks, linksOffsets,
+					frequenciesOffsets, links, frequencies);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes a binary snapshot: magic, version, size, links length, frequencies length, entities,
+	 * total frequencies, number of links, links offsets, frequencies offsets, links, frequencies.
+	 */
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), IndexFiles.BUFFER_SIZE));
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(SNAPSHOT_VERSION);
+		out.writeInt(entities.length);
+		out.writeInt(links.length);
+		out.writeInt(frequencies.length);
+		IndexFiles.writeInts(out, entities);
+		IndexFiles.writeInts(out, totalFrequencies);
+		IndexFiles.writeInts(out, noLinks);
+		IndexFiles.writeInts(out, linksOffsets);
+		IndexFiles.writeInts(out, frequenciesOffsets);
+		out.write(links);
+		out.write(frequencies);
+		out.close();
+	}
+
+	public int size() {
+		return entities.length;
+	}
+
+	/**
+	 * Returns the position of the entity in the index or NOT_FOUND.
+	 */
+	public int find(int entity) {
+		int position = Arrays.binarySearch(entities, entity);
+		return position >= 0 ? position : NOT_FOUND;
+	}
+
+	public boolean containsEntity(int entity) {
+		return find(entity) != NOT_FOUND;
+	}
+
+	public LinksCursor getLinks(int entity) {
+		return new LinksCursor(find(entity));
+	}
+
+	public int getTotalFrequency(int entity) {
+		int position = find(entity);
+		return position != NOT_FOUND ? totalFrequencies[position] : 0;
+	}
+
+	public int getNoLinks(int entity) {
+		int position = find(entity);
+		if (position == NOT_FOUND) {
+			throw new IllegalArgumentException("Cannot access:" + entity);
+		}
+		return noLinks[position];
+	}
 
-    while ((line = in.readLine()) != null ) {
-    	String[] tokens = StringUtils.split(line, SEPARATOR, 2);
-    	int entity = Integer.parseInt(tokens[0]);
-    	EntityLinksEntry entry = new EntityLinksEntry(tokens[1]);
-    	dictionary.put(entity, entry);
-    }
-    in.close();
-    
-    return dictionary;
-  }
-	
 	public int getPopularity(int entity) {
-		return 1 + (containsKey(entity) ? get(entity).getTotalFrequency() : 0);
+		return 1 + getTotalFrequency(entity);
 	}
-	
+
+	/**
+	 * Sum over the entities linking to both entities of the product of their link frequencies.
+	 */
 	public int getCocitation(int entity1, int entity2) {
-		if (!containsKey(entity1) || !containsKey(entity2)) {
+		int position1 = find(entity1);
+		int position2 = find(entity2);
+		if (position1 == NOT_FOUND || position2 == NOT_FOUND) {
 			return 0;
 		}
-		
+
 		if (entity1 == entity2) {
 			int result = 0;
-			for (PairOfInts link: get(entity1).getLinks()) {
-				int frequency = link.getRightElement();
-				result += frequency * (frequency - 1) / 2; 
+			LinksCursor links = new LinksCursor(position1);
+			while (links.next()) {
+				int frequency = links.getFrequency();
+				result += frequency * (frequency - 1) / 2;
 			}
 			return result;
 		}
-		
-		List<PairOfInts> links1 = get(entity1).getLinks();
-		List<PairOfInts> links2 = get(entity2).getLinks();
-		int i = 0, j = 0, common = 0;
-		for (; i < links1.size() && j < links2.size(); ++i, ++j) {
-			int linkEntity1 = links1.get(i).getLeftElement();
-			int linkEntity2 = links2.get(j).getLeftElement();
+
+		LinksCursor links1 = new LinksCursor(position1);
+		LinksCursor links2 = new LinksCursor(position2);
+		int common = 0;
+		boolean hasNext1 = links1.next();
+		boolean hasNext2 = links2.next();
+		while (hasNext1 && hasNext2) {
+			int linkEntity1 = links1.getEntity();
+			int linkEntity2 = links2.getEntity();
 			if (linkEntity1 == linkEntity2) {
-				common += links1.get(i).getRightElement() * links2.get(j).getRightElement(); 
-				++i; 
-				++j;
+				common += links1.getFrequency() * links2.getFrequency();
+				hasNext1 = links1.next();
+				hasNext2 = links2.next();
 			} else if (linkEntity1 < linkEntity2) {
-				++i;
+				hasNext1 = links1.next();
 			} else {
-				++j;
+				hasNext2 = links2.next();
 			}
 		}
 		return common;
 	}
-	
+
+	public int[] getCocitation(int entity, int[] entities) {
+		int[] result = new int[entities.length];
+		for (int i = 0; i < entities.length; ++i) {
+			result[i] = getCocitation(entity, entities[i]);
+		}
+		return result;
+	}
+
 	public long getConditionalDenominator(int entityCond, int entity) {
+		int position = find(entityCond);
+		if (position == NOT_FOUND) {
+			throw new IllegalArgumentException("Cannot access:" + entityCond);
+		}
 		long result = 0;
-		for (PairOfInts link: get(entityCond).getLinks()) {
-			int docno = link.getLeftElement();
-			long entityCondFrequency = link.getRightElement();
-			long docLinks;
-			try {
-			docLinks = get(docno).getNoLinks();
-			} catch (Exception e) {
-				throw new IllegalArgumentException("Cannot access:" + docno);
-			}
+		LinksCursor links = new LinksCursor(position);
+		while (links.next()) {
+			int docno = links.getEntity();
+			long entityCondFrequency = links.getFrequency();
+			long docLinks = getNoLinks(docno);
 			long diffPairs = entityCondFrequency * (docLinks - entityCondFrequency);
 			long entityCondPairs = entityCondFrequency * (entityCondFrequency - 1) / 2;
 			result += diffPairs + entityCondPairs;
@@ -1,81 +1,281 @@
 package index;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 import knowledgebase.WikiUtils;
 
 /**
- * Stores a mapping of (entity1, number of entities that link to the key).
+ * Stores for every entity the sorted list of entities that link to it, in compressed sparse row
+ * form: inlinks of entity e are inlinks[offsets[e] ... offsets[e + 1] - 1].
  * Can be used to compute semantic relatedness between two entities.
- * The file loaded should be produced by @see knowledgebase.EntityMentionIndexBuilder .
+ * The file loaded should be produced by @see knowledgebase.EntityMentionIndexBuilder (entity \t
+ * inlinks) or be a binary snapshot written by @see #save .
  */
-public class EntityLinksIndex extends HashMap<Integer, Integer[]> implements LinksIndex {
-	// Don't change separator. 
+public class EntityLinksIndex implements LinksIndex {
+	// Don't change separator.
 	public static final String SEPARATOR = "\t";
-	private static final long serialVersionUID = 2718316266900207592L;
+	public static final int SNAPSHOT_MAGIC = 0x454c4931;
+	public static final int SNAPSHOT_VERSION = 1;
 	private static final int INITIAL_SIZE = 3796235;
-	
-	public EntityLinksIndex(int size) {
-    super(size);
+	// Intersections switch from merging to galloping when one list is this many times longer.
+	private static final int GALLOPING_RATIO = 16;
+
+	private final int size;
+	private final int[] offsets;
+	private final int[] inlinks;
+
+	private EntityLinksIndex(int size, int[] offsets, int[] inlinks) {
+		this.size = size;
+		this.offsets = offsets;
+		this.inlinks = inlinks;
 	}
-	
+
+	/**
+	 * Loads either the text file or a binary snapshot.
+	 */
 	public static EntityLinksIndex load(String path)  throws IOException {
-		EntityLinksIndex dictionary = new EntityLinksIndex(INITIAL_SIZE * 4 / 3 + 1);
+		DataInputStream in = new DataInputStream(new FileInputStream(path));
+		int magic;
+		try {
+			magic = in.readInt();
+		} catch (IOException e) {
+			magic = 0;
+		} finally {
+			in.close();
+		}
+		return magic == SNAPSHOT_MAGIC ? loadSnapshot(path) : loadText(path);
+	}
+
+	/**
+	 * Reads the text file twice: once to count inlinks per entity and once to fill them in, so the
+	 * inlinks are not copied.
+	 */
+	private static EntityLinksIndex loadText(String path) throws IOException {
+		int[] degrees = new int[INITIAL_SIZE];
+		int maxEntity = -1;
 		BufferedReader in = new BufferedReader(new FileReader(path));
 		String line;
+		while ((line = in.readLine()) != null) {
+			String[] tokens = line.split(SEPARATOR);
+			int entity = Integer.parseInt(tokens[0]);
+			if (entity >= degrees.length) {
+				degrees = Arrays.copyOf(degrees, Math.max(entity + 1, 2 * degrees.length));
+			}
+			// The last line of an entity wins, as when loading into a map.
+			degrees[entity] = tokens.length - 1;
+			maxEntity = Math.max(maxEntity, entity);
+		}
+		in.close();
+
+		int size = 0;
+		int[] offsets = new int[maxEntity + 2];
+		long total = 0;
+		for (int entity = 0; entity <= maxEntity; ++entity) {
+			offsets[entity] = (int) total;
+			total += degrees[entity];
+			if (degrees[entity] > 0) {
+				++size;
+			}
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IOException("Too many inlinks: " + total);
+		}
+		offsets[maxEntity + 1] = (int) total;
+		degrees = null;
+
+		int[] inlinks = new int[(int) total];
+		in = new BufferedReader(new FileReader(path));
+		while ((line = in.readLine()) != null) {
+			String[] tokens = line.split(SEPARATOR);
+			int entity = Integer.parseInt(tokens[0]);
+			int start = offsets[entity];
+			if (tokens.length - 1 != offsets[entity + 1] - start) {
+				continue;
+			}
+			for (int i = 1; i < tokens.length; ++i) {
+				inlinks[start + i - 1] = Integer.parseInt(tokens[i]);
+			}
+			Arrays.sort(inlinks, start, offsets[entity + 1]);
+		}
+		in.close();
+
+		return new EntityLinksIndex(size, offsets, inlinks);
+	}
+
+	private static EntityLinksIndex loadSnapshot(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(IndexFiles.BUFFER_SIZE);
+			buffer.limit(16);
+			IndexFiles.readFully(channel, buffer);
+			buffer.flip();
+			buffer.getInt();
+			int version = buffer.getInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported entity links snapshot version: " + version);
+			}
+			int[] offsets = new int[buffer.getInt()];
+			int[] inlinks = new int[buffer.getInt()];
+			IndexFiles.readInts(channel, buffer, offsets);
+			IndexFiles.readInts(channel, buffer, inlinks);
+			int size = 0;
+			for (int entity = 0; entity + 1 < offsets.length; ++entity) {
+				if (offsets[entity + 1] > offsets[entity]) {
+					++size;
+				}
+			}
+			return new EntityLinksIndex(size, offsets, inlinks);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes a binary snapshot: magic, version, offsets length, inlinks length, offsets, inlinks.
+	 */
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), IndexFiles.BUFFER_SIZE));
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(SNAPSHOT_VERSION);
+		out.writeInt(offsets.length);
+		out.writeInt(inlinks.length);
+		IndexFiles.writeInts(out, offsets);
+		IndexFiles.writeInts(out, inlinks);
+		out.close();
+	}
+
+	/**
+	 * Number of entities with at least one inlink.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getInlinksCount(int entity) {
+		if (entity < 0 || entity + 1 >= offsets.length) {
+			return 0;
+		}
+		return offsets[entity + 1] - offsets[entity];
+	}
+
+	public int[] getInlinks(int entity) {
+		if (entity < 0 || entity + 1 >= offsets.length) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(inlinks, offsets[entity], offsets[entity + 1]);
+	}
 
-    while ((line = in.readLine()) != null ) {
-    	String[] tokens = line.split(SEPARATOR);
-    	Integer[] mapValue = new Integer[tokens.length - 1];
-    	for (int i = 1; i < tokens.length; ++i)
-    		mapValue[i - 1] = Integer.parseInt(tokens[i]);
-    	dictionary.put(Integer.parseInt(tokens[0]), mapValue);
-    }
-    in.close();
-    
-    return dictionary;
-  }
-	
 	public double getSemanticRelatedness(int entity1, int entity2) {
 		if (entity1 == entity2) {
 			return 1.0;
 		}
-		Integer[] a = get(entity1);
-		Integer[] b = get(entity2);
-		int intersectSize = intersectSize(a, b);
+		return relatedness(getInlinksCount(entity1), getInlinksCount(entity2),
+				intersectSize(entity1, entity2));
+	}
+
+	/**
+	 * Relatedness between entity and each of the entities, in one pass over the inlinks of entity.
+	 */
+	public double[] getSemanticRelatedness(int entity, int[] entities) {
+		int[] intersectSizes = intersectSizes(entity, entities);
+		double[] result = new double[entities.length];
+		int size = getInlinksCount(entity);
+		for (int i = 0; i < entities.length; ++i) {
+			result[i] = entity == entities[i] ?
+					1.0 : relatedness(size, getInlinksCount(entities[i]), intersectSizes[i]);
+		}
+		return result;
+	}
+
+	private static double relatedness(int size1, int size2, int intersectSize) {
 		if (intersectSize == 0) {
 			return 0.0;
 		}
-		
-		return 1 - 
-				(Math.log(Math.max(a.length, b.length)) - Math.log(intersectSize)) /
-				(Math.log(WikiUtils.WIKIPEDIA_ARTICLES_SIZE) - Math.log(Math.min(a.length, b.length)));
+		return 1 -
+				(Math.log(Math.max(size1, size2)) - Math.log(intersectSize)) /
+				(Math.log(WikiUtils.WIKIPEDIA_ARTICLES_SIZE) - Math.log(Math.min(size1, size2)));
 	}
-	
+
 	public int getPopularity(int entity) {
-		Integer[] inlinks = get(entity);
-		return 1 + (inlinks != null ? inlinks.length : 0);
+		return 1 + getInlinksCount(entity);
 	}
-	
+
 	public int getCocitation(int entity1, int entity2) {
 		if (entity1 == entity2) {
 			return getPopularity(entity1);
 		}
-		return intersectSize(get(entity1), get(entity2));
+		return intersectSize(entity1, entity2);
+	}
+
+	public int[] getCocitation(int entity, int[] entities) {
+		int[] result = intersectSizes(entity, entities);
+		for (int i = 0; i < entities.length; ++i) {
+			if (entity == entities[i]) {
+				result[i] = getPopularity(entity);
+			}
+		}
+		return result;
 	}
-	
-	public static int intersectSize(Integer[] a, Integer[] b) {
-		if (a == null || b == null) {
+
+	/**
+	 * Number of entities that link to both entities.
+	 */
+	public int intersectSize(int entity1, int entity2) {
+		if (getInlinksCount(entity1) == 0 || getInlinksCount(entity2) == 0) {
 			return 0;
 		}
+		return intersectSize(offsets[entity1], offsets[entity1 + 1], 
+				offsets[entity2], offsets[entity2 + 1]);
+	}
+
+	/**
+	 * Number of entities that link to both entity and each of the entities.
+	 */
+	public int[] intersectSizes(int entity, int[] entities) {
+		int[] result = new int[entities.length];
+		if (getInlinksCount(entity) == 0) {
+			return result;
+		}
+		int start = offsets[entity];
+		int end = offsets[entity + 1];
+		for (int i = 0; i < entities.length; ++i) {
+			if (getInlinksCount(entities[i]) != 0) {
+				result[i] = intersectSize(start, end, offsets[entities[i]], offsets[entities[i] + 1]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the two inlink ranges if they have similar lengths, otherwise looks up each inlink of
+	 * the shorter range in the longer one.
+	 */
+	private int intersectSize(int start1, int end1, int start2, int end2) {
+		long length1 = end1 - start1;
+		long length2 = end2 - start2;
+		if (length1 > GALLOPING_RATIO * length2) {
+			return gallopingIntersectSize(start2, end2, start1, end1);
+		} else if (length2 > GALLOPING_RATIO * length1) {
+			return gallopingIntersectSize(start1, end1, start2, end2);
+		}
 		int result = 0;
-		for (int i = 0, j = 0; i < a.length && j < b.length;) {
-			if (a[i].equals(b[j])) {
+		for (int i = start1, j = start2; i < end1 && j < end2;) {
+			if (inlinks[i] == inlinks[j]) {
 				++result; ++i; ++j;
-			} else if (a[i] < b[j]) {
+			} else if (inlinks[i] < inlinks[j]) {
 				++i;
 			} else {
 				++j;
@@ -83,4 +283,35 @@ public class EntityLinksIndex extends HashMap<Integer, Integer[]> implements Lin
 		}
 		return result;
 	}
+
+	/**
+	 * Exponential search followed by binary search for every element of the short range, starting
+	 * from the position where the previous element was found.
+	 */
+	private int gallopingIntersectSize(int shortStart, int shortEnd, int longStart, int longEnd) {
+		int result = 0;
+		int low = longStart;
+		for (int i = shortStart; i < shortEnd && low < longEnd; ++i) {
+			int value = inlinks[i];
+			int high = low;
+			for (int step = 1; high < longEnd && inlinks[high] < value; step <<= 1) {
+				low = high + 1;
+				high += step;
+			}
+			high = Math.min(high, longEnd);
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (inlinks[middle] < value) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			if (low < longEnd && inlinks[low] == value) {
+				++result;
+				++low;
+			}
+		}
+		return result;
+	}
 }
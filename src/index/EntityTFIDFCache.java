@@ -0,0 +1,211 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of entity tf-idf vectors bounded by their approximate size in bytes, shared by all
+ * threads using an @see EntityTFIDFIndex . V is the decoded vector type of the collection.
+ * Entities are hashed to SEGMENTS segments with their own lock and a share of the capacity. Each
+ * segment is a segmented LRU: new vectors enter a probation queue and move to a protected queue
+ * when hit again, so entities seen in many documents are not evicted by a run of entities seen
+ * once. Evictions take the least recently used probation entry first.
+ */
+public class EntityTFIDFCache<V> {
+	private static final int SEGMENTS = 16;
+	// Share of a segment's capacity for entries hit at least twice.
+	private static final double PROTECTED_RATIO = 0.8;
+
+	private final List<Segment<V>> segments = new ArrayList<Segment<V>>(SEGMENTS);
+	private final long capacity;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public EntityTFIDFCache(long capacity) {
+		this.capacity = capacity;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			segments.add(new Segment<V>(capacity / SEGMENTS));
+		}
+	}
+
+	private Segment<V> segment(int entity) {
+		int hash = entity * 0x9E3779B9;
+		return segments.get((hash >>> 16) % SEGMENTS);
+	}
+
+	/**
+	 * Returns the cached vector or null, counting a hit or a miss.
+	 */
+	public V get(int entity) {
+		V result = segment(entity).get(entity);
+		(result != null ? hits : misses).incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Adds a vector read after a miss. Vectors larger than a segment are not cached.
+	 * @param size approximate size of the vector in bytes
+	 */
+	public void put(int entity, V vector, long size) {
+		evictions.addAndGet(segment(entity).put(entity, vector, size));
+	}
+
+	public void clear() {
+		for (Segment<V> segment: segments) {
+			segment.clear();
+		}
+	}
+
+	public Stats getStats() {
+		long entries = 0;
+		long bytes = 0;
+		for (Segment<V> segment: segments) {
+			synchronized (segment) {
+				entries += segment.probation.size() + segment.protectedEntries.size();
+				bytes += segment.probationBytes + segment.protectedBytes;
+			}
+		}
+		return new Stats(hits.get(), misses.get(), evictions.get(), entries, bytes, capacity);
+	}
+
+	public static class Stats {
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long entries;
+		private final long bytes;
+		private final long capacity;
+
+		private Stats(long hits, long misses, long evictions, long entries, long bytes,
+				long capacity) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.entries = entries;
+			this.bytes = bytes;
+			this.capacity = capacity;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getEntries() {
+			return entries;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public double getHitRate() {
+			return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+		}
+
+		@Override
+		public String toString() {
+			return "hits:" + hits + " misses:" + misses + " hit rate:" + getHitRate() +
+					" evictions:" + evictions + " entries:" + entries + " bytes:" + bytes + "/" + capacity;
+		}
+	}
+
+	private static class Entry<V> {
+		final V value;
+		final long size;
+
+		Entry(V value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+	}
+
+	private static class Segment<V> {
+		private final long capacity;
+		private final long protectedCapacity;
+		// Access ordered, least recently used first.
+		private final LinkedHashMap<Integer, Entry<V>> probation =
+				new LinkedHashMap<Integer, Entry<V>>(16, 0.75f, true);
+		private final LinkedHashMap<Integer, Entry<V>> protectedEntries =
+				new LinkedHashMap<Integer, Entry<V>>(16, 0.75f, true);
+		private long probationBytes = 0;
+		private long protectedBytes = 0;
+
+		Segment(long capacity) {
+			this.capacity = capacity;
+			this.protectedCapacity = (long) (capacity * PROTECTED_RATIO);
+		}
+
+		synchronized V get(int entity) {
+			Entry<V> result = protectedEntries.get(entity);
+			if (result != null) {
+				return result.value;
+			}
+			result = probation.remove(entity);
+			if (result == null) {
+				return null;
+			}
+			probationBytes -= result.size;
+			protectedEntries.put(entity, result);
+			protectedBytes += result.size;
+			// Demoted entries get another chance as the most recent probation entries.
+			while (protectedBytes > protectedCapacity && protectedEntries.size() > 1) {
+				Map.Entry<Integer, Entry<V>> eldest = removeEldest(protectedEntries);
+				protectedBytes -= eldest.getValue().size;
+				probation.put(eldest.getKey(), eldest.getValue());
+				probationBytes += eldest.getValue().size;
+			}
+			return result.value;
+		}
+
+		/**
+		 * Returns the number of evicted entries.
+		 */
+		synchronized int put(int entity, V vector, long size) {
+			if (size > capacity || probation.containsKey(entity) ||
+					protectedEntries.containsKey(entity)) {
+				return 0;
+			}
+			probation.put(entity, new Entry<V>(vector, size));
+			probationBytes += size;
+			int evicted = 0;
+			while (probationBytes + protectedBytes > capacity) {
+				// The new entry is evicted last.
+				if (probation.size() > 1 || protectedEntries.isEmpty()) {
+					probationBytes -= removeEldest(probation).getValue().size;
+				} else {
+					protectedBytes -= removeEldest(protectedEntries).getValue().size;
+				}
+				++evicted;
+			}
+			return evicted;
+		}
+
+		synchronized void clear() {
+			probation.clear();
+			protectedEntries.clear();
+			probationBytes = 0;
+			protectedBytes = 0;
+		}
+
+		private static <V> Map.Entry<Integer, Entry<V>> removeEldest(
+				LinkedHashMap<Integer, Entry<V>> entries) {
+			Iterator<Map.Entry<Integer, Entry<V>>> iterator = entries.entrySet().iterator();
+			Map.Entry<Integer, Entry<V>> eldest = iterator.next();
+			iterator.remove();
+			return eldest;
+		}
+	}
+}
@@ -1,21 +1,40 @@
 package index;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.log4j.Logger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import data.CompactTFIDFEntry;
+import data.SparseVector;
 import data.TFIDFEntry;
 
 /**
@@ -23,9 +42,17 @@ import data.TFIDFEntry;
  * Can be used to load the entity tf-idf term vector by reading from disk the specified file at the
  * given offset.
  * The file loaded should be produced by @see knowledgebase.EntityTFIDFIndexBuilder .
+ * The collection holds either text vectors (term \t weight ...) or @see data.SparseVector values.
+ * Vectors read are kept in a byte bounded @see EntityTFIDFCache shared by all threads.
  */
 public class EntityTFIDFIndex {
   private static final Logger LOG = Logger.getLogger(EntityTFIDFIndex.class);
+  public static final long DEFAULT_CACHE_SIZE = 256L << 20;
+  public static final int PREFETCH_THREADS = 8;
+  public static final int PREFETCH_BATCH_SIZE = 32;
+  private static final ExecutorService PREFETCH_EXECUTOR = Executors.newFixedThreadPool(
+      PREFETCH_THREADS, 
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tfidf-prefetch-%d").build());
   
   private Configuration conf;
 
@@ -34,6 +61,10 @@ public class EntityTFIDFIndex {
   private int[] offsets;
   private short[] fileno;
   private String collectionPath;
+  private SequenceFileReaderPool readers;
+  private volatile Boolean sparse = null;
+  private volatile EntityTFIDFCache<Object> cache =
+      new EntityTFIDFCache<Object>(DEFAULT_CACHE_SIZE);
 
   public EntityTFIDFIndex() {
     conf = new Configuration();
@@ -75,13 +106,237 @@ public class EntityTFIDFIndex {
     }
 
     in.close();
+    close();
+    readers = new SequenceFileReaderPool(conf, collectionPath);
+    sparse = null;
+  }
+
+  /**
+   * Closes the part files kept open for lookups.
+   */
+  public void close() {
+    if (readers != null) {
+      readers.close();
+    }
   }
 
   public String getCollectionPath() {
     return collectionPath;
   }
 
+  /**
+   * Whether the collection holds @see data.SparseVector values, read from the first part file.
+   */
+  public boolean isSparse() {
+    Boolean result = sparse;
+    if (result != null) {
+      return result;
+    }
+    SequenceFile.Reader reader = null;
+    try {
+      reader = readers.borrow(fileno[0]);
+      result = SparseVector.class.equals(reader.getValueClass());
+      readers.release(fileno[0], reader);
+    } catch (IOException e) {
+      e.printStackTrace();
+      if (reader != null) {
+        readers.discard(reader);
+      }
+      return false;
+    }
+    sparse = result;
+    return result;
+  }
+
+  /**
+   * Replaces the vector cache with an empty one of the given size in bytes, 0 disables caching.
+   */
+  public void setCacheSize(long bytes) {
+    cache = bytes > 0 ? new EntityTFIDFCache<Object>(bytes) : null;
+  }
+
+  /**
+   * Statistics of the vector cache, null if caching is disabled.
+   */
+  public EntityTFIDFCache.Stats getCacheStats() {
+    EntityTFIDFCache<Object> current = cache;
+    return current != null ? current.getStats() : null;
+  }
+
   public TFIDFEntry getEntityTFIDFVector(int docno) {
+    CompactTFIDFEntry vector = getCompactEntityTFIDFVector(docno);
+    return vector != null ? vector.toTFIDFEntry() : null;
+  }
+
+  /**
+   * Returns the vector from the cache or reads it from disk, null if the docno is not indexed.
+   * For collections of text vectors.
+   */
+  public CompactTFIDFEntry getCompactEntityTFIDFVector(int docno) {
+    return getVector(docno, CompactTFIDFEntry.class);
+  }
+
+  /**
+   * Returns the vector from the cache or reads it from disk, null if the docno is not indexed.
+   * For collections written by @see knowledgebase.EntityTFIDFBuilder with -sparse.
+   */
+  public SparseVector getEntitySparseVector(int docno) {
+    return getVector(docno, SparseVector.class);
+  }
+
+  private <V> V getVector(int docno, Class<V> type) {
+    return checkType(loadVector(docno), type);
+  }
+
+  private <V> V checkType(Object vector, Class<V> type) {
+    if (vector != null && !type.isInstance(vector)) {
+      throw new IllegalStateException(
+          collectionPath + " does not store " + type.getSimpleName() + " vectors.");
+    }
+    return type.cast(vector);
+  }
+
+  /**
+   * Decoded vector from the cache or from disk, null if the docno is not indexed.
+   */
+  private Object loadVector(int docno) {
+    EntityTFIDFCache<Object> current = cache;
+    Object vector = current != null ? current.get(docno) : null;
+    if (vector == null) {
+      vector = decode(readEntityVector(docno));
+      // Values of other classes are left to checkType.
+      if (vector instanceof SparseVector && current != null) {
+        current.put(docno, vector, ((SparseVector) vector).getSizeInBytes());
+      } else if (vector instanceof CompactTFIDFEntry && current != null) {
+        current.put(docno, vector, ((CompactTFIDFEntry) vector).getSizeInBytes());
+      }
+    }
+    return vector;
+  }
+
+  /**
+   * Starts reading the vectors of the docnos in the background and returns at once.
+   * Distinct docnos are sorted by (file, offset) and split in batches of PREFETCH_BATCH_SIZE,
+   * read concurrently on a pool of PREFETCH_THREADS shared by all indices, so each batch reads
+   * forward through the part files. Vectors are then taken from the returned @see Prefetch , which
+   * waits only for the batch of the requested docno.
+   */
+  public Prefetch prefetch(Collection<Integer> entities) {
+    List<Integer> indices = new ArrayList<Integer>();
+    for (int docno: new HashSet<Integer>(entities)) {
+      int idx = Arrays.binarySearch(docnos, docno);
+      if (idx >= 0) {
+        indices.add(idx);
+      }
+    }
+    Collections.sort(indices, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        if (fileno[a] != fileno[b]) {
+          return fileno[a] < fileno[b] ? -1 : 1;
+        }
+        return offsets[a] < offsets[b] ? -1 : (offsets[a] == offsets[b] ? 0 : 1);
+      }
+    });
+
+    Prefetch prefetch = new Prefetch();
+    for (int start = 0; start < indices.size(); start += PREFETCH_BATCH_SIZE) {
+      final List<Integer> batch = 
+          indices.subList(start, Math.min(indices.size(), start + PREFETCH_BATCH_SIZE));
+      final ConcurrentMap<Integer, Object> vectors = prefetch.vectors;
+      Future<?> future = PREFETCH_EXECUTOR.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int idx: batch) {
+            Object vector = loadVector(docnos[idx]);
+            if (vector != null) {
+              vectors.put(docnos[idx], vector);
+            }
+          }
+        }
+      });
+      for (int idx: batch) {
+        prefetch.batches.put(docnos[idx], future);
+      }
+    }
+    return prefetch;
+  }
+
+  /**
+   * Vectors being read by @see EntityTFIDFIndex#prefetch . The getters wait for the batch of the
+   * docno and fall back to a synchronous read for docnos that were not prefetched.
+   */
+  public class Prefetch {
+    private final ConcurrentMap<Integer, Object> vectors = new ConcurrentHashMap<Integer, Object>();
+    private final Map<Integer, Future<?>> batches = new HashMap<Integer, Future<?>>();
+
+    private Prefetch() {
+    }
+
+    private Object get(int docno) {
+      Future<?> batch = batches.get(docno);
+      if (batch != null) {
+        try {
+          batch.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          LOG.warn("Prefetching docno " + docno + " failed.", e.getCause());
+        }
+      }
+      Object vector = vectors.get(docno);
+      return vector != null ? vector : loadVector(docno);
+    }
+
+    public TFIDFEntry getEntityTFIDFVector(int docno) {
+      CompactTFIDFEntry vector = getCompactEntityTFIDFVector(docno);
+      return vector != null ? vector.toTFIDFEntry() : null;
+    }
+
+    public CompactTFIDFEntry getCompactEntityTFIDFVector(int docno) {
+      return checkType(get(docno), CompactTFIDFEntry.class);
+    }
+
+    public SparseVector getEntitySparseVector(int docno) {
+      return checkType(get(docno), SparseVector.class);
+    }
+
+    /**
+     * Stops reading batches that have not started.
+     */
+    public void cancel() {
+      for (Future<?> batch: batches.values()) {
+        batch.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Text values hold "term \t weight \t term \t weight ...". TFIDFEntry values are kept as
+   * compact vectors too.
+   */
+  private static Object decode(Writable value) {
+    if (value instanceof TFIDFEntry) {
+      return new CompactTFIDFEntry((TFIDFEntry) value);
+    }
+    if (!(value instanceof Text)) {
+      return value;
+    }
+    String parts[] = StringUtils.split(value.toString(), '\t');
+    String[] terms = new String[parts.length / 2];
+    double[] weights = new double[parts.length / 2];
+    for (int i = 0; i + 1 < parts.length; i += 2) {
+      terms[i / 2] = parts[i];
+      weights[i / 2] = Double.parseDouble(parts[i + 1]);
+    }
+    return new CompactTFIDFEntry(terms, weights);
+  }
+
+  /**
+   * Reads the record of the docno, a Text, a TFIDFEntry or a SparseVector depending on the
+   * collection.
+   */
+  private Writable readEntityVector(int docno) {
     long start = System.currentTimeMillis();
 
     // trap invalid docnos
@@ -94,42 +349,43 @@ public class EntityTFIDFIndex {
       return null;
     }
 
+    SequenceFile.Reader reader = null;
     try {
-      DecimalFormat df = new DecimalFormat("00000");
-      Path file = new Path(collectionPath + "/part-" + df.format(fileno[idx]));
-
-      LOG.trace("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
-
-      SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+      reader = readers.borrow(fileno[idx]);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " +
+            readers.getPartPath(fileno[idx]));
+      }
 
-      LongWritable key = new LongWritable();
-      Text value = new Text();
+      Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+      Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
 
+      // Offsets are record starts, so the record read is the one of the docno.
       reader.seek(offsets[idx]);
-
-      while (reader.next(key)) {
-        if (key.get() == docno)
-          break;
+      boolean found = reader.next(key, value) && getDocno(key) == docno;
+      readers.release(fileno[idx], reader);
+      reader = null;
+      if (!found) {
+        LOG.warn("docno " + docno + " not found at offset " + offsets[idx]);
+        return null;
       }
-      reader.getCurrentValue(value);
-      reader.close();
       long duration = System.currentTimeMillis() - start;
 
       LOG.trace(" docno " + docno + " fetched in " + duration + "ms");
-      
-      TFIDFEntry entry = new TFIDFEntry();
-      String parts[] = StringUtils.split(value.toString(), "\t");
-      for (int i = 0; i + 1 < parts.length; i += 2) {
-      	entry.put(parts[i], Double.parseDouble(parts[i + 1]));
-      }
-      return entry;
+      return value;
     } catch (IOException e) {
       e.printStackTrace();
+      if (reader != null) {
+        readers.discard(reader);
+      }
     }
 
     return null;
   }
 
+  private static long getDocno(Writable key) {
+    return key instanceof IntWritable ? ((IntWritable) key).get() : ((LongWritable) key).get();
+  }
 
   public int getFirstDocno() {
     return docnos[0];
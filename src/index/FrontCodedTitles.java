@@ -0,0 +1,286 @@
+package index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Sorted titles with an int value each, used by @see TitleDictionary and @see TitleResolver .
+ * Titles are sorted by their UTF-8 bytes and front coded in blocks of BLOCK_SIZE: the first title
+ * of a block is stored whole, every other one as the length of the prefix shared with the previous
+ * title and the remaining suffix. Lookups binary search the first titles of the blocks and scan one
+ * block.
+ */
+class FrontCodedTitles {
+	public static final int BLOCK_SIZE = 16;
+	public static final int NOT_FOUND = -1;
+
+	private final int[] values;
+	private final int[] blockOffsets;
+	private final byte[] titles;
+	private final int maxTitleLength;
+
+	private FrontCodedTitles(int[] values, int[] blockOffsets, byte[] titles) {
+		this.values = values;
+		this.blockOffsets = blockOffsets;
+		this.titles = titles;
+
+		int maxLength = 0;
+		for (int block = 0; block < blockOffsets.length; ++block) {
+			int offset = blockOffsets[block];
+			int end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : titles.length;
+			int length = readVarInt(titles, offset);
+			offset = skipVarInt(titles, offset) + length;
+			maxLength = Math.max(maxLength, length);
+			while (offset < end) {
+				int prefix = readVarInt(titles, offset);
+				offset = skipVarInt(titles, offset);
+				int suffix = readVarInt(titles, offset);
+				offset = skipVarInt(titles, offset) + suffix;
+				maxLength = Math.max(maxLength, prefix + suffix);
+			}
+		}
+		maxTitleLength = maxLength;
+	}
+
+	/**
+	 * Builds from the first size titles and values, in any order. If a title occurs more than once,
+	 * the last one wins, as when loading into a map.
+	 */
+	public static FrontCodedTitles build(final List<byte[]> titles, int[] values, int size)
+			throws IOException {
+		final int[] order = new int[size];
+		for (int i = 0; i < size; ++i) {
+			order[i] = i;
+		}
+		GenericSorting.mergeSort(0, size, new IntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return compareBytes(titles.get(order[a]), titles.get(order[b]));
+			}
+		}, new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				int value = order[a];
+				order[a] = order[b];
+				order[b] = value;
+			}
+		});
+
+		int distinct = 0;
+		int[] sortedValues = new int[size];
+		List<byte[]> sortedTitles = new ArrayList<byte[]>(size);
+		for (int i = 0; i < size; ++i) {
+			if (i + 1 < size && compareBytes(titles.get(order[i]), titles.get(order[i + 1])) == 0) {
+				continue;
+			}
+			sortedValues[distinct++] = values[order[i]];
+			sortedTitles.add(titles.get(order[i]));
+		}
+		return encode(Arrays.copyOf(sortedValues, distinct), sortedTitles);
+	}
+
+	private static FrontCodedTitles encode(int[] values, List<byte[]> sortedTitles)
+			throws IOException {
+		int[] blockOffsets = new int[(values.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		byte[] titles = new byte[1 << 16];
+		int length = 0;
+		byte[] previous = null;
+		for (int position = 0; position < values.length; ++position) {
+			byte[] title = sortedTitles.get(position);
+			if (length + title.length + 10 > titles.length) {
+				if (titles.length == Integer.MAX_VALUE) {
+					throw new IOException("Titles are too large for one array.");
+				}
+				titles = Arrays.copyOf(titles,
+						(int) Math.min(Math.max(2L * titles.length, length + title.length + 10L),
+								Integer.MAX_VALUE));
+			}
+			if (position % BLOCK_SIZE == 0) {
+				blockOffsets[position / BLOCK_SIZE] = length;
+				length = writeVarInt(titles, length, title.length);
+				System.arraycopy(title, 0, titles, length, title.length);
+				length += title.length;
+			} else {
+				int prefix = 0;
+				int maxPrefix = Math.min(previous.length, title.length);
+				while (prefix < maxPrefix && previous[prefix] == title[prefix]) {
+					++prefix;
+				}
+				length = writeVarInt(titles, length, prefix);
+				length = writeVarInt(titles, length, title.length - prefix);
+				System.arraycopy(title, prefix, titles, length, title.length - prefix);
+				length += title.length - prefix;
+			}
+			previous = title;
+		}
+		return new FrontCodedTitles(values, blockOffsets, Arrays.copyOf(titles, length));
+	}
+
+	/**
+	 * Reads what @see #write wrote, starting at the current position of the channel.
+	 */
+	public static FrontCodedTitles read(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		buffer.limit(12);
+		IndexFiles.readFully(channel, buffer);
+		buffer.flip();
+		int[] values = new int[buffer.getInt()];
+		int[] blockOffsets = new int[buffer.getInt()];
+		byte[] titles = new byte[buffer.getInt()];
+		IndexFiles.readInts(channel, buffer, values);
+		IndexFiles.readInts(channel, buffer, blockOffsets);
+		IndexFiles.readBytes(channel, buffer, titles);
+		return new FrontCodedTitles(values, blockOffsets, titles);
+	}
+
+	/**
+	 * Writes: number of titles, number of blocks, titles length, values in title order, block
+	 * offsets, front coded titles.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(values.length);
+		out.writeInt(blockOffsets.length);
+		out.writeInt(titles.length);
+		IndexFiles.writeInts(out, values);
+		IndexFiles.writeInts(out, blockOffsets);
+		out.write(titles);
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	public int getValue(int position) {
+		return values[position];
+	}
+
+	/**
+	 * Returns the position of the title or NOT_FOUND.
+	 */
+	public int find(String title) {
+		byte[] key = title.getBytes(Charsets.UTF_8);
+
+		// Last block whose first title is not greater than the key.
+		int low = 0;
+		int high = blockOffsets.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = blockOffsets[middle];
+			int length = readVarInt(titles, offset);
+			int comparison = compareBytes(titles, skipVarInt(titles, offset), length, key);
+			if (comparison == 0) {
+				return middle * BLOCK_SIZE;
+			} else if (comparison < 0) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return NOT_FOUND;
+		}
+
+		byte[] current = new byte[maxTitleLength];
+		int offset = blockOffsets[block];
+		int length = readVarInt(titles, offset);
+		offset = skipVarInt(titles, offset);
+		System.arraycopy(titles, offset, current, 0, length);
+		offset += length;
+		int end = Math.min(values.length, (block + 1) * BLOCK_SIZE);
+		for (int position = block * BLOCK_SIZE + 1; position < end; ++position) {
+			int prefix = readVarInt(titles, offset);
+			offset = skipVarInt(titles, offset);
+			int suffix = readVarInt(titles, offset);
+			offset = skipVarInt(titles, offset);
+			System.arraycopy(titles, offset, current, prefix, suffix);
+			offset += suffix;
+			int comparison = compareBytes(current, 0, prefix + suffix, key);
+			if (comparison == 0) {
+				return position;
+			} else if (comparison > 0) {
+				break;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public String getTitle(int position) {
+		int offset = blockOffsets[position / BLOCK_SIZE];
+		int length = readVarInt(titles, offset);
+		offset = skipVarInt(titles, offset);
+		if (position % BLOCK_SIZE == 0) {
+			return new String(titles, offset, length, Charsets.UTF_8);
+		}
+		byte[] current = new byte[maxTitleLength];
+		System.arraycopy(titles, offset, current, 0, length);
+		offset += length;
+		for (int i = 0; i < position % BLOCK_SIZE; ++i) {
+			int prefix = readVarInt(titles, offset);
+			offset = skipVarInt(titles, offset);
+			int suffix = readVarInt(titles, offset);
+			offset = skipVarInt(titles, offset);
+			System.arraycopy(titles, offset, current, prefix, suffix);
+			offset += suffix;
+			length = prefix + suffix;
+		}
+		return new String(current, 0, length, Charsets.UTF_8);
+	}
+
+	/**
+	 * Compares bytes[offset ... offset + length - 1] with key as unsigned bytes.
+	 */
+	private static int compareBytes(byte[] bytes, int offset, int length, byte[] key) {
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; ++i) {
+			int difference = (bytes[offset + i] & 0xff) - (key[i] & 0xff);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - key.length;
+	}
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		return compareBytes(a, 0, a.length, b);
+	}
+
+	private static int writeVarInt(byte[] bytes, int position, int value) {
+		while ((value & ~0x7f) != 0) {
+			bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[position++] = (byte) value;
+		return position;
+	}
+
+	private static int readVarInt(byte[] bytes, int position) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = bytes[position++];
+			value |= (current & 0x7f) << shift;
+			shift += 7;
+		} while (current < 0);
+		return value;
+	}
+
+	private static int skipVarInt(byte[] bytes, int position) {
+		while (bytes[position++] < 0) {
+		}
+		return position;
+	}
+}
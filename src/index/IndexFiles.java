@@ -0,0 +1,175 @@
+package index;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Helpers for reading and writing the binary snapshots of the indices.
+ * Arrays are read through a small direct buffer, so loading does not need a second copy of the
+ * file on the heap. Large text indices can be parsed in parallel chunks with @see #parseChunks .
+ */
+public class IndexFiles {
+	public static final int BUFFER_SIZE = 1 << 20;
+	public static final int PARSE_THREADS = Runtime.getRuntime().availableProcessors();
+	// Files smaller than this are parsed in one chunk.
+	private static final long MIN_CHUNK_SIZE = 1 << 24;
+
+	/**
+	 * Parses the lines of one chunk of a text file.
+	 */
+	public interface ChunkParser<T> {
+		public T parse(BufferedReader in) throws IOException;
+	}
+
+	public static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+	}
+
+	public static void readInts(FileChannel channel, ByteBuffer buffer, int[] destination)
+			throws IOException {
+		for (int position = 0; position < destination.length;) {
+			int count = Math.min(destination.length - position, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.limit(4 * count);
+			readFully(channel, buffer);
+			buffer.flip();
+			buffer.asIntBuffer().get(destination, position, count);
+			position += count;
+		}
+	}
+
+	public static void readBytes(FileChannel channel, ByteBuffer buffer, byte[] destination)
+			throws IOException {
+		for (int position = 0; position < destination.length;) {
+			int count = Math.min(destination.length - position, buffer.capacity());
+			buffer.clear();
+			buffer.limit(count);
+			readFully(channel, buffer);
+			buffer.flip();
+			buffer.get(destination, position, count);
+			position += count;
+		}
+	}
+
+	public static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value: values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Splits the file in at most chunks parts at line boundaries and parses them concurrently.
+	 * Results are returned in file order, so callers that merge them in order see the lines in the
+	 * same order as a sequential read. Lines are decoded with the default charset, as FileReader does.
+	 */
+	public static <T> List<T> parseChunks(String path, int chunks, ChunkParser<T> parser)
+			throws IOException {
+		return parseChunks(path, chunks, MIN_CHUNK_SIZE, parser);
+	}
+
+	/**
+	 * @param minChunkSize no chunk is made smaller than this many bytes
+	 */
+	public static <T> List<T> parseChunks(final String path, int chunks, long minChunkSize,
+			final ChunkParser<T> parser) throws IOException {
+		final long[] starts = chunkStarts(path, chunks, minChunkSize);
+		List<T> result = new ArrayList<T>(starts.length - 1);
+		if (starts.length == 2) {
+			result.add(parseChunk(path, starts[0], starts[1], parser));
+			return result;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(starts.length - 1);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>(starts.length - 1);
+			for (int i = 0; i + 1 < starts.length; ++i) {
+				final int chunk = i;
+				futures.add(executor.submit(new Callable<T>() {
+					@Override
+					public T call() throws IOException {
+						return parseChunk(path, starts[chunk], starts[chunk + 1], parser);
+					}
+				}));
+			}
+			for (Future<T> future: futures) {
+				result.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing " + path, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot parse " + path, e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Chunk boundaries: every chunk but the first starts right after a line feed.
+	 */
+	private static long[] chunkStarts(String path, int chunks, long minChunkSize)
+			throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			long length = file.length();
+			chunks = (int) Math.max(1, Math.min(chunks, length / minChunkSize));
+			List<Long> starts = new ArrayList<Long>(chunks + 1);
+			starts.add(0L);
+			for (int i = 1; i < chunks; ++i) {
+				long start = Math.max(length * i / chunks, starts.get(starts.size() - 1));
+				file.seek(start);
+				int current;
+				while ((current = file.read()) != -1 && current != '\n') {
+				}
+				start = file.getFilePointer();
+				if (start < length && start > starts.get(starts.size() - 1)) {
+					starts.add(start);
+				}
+			}
+			starts.add(length);
+			long[] result = new long[starts.size()];
+			for (int i = 0; i < result.length; ++i) {
+				result[i] = starts.get(i);
+			}
+			return result;
+		} finally {
+			file.close();
+		}
+	}
+
+	private static <T> T parseChunk(String path, long start, long end, ChunkParser<T> parser)
+			throws IOException {
+		FileInputStream stream = new FileInputStream(path);
+		stream.getChannel().position(start);
+		BufferedReader in = new BufferedReader(
+				new InputStreamReader(ByteStreams.limit(stream, end - start)), BUFFER_SIZE);
+		try {
+			return parser.parse(in);
+		} finally {
+			in.close();
+		}
+	}
+}
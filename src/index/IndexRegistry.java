@@ -0,0 +1,333 @@
+package index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Loads every index file once per JVM and shares it between callers.
+ * The load* methods start loading in the background and return at once, so independent indices
+ * started one after the other are read concurrently; the get* methods wait for the index, starting
+ * the load if needed. Large text indices are additionally parsed in parallel chunks by their own
+ * load methods. The time spent loading every index is kept for @see #getLoadTimes .
+ */
+public class IndexRegistry {
+	private static final Logger LOG = Logger.getLogger(IndexRegistry.class);
+	private static final IndexRegistry INSTANCE = new IndexRegistry();
+
+	private final ConcurrentMap<String, Future<?>> indices =
+			new ConcurrentHashMap<String, Future<?>>();
+	private final Map<String, Long> loadTimes =
+			Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+	// Not bounded: loads may wait for other loads, e.g. the title resolver for the titles.
+	private final ExecutorService executor = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("index-loader-%d").build());
+
+	private IndexRegistry() {
+	}
+
+	public static IndexRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the pending or finished load of the index with the given key, starting it if this is
+	 * the first request for the key.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Future<T> load(final String key, final Callable<T> loader) {
+		Future<?> current = indices.get(key);
+		if (current != null) {
+			return (Future<T>) current;
+		}
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				long start = System.currentTimeMillis();
+				LOG.info("Loading " + key);
+				T index = loader.call();
+				long time = System.currentTimeMillis() - start;
+				loadTimes.put(key, time);
+				LOG.info("Loaded " + key + " in " + time + " ms");
+				return index;
+			}
+		});
+		current = indices.putIfAbsent(key, task);
+		if (current != null) {
+			return (Future<T>) current;
+		}
+		executor.execute(task);
+		return task;
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading index.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot load index.", e.getCause());
+		}
+	}
+
+	private static String key(String type, String... paths) {
+		StringBuilder result = new StringBuilder(type);
+		for (String path: paths) {
+			result.append(" ").append(path == null ? null : new File(path).getAbsolutePath());
+		}
+		return result.toString();
+	}
+
+	public Future<MentionIndex> loadMentionIndex(final String path) {
+		return load(key("mention index", path), new Callable<MentionIndex>() {
+			@Override
+			public MentionIndex call() throws IOException {
+				return MentionIndex.load(path);
+			}
+		});
+	}
+
+	public MentionIndex getMentionIndex(String path) throws IOException {
+		return get(loadMentionIndex(path));
+	}
+
+	/**
+	 * Prefixes of the keys of the mention index at the path, loading the index too. Spotters are
+	 * cheap to build over it, see @see md.MentionSpotter .
+	 */
+	public Future<TokenPrefixSet> loadTokenPrefixSet(final String mentionIndexPath) {
+		loadMentionIndex(mentionIndexPath);
+		return load(key("token prefix set", mentionIndexPath), new Callable<TokenPrefixSet>() {
+			@Override
+			public TokenPrefixSet call() throws IOException {
+				return new TokenPrefixSet(getMentionIndex(mentionIndexPath).keySet());
+			}
+		});
+	}
+
+	public TokenPrefixSet getTokenPrefixSet(String mentionIndexPath) throws IOException {
+		return get(loadTokenPrefixSet(mentionIndexPath));
+	}
+
+	public Future<MentionEntitiesFrequencyIndex> loadMentionEntitiesFrequencyIndex(
+			final String path) {
+		return load(key("mention frequency index", path),
+				new Callable<MentionEntitiesFrequencyIndex>() {
+			@Override
+			public MentionEntitiesFrequencyIndex call() throws IOException {
+				return MentionEntitiesFrequencyIndex.load(path);
+			}
+		});
+	}
+
+	public MentionEntitiesFrequencyIndex getMentionEntitiesFrequencyIndex(String path)
+			throws IOException {
+		return get(loadMentionEntitiesFrequencyIndex(path));
+	}
+
+	public Future<EntityLinksIndex> loadEntityLinksIndex(final String path) {
+		return load(key("entity links index", path), new Callable<EntityLinksIndex>() {
+			@Override
+			public EntityLinksIndex call() throws IOException {
+				return EntityLinksIndex.load(path);
+			}
+		});
+	}
+
+	public EntityLinksIndex getEntityLinksIndex(String path) throws IOException {
+		return get(loadEntityLinksIndex(path));
+	}
+
+	public Future<EntityLinksFrequencyIndex> loadEntityLinksFrequencyIndex(final String path) {
+		return load(key("entity links frequency index", path),
+				new Callable<EntityLinksFrequencyIndex>() {
+			@Override
+			public EntityLinksFrequencyIndex call() throws IOException {
+				return EntityLinksFrequencyIndex.load(path);
+			}
+		});
+	}
+
+	public EntityLinksFrequencyIndex getEntityLinksFrequencyIndex(String path) throws IOException {
+		return get(loadEntityLinksFrequencyIndex(path));
+	}
+
+	public Future<MappedEntityPairsIndex> loadMappedEntityPairsIndex(final String path) {
+		return load(key("mapped entity pairs index", path), new Callable<MappedEntityPairsIndex>() {
+			@Override
+			public MappedEntityPairsIndex call() throws IOException {
+				return MappedEntityPairsIndex.load(path);
+			}
+		});
+	}
+
+	public MappedEntityPairsIndex getMappedEntityPairsIndex(String path) throws IOException {
+		return get(loadMappedEntityPairsIndex(path));
+	}
+
+	/**
+	 * Starts loading the pairs index at the path if there is a file there, as the pairs index is
+	 * optional for the scorers. Returns null otherwise.
+	 */
+	public Future<MappedEntityPairsIndex> loadMappedEntityPairsIndexIfExists(String path) {
+		if (!new File(path).exists()) {
+			LOG.info("No entity pairs index at " + path);
+			return null;
+		}
+		return loadMappedEntityPairsIndex(path);
+	}
+
+	/**
+	 * The pairs index at the path, null if there is no file there.
+	 */
+	public MappedEntityPairsIndex getMappedEntityPairsIndexIfExists(String path)
+			throws IOException {
+		Future<MappedEntityPairsIndex> index = loadMappedEntityPairsIndexIfExists(path);
+		return index != null ? get(index) : null;
+	}
+
+	public Future<TermDocumentFrequencyIndex> loadTermDocumentFrequencyIndex(final String path) {
+		return load(key("term document frequency index", path),
+				new Callable<TermDocumentFrequencyIndex>() {
+			@Override
+			public TermDocumentFrequencyIndex call() throws IOException {
+				return TermDocumentFrequencyIndex.load(path);
+			}
+		});
+	}
+
+	public TermDocumentFrequencyIndex getTermDocumentFrequencyIndex(String path)
+			throws IOException {
+		return get(loadTermDocumentFrequencyIndex(path));
+	}
+
+	/**
+	 * @param collectionPath directory of the tf-idf files, may be null
+	 * @param indexPath offsets index file
+	 */
+	public Future<EntityTFIDFIndex> loadEntityTFIDFIndex(final String collectionPath,
+			final String indexPath) {
+		return load(key("entity tf-idf index", collectionPath, indexPath),
+				new Callable<EntityTFIDFIndex>() {
+			@Override
+			public EntityTFIDFIndex call() throws IOException {
+				EntityTFIDFIndex index = new EntityTFIDFIndex(collectionPath);
+				index.load(new Path(indexPath));
+				return index;
+			}
+		});
+	}
+
+	public EntityTFIDFIndex getEntityTFIDFIndex(String collectionPath, String indexPath)
+			throws IOException {
+		return get(loadEntityTFIDFIndex(collectionPath, indexPath));
+	}
+
+	public Future<MappedEntityTFIDFStore> loadMappedEntityTFIDFStore(final String path) {
+		return load(key("mapped entity tf-idf store", path),
+				new Callable<MappedEntityTFIDFStore>() {
+			@Override
+			public MappedEntityTFIDFStore call() throws IOException {
+				return MappedEntityTFIDFStore.load(path);
+			}
+		});
+	}
+
+	public MappedEntityTFIDFStore getMappedEntityTFIDFStore(String path) throws IOException {
+		return get(loadMappedEntityTFIDFStore(path));
+	}
+
+	public Future<MappedEntityEmbeddings> loadMappedEntityEmbeddings(final String path) {
+		return load(key("mapped entity embeddings", path), new Callable<MappedEntityEmbeddings>() {
+			@Override
+			public MappedEntityEmbeddings call() throws IOException {
+				return MappedEntityEmbeddings.load(path);
+			}
+		});
+	}
+
+	public MappedEntityEmbeddings getMappedEntityEmbeddings(String path) throws IOException {
+		return get(loadMappedEntityEmbeddings(path));
+	}
+
+	public Future<TitleDictionary> loadTitleDictionary(final String path) {
+		return load(key("title dictionary", path), new Callable<TitleDictionary>() {
+			@Override
+			public TitleDictionary call() throws IOException {
+				return TitleDictionary.load(path);
+			}
+		});
+	}
+
+	public TitleDictionary getTitleDictionary(String path) throws IOException {
+		return get(loadTitleDictionary(path));
+	}
+
+	public Future<RedirectPagesIndex> loadRedirectPagesIndex(final String path) {
+		return load(key("redirect pages index", path), new Callable<RedirectPagesIndex>() {
+			@Override
+			public RedirectPagesIndex call() throws IOException {
+				return RedirectPagesIndex.load(path);
+			}
+		});
+	}
+
+	public RedirectPagesIndex getRedirectPagesIndex(String path) throws IOException {
+		return get(loadRedirectPagesIndex(path));
+	}
+
+	/**
+	 * Resolver built from the registry's title dictionary and redirect pages index, which are loaded
+	 * concurrently.
+	 */
+	public Future<TitleResolver> loadTitleResolver(final String titlesPath,
+			final String redirectPath) {
+		return load(key("title resolver", titlesPath, redirectPath), new Callable<TitleResolver>() {
+			@Override
+			public TitleResolver call() throws IOException {
+				Future<TitleDictionary> titles = loadTitleDictionary(titlesPath);
+				Future<RedirectPagesIndex> redirects = loadRedirectPagesIndex(redirectPath);
+				return TitleResolver.build(get(titles), get(redirects));
+			}
+		});
+	}
+
+	public TitleResolver getTitleResolver(String titlesPath, String redirectPath)
+			throws IOException {
+		return get(loadTitleResolver(titlesPath, redirectPath));
+	}
+
+	/**
+	 * Milliseconds spent loading every index loaded so far, in the order they finished.
+	 */
+	public Map<String, Long> getLoadTimes() {
+		synchronized (loadTimes) {
+			return new LinkedHashMap<String, Long>(loadTimes);
+		}
+	}
+
+	public void logLoadTimes() {
+		for (Map.Entry<String, Long> entry: getLoadTimes().entrySet()) {
+			LOG.info(entry.getKey() + ": " + entry.getValue() + " ms");
+		}
+	}
+}
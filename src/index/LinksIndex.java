@@ -3,4 +3,5 @@ package index;
 public interface LinksIndex {
 	public int getPopularity(int entity);
 	public int getCocitation(int entity1, int entity2);
+	public int[] getCocitation(int entity, int[] entities);
 }
@@ -0,0 +1,153 @@
+package index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import data.HashedProjection;
+
+/**
+ * Dense unit length embeddings of the entities, projected from their tf-idf vectors with a
+ * @see data.HashedProjection , as one memory mapped count x dimensions float matrix.
+ * The dot product of an embedding with a context projected by @see #getProjection approximates
+ * the cosine similarity of the tf-idf vectors.
+ * The file loaded should be produced by @see knowledgebase.EntityEmbeddingsBuilder .
+ *
+ * File layout (big endian):
+ * 	header: magic, version, count, dimensions, hashes, unused, long seed
+ * 	int[count] sorted docnos
+ * 	float[count][dimensions] embeddings, row i for docno i.
+ */
+public class MappedEntityEmbeddings {
+	public static final int MAGIC = 0x45454d31;
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 32;
+	// Rows are mapped in segments of at most this many bytes, holding whole rows.
+	public static final long SEGMENT_SIZE = 1L << 30;
+
+	public static final int NOT_FOUND = -1;
+
+	private int count;
+	private int dimensions;
+	private int rowsPerSegment;
+	private HashedProjection projection;
+	private IntBuffer docnos;
+	private FloatBuffer[] segments;
+
+	private MappedEntityEmbeddings() {
+	}
+
+	public static MappedEntityEmbeddings load(String path) throws IOException {
+		MappedEntityEmbeddings embeddings = new MappedEntityEmbeddings();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a mapped entity embeddings file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported mapped entity embeddings version: " + version);
+			}
+			embeddings.count = header.getInt();
+			embeddings.dimensions = header.getInt();
+			int hashes = header.getInt();
+			header.getInt();
+			long seed = header.getLong();
+			embeddings.projection = new HashedProjection(embeddings.dimensions, hashes, seed);
+
+			long position = HEADER_SIZE;
+			embeddings.docnos = map(channel, position, 4L * embeddings.count).asIntBuffer();
+			position += 4L * embeddings.count;
+			long rowSize = 4L * embeddings.dimensions;
+			embeddings.rowsPerSegment = (int) Math.max(1, SEGMENT_SIZE / rowSize);
+			int segmentCount =
+					(embeddings.count + embeddings.rowsPerSegment - 1) / embeddings.rowsPerSegment;
+			embeddings.segments = new FloatBuffer[segmentCount];
+			for (int segment = 0; segment < segmentCount; ++segment) {
+				int rows = Math.min(embeddings.rowsPerSegment,
+						embeddings.count - segment * embeddings.rowsPerSegment);
+				embeddings.segments[segment] = map(channel, position, rows * rowSize).asFloatBuffer();
+				position += rows * rowSize;
+			}
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			file.close();
+		}
+		return embeddings;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Section of " + size + " bytes is too large to be mapped.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * The projection the embeddings were computed with, to project contexts the same way.
+	 */
+	public HashedProjection getProjection() {
+		return projection;
+	}
+
+	/**
+	 * Row of the entity or NOT_FOUND.
+	 */
+	public int getEntityId(int docno) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = docnos.get(middle);
+			if (current < docno) {
+				low = middle + 1;
+			} else if (current > docno) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public int getDocno(int entityId) {
+		return docnos.get(entityId);
+	}
+
+	/**
+	 * Dot product of the embedding in the row with a vector of getDimensions() values.
+	 */
+	public double dot(int entityId, float[] vector) {
+		FloatBuffer segment = segments[entityId / rowsPerSegment];
+		int start = (entityId % rowsPerSegment) * dimensions;
+		double result = 0;
+		for (int dimension = 0; dimension < dimensions; ++dimension) {
+			result += (double) segment.get(start + dimension) * vector[dimension];
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the embedding in the row into result.
+	 */
+	public void getEmbedding(int entityId, float[] result) {
+		FloatBuffer segment = segments[entityId / rowsPerSegment];
+		int start = (entityId % rowsPerSegment) * dimensions;
+		for (int dimension = 0; dimension < dimensions; ++dimension) {
+			result[dimension] = segment.get(start + dimension);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Precomputed semantic relatedness and cocitation of entity pairs, memory mapped from a binary
+ * file. Only pairs that often occur together as candidates are stored; the batch lookups fall
+ * back to the links index for the other pairs, so results are the same as computing them online
+ * (relatedness up to float precision). Values must be computed with the same links index used as
+ * fallback.
+ * The file loaded should be produced by @see knowledgebase.MappedEntityPairsIndexBuilder from the
+ * output of @see knowledgebase.EntityPairsRelatednessBuilder .
+ *
+ * File layout (big endian):
+ * 	header: magic, version, count, unused
+ * 	long[count] sorted keys (smaller entity << 32 | larger entity), float[count] relatedness,
+ * 	int[count] cocitation.
+ */
+public class MappedEntityPairsIndex {
+	public static final int MAGIC = 0x45505231;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+
+	public static final int NOT_FOUND = -1;
+
+	private int count;
+	private LongBuffer keys;
+	private FloatBuffer relatedness;
+	private IntBuffer cocitation;
+
+	private MappedEntityPairsIndex() {
+	}
+
+	public static MappedEntityPairsIndex load(String path) throws IOException {
+		MappedEntityPairsIndex index = new MappedEntityPairsIndex();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a mapped entity pairs index file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported mapped entity pairs index version: " + version);
+			}
+			index.count = header.getInt();
+
+			long position = HEADER_SIZE;
+			index.keys = map(channel, position, 8L * index.count).asLongBuffer();
+			position += 8L * index.count;
+			index.relatedness = map(channel, position, 4L * index.count).asFloatBuffer();
+			position += 4L * index.count;
+			index.cocitation = map(channel, position, 4L * index.count).asIntBuffer();
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			file.close();
+		}
+		return index;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Section of " + size + " bytes is too large to be mapped.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	public static long key(int entity1, int entity2) {
+		return ((long) Math.min(entity1, entity2) << 32) | Math.max(entity1, entity2);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the position of the pair in the index or NOT_FOUND.
+	 */
+	public int find(int entity1, int entity2) {
+		long key = key(entity1, entity2);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleKey = keys.get(middle);
+			if (middleKey == key) {
+				return middle;
+			} else if (middleKey < key) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public float getRelatedness(int position) {
+		return relatedness.get(position);
+	}
+
+	public int getCocitation(int position) {
+		return cocitation.get(position);
+	}
+
+	/**
+	 * Relatedness between entity and each of the entities. Pairs not in the index are computed in one
+	 * batch by the fallback index.
+	 */
+	public double[] getSemanticRelatedness(int entity, int[] entities, EntityLinksIndex fallback) {
+		double[] result = new double[entities.length];
+		int[] missing = new int[entities.length];
+		int[] missingPositions = new int[entities.length];
+		int missingCount = 0;
+		for (int i = 0; i < entities.length; ++i) {
+			int position = find(entity, entities[i]);
+			if (position == NOT_FOUND) {
+				missing[missingCount] = entities[i];
+				missingPositions[missingCount++] = i;
+			} else {
+				result[i] = relatedness.get(position);
+			}
+		}
+		if (missingCount > 0) {
+			double[] computed =
+					fallback.getSemanticRelatedness(entity, Arrays.copyOf(missing, missingCount));
+			for (int i = 0; i < missingCount; ++i) {
+				result[missingPositions[i]] = computed[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Cocitation between entity and each of the entities. Pairs not in the index are computed in one
+	 * batch by the fallback index.
+	 */
+	public int[] getCocitation(int entity, int[] entities, LinksIndex fallback) {
+		int[] result = new int[entities.length];
+		int[] missing = new int[entities.length];
+		int[] missingPositions = new int[entities.length];
+		int missingCount = 0;
+		for (int i = 0; i < entities.length; ++i) {
+			int position = find(entity, entities[i]);
+			if (position == NOT_FOUND) {
+				missing[missingCount] = entities[i];
+				missingPositions[missingCount++] = i;
+			} else {
+				result[i] = cocitation.get(position);
+			}
+		}
+		if (missingCount > 0) {
+			int[] computed = fallback.getCocitation(entity, Arrays.copyOf(missing, missingCount));
+			for (int i = 0; i < missingCount; ++i) {
+				result[missingPositions[i]] = computed[i];
+			}
+		}
+		return result;
+	}
+}
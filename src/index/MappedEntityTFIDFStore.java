@@ -0,0 +1,126 @@
+package index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+import data.MappedSparseVector;
+
+/**
+ * Entity tf-idf vectors of all entities in one memory mapped file, served as
+ * @see data.MappedSparseVector views without copying or any Hadoop classes.
+ * Entities get dense ids in increasing docno order; a lookup binary searches the docnos and reads
+ * the offset of the dense id.
+ * The file loaded should be produced by @see knowledgebase.MappedEntityTFIDFStoreBuilder .
+ *
+ * File layout (big endian):
+ * 	header: magic, version, count, unused, long data size
+ * 	data: vector records, none crossing a multiple of SEGMENT_SIZE so each segment is mapped whole
+ * 	int[count] sorted docnos, long[count] offsets of the records in the data.
+ */
+public class MappedEntityTFIDFStore {
+	public static final int MAGIC = 0x45545331;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 24;
+	public static final int SEGMENT_BITS = 30;
+	public static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	public static final int NOT_FOUND = -1;
+
+	private int count;
+	private ByteBuffer[] segments;
+	private IntBuffer docnos;
+	private LongBuffer offsets;
+
+	private MappedEntityTFIDFStore() {
+	}
+
+	public static MappedEntityTFIDFStore load(String path) throws IOException {
+		MappedEntityTFIDFStore store = new MappedEntityTFIDFStore();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a mapped entity tf-idf store file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported mapped entity tf-idf store version: " + version);
+			}
+			store.count = header.getInt();
+			header.getInt();
+			long dataSize = header.getLong();
+
+			store.segments = new ByteBuffer[(int) ((dataSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int segment = 0; segment < store.segments.length; ++segment) {
+				long start = segment * SEGMENT_SIZE;
+				store.segments[segment] = map(channel, HEADER_SIZE + start,
+						Math.min(SEGMENT_SIZE, dataSize - start));
+			}
+			long position = HEADER_SIZE + dataSize;
+			store.docnos = map(channel, position, 4L * store.count).asIntBuffer();
+			position += 4L * store.count;
+			store.offsets = map(channel, position, 8L * store.count).asLongBuffer();
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			file.close();
+		}
+		return store;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Section of " + size + " bytes is too large to be mapped.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Dense id of the entity or NOT_FOUND.
+	 */
+	public int getEntityId(int docno) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = docnos.get(middle);
+			if (current < docno) {
+				low = middle + 1;
+			} else if (current > docno) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public int getDocno(int entityId) {
+		return docnos.get(entityId);
+	}
+
+	/**
+	 * Vector of the dense id, for 0 <= entityId < size().
+	 */
+	public MappedSparseVector getVectorAt(int entityId) {
+		long offset = offsets.get(entityId);
+		return new MappedSparseVector(segments[(int) (offset >>> SEGMENT_BITS)],
+				(int) (offset & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Vector of the entity or null if it is not stored.
+	 */
+	public MappedSparseVector getVector(int docno) {
+		int entityId = getEntityId(docno);
+		return entityId != NOT_FOUND ? getVectorAt(entityId) : null;
+	}
+}
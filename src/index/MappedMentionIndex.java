@@ -0,0 +1,320 @@
+package index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import md.Mention;
+import edu.umd.cloud9.io.pair.PairOfInts;
+
+/**
+ * Maps mentions to keyphraseness and candidate entities list by memory mapping a binary file.
+ * Nothing is decoded at load time: keys are binary searched as UTF-8 bytes and values are decoded
+ * on lookup, so several JVMs on the same host share the page cache.
+ * Values are returned in the same layout as @see index.MentionIndex:
+ * (linked docs, total docs, candidate entities ...).
+ * The file loaded should be produced by @see knowledgebase.MappedMentionIndexBuilder .
+ *
+ * File layout (big endian):
+ * 	header: magic, version, flags, count, keys section length (long), values section length (long)
+ * 	int[count + 1] key offsets, int[count + 1] value offsets (in ints), int[count] linked docs,
+ * 	int[count] total docs, keys sorted by UTF-8 bytes, values.
+ * A value is a list of candidate entities or, if HAS_FREQUENCIES is set, the total name frequency
+ * followed by (entity, frequency) pairs sorted by entity.
+ */
+public class MappedMentionIndex extends AbstractMap<String, Integer[]>
+		implements CandidatesIndex<Integer[]> {
+	public static final int MAGIC = 0x4d454b31;
+	public static final int VERSION = 1;
+	public static final int HAS_FREQUENCIES = 1;
+	public static final int HEADER_SIZE = 32;
+
+	public static final int NOT_FOUND = -1;
+
+	private int count;
+	private boolean hasFrequencies;
+	private IntBuffer keyOffsets;
+	private IntBuffer valueOffsets;
+	private IntBuffer linkedDocs;
+	private IntBuffer totalDocs;
+	private ByteBuffer keys;
+	private IntBuffer values;
+
+	private MappedMentionIndex() {
+	}
+
+	public static MappedMentionIndex load(String path) throws IOException {
+		MappedMentionIndex index = new MappedMentionIndex();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a mapped mention index file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported mapped mention index version: " + version);
+			}
+			index.hasFrequencies = (header.getInt() & HAS_FREQUENCIES) != 0;
+			index.count = header.getInt();
+			long keysLength = header.getLong();
+			long valuesLength = header.getLong();
+
+			long position = HEADER_SIZE;
+			long offsetsLength = 4L * (index.count + 1);
+			long docsLength = 4L * index.count;
+			index.keyOffsets = map(channel, position, offsetsLength).asIntBuffer();
+			position += offsetsLength;
+			index.valueOffsets = map(channel, position, offsetsLength).asIntBuffer();
+			position += offsetsLength;
+			index.linkedDocs = map(channel, position, docsLength).asIntBuffer();
+			position += docsLength;
+			index.totalDocs = map(channel, position, docsLength).asIntBuffer();
+			position += docsLength;
+			index.keys = map(channel, position, keysLength);
+			position += keysLength;
+			index.values = map(channel, position, valuesLength).asIntBuffer();
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			file.close();
+		}
+		return index;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Section of " + size + " bytes is too large to be mapped.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	/**
+	 * Returns the position of the key in the index or NOT_FOUND.
+	 */
+	public int find(String key) {
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareKey(middle, bytes);
+			if (comparison == 0) {
+				return middle;
+			} else if (comparison < 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Compares the key stored at the given position with the input bytes, as unsigned bytes.
+	 */
+	private int compareKey(int position, byte[] bytes) {
+		int start = keyOffsets.get(position);
+		int length = keyOffsets.get(position + 1) - start;
+		int common = Math.min(length, bytes.length);
+		for (int i = 0; i < common; ++i) {
+			int difference = (keys.get(start + i) & 0xff) - (bytes[i] & 0xff);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - bytes.length;
+	}
+
+	private String getKey(int position) {
+		int start = keyOffsets.get(position);
+		byte[] bytes = new byte[keyOffsets.get(position + 1) - start];
+		for (int i = 0; i < bytes.length; ++i) {
+			bytes[i] = keys.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int findExisting(String key) {
+		int position = find(key);
+		if (position == NOT_FOUND) {
+			throw new IllegalArgumentException("Name not in the mention index: " + key);
+		}
+		return position;
+	}
+
+	private int candidatesStart(int position) {
+		return valueOffsets.get(position) + (hasFrequencies ? 1 : 0);
+	}
+
+	private int candidatesCount(int position) {
+		int length = valueOffsets.get(position + 1) - candidatesStart(position);
+		return hasFrequencies ? length / 2 : length;
+	}
+
+	private int candidateAt(int position, int candidate) {
+		int stride = hasFrequencies ? 2 : 1;
+		return values.get(candidatesStart(position) + candidate * stride);
+	}
+
+	private Integer[] decodeCandidates(int position) {
+		Integer[] result = new Integer[candidatesCount(position)];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = candidateAt(position, i);
+		}
+		return result;
+	}
+
+	private Integer[] decodeValue(int position) {
+		int candidates = candidatesCount(position);
+		Integer[] result = new Integer[candidates + 2];
+		result[0] = linkedDocs.get(position);
+		result[1] = totalDocs.get(position);
+		for (int i = 0; i < candidates; ++i) {
+			result[i + 2] = candidateAt(position, i);
+		}
+		return result;
+	}
+
+	public boolean hasFrequencies() {
+		return hasFrequencies;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && find((String) key) != NOT_FOUND;
+	}
+
+	@Override
+	public Integer[] get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		int position = find((String) key);
+		return position == NOT_FOUND ? null : decodeValue(position);
+	}
+
+	public PairOfInts getKeyphraseness(String key) {
+		int position = findExisting(key);
+		return new PairOfInts(linkedDocs.get(position), totalDocs.get(position));
+	}
+
+	public Integer[] getCandidateEntities(String key) {
+		return decodeCandidates(findExisting(key));
+	}
+
+	public Integer[] getCandidateEntities(Mention mention) {
+		return getCandidateEntities(mention.getNgram());
+	}
+
+	public Integer getCandidateEntitiesCount(String key) {
+		return candidatesCount(findExisting(key));
+	}
+
+	/**
+	 * Same as @see index.MentionEntitiesFrequencyIndex#getCandidateFrequency . Only available if the
+	 * file was built from a frequency index.
+	 */
+	public int getCandidateFrequency(String name, Integer candidate) {
+		checkFrequencies();
+		return candidateFrequency(findExisting(name), name, candidate);
+	}
+
+	public double getCandidateProbability(String name, Integer candidate) {
+		checkFrequencies();
+		int position = findExisting(name);
+		int totalFrequency = values.get(valueOffsets.get(position));
+		return (double) candidateFrequency(position, name, candidate) / totalFrequency;
+	}
+
+	private int candidateFrequency(int position, String name, int candidate) {
+		int start = candidatesStart(position);
+		int low = 0;
+		int high = candidatesCount(position) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int entity = values.get(start + 2 * middle);
+			if (entity == candidate) {
+				return values.get(start + 2 * middle + 1);
+			} else if (entity < candidate) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		throw new IllegalArgumentException("Entity " + candidate + " is not a candidate of " + name);
+	}
+
+	public Integer getMostFrequentEntity(String name) {
+		checkFrequencies();
+		int position = findExisting(name);
+		int start = candidatesStart(position);
+		int bestEntity = -1;
+		int bestFrequency = -1;
+		for (int i = 0; i < candidatesCount(position); ++i) {
+			int frequency = values.get(start + 2 * i + 1);
+			if (frequency > bestFrequency) {
+				bestFrequency = frequency;
+				bestEntity = values.get(start + 2 * i);
+			}
+		}
+		return bestEntity;
+	}
+
+	private void checkFrequencies() {
+		if (!hasFrequencies) {
+			throw new UnsupportedOperationException("Mention index was built without frequencies.");
+		}
+	}
+
+	@Override
+	public Set<Entry<String, Integer[]>> entrySet() {
+		return new AbstractSet<Entry<String, Integer[]>>() {
+			@Override
+			public Iterator<Entry<String, Integer[]>> iterator() {
+				return new Iterator<Entry<String, Integer[]>>() {
+					private int position = 0;
+
+					@Override
+					public boolean hasNext() {
+						return position < count;
+					}
+
+					@Override
+					public Entry<String, Integer[]> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Entry<String, Integer[]> entry = new SimpleImmutableEntry<String, Integer[]>(
+								getKey(position), decodeValue(position));
+						++position;
+						return entry;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+}
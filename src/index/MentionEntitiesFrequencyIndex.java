@@ -1,9 +1,10 @@
 package index;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import data.CandidatesEntry;
 import data.NameEntry;
@@ -27,12 +28,35 @@ public class MentionEntitiesFrequencyIndex extends HashMap<String, NameEntry>
     super(size);
 	} 
 	
+	/**
+	 * Parses the file in parallel chunks, @see IndexFiles#parseChunks .
+	 */
 	public static MentionEntitiesFrequencyIndex load(String path)  throws IOException {
+		List<Chunk> chunks = IndexFiles.parseChunks(path, IndexFiles.PARSE_THREADS, 
+				new IndexFiles.ChunkParser<Chunk>() {
+			@Override
+			public Chunk parse(BufferedReader in) throws IOException {
+				return parseChunk(in);
+			}
+		});
 		MentionEntitiesFrequencyIndex dictionary = new MentionEntitiesFrequencyIndex(
 				INITIAL_SIZE * 4 / 3 + 1);
-		BufferedReader in = new BufferedReader(new FileReader(path));
+		for (Chunk chunk: chunks) {
+			for (int i = 0; i < chunk.names.size(); ++i) {
+				dictionary.put(chunk.names.get(i), chunk.entries.get(i));
+			}
+		}
+		return dictionary;
+	}
+	
+	private static class Chunk {
+		List<String> names = new ArrayList<String>();
+		List<NameEntry> entries = new ArrayList<NameEntry>();
+	}
+	
+	private static Chunk parseChunk(BufferedReader in) throws IOException {
+		Chunk chunk = new Chunk();
 		String line;
-
     while ((line = in.readLine()) != null ) {
       String[] elements = line.split(MentionEntitiesKeyphrasenessIndexBuilder.SEPARATOR, 4);
       String name = elements[0];
@@ -44,11 +68,10 @@ public class MentionEntitiesFrequencyIndex extends HashMap<String, NameEntry>
       }
       CandidatesEntry candidates = new CandidatesEntry(elements[3]);
 
-      dictionary.put(name, new NameEntry(linkedDocs, totalDocs, candidates));
+      chunk.names.add(name);
+      chunk.entries.add(new NameEntry(linkedDocs, totalDocs, candidates));
     }
-    in.close();
-    
-    return dictionary;
+    return chunk;
   }
 	
 	public PairOfInts getKeyphraseness(String name) {
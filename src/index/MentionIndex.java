@@ -1,10 +1,11 @@
 package index;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import md.Mention;
 import edu.umd.cloud9.io.pair.PairOfInts;
@@ -25,11 +26,34 @@ public class MentionIndex extends HashMap<String, Integer[]> implements Candidat
     super(size);
 	}
 	
+	/**
+	 * Parses the file in parallel chunks, @see IndexFiles#parseChunks .
+	 */
 	public static MentionIndex load(String path)  throws IOException {
+		List<Chunk> chunks = IndexFiles.parseChunks(path, IndexFiles.PARSE_THREADS, 
+				new IndexFiles.ChunkParser<Chunk>() {
+			@Override
+			public Chunk parse(BufferedReader in) throws IOException {
+				return parseChunk(in);
+			}
+		});
 		MentionIndex dictionary = new MentionIndex(INITIAL_SIZE * 4 / 3 + 1);
-		BufferedReader in = new BufferedReader(new FileReader(path));
+		for (Chunk chunk: chunks) {
+			for (int i = 0; i < chunk.names.size(); ++i) {
+				dictionary.put(chunk.names.get(i), chunk.values.get(i));
+			}
+		}
+		return dictionary;
+	}
+	
+	private static class Chunk {
+		List<String> names = new ArrayList<String>();
+		List<Integer[]> values = new ArrayList<Integer[]>();
+	}
+	
+	private static Chunk parseChunk(BufferedReader in) throws IOException {
+		Chunk chunk = new Chunk();
 		String line;
-
     while ((line = in.readLine()) != null ) {
       String[] elements = line.split(SEPARATOR);
       
@@ -44,11 +68,10 @@ public class MentionIndex extends HashMap<String, Integer[]> implements Candidat
       for (int i = 1; i < elements.length; ++i) {
       	mapValue[i - 1] = Integer.parseInt(elements[i]);
       }
-      dictionary.put(elements[0], mapValue);
+      chunk.names.add(elements[0]);
+      chunk.values.add(mapValue);
     }
-    in.close();
-    
-    return dictionary;
+    return chunk;
   }
 	
 	public PairOfInts getKeyphraseness(String key) {
@@ -1,7 +1,6 @@
 package index;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
@@ -32,6 +31,7 @@ public class NewEntityTFIDFIndex {
   private int[] offsets;
   private short[] fileno;
   private String collectionPath;
+  private SequenceFileReaderPool readers;
 
   public NewEntityTFIDFIndex() {
     conf = new Configuration();
@@ -73,6 +73,17 @@ public class NewEntityTFIDFIndex {
     }
 
     in.close();
+    close();
+    readers = new SequenceFileReaderPool(conf, collectionPath);
+  }
+
+  /**
+   * Closes the part files kept open for lookups.
+   */
+  public void close() {
+    if (readers != null) {
+      readers.close();
+    }
   }
 
   public String getCollectionPath() {
@@ -92,25 +103,26 @@ public class NewEntityTFIDFIndex {
       return null;
     }
 
+    SequenceFile.Reader reader = null;
     try {
-      DecimalFormat df = new DecimalFormat("00000");
-      Path file = new Path(collectionPath + "/part-" + df.format(fileno[idx]));
-
-      LOG.trace("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " + file);
-
-      SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+      reader = readers.borrow(fileno[idx]);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("fetching docno " + docno + ": seeking to " + offsets[idx] + " at " +
+            readers.getPartPath(fileno[idx]));
+      }
 
       IntWritable key = new IntWritable();
       TFIDFEntry value = new TFIDFEntry();
 
+      // Offsets are record starts, so the record read is the one of the docno.
       reader.seek(offsets[idx]);
-
-      while (reader.next(key)) {
-        if (key.get() == docno)
-          break;
+      boolean found = reader.next(key, value) && key.get() == docno;
+      readers.release(fileno[idx], reader);
+      reader = null;
+      if (!found) {
+        LOG.warn("docno " + docno + " not found at offset " + offsets[idx]);
+        return null;
       }
-      reader.getCurrentValue(value);
-      reader.close();
       long duration = System.currentTimeMillis() - start;
 
       LOG.trace(" docno " + docno + " fetched in " + duration + "ms");
@@ -118,6 +130,9 @@ public class NewEntityTFIDFIndex {
       return value;
     } catch (IOException e) {
       e.printStackTrace();
+      if (reader != null) {
+        readers.discard(reader);
+      }
     }
 
     return null;
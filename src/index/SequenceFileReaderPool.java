@@ -0,0 +1,102 @@
+package index;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps SequenceFile readers open over the part-NNNNN files of a collection, so random lookups do
+ * not open and close a file each time.
+ * A reader is used by one thread at a time: @see #borrow takes an idle reader of the part file or
+ * opens a new one, @see #release gives it back. At most as many readers per file are opened as
+ * threads read it concurrently.
+ */
+class SequenceFileReaderPool {
+	private static final Logger LOG = Logger.getLogger(SequenceFileReaderPool.class);
+	private static final String ZEROS = "00000";
+
+	private final Configuration conf;
+	private final String collectionPath;
+	private final ConcurrentMap<Integer, Queue<SequenceFile.Reader>> idle =
+			new ConcurrentHashMap<Integer, Queue<SequenceFile.Reader>>();
+	private volatile boolean closed = false;
+
+	public SequenceFileReaderPool(Configuration conf, String collectionPath) {
+		this.conf = conf;
+		this.collectionPath = collectionPath;
+	}
+
+	/**
+	 * Path of the part file, e.g. part-00012 for fileno 12.
+	 */
+	public Path getPartPath(int fileno) {
+		String number = Integer.toString(fileno);
+		return new Path(collectionPath + "/part-" +
+				ZEROS.substring(Math.min(number.length(), ZEROS.length())) + number);
+	}
+
+	public SequenceFile.Reader borrow(int fileno) throws IOException {
+		if (closed) {
+			throw new IOException("Reader pool of " + collectionPath + " is closed.");
+		}
+		Queue<SequenceFile.Reader> readers = idle.get(fileno);
+		SequenceFile.Reader reader = readers == null ? null : readers.poll();
+		if (reader != null) {
+			return reader;
+		}
+		Path file = getPartPath(fileno);
+		LOG.trace("opening reader for " + file);
+		return new SequenceFile.Reader(conf, SequenceFile.Reader.file(file));
+	}
+
+	/**
+	 * Returns a reader to the pool after a successful read. Readers that failed should be passed to
+	 * @see #discard instead, as their position is unknown.
+	 */
+	public void release(int fileno, SequenceFile.Reader reader) {
+		Queue<SequenceFile.Reader> readers = idle.get(fileno);
+		if (readers == null) {
+			Queue<SequenceFile.Reader> created = new ConcurrentLinkedQueue<SequenceFile.Reader>();
+			readers = idle.putIfAbsent(fileno, created);
+			if (readers == null) {
+				readers = created;
+			}
+		}
+		readers.add(reader);
+		if (closed) {
+			close();
+		}
+	}
+
+	public void discard(SequenceFile.Reader reader) {
+		closeQuietly(reader);
+	}
+
+	/**
+	 * Closes the idle readers. Readers borrowed at the time are closed when they are released.
+	 */
+	public void close() {
+		closed = true;
+		for (Queue<SequenceFile.Reader> readers: idle.values()) {
+			SequenceFile.Reader reader;
+			while ((reader = readers.poll()) != null) {
+				closeQuietly(reader);
+			}
+		}
+	}
+
+	private static void closeQuietly(SequenceFile.Reader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			LOG.warn("Cannot close reader.", e);
+		}
+	}
+}
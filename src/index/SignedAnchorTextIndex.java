@@ -0,0 +1,304 @@
+package index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Anchor text membership backed by a minimal perfect hash function and a short signature per key.
+ * The anchor texts themselves are not stored: a key is hashed to a slot and accepted if the
+ * signature stored in the slot matches, so a string that is not an anchor text is accepted with
+ * probability 2^-width. Takes a few bytes per key instead of a String per key as in
+ * @see index.AnchorTextIndex .
+ * The perfect hash uses hash and displace: keys are split into buckets, and each bucket stores the
+ * displacement that sends all its keys to free slots (or, for single key buckets, the slot itself).
+ * The file loaded should be produced by @see knowledgebase.SignedAnchorTextIndexBuilder .
+ *
+ * File layout (big endian):
+ * 	header: magic, version, seed, size, buckets, signature width
+ * 	int[buckets] displacements, long[] signatures packed with width bits each.
+ */
+public class SignedAnchorTextIndex implements AnchorTextDictionary {
+	public static final int MAGIC = 0x41544931;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 24;
+	public static final int DEFAULT_SIGNATURE_WIDTH = 16;
+
+	private static final int AVERAGE_BUCKET_SIZE = 4;
+	private static final int MAX_DISPLACEMENT = 1 << 20;
+	private static final int MAX_ATTEMPTS = 16;
+
+	private final int seed;
+	private final int size;
+	private final int width;
+	private final long mask;
+	private final int[] displacements;
+	private final long[] signatures;
+	private final HashFunction hashFunction;
+
+	private SignedAnchorTextIndex(int seed, int size, int width, int[] displacements,
+			long[] signatures) {
+		this.seed = seed;
+		this.size = size;
+		this.width = width;
+		this.mask = (1L << width) - 1;
+		this.displacements = displacements;
+		this.signatures = signatures;
+		this.hashFunction = Hashing.murmur3_128(seed);
+	}
+
+	/**
+	 * Builds the index for the given distinct anchor texts, storing width bits per signature.
+	 */
+	public static SignedAnchorTextIndex build(Collection<String> keys, int width) {
+		Preconditions.checkArgument(width > 0 && width <= 32, "Signature width must be in [1, 32].");
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+			SignedAnchorTextIndex index = build(keys, width, attempt);
+			if (index != null) {
+				return index;
+			}
+		}
+		throw new IllegalStateException("Could not build a perfect hash function. Duplicate keys?");
+	}
+
+	/**
+	 * Returns null if some bucket could not be placed with this seed.
+	 */
+	private static SignedAnchorTextIndex build(Collection<String> keys, int width, int seed) {
+		int size = keys.size();
+		int buckets = Math.max(1, (size + AVERAGE_BUCKET_SIZE - 1) / AVERAGE_BUCKET_SIZE);
+		HashFunction hashFunction = Hashing.murmur3_128(seed);
+		long[] hashes1 = new long[size];
+		long[] hashes2 = new long[size];
+		int[] bucketStart = new int[buckets + 1];
+		int i = 0;
+		for (String key: keys) {
+			ByteBuffer hash = hash(hashFunction, key);
+			hashes1[i] = hash.getLong(0);
+			hashes2[i] = hash.getLong(8);
+			++bucketStart[bucket(hashes1[i], buckets) + 1];
+			++i;
+		}
+
+		// Group keys by bucket and buckets by size.
+		int maxBucketSize = 0;
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			maxBucketSize = Math.max(maxBucketSize, bucketStart[bucket + 1]);
+			bucketStart[bucket + 1] += bucketStart[bucket];
+		}
+		int[] bucketKeys = new int[size];
+		int[] fill = new int[buckets];
+		for (int key = 0; key < size; ++key) {
+			int bucket = bucket(hashes1[key], buckets);
+			bucketKeys[bucketStart[bucket] + fill[bucket]++] = key;
+		}
+		int[] sizeStart = new int[maxBucketSize + 2];
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			++sizeStart[maxBucketSize - bucketSize(bucketStart, bucket) + 1];
+		}
+		for (int j = 1; j < sizeStart.length; ++j) {
+			sizeStart[j] += sizeStart[j - 1];
+		}
+		int[] bucketsBySize = new int[buckets];
+		for (int bucket = 0; bucket < buckets; ++bucket) {
+			bucketsBySize[sizeStart[maxBucketSize - bucketSize(bucketStart, bucket)]++] = bucket;
+		}
+
+		// Largest buckets first, while the table is still empty.
+		int[] displacements = new int[buckets];
+		BitSet taken = new BitSet(size);
+		int[] slots = new int[maxBucketSize];
+		int freeSlot = 0;
+		for (int bucket: bucketsBySize) {
+			int bucketSize = bucketSize(bucketStart, bucket);
+			if (bucketSize == 0) {
+				break;
+			} else if (bucketSize == 1) {
+				freeSlot = taken.nextClearBit(freeSlot);
+				taken.set(freeSlot);
+				displacements[bucket] = -freeSlot - 1;
+				continue;
+			}
+			int displacement = findDisplacement(bucketKeys, bucketStart[bucket], bucketSize, hashes2,
+					size, taken, slots);
+			if (displacement < 0) {
+				return null;
+			}
+			for (int j = 0; j < bucketSize; ++j) {
+				taken.set(slots[j]);
+			}
+			displacements[bucket] = displacement;
+		}
+
+		long[] signatures = new long[(int) (((long) size * width + 63) / 64)];
+		SignedAnchorTextIndex index =
+				new SignedAnchorTextIndex(seed, size, width, displacements, signatures);
+		for (int key = 0; key < size; ++key) {
+			int slot = index.slot(hashes1[key], hashes2[key]);
+			index.setSignature(slot, index.signature(hashes1[key]));
+		}
+		return index;
+	}
+
+	private static int bucketSize(int[] bucketStart, int bucket) {
+		return bucketStart[bucket + 1] - bucketStart[bucket];
+	}
+
+	/**
+	 * Finds a displacement that sends all keys of the bucket to distinct free slots, which are
+	 * left in slots. Returns -1 if there is none.
+	 */
+	private static int findDisplacement(int[] bucketKeys, int start, int bucketSize,
+			long[] hashes2, int size, BitSet taken, int[] slots) {
+		for (int displacement = 0; displacement < MAX_DISPLACEMENT; ++displacement) {
+			boolean placed = true;
+			for (int j = 0; j < bucketSize && placed; ++j) {
+				int slot = displace(hashes2[bucketKeys[start + j]], displacement, size);
+				if (taken.get(slot)) {
+					placed = false;
+				}
+				for (int k = 0; k < j && placed; ++k) {
+					if (slots[k] == slot) {
+						placed = false;
+					}
+				}
+				slots[j] = slot;
+			}
+			if (placed) {
+				return displacement;
+			}
+		}
+		return -1;
+	}
+
+	private static ByteBuffer hash(HashFunction hashFunction, CharSequence key) {
+		return ByteBuffer.wrap(hashFunction.hashString(key).asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int bucket(long hash1, int buckets) {
+		return (int) ((hash1 & 0xffffffffL) % buckets);
+	}
+
+	private static int displace(long hash2, int displacement, int size) {
+		long hash = hash2 + displacement * 0x9e3779b97f4a7c15L;
+		// MurmurHash3 finalizer.
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return (int) ((hash >>> 1) % size);
+	}
+
+	private int slot(long hash1, long hash2) {
+		int displacement = displacements[bucket(hash1, displacements.length)];
+		return displacement < 0 ? -displacement - 1 : displace(hash2, displacement, size);
+	}
+
+	private long signature(long hash1) {
+		return (hash1 >>> 32) & mask;
+	}
+
+	private long getSignature(int slot) {
+		long bit = (long) slot * width;
+		int word = (int) (bit >>> 6);
+		int offset = (int) (bit & 63);
+		long value = signatures[word] >>> offset;
+		if (offset + width > 64) {
+			value |= signatures[word + 1] << (64 - offset);
+		}
+		return value & mask;
+	}
+
+	private void setSignature(int slot, long value) {
+		long bit = (long) slot * width;
+		int word = (int) (bit >>> 6);
+		int offset = (int) (bit & 63);
+		signatures[word] |= value << offset;
+		if (offset + width > 64) {
+			signatures[word + 1] |= value >>> (64 - offset);
+		}
+	}
+
+	@Override
+	public boolean contains(Object key) {
+		if (!(key instanceof CharSequence) || size == 0) {
+			return false;
+		}
+		ByteBuffer hash = hash(hashFunction, (CharSequence) key);
+		long hash1 = hash.getLong(0);
+		return getSignature(slot(hash1, hash.getLong(8))) == signature(hash1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getSignatureWidth() {
+		return width;
+	}
+
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), 1 << 20));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(seed);
+		out.writeInt(size);
+		out.writeInt(displacements.length);
+		out.writeInt(width);
+		for (int displacement: displacements) {
+			out.writeInt(displacement);
+		}
+		for (long signature: signatures) {
+			out.writeLong(signature);
+		}
+		out.close();
+	}
+
+	public static SignedAnchorTextIndex load(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Signed anchor text index is too large: " + path);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Unexpected end of file: " + path);
+				}
+			}
+			buffer.flip();
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+				throw new IOException("Not a signed anchor text index file: " + path);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported signed anchor text index version: " + version);
+			}
+			int seed = buffer.getInt();
+			int size = buffer.getInt();
+			int[] displacements = new int[buffer.getInt()];
+			int width = buffer.getInt();
+			long[] signatures = new long[(int) (((long) size * width + 63) / 64)];
+			buffer.asIntBuffer().get(displacements);
+			buffer.position(buffer.position() + 4 * displacements.length);
+			buffer.asLongBuffer().get(signatures);
+			return new SignedAnchorTextIndex(seed, size, width, displacements, signatures);
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -1,52 +1,235 @@
 package index;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import knowledgebase.WikiUtils;
 
+import com.google.common.base.Charsets;
+
 /**
- * Maps a term to it's document frequency.
- * The file loaded should be produced by @see knowledgebase.EntityMentionIndexBuilder .
+ * Maps a term to a dense id and it's inverse document frequency.
+ * Terms are stored as UTF-8 bytes in one array and found through an open addressing table of ids,
+ * the idf of every id is precomputed. Unknown terms have id UNKNOWN_TERM and the idf of a term with
+ * document frequency 1.
+ * The file loaded should be produced by @see knowledgebase.DFTermIndexBuilder .
  */
-public class TermDocumentFrequencyIndex extends HashMap<String, Integer> {
-	private static final long serialVersionUID = -4306252883493356345L;
+public class TermDocumentFrequencyIndex {
+	public static final int UNKNOWN_TERM = -1;
 	private static final int INITIAL_SIZE = 12229505;
-	
-	public TermDocumentFrequencyIndex(int size) {
-    super(size);
+	private static final int EMPTY = -1;
+
+	private int size = 0;
+	private byte[] terms = new byte[1 << 20];
+	private int termsLength = 0;
+	private int[] offsets;
+	private int[] hashes;
+	private float[] idf;
+	// Open addressing table of ids, EMPTY if the slot is free.
+	private int[] table;
+	private final float unknownIDF = (float) computeIDF(1);
+
+	private TermDocumentFrequencyIndex(int capacity) {
+		offsets = new int[capacity + 1];
+		hashes = new int[capacity];
+		idf = new float[capacity];
+		table = new int[tableSize(capacity)];
+		Arrays.fill(table, EMPTY);
 	}
-	
+
+	/**
+	 * Parses the file in parallel chunks, @see IndexFiles#parseChunks , and assigns ids in file order.
+	 */
 	public static TermDocumentFrequencyIndex load(String path)  throws IOException {
-		TermDocumentFrequencyIndex map = new TermDocumentFrequencyIndex(INITIAL_SIZE * 4 / 3 + 1);
-		FileReader fileReader = new FileReader(path);
-		BufferedReader in = new BufferedReader(fileReader);
+		List<Chunk> chunks = IndexFiles.parseChunks(path, IndexFiles.PARSE_THREADS,
+				new IndexFiles.ChunkParser<Chunk>() {
+			@Override
+			public Chunk parse(BufferedReader in) throws IOException {
+				return parseChunk(in);
+			}
+		});
+		TermDocumentFrequencyIndex index = new TermDocumentFrequencyIndex(INITIAL_SIZE);
+		for (Chunk chunk: chunks) {
+			for (int i = 0; i < chunk.terms.size(); ++i) {
+				index.put(chunk.terms.get(i), chunk.frequencies[i]);
+			}
+		}
+		index.trim();
+		return index;
+	}
+
+	private static class Chunk {
+		List<String> terms = new ArrayList<String>();
+		int[] frequencies = new int[1024];
+	}
+
+	private static Chunk parseChunk(BufferedReader in) throws IOException {
+		Chunk chunk = new Chunk();
 		String line;
+		while ((line = in.readLine()) != null ) {
+			String[] elements = line.split("\t", 3);
+			if (chunk.terms.size() == chunk.frequencies.length) {
+				chunk.frequencies = Arrays.copyOf(chunk.frequencies, 2 * chunk.frequencies.length);
+			}
+			// Document frequencies are smoothed by one.
+			chunk.frequencies[chunk.terms.size()] = Integer.parseInt(elements[1].trim()) + 1;
+			chunk.terms.add(elements[0].trim());
+		}
+		return chunk;
+	}
 
-    while ((line = in.readLine()) != null ) {
-      String[] elements = line.split("\t", 3);
-      map.put(elements[0].trim(), Integer.parseInt(elements[1].trim()));
-    }
-    in.close();
-    fileReader.close();
-    return map;
-  }
-	
-	@Override
-	public Integer get(Object term) {
-		if (containsKey(term)) {
-			return super.get(term) + 1;
-		}
-		return 1;
-	}
-	
-	public double getIDF(Object term) {
-		int df = get(term);
+	private static double computeIDF(int df) {
 		if (df == WikiUtils.WIKIPEDIA_DF_SIZE) {
 			return 0.0;
 		}
 		return Math.log10((double) WikiUtils.WIKIPEDIA_DF_SIZE / df);
 	}
+
+	/**
+	 * Table size: power of two keeping the load factor under 0.75.
+	 */
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(Math.max(4 * capacity / 3 + 1, 2)) << 1;
+	}
+
+	private static int slot(int hash, int mask) {
+		// Spreads the bits of String.hashCode, as HashMap does.
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return hash & mask;
+	}
+
+	/**
+	 * If a term occurs more than once, the last one wins, as when loading into a map.
+	 */
+	private void put(String term, int df) {
+		int id = getTermId(term);
+		if (id != UNKNOWN_TERM) {
+			idf[id] = (float) computeIDF(df);
+			return;
+		}
+		if (size == hashes.length) {
+			grow();
+		}
+		byte[] bytes = term.getBytes(Charsets.UTF_8);
+		if (termsLength + bytes.length > terms.length) {
+			terms = Arrays.copyOf(terms, Math.max(2 * terms.length, termsLength + bytes.length));
+		}
+		System.arraycopy(bytes, 0, terms, termsLength, bytes.length);
+		termsLength += bytes.length;
+		hashes[size] = term.hashCode();
+		idf[size] = (float) computeIDF(df);
+		offsets[size + 1] = termsLength;
+		insert(size);
+		++size;
+	}
+
+	private void insert(int id) {
+		int mask = table.length - 1;
+		int slot = slot(hashes[id], mask);
+		while (table[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = id;
+	}
+
+	private void grow() {
+		int capacity = 2 * hashes.length;
+		offsets = Arrays.copyOf(offsets, capacity + 1);
+		hashes = Arrays.copyOf(hashes, capacity);
+		idf = Arrays.copyOf(idf, capacity);
+		table = new int[tableSize(capacity)];
+		Arrays.fill(table, EMPTY);
+		for (int id = 0; id < size; ++id) {
+			insert(id);
+		}
+	}
+
+	private void trim() {
+		terms = Arrays.copyOf(terms, termsLength);
+		offsets = Arrays.copyOf(offsets, size + 1);
+		hashes = Arrays.copyOf(hashes, size);
+		idf = Arrays.copyOf(idf, size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the term or UNKNOWN_TERM. The term is compared with the stored UTF-8 bytes
+	 * in place, without encoding it.
+	 */
+	public int getTermId(String term) {
+		int hash = term.hashCode();
+		int mask = table.length - 1;
+		for (int slot = slot(hash, mask); table[slot] != EMPTY; slot = (slot + 1) & mask) {
+			int id = table[slot];
+			if (hashes[id] == hash && equalTerm(id, term)) {
+				return id;
+			}
+		}
+		return UNKNOWN_TERM;
+	}
+
+	/**
+	 * Whether the bytes of the id are term.getBytes(UTF_8), which encodes an unpaired surrogate
+	 * as '?'.
+	 */
+	private boolean equalTerm(int id, String term) {
+		int position = offsets[id];
+		int end = offsets[id + 1];
+		for (int i = 0; i < term.length(); ++i) {
+			int ch = term.charAt(i);
+			if (ch < 0x80) {
+				if (position == end || terms[position++] != ch) {
+					return false;
+				}
+				continue;
+			}
+			if (Character.isHighSurrogate((char) ch) && i + 1 < term.length() &&
+					Character.isLowSurrogate(term.charAt(i + 1))) {
+				ch = Character.toCodePoint((char) ch, term.charAt(++i));
+			} else if (Character.isSurrogate((char) ch)) {
+				if (position == end || terms[position++] != '?') {
+					return false;
+				}
+				continue;
+			}
+			int continuations = ch < 0x800 ? 1 : (ch < 0x10000 ? 2 : 3);
+			if (end - position < continuations + 1) {
+				return false;
+			}
+			// Lead byte: continuations + 1 high bits set, then the top bits of the code point.
+			int lead = (0xf00 >> (continuations + 1)) & 0xff | (ch >> (6 * continuations));
+			if (terms[position++] != (byte) lead) {
+				return false;
+			}
+			for (int shift = 6 * (continuations - 1); shift >= 0; shift -= 6) {
+				if (terms[position++] != (byte) (0x80 | ((ch >> shift) & 0x3f))) {
+					return false;
+				}
+			}
+		}
+		return position == end;
+	}
+
+	public String getTerm(int termId) {
+		return new String(terms, offsets[termId], offsets[termId + 1] - offsets[termId],
+				Charsets.UTF_8);
+	}
+
+	/**
+	 * Idf of the term id, or of an unknown term for UNKNOWN_TERM.
+	 */
+	public float getIDF(int termId) {
+		return termId == UNKNOWN_TERM ? unknownIDF : idf[termId];
+	}
+
+	public double getIDF(String term) {
+		return getIDF(getTermId(term));
+	}
 }
@@ -0,0 +1,160 @@
+package index;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Maps Wikipedia page titles to integer ids and back.
+ * Titles are kept sorted and front coded (@see FrontCodedTitles ). Title to id binary searches the
+ * titles; id to title is an array lookup of the position followed by decoding one block.
+ * The file loaded should be produced by @see knowledgebase.WikiArticleTitlesIndexBuilder (title \t
+ * id) or be a binary snapshot written by @see #save .
+ */
+public class TitleDictionary {
+	public static final String SEPARATOR = "\t";
+	public static final int SNAPSHOT_MAGIC = 0x54444331;
+	public static final int SNAPSHOT_VERSION = 1;
+	private static final int INITIAL_SIZE = 4399390;
+
+	// Wikipedia titles not found in the index are disambiguation/list/category pages.
+	public static final int NOT_CANONICAL_TITLE = -1;
+
+	private final FrontCodedTitles titles;
+	// Position of every id in the sorted titles, NOT_CANONICAL_TITLE if the id is not a title.
+	private final int[] positions;
+
+	private TitleDictionary(FrontCodedTitles titles) {
+		this.titles = titles;
+		int maxId = -1;
+		for (int position = 0; position < titles.size(); ++position) {
+			maxId = Math.max(maxId, titles.getValue(position));
+		}
+		positions = new int[maxId + 1];
+		Arrays.fill(positions, NOT_CANONICAL_TITLE);
+		for (int position = 0; position < titles.size(); ++position) {
+			positions[titles.getValue(position)] = position;
+		}
+	}
+
+	/**
+	 * Loads either the text file or a binary snapshot.
+	 */
+	public static TitleDictionary load(String path) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(path));
+		int magic;
+		try {
+			magic = in.readInt();
+		} catch (IOException e) {
+			magic = 0;
+		} finally {
+			in.close();
+		}
+		return magic == SNAPSHOT_MAGIC ? loadSnapshot(path) : loadText(path);
+	}
+
+	/**
+	 * If a title occurs more than once, the last line wins, as when loading into a map.
+	 */
+	private static TitleDictionary loadText(String path) throws IOException {
+		List<byte[]> titles = new ArrayList<byte[]>(INITIAL_SIZE);
+		int[] ids = new int[INITIAL_SIZE];
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] elements = line.split(SEPARATOR, 3);
+			if (titles.size() == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * ids.length);
+			}
+			ids[titles.size()] = Integer.parseInt(elements[1]);
+			titles.add(elements[0].trim().getBytes(Charsets.UTF_8));
+		}
+		in.close();
+		return new TitleDictionary(FrontCodedTitles.build(titles, ids, titles.size()));
+	}
+
+	private static TitleDictionary loadSnapshot(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(IndexFiles.BUFFER_SIZE);
+			buffer.limit(8);
+			IndexFiles.readFully(channel, buffer);
+			buffer.flip();
+			buffer.getInt();
+			int version = buffer.getInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported title dictionary snapshot version: " + version);
+			}
+			return new TitleDictionary(FrontCodedTitles.read(channel, buffer));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes a binary snapshot: magic, version, front coded titles with their ids.
+	 */
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), IndexFiles.BUFFER_SIZE));
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(SNAPSHOT_VERSION);
+		titles.write(out);
+		out.close();
+	}
+
+	public int size() {
+		return titles.size();
+	}
+
+	public int getTitleId(String title) {
+		int position = titles.find(title);
+		return position != FrontCodedTitles.NOT_FOUND ? titles.getValue(position) : NOT_CANONICAL_TITLE;
+	}
+
+	public boolean containsTitle(String title) {
+		return titles.find(title) != FrontCodedTitles.NOT_FOUND;
+	}
+
+	/**
+	 * Returns the title of the id or null if the id is not a title.
+	 */
+	public String get(int id) {
+		if (!containsId(id)) {
+			return null;
+		}
+		return titles.getTitle(positions[id]);
+	}
+
+	public boolean containsId(int id) {
+		return id >= 0 && id < positions.length && positions[id] != NOT_CANONICAL_TITLE;
+	}
+
+	/**
+	 * Title at the position in title order, for 0 <= position < size().
+	 */
+	public String getTitleAt(int position) {
+		return titles.getTitle(position);
+	}
+
+	/**
+	 * Id at the position in title order, for 0 <= position < size().
+	 */
+	public int getIdAt(int position) {
+		return titles.getValue(position);
+	}
+}
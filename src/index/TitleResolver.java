@@ -0,0 +1,155 @@
+package index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Maps any Wikipedia title, canonical or redirect, to the id of its canonical page. Redirect chains
+ * are followed when the resolver is built, so a lookup is one search in the front coded titles
+ * (@see FrontCodedTitles ), stored as the id for canonical titles and as ~id for redirects.
+ * A title that is both canonical and a redirect resolves through the redirect, as the titles index
+ * lookup of @see RedirectPagesIndex#getCanonicalURL did; such titles are kept apart with their
+ * resolved id, so @see #getTitleId still finds them. Redirect chains that end in a non canonical
+ * title, loop or are longer than MAX_REDIRECT_HOPS are dropped.
+ * The file loaded should be produced by @see knowledgebase.TitleResolverBuilder .
+ */
+public class TitleResolver {
+	public static final int MAGIC = 0x54525331;
+	public static final int VERSION = 2;
+	public static final int MAX_REDIRECT_HOPS = 16;
+
+	public static final int NOT_CANONICAL_TITLE = TitleDictionary.NOT_CANONICAL_TITLE;
+
+	private final FrontCodedTitles titles;
+	// Canonical titles that are also redirects, with the id they resolve to or NOT_CANONICAL_TITLE.
+	private final FrontCodedTitles redirectedTitles;
+
+	private TitleResolver(FrontCodedTitles titles, FrontCodedTitles redirectedTitles) {
+		this.titles = titles;
+		this.redirectedTitles = redirectedTitles;
+	}
+
+	/**
+	 * Resolver for the titles and redirect files, with the titles in either format of
+	 * @see TitleDictionary#load .
+	 */
+	public static TitleResolver build(String titlesPath, String redirectPath) throws IOException {
+		return build(TitleDictionary.load(titlesPath), RedirectPagesIndex.load(redirectPath));
+	}
+
+	/**
+	 * @param redirects maps redirect titles to their targets, e.g. @see RedirectPagesIndex
+	 */
+	public static TitleResolver build(TitleDictionary dictionary, Map<String, String> redirects)
+			throws IOException {
+		int size = dictionary.size() + redirects.size();
+		List<byte[]> names = new ArrayList<byte[]>(size);
+		int[] values = new int[size];
+		List<byte[]> redirectedNames = new ArrayList<byte[]>();
+		int[] redirectedValues = new int[redirects.size()];
+		for (int position = 0; position < dictionary.size(); ++position) {
+			values[names.size()] = dictionary.getIdAt(position);
+			names.add(dictionary.getTitleAt(position).getBytes(Charsets.UTF_8));
+		}
+		for (Map.Entry<String, String> redirect: redirects.entrySet()) {
+			String target = redirect.getValue();
+			for (int hops = 1; hops < MAX_REDIRECT_HOPS && !dictionary.containsTitle(target) &&
+					redirects.containsKey(target); ++hops) {
+				target = redirects.get(target);
+			}
+			int id = dictionary.getTitleId(target);
+			if (dictionary.containsTitle(redirect.getKey())) {
+				redirectedValues[redirectedNames.size()] = id;
+				redirectedNames.add(redirect.getKey().getBytes(Charsets.UTF_8));
+			} else if (id != NOT_CANONICAL_TITLE) {
+				values[names.size()] = ~id;
+				names.add(redirect.getKey().getBytes(Charsets.UTF_8));
+			}
+		}
+		return new TitleResolver(FrontCodedTitles.build(names, values, names.size()),
+				FrontCodedTitles.build(redirectedNames, redirectedValues, redirectedNames.size()));
+	}
+
+	public static TitleResolver load(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(IndexFiles.BUFFER_SIZE);
+			buffer.limit(8);
+			IndexFiles.readFully(channel, buffer);
+			buffer.flip();
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a title resolver file: " + path);
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported title resolver version: " + version);
+			}
+			FrontCodedTitles titles = FrontCodedTitles.read(channel, buffer);
+			return new TitleResolver(titles, FrontCodedTitles.read(channel, buffer));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writes: magic, version, front coded titles with their values, then the canonical titles that
+	 * are also redirects with their resolved ids.
+	 */
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), IndexFiles.BUFFER_SIZE));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		titles.write(out);
+		redirectedTitles.write(out);
+		out.close();
+	}
+
+	/**
+	 * Number of canonical and redirect titles.
+	 */
+	public int size() {
+		return titles.size();
+	}
+
+	/**
+	 * Id of the canonical page the title redirects to, or of the title itself if it is canonical
+	 * and not a redirect. Equivalent to looking up the canonical URL of the title in the titles
+	 * index, with all redirect hops followed.
+	 */
+	public int resolve(String title) {
+		int position = redirectedTitles.find(title);
+		if (position != FrontCodedTitles.NOT_FOUND) {
+			return redirectedTitles.getValue(position);
+		}
+		position = titles.find(title);
+		if (position == FrontCodedTitles.NOT_FOUND) {
+			return NOT_CANONICAL_TITLE;
+		}
+		int value = titles.getValue(position);
+		return value >= 0 ? value : ~value;
+	}
+
+	/**
+	 * Id of the title if it is canonical, without following redirects.
+	 */
+	public int getTitleId(String title) {
+		int position = titles.find(title);
+		if (position == FrontCodedTitles.NOT_FOUND) {
+			return NOT_CANONICAL_TITLE;
+		}
+		int value = titles.getValue(position);
+		return value >= 0 ? value : NOT_CANONICAL_TITLE;
+	}
+}
@@ -0,0 +1,290 @@
+package index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Set of the token sequence prefixes of a dictionary of mentions, stored as a trie over token ids,
+ * and the maximum length of a mention in tokens. Lets the ngram loops stop extending an ngram as
+ * soon as no mention starts with it, see @see md.MentionSpotter and
+ * @see knowledgebase.KeyphrasenessIndexBuilder .
+ * Edges are kept in one open addressing table keyed by (node, token id), token ids in one keyed by
+ * the String.hashCode of the token, terminal nodes in a bit set.
+ *
+ * File layout (big endian):
+ * 	header: magic, version, tokens, nodes, edges, maximum length
+ * 	tokens as modified UTF-8, (edge key, child node) per edge, long[] terminal bits.
+ */
+public class TokenPrefixSet {
+	public static final int MAGIC = 0x54505331;
+	public static final int VERSION = 1;
+	public static final int ROOT = 0;
+	public static final int NONE = -1;
+
+	private int tokenCount = 0;
+	private String[] tokens = new String[1 << 10];
+	private int[] tokenTable = new int[1 << 11];
+	private int nodes = 1;
+	private long[] terminal = new long[1];
+	private long[] edgeKeys = new long[1 << 10];
+	private int[] edgeTargets = new int[1 << 10];
+	private int edges = 0;
+	private int maxLength = 0;
+
+	private TokenPrefixSet() {
+		Arrays.fill(edgeKeys, -1L);
+		Arrays.fill(tokenTable, NONE);
+	}
+
+	/**
+	 * @param keys normalized mentions, tokens separated by single spaces
+	 */
+	public TokenPrefixSet(Iterable<?> keys) {
+		this();
+		for (Object key: keys) {
+			add(key.toString());
+		}
+	}
+
+	private void add(String key) {
+		String[] keyTokens = key.split(" ", -1);
+		for (String token: keyTokens) {
+			// Ngrams never have empty tokens.
+			if (token.isEmpty()) {
+				return;
+			}
+		}
+		int node = ROOT;
+		for (String token: keyTokens) {
+			int tokenId = addToken(token);
+			int child = getChild(node, tokenId);
+			if (child == NONE) {
+				child = addChild(node, tokenId);
+			}
+			node = child;
+		}
+		terminal[node >>> 6] |= 1L << node;
+		maxLength = Math.max(maxLength, keyTokens.length);
+	}
+
+	private int addToken(String token) {
+		int tokenId = getTokenId(token);
+		if (tokenId != NONE) {
+			return tokenId;
+		}
+		if (2 * (tokenCount + 1) > tokenTable.length) {
+			tokenTable = new int[2 * tokenTable.length];
+			Arrays.fill(tokenTable, NONE);
+			for (int i = 0; i < tokenCount; ++i) {
+				insertToken(i);
+			}
+		}
+		tokenId = tokenCount++;
+		if (tokenId == tokens.length) {
+			tokens = Arrays.copyOf(tokens, 2 * tokens.length);
+		}
+		tokens[tokenId] = token;
+		insertToken(tokenId);
+		return tokenId;
+	}
+
+	private int tokenSlot(int hash) {
+		return (int) ((hash * 0x9e3779b97f4a7c15L) >>> 32) & (tokenTable.length - 1);
+	}
+
+	private void insertToken(int tokenId) {
+		int i = tokenSlot(tokens[tokenId].hashCode());
+		while (tokenTable[i] != NONE) {
+			i = (i + 1) & (tokenTable.length - 1);
+		}
+		tokenTable[i] = tokenId;
+	}
+
+	private static long edgeKey(int node, int tokenId) {
+		return ((long) node << 32) | tokenId;
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9e3779b97f4a7c15L;
+		return (int) (hash >>> 32) & (edgeKeys.length - 1);
+	}
+
+	private int addChild(int node, int tokenId) {
+		if (2 * (edges + 1) > edgeKeys.length) {
+			long[] oldKeys = edgeKeys;
+			int[] oldTargets = edgeTargets;
+			edgeKeys = new long[2 * oldKeys.length];
+			edgeTargets = new int[2 * oldKeys.length];
+			Arrays.fill(edgeKeys, -1L);
+			for (int i = 0; i < oldKeys.length; ++i) {
+				if (oldKeys[i] != -1L) {
+					insert(oldKeys[i], oldTargets[i]);
+				}
+			}
+		}
+		int child = nodes++;
+		if (child >>> 6 >= terminal.length) {
+			terminal = Arrays.copyOf(terminal, 2 * terminal.length);
+		}
+		insert(edgeKey(node, tokenId), child);
+		++edges;
+		return child;
+	}
+
+	private void insert(long key, int target) {
+		int i = slot(key);
+		while (edgeKeys[i] != -1L) {
+			i = (i + 1) & (edgeKeys.length - 1);
+		}
+		edgeKeys[i] = key;
+		edgeTargets[i] = target;
+	}
+
+	/**
+	 * Id of the token, or NONE if no mention contains it.
+	 */
+	public int getTokenId(String token) {
+		for (int i = tokenSlot(token.hashCode()); ; i = (i + 1) & (tokenTable.length - 1)) {
+			int tokenId = tokenTable[i];
+			if (tokenId == NONE || tokens[tokenId].equals(token)) {
+				return tokenId;
+			}
+		}
+	}
+
+	/**
+	 * Id of the characters [start, end) of the text lower-cased one by one, or NONE if no mention
+	 * contains them, without building a string. Hash is the String.hashCode of the lower-cased
+	 * characters.
+	 */
+	public int getTokenId(CharSequence text, int start, int end, int hash) {
+		for (int i = tokenSlot(hash); ; i = (i + 1) & (tokenTable.length - 1)) {
+			int tokenId = tokenTable[i];
+			if (tokenId == NONE || equalsLowerCase(tokens[tokenId], text, start, end)) {
+				return tokenId;
+			}
+		}
+	}
+
+	private static boolean equalsLowerCase(String token, CharSequence text, int start, int end) {
+		if (token.length() != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; ++i) {
+			if (token.charAt(i - start) != Character.toLowerCase(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Node of the prefix extended with the token, or NONE if no mention starts with it. NONE is
+	 * accepted for both arguments, so a dead prefix stays dead.
+	 */
+	public int getChild(int node, int tokenId) {
+		if (node == NONE || tokenId == NONE) {
+			return NONE;
+		}
+		long key = edgeKey(node, tokenId);
+		for (int i = slot(key); ; i = (i + 1) & (edgeKeys.length - 1)) {
+			if (edgeKeys[i] == key) {
+				return edgeTargets[i];
+			}
+			if (edgeKeys[i] == -1L) {
+				return NONE;
+			}
+		}
+	}
+
+	/**
+	 * Whether the prefix of the node is a mention.
+	 */
+	public boolean isTerminal(int node) {
+		return node != NONE && (terminal[node >>> 6] & (1L << node)) != 0;
+	}
+
+	/**
+	 * Maximum length of a mention in tokens.
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Number of prefixes, the empty one included.
+	 */
+	public int size() {
+		return nodes;
+	}
+
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), 1 << 20));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(tokenCount);
+		out.writeInt(nodes);
+		out.writeInt(edges);
+		out.writeInt(maxLength);
+		for (int tokenId = 0; tokenId < tokenCount; ++tokenId) {
+			out.writeUTF(tokens[tokenId]);
+		}
+		for (int i = 0; i < edgeKeys.length; ++i) {
+			if (edgeKeys[i] != -1L) {
+				out.writeLong(edgeKeys[i]);
+				out.writeInt(edgeTargets[i]);
+			}
+		}
+		for (int i = 0; i < (nodes + 63) >>> 6; ++i) {
+			out.writeLong(terminal[i]);
+		}
+		out.close();
+	}
+
+	public static TokenPrefixSet load(String path) throws IOException {
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(path), 1 << 20));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a token prefix set file: " + path);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported token prefix set version: " + version);
+			}
+			TokenPrefixSet prefixes = new TokenPrefixSet();
+			int tokenCount = in.readInt();
+			prefixes.nodes = in.readInt();
+			prefixes.edges = in.readInt();
+			prefixes.maxLength = in.readInt();
+			for (int tokenId = 0; tokenId < tokenCount; ++tokenId) {
+				prefixes.addToken(in.readUTF());
+			}
+			int capacity = prefixes.edgeKeys.length;
+			while (2 * prefixes.edges > capacity) {
+				capacity *= 2;
+			}
+			prefixes.edgeKeys = new long[capacity];
+			prefixes.edgeTargets = new int[capacity];
+			Arrays.fill(prefixes.edgeKeys, -1L);
+			for (int i = 0; i < prefixes.edges; ++i) {
+				long key = in.readLong();
+				prefixes.insert(key, in.readInt());
+			}
+			prefixes.terminal = new long[Math.max(1, (prefixes.nodes + 63) >>> 6)];
+			for (int i = 0; i < (prefixes.nodes + 63) >>> 6; ++i) {
+				prefixes.terminal[i] = in.readLong();
+			}
+			return prefixes;
+		} finally {
+			in.close();
+		}
+	}
+}
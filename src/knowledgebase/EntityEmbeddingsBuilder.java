@@ -0,0 +1,72 @@
+package knowledgebase;
+
+import index.MappedEntityEmbeddings;
+import index.MappedEntityTFIDFStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import data.HashedProjection;
+
+/**
+ * Projects every entity tf-idf vector of a @see index.MappedEntityTFIDFStore to a dense unit
+ * length embedding and writes them as the single matrix file loaded by
+ * @see index.MappedEntityEmbeddings . The store is built by @see MappedEntityTFIDFStoreBuilder .
+ */
+public class EntityEmbeddingsBuilder {
+	public static void main(String args[]) throws IOException {
+		int dimensions = HashedProjection.DEFAULT_DIMENSIONS;
+		int hashes = HashedProjection.DEFAULT_HASHES;
+		long seed = HashedProjection.DEFAULT_SEED;
+		int first = 0;
+		for (; first + 1 < args.length && args[first].startsWith("-"); first += 2) {
+			if (args[first].equals("-dimensions")) {
+				dimensions = Integer.parseInt(args[first + 1]);
+			} else if (args[first].equals("-hashes")) {
+				hashes = Integer.parseInt(args[first + 1]);
+			} else if (args[first].equals("-seed")) {
+				seed = Long.parseLong(args[first + 1]);
+			} else {
+				break;
+			}
+		}
+		if (args.length - first != 2) {
+			System.out.println("Usage: java EntityEmbeddingsBuilder [-dimensions <count>] " +
+					"[-hashes <count>] [-seed <seed>] <mapped-tf-idf-store> <output-filename>");
+			return;
+		}
+		build(MappedEntityTFIDFStore.load(args[first]),
+				new HashedProjection(dimensions, hashes, seed), args[first + 1]);
+	}
+
+	public static void build(MappedEntityTFIDFStore store, HashedProjection projection,
+			String output) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(output), 1 << 20));
+		out.writeInt(MappedEntityEmbeddings.MAGIC);
+		out.writeInt(MappedEntityEmbeddings.VERSION);
+		out.writeInt(store.size());
+		out.writeInt(projection.getDimensions());
+		out.writeInt(projection.getHashes());
+		out.writeInt(0);
+		out.writeLong(projection.getSeed());
+		for (int entityId = 0; entityId < store.size(); ++entityId) {
+			out.writeInt(store.getDocno(entityId));
+		}
+		float[] embedding = new float[projection.getDimensions()];
+		for (int entityId = 0; entityId < store.size(); ++entityId) {
+			projection.project(store.getVectorAt(entityId), embedding);
+			for (float value: embedding) {
+				out.writeFloat(value);
+			}
+			if (entityId > 0 && entityId % 1000000 == 0) {
+				System.out.println("Projected " + entityId + " vectors.");
+			}
+		}
+		out.close();
+		System.out.println("Wrote " + store.size() + " embeddings of " +
+				projection.getDimensions() + " dimensions to " + output);
+	}
+}
@@ -0,0 +1,33 @@
+package knowledgebase;
+
+import index.EntityLinksFrequencyIndex;
+import index.EntityLinksIndex;
+
+import java.io.IOException;
+
+/**
+ * Converts the entity links text file into the binary snapshot loaded by @see index.EntityLinksIndex .
+ * With -frequencies, converts the output of @see EntityLinksIndexBuilder into the binary snapshot
+ * loaded by @see index.EntityLinksFrequencyIndex .
+ */
+public class EntityLinksSnapshotBuilder {
+	public static void main(String args[]) throws IOException {
+		boolean frequencies = args.length > 0 && args[0].equals("-frequencies");
+		int first = frequencies ? 1 : 0;
+		if (args.length < first + 2) {
+			System.out.println("Usage: java EntityLinksSnapshotBuilder [-frequencies] "
+					+ "<entity-links-filename> <output-filename>");
+			return;
+		}
+		if (frequencies) {
+			EntityLinksFrequencyIndex index = EntityLinksFrequencyIndex.load(args[first]);
+			System.out.println("Read " + index.size() + " entities.");
+			index.save(args[first + 1]);
+		} else {
+			EntityLinksIndex index = EntityLinksIndex.load(args[first]);
+			System.out.println("Read " + index.size() + " entities.");
+			index.save(args[first + 1]);
+		}
+		System.out.println("Wrote " + args[first + 1]);
+	}
+}
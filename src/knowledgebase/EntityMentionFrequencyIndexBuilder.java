@@ -1,7 +1,6 @@
 package knowledgebase;
 
-import index.RedirectPagesIndex;
-import index.TitlesIndex;
+import index.TitleResolver;
 
 import java.io.IOException;
 import java.net.URI;
@@ -91,17 +90,17 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 			implements Mapper<IntWritable, WikipediaPage, Text, IntWritable> {
 		private static final Text outputKey = new Text();
 		private static final IntWritable outputValue = new IntWritable();
-		private static RedirectPagesIndex redirectIndex;
-		private static TitlesIndex titlesIndex;
+		private static TitleResolver resolver;
 
 		@Override
 		public void configure(JobConf job) {
 			BasicConfigurator.configure();
-			String redirectIndexPath = job.get(REDIRECT_SYMLINK);
-      String titlesIndexPath = job.get(TITLES_SYMLINK);
 			try {
-				redirectIndex = RedirectPagesIndex.load(redirectIndexPath);
-  		  titlesIndex = TitlesIndex.load(titlesIndexPath);
+				if (job.get(RESOLVER_SYMLINK) != null) {
+					resolver = TitleResolver.load(job.get(RESOLVER_SYMLINK));
+				} else {
+					resolver = TitleResolver.build(job.get(TITLES_SYMLINK), job.get(REDIRECT_SYMLINK));
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -122,10 +121,9 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 			for (Link link : page.extractLinks()) {	
 				String normalizedAnchorText = Normalizer.processAnchorText(link.getAnchorText());
 				String normalizedTarget = Normalizer.processTargetLink(link.getTarget());
-				String canonicalTarget = redirectIndex.getCanonicalURL(normalizedTarget);
-  			int targetEntityId = titlesIndex.getTitleId(canonicalTarget);
+  			int targetEntityId = resolver.resolve(normalizedTarget);
   			
-  			if (targetEntityId != TitlesIndex.NOT_CANONICAL_TITLE && 
+  			if (targetEntityId != TitleResolver.NOT_CANONICAL_TITLE && 
   					StringUtils.isNotBlank(normalizedAnchorText)) {					
   				outputKey.set(normalizedAnchorText);
   				outputValue.set(targetEntityId);
@@ -174,6 +172,8 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 	// Obtained using edu.cmu.lti.wikipedia_redirect.WikipediaRedirectExtractor .
 	// See https://code.google.com/p/wikipedia-redirect/ .
 	private static final String REDIRECT_MAPPING_OPTION = "redirect_map";
+	// Built by TitleResolverBuilder, replaces the titles index and redirect mapping if given.
+	private static final String RESOLVER_OPTION = "resolver";
 	
 	private static final int DEFAULT_NUM_REDUCERS = 1;
 	private static final String DEFAULT_TITLES_INDEX_FILE = "/enwiki-titles.txt";
@@ -181,6 +181,7 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 	
 	private static final String TITLES_SYMLINK = "titles_file";
 	private static final String REDIRECT_SYMLINK = "redirect_file";
+	private static final String RESOLVER_SYMLINK = "resolver_file";
 	
 	static final String MENTION_INDEX = "mention";
 	static final String ENTITY_ENTITY_INDEX = "to";
@@ -199,6 +200,8 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 				.hasArg().withDescription("titles index").create(TITLES_INDEX_OPTION));
 		options.addOption(OptionBuilder.withArgName("path")
 				.hasArg().withDescription("redirect mapping").create(REDIRECT_MAPPING_OPTION));
+		options.addOption(OptionBuilder.withArgName("path")
+				.hasArg().withDescription("title resolver").create(RESOLVER_OPTION));
 
 		CommandLine cmdline;
 		CommandLineParser parser = new GnuParser();
@@ -226,20 +229,32 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 				cmdline.getOptionValue(OUTPUT_OPTION, defaultOutput), 
 				cmdline.getOptionValue(TITLES_INDEX_OPTION, DEFAULT_TITLES_INDEX_FILE),
 				cmdline.getOptionValue(REDIRECT_MAPPING_OPTION, DEFAULT_REDIRECT_FILE),
+				cmdline.getOptionValue(RESOLVER_OPTION),
 				num_reducers
 		);
 
 		return 0;
 	}
 	
-	@SuppressWarnings("deprecation")
 	public void task1(Configuration config, String inputPath, String outputPath, String titlesPath,
 			String redirectMapPath, int num_reducers) throws IOException, URISyntaxException {
+		task1(config, inputPath, outputPath, titlesPath, redirectMapPath, null, num_reducers);
+	}
+
+	/**
+	 * @param resolverPath title resolver used instead of the titles index and redirect mapping, or
+	 * null to build it in every mapper.
+	 */
+	@SuppressWarnings("deprecation")
+	public void task1(Configuration config, String inputPath, String outputPath, String titlesPath,
+			String redirectMapPath, String resolverPath, int num_reducers)
+					throws IOException, URISyntaxException {
 		LOG.info("Extracting mention-entity & entity-entity mapping...");
 		LOG.info(" - input: " + inputPath);
 		LOG.info(" - output: " + outputPath);
 		LOG.info(" - titles index: " + titlesPath);
 		LOG.info(" - redirect mapping file: " + redirectMapPath);
+		LOG.info(" - title resolver: " + resolverPath);
 		LOG.info(" - number of reducers: " + num_reducers);
 
 		JobConf conf = new JobConf(config, EntityMentionFrequencyIndexBuilder.class);
@@ -275,10 +290,15 @@ public class EntityMentionFrequencyIndexBuilder extends Configured implements To
 		FileSystem.get(conf).delete(new Path(outputPath), true);
 		
 		DistributedCache.createSymlink(conf);
-		DistributedCache.addCacheFile(new URI(redirectMapPath + "#" + REDIRECT_SYMLINK), conf);
-	  DistributedCache.addCacheFile(new URI(titlesPath + "#" + TITLES_SYMLINK), conf);
-		conf.set(TITLES_SYMLINK, TITLES_SYMLINK);
-		conf.set(REDIRECT_SYMLINK, REDIRECT_SYMLINK);
+		if (resolverPath != null) {
+			DistributedCache.addCacheFile(new URI(resolverPath + "#" + RESOLVER_SYMLINK), conf);
+			conf.set(RESOLVER_SYMLINK, RESOLVER_SYMLINK);
+		} else {
+			DistributedCache.addCacheFile(new URI(redirectMapPath + "#" + REDIRECT_SYMLINK), conf);
+			DistributedCache.addCacheFile(new URI(titlesPath + "#" + TITLES_SYMLINK), conf);
+			conf.set(TITLES_SYMLINK, TITLES_SYMLINK);
+			conf.set(REDIRECT_SYMLINK, REDIRECT_SYMLINK);
+		}
 		
 		JobClient.runJob(conf);
 	}
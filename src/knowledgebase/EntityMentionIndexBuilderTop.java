@@ -3,7 +3,7 @@ package knowledgebase;
 import index.EntityLinksIndex;
 import index.MentionIndex;
 import index.RedirectPagesIndex;
-import index.TitlesIndex;
+import index.TitleDictionary;
 
 import java.io.IOException;
 import java.net.URI;
@@ -102,7 +102,7 @@ public class EntityMentionIndexBuilderTop extends Configured implements Tool {
 		private static final PairOfIntString outputKey = new PairOfIntString();
 		private static final IntWritable outputValue = new IntWritable();
 		private static RedirectPagesIndex redirectIndex;
-		private static TitlesIndex titlesIndex;
+		private static TitleDictionary titlesIndex;
 
 		@Override
 		public void configure(JobConf job) {
@@ -111,7 +111,7 @@ public class EntityMentionIndexBuilderTop extends Configured implements Tool {
       String titlesIndexPath = job.get(TITLES_SYMLINK);
 			try {
 				redirectIndex = RedirectPagesIndex.load(redirectIndexPath);
-  		  titlesIndex = TitlesIndex.load(titlesIndexPath);
+  		  titlesIndex = TitleDictionary.load(titlesIndexPath);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -138,14 +138,14 @@ public class EntityMentionIndexBuilderTop extends Configured implements Tool {
 				String canonicalTarget = redirectIndex.getCanonicalURL(normalizedTarget);
   			int toId = titlesIndex.getTitleId(canonicalTarget);
 
-				if (toId != TitlesIndex.NOT_CANONICAL_TITLE && 
+				if (toId != TitleDictionary.NOT_CANONICAL_TITLE && 
 						StringUtils.isNotBlank(normalizedAnchorText)) {
 					outputKey.set(1, normalizedAnchorText);
 					outputValue.set(toId);
 					output.collect(outputKey, outputValue);
 				}
 
-				if (toId != TitlesIndex.NOT_CANONICAL_TITLE && fromId != TitlesIndex.NOT_CANONICAL_TITLE) {
+				if (toId != TitleDictionary.NOT_CANONICAL_TITLE && fromId != TitleDictionary.NOT_CANONICAL_TITLE) {
 					outputKey.set(2, String.valueOf(toId));
 					outputValue.set(fromId);
 					output.collect(outputKey, outputValue);
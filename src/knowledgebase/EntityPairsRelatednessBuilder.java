@@ -0,0 +1,328 @@
+package knowledgebase;
+
+import index.EntityLinksIndex;
+import index.MappedEntityPairsIndex;
+import index.MappedMentionIndex;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import normalizer.Normalizer;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage.Link;
+import edu.umd.cloud9.io.pair.PairOfInts;
+
+/**
+ * Precomputes semantic relatedness and cocitation for entity pairs that are candidates of different
+ * anchor texts of the same Wikipedia article in at least min_support articles.
+ * Output format: entity1 \t entity2 \t support \t relatedness \t cocitation, with entity1 < entity2.
+ * The output can be converted by @see MappedEntityPairsIndexBuilder into the file loaded by
+ * @see index.MappedEntityPairsIndex .
+ */
+public class EntityPairsRelatednessBuilder extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(EntityPairsRelatednessBuilder.class);
+
+	public static final String SEPARATOR = "\t";
+
+	private static enum Counters {
+		PAGES_TOTAL, PAIRS_KEPT
+	};
+
+	private static final String INPUT_OPTION = "input";
+	private static final String OUTPUT_OPTION = "output";
+	private static final String NUM_REDUCERS_OPTION = "num_reducers";
+	private static final String MENTION_INDEX_OPTION = "mention_index";
+	private static final String ENTITY_LINKS_INDEX_OPTION = "entity_links";
+	private static final String MIN_SUPPORT_OPTION = "min_support";
+	private static final String MAX_CANDIDATES_OPTION = "max_candidates";
+
+	private static final int DEFAULT_NUM_REDUCERS = 10;
+	private static final int DEFAULT_MIN_SUPPORT = 5;
+	private static final int DEFAULT_MAX_CANDIDATES = 10;
+	private static final String DEFAULT_MENTION_INDEX = "/mention-index.bin";
+	private static final String DEFAULT_ENTITY_LINKS_INDEX = "/entity-links.bin";
+
+	static final String MENTION_INDEX_SYMLINK = "mention_index";
+	static final String ENTITY_LINKS_INDEX_SYMLINK = "entity_links";
+	static final String MIN_SUPPORT = "min_support";
+	static final String MAX_CANDIDATES = "max_candidates";
+
+	public static class Map extends MapReduceBase implements
+			Mapper<IntWritable, WikipediaPage, PairOfInts, IntWritable> {
+		private static final PairOfInts outputKey = new PairOfInts();
+		private static final IntWritable outputValue = new IntWritable(1);
+		private static MappedMentionIndex mentionIndex;
+		private static int maxCandidates;
+
+		@Override
+		public void configure(JobConf job) {
+			maxCandidates = job.getInt(MAX_CANDIDATES, DEFAULT_MAX_CANDIDATES);
+			try {
+				mentionIndex = MappedMentionIndex.load(job.get(MENTION_INDEX_SYMLINK));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Emits: key = (entity1, entity2) with entity1 < entity2, value = 1, once per article.
+		 */
+		@Override
+		public void map(IntWritable key, WikipediaPage page,
+				OutputCollector<PairOfInts, IntWritable> output, Reporter reporter) throws IOException {
+			if (!page.isArticle()) {
+				return;
+			}
+			reporter.incrCounter(Counters.PAGES_TOTAL, 1);
+
+			Set<String> anchorTexts = new HashSet<String>();
+			for (Link link: page.extractLinks()) {
+				anchorTexts.add(Normalizer.processAnchorText(link.getAnchorText()));
+			}
+			List<Integer[]> candidates = new ArrayList<Integer[]>();
+			for (String anchorText: anchorTexts) {
+				if (mentionIndex.containsKey(anchorText)) {
+					candidates.add(mentionIndex.getCandidateEntities(anchorText));
+				}
+			}
+
+			Set<Long> pairs = new HashSet<Long>();
+			for (int i = 0; i < candidates.size(); ++i) {
+				Integer[] candidates1 = candidates.get(i);
+				for (int j = i + 1; j < candidates.size(); ++j) {
+					Integer[] candidates2 = candidates.get(j);
+					for (int k = 0; k < candidates1.length && k < maxCandidates; ++k) {
+						for (int l = 0; l < candidates2.length && l < maxCandidates; ++l) {
+							int entity1 = candidates1[k];
+							int entity2 = candidates2[l];
+							if (entity1 != entity2) {
+								pairs.add(MappedEntityPairsIndex.key(entity1, entity2));
+							}
+						}
+					}
+				}
+			}
+
+			for (long pair: pairs) {
+				outputKey.set((int) (pair >>> 32), (int) pair);
+				output.collect(outputKey, outputValue);
+			}
+		}
+	}
+
+	public static class Combine extends MapReduceBase
+			implements Reducer<PairOfInts, IntWritable, PairOfInts, IntWritable> {
+		private static final IntWritable outputValue = new IntWritable();
+
+		@Override
+		public void reduce(PairOfInts key, Iterator<IntWritable> values,
+				OutputCollector<PairOfInts, IntWritable> output, Reporter reporter) throws IOException {
+			int support = 0;
+			while (values.hasNext()) {
+				support += values.next().get();
+			}
+			outputValue.set(support);
+			output.collect(key, outputValue);
+		}
+	}
+
+	public static class Reduce extends MapReduceBase
+			implements Reducer<PairOfInts, IntWritable, Text, Text> {
+		private static final Text outputKey = new Text();
+		private static final Text outputValue = new Text();
+		private static EntityLinksIndex entityLinksIndex;
+		private static int minSupport;
+
+		@Override
+		public void configure(JobConf job) {
+			minSupport = job.getInt(MIN_SUPPORT, DEFAULT_MIN_SUPPORT);
+			try {
+				entityLinksIndex = EntityLinksIndex.load(job.get(ENTITY_LINKS_INDEX_SYMLINK));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Emits: key = entity1 \t entity2, value = support \t relatedness \t cocitation
+		 */
+		@Override
+		public void reduce(PairOfInts key, Iterator<IntWritable> values,
+				OutputCollector<Text, Text> output, Reporter reporter) throws IOException {
+			int support = 0;
+			while (values.hasNext()) {
+				support += values.next().get();
+			}
+			if (support < minSupport) {
+				return;
+			}
+			reporter.incrCounter(Counters.PAIRS_KEPT, 1);
+			int entity1 = key.getLeftElement();
+			int entity2 = key.getRightElement();
+			outputKey.set(entity1 + SEPARATOR + entity2);
+			outputValue.set(support + SEPARATOR +
+					entityLinksIndex.getSemanticRelatedness(entity1, entity2) + SEPARATOR +
+					entityLinksIndex.getCocitation(entity1, entity2));
+			output.collect(outputKey, outputValue);
+		}
+	}
+
+	@SuppressWarnings("static-access")
+	@Override
+	public int run(String[] args) throws Exception {
+		Options options = new Options();
+		options.addOption(OptionBuilder.withArgName("path")
+				.hasArg().withDescription("wikipedia sequence file").isRequired().create(INPUT_OPTION));
+		options.addOption(OptionBuilder.withArgName("path")
+				.hasArg().withDescription("output").create(OUTPUT_OPTION));
+		options.addOption(OptionBuilder.withArgName("num_reducers")
+				.hasArg().withDescription("number of reducers").create(NUM_REDUCERS_OPTION));
+		options.addOption(OptionBuilder.withArgName("path")
+				.hasArg().withDescription("mention index built by MappedMentionIndexBuilder")
+				.create(MENTION_INDEX_OPTION));
+		options.addOption(OptionBuilder.withArgName("path")
+				.hasArg().withDescription("entity links index or snapshot")
+				.create(ENTITY_LINKS_INDEX_OPTION));
+		options.addOption(OptionBuilder.withArgName("min_support")
+				.hasArg().withDescription("minimum number of articles in which a pair occurs")
+				.create(MIN_SUPPORT_OPTION));
+		options.addOption(OptionBuilder.withArgName("max_candidates")
+				.hasArg().withDescription("candidates considered per anchor text")
+				.create(MAX_CANDIDATES_OPTION));
+
+		CommandLine cmdline;
+		CommandLineParser parser = new GnuParser();
+		try {
+			cmdline = parser.parse(options, args);
+		} catch (ParseException exp) {
+			System.err.println("Error parsing command line: " + exp.getMessage());
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.printHelp(this.getClass().getName(), options);
+			return -1;
+		}
+
+		int numReducers = cmdline.hasOption(NUM_REDUCERS_OPTION) ?
+				Integer.parseInt(cmdline.getOptionValue(NUM_REDUCERS_OPTION)) : DEFAULT_NUM_REDUCERS;
+		int minSupport = cmdline.hasOption(MIN_SUPPORT_OPTION) ?
+				Integer.parseInt(cmdline.getOptionValue(MIN_SUPPORT_OPTION)) : DEFAULT_MIN_SUPPORT;
+		int maxCandidates = cmdline.hasOption(MAX_CANDIDATES_OPTION) ?
+				Integer.parseInt(cmdline.getOptionValue(MAX_CANDIDATES_OPTION)) :
+				DEFAULT_MAX_CANDIDATES;
+
+		Random random = new Random();
+		String defaultOutput = "output-" + this.getClass().getCanonicalName() + "-" +
+				random.nextInt(10000);
+
+		task1(
+				getConf(),
+				cmdline.getOptionValue(INPUT_OPTION),
+				cmdline.getOptionValue(OUTPUT_OPTION, defaultOutput),
+				cmdline.getOptionValue(MENTION_INDEX_OPTION, DEFAULT_MENTION_INDEX),
+				cmdline.getOptionValue(ENTITY_LINKS_INDEX_OPTION, DEFAULT_ENTITY_LINKS_INDEX),
+				minSupport,
+				maxCandidates,
+				numReducers
+		);
+
+		return 0;
+	}
+
+	@SuppressWarnings("deprecation")
+	public void task1(Configuration config, String inputPath, String outputPath,
+			String mentionIndexPath, String entityLinksIndexPath, int minSupport, int maxCandidates,
+			int numReducers) throws IOException, URISyntaxException {
+		LOG.info("Precomputing relatedness of entity pairs...");
+		LOG.info(" - input: " + inputPath);
+		LOG.info(" - output: " + outputPath);
+		LOG.info(" - mention index: " + mentionIndexPath);
+		LOG.info(" - entity links index: " + entityLinksIndexPath);
+		LOG.info(" - minimum support: " + minSupport);
+		LOG.info(" - candidates per anchor text: " + maxCandidates);
+		LOG.info(" - number of reducers: " + numReducers);
+
+		JobConf conf = new JobConf(config, EntityPairsRelatednessBuilder.class);
+		conf.setJobName(String.format(
+				"EntityPairsRelatednessBuilder:[input: %s, output: %s, minimum support: %d]",
+				inputPath,
+				outputPath,
+				minSupport
+				)
+		);
+		conf.setJarByClass(EntityPairsRelatednessBuilder.class);
+
+		conf.setNumReduceTasks(numReducers);
+
+		SequenceFileInputFormat.addInputPath(conf, new Path(inputPath));
+		TextOutputFormat.setOutputPath(conf, new Path(outputPath));
+
+		conf.setInputFormat(SequenceFileInputFormat.class);
+		conf.setOutputFormat(TextOutputFormat.class);
+
+		conf.setMapOutputKeyClass(PairOfInts.class);
+		conf.setMapOutputValueClass(IntWritable.class);
+
+		conf.setOutputKeyClass(Text.class);
+		conf.setOutputValueClass(Text.class);
+
+		conf.setMapperClass(EntityPairsRelatednessBuilder.Map.class);
+		conf.setCombinerClass(EntityPairsRelatednessBuilder.Combine.class);
+		conf.setReducerClass(EntityPairsRelatednessBuilder.Reduce.class);
+
+		conf.setInt(MIN_SUPPORT, minSupport);
+		conf.setInt(MAX_CANDIDATES, maxCandidates);
+
+		// Delete the output directory if it exists already.
+		FileSystem.get(conf).delete(new Path(outputPath), true);
+
+		DistributedCache.createSymlink(conf);
+		DistributedCache.addCacheFile(new URI(mentionIndexPath + "#" + MENTION_INDEX_SYMLINK), conf);
+		DistributedCache.addCacheFile(
+				new URI(entityLinksIndexPath + "#" + ENTITY_LINKS_INDEX_SYMLINK), conf);
+		conf.set(MENTION_INDEX_SYMLINK, MENTION_INDEX_SYMLINK);
+		conf.set(ENTITY_LINKS_INDEX_SYMLINK, ENTITY_LINKS_INDEX_SYMLINK);
+
+		JobClient.runJob(conf);
+	}
+
+	public EntityPairsRelatednessBuilder() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		ToolRunner.run(new EntityPairsRelatednessBuilder(), args);
+	}
+}
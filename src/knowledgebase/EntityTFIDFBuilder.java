@@ -5,6 +5,7 @@ import index.TermDocumentFrequencyIndex;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -31,12 +32,17 @@ import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.RunningJob;
 import org.apache.hadoop.mapred.SequenceFileInputFormat;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+import data.SparseVector;
 import data.TFIDFEntry;
 import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
 
@@ -48,27 +54,36 @@ import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
  * computed. Then a tf-idf vector of an entity can be read from disk by seeking at the corresponding
  * offset. 
  * To accomplish this another index must be constructed: @See EntityTFIDFIndexBuilder .
+ * With -sparse the vectors are written as @see data.SparseVector over the term ids of the df index,
+ * which are much smaller and decode without allocating Strings. With -normalize every vector is
+ * scaled to unit length, so cosine similarity with it is a dot product divided by one norm.
+ * With -max_terms and -max_mass only the largest weights of every vector are kept: at most
+ * max_terms of them, and no more than needed to reach max_mass of the squared norm. Sparse vectors
+ * keep the norm of the whole vector, so scores against them stay on the same scale. The job logs
+ * how many terms were kept; @see evaluation.VerifyTruncatedEntityVectors measures the effect on
+ * the ranking of candidates.
  */
 public class EntityTFIDFBuilder extends Configured implements Tool {
 	private static final Logger LOG = Logger.getLogger(EntityTFIDFBuilder.class);
 	
   private static enum Counters {
-    PAGES_TOTAL
+    PAGES_TOTAL, UNKNOWN_TERMS, TERMS_TOTAL, TERMS_KEPT
   };
 
   public static class TFIDFMap extends MapReduceBase 
   		implements Mapper<IntWritable, WikipediaPage, IntWritable, TFIDFEntry> {
   	private static final IntWritable outputKey = new IntWritable();
   	private static TermDocumentFrequencyIndex dfIndex;
+  	private static boolean normalize;
+  	private static int maxTerms;
+  	private static double maxMass;
 
 		@Override
 		public void configure(JobConf job) {
-			String dfIndexPath = job.get(DF_INDEX_SYMLINK);
-			try {
-				dfIndex = TermDocumentFrequencyIndex.load(dfIndexPath);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			dfIndex = loadDFIndex(job);
+			normalize = job.getBoolean(NORMALIZE_KEY, false);
+			maxTerms = job.getInt(MAX_TERMS_KEY, Integer.MAX_VALUE);
+			maxMass = Double.parseDouble(job.get(MAX_MASS_KEY, "1.0"));
 		}
 		
   	/**
@@ -81,17 +96,7 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
   			return;
   		}
   		reporter.incrCounter(Counters.PAGES_TOTAL, 1);
-  		String normalizedContent = Normalizer.normalizeNoDelimiters(page.getContent());
-  		String[] terms = StringUtils.split(normalizedContent, Normalizer.WHITESPACES);
-  		HashMap<String, Integer> termFreq = new HashMap<String, Integer>();
-
-  		for (String term: terms) {
-  			if (termFreq.containsKey(term)) {
-  				termFreq.put(term, termFreq.get(term) + 1);
-  			} else {
-  				termFreq.put(term, 1);
-  			}
-  		}
+  		HashMap<String, Integer> termFreq = getTermFrequencies(page);
   		
   		TFIDFEntry outputValue = new TFIDFEntry(termFreq.size());
   		for (Map.Entry<String, Integer> entry : termFreq.entrySet()) {
@@ -100,15 +105,219 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
   			double idf = dfIndex.getIDF(term);
   			outputValue.put(term, tf * idf);
   		}
+  		if (normalize) {
+  			normalize(outputValue);
+  		}
+  		reporter.incrCounter(Counters.TERMS_TOTAL, outputValue.size());
+  		outputValue = truncate(outputValue, maxTerms, maxMass);
+  		reporter.incrCounter(Counters.TERMS_KEPT, outputValue.size());
   		
 			outputKey.set(Integer.parseInt(page.getDocid()));
 			output.collect(outputKey, outputValue);
   	}
   }
 
+  /**
+   * Same vectors as @see TFIDFMap , over the term ids of the df index with float weights.
+   */
+  public static class SparseTFIDFMap extends MapReduceBase 
+  		implements Mapper<IntWritable, WikipediaPage, IntWritable, SparseVector> {
+  	private static final IntWritable outputKey = new IntWritable();
+  	private static final SparseVector outputValue = new SparseVector();
+  	private static TermDocumentFrequencyIndex dfIndex;
+  	private static boolean normalize;
+  	private static int maxTerms;
+  	private static double maxMass;
+
+		@Override
+		public void configure(JobConf job) {
+			dfIndex = loadDFIndex(job);
+			normalize = job.getBoolean(NORMALIZE_KEY, false);
+			maxTerms = job.getInt(MAX_TERMS_KEY, Integer.MAX_VALUE);
+			maxMass = Double.parseDouble(job.get(MAX_MASS_KEY, "1.0"));
+		}
+		
+  	/**
+  	 *  Emits:	key = doc id, value = SparseVector of (term id, tf-idf score).
+  	 *  Terms missing from the df index have no id and are dropped.
+  	 */
+  	@Override
+  	public void map(IntWritable key, WikipediaPage page, 
+  			OutputCollector<IntWritable, SparseVector> output, Reporter reporter) throws IOException {
+  		if (!page.isArticle()) {
+  			return;
+  		}
+  		reporter.incrCounter(Counters.PAGES_TOTAL, 1);
+  		HashMap<String, Integer> termFreq = getTermFrequencies(page);
+  		
+  		int[] termIds = new int[termFreq.size()];
+  		float[] weights = new float[termFreq.size()];
+  		int size = 0;
+  		for (Map.Entry<String, Integer> entry : termFreq.entrySet()) {
+  			int termId = dfIndex.getTermId(entry.getKey());
+  			if (termId == TermDocumentFrequencyIndex.UNKNOWN_TERM) {
+  				reporter.incrCounter(Counters.UNKNOWN_TERMS, 1);
+  				continue;
+  			}
+  			termIds[size] = termId;
+  			weights[size] = entry.getValue() * dfIndex.getIDF(termId);
+  			++size;
+  		}
+  		reporter.incrCounter(Counters.TERMS_TOTAL, size);
+  		size = truncate(termIds, weights, size, maxTerms, maxMass, outputValue);
+  		reporter.incrCounter(Counters.TERMS_KEPT, size);
+  		if (normalize) {
+  			outputValue.normalize();
+  		}
+  		
+			outputKey.set(Integer.parseInt(page.getDocid()));
+			output.collect(outputKey, outputValue);
+  	}
+  }
+  
+  private static TermDocumentFrequencyIndex loadDFIndex(JobConf job) {
+		try {
+			return TermDocumentFrequencyIndex.load(job.get(DF_INDEX_SYMLINK));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null;
+  }
+  
+  private static void normalize(TFIDFEntry vector) {
+  	double norm = 0;
+  	for (double weight: vector.values()) {
+  		norm += weight * weight;
+  	}
+  	norm = Math.sqrt(norm);
+  	if (norm == 0) {
+  		return;
+  	}
+  	for (Map.Entry<String, Double> entry: vector.entrySet()) {
+  		entry.setValue(entry.getValue() / norm);
+  	}
+  }
+  
+  /**
+   * Positions of the weights kept by truncation, largest first: at most maxTerms of them, and no
+   * more than needed to reach maxMass of the sum of the squared weights.
+   */
+  public static int[] getTruncatedPositions(final double[] weights, int maxTerms, double maxMass) {
+  	final int[] order = new int[weights.length];
+  	double squaredNorm = 0;
+  	for (int i = 0; i < weights.length; ++i) {
+  		order[i] = i;
+  		squaredNorm += weights[i] * weights[i];
+  	}
+  	GenericSorting.quickSort(0, order.length, new IntComparator() {
+  		@Override
+  		public int compare(int a, int b) {
+  			double first = Math.abs(weights[order[a]]);
+  			double second = Math.abs(weights[order[b]]);
+  			return first > second ? -1 : (first == second ? 0 : 1);
+  		}
+  	}, new Swapper() {
+  		@Override
+  		public void swap(int a, int b) {
+  			int value = order[a];
+  			order[a] = order[b];
+  			order[b] = value;
+  		}
+  	});
+  	int size = 0;
+  	double mass = 0;
+  	while (size < order.length && size < maxTerms && mass < maxMass * squaredNorm) {
+  		mass += weights[order[size]] * weights[order[size]];
+  		++size;
+  	}
+  	return Arrays.copyOf(order, size);
+  }
+  
+  private static boolean isTruncating(int maxTerms, double maxMass) {
+  	return maxTerms < Integer.MAX_VALUE || maxMass < 1.0;
+  }
+  
+  /**
+   * The vector itself if nothing is dropped, else a new vector of the kept terms.
+   */
+  public static TFIDFEntry truncate(TFIDFEntry vector, int maxTerms, double maxMass) {
+  	if (!isTruncating(maxTerms, maxMass)) {
+  		return vector;
+  	}
+  	String[] terms = new String[vector.size()];
+  	double[] weights = new double[vector.size()];
+  	int position = 0;
+  	for (Map.Entry<String, Double> entry: vector.entrySet()) {
+  		terms[position] = entry.getKey();
+  		weights[position] = entry.getValue();
+  		++position;
+  	}
+  	int[] kept = getTruncatedPositions(weights, maxTerms, maxMass);
+  	if (kept.length == terms.length) {
+  		return vector;
+  	}
+  	TFIDFEntry result = new TFIDFEntry(kept.length);
+  	for (int i: kept) {
+  		result.put(terms[i], weights[i]);
+  	}
+  	return result;
+  }
+  
+  /**
+   * Sets the result to the kept terms of the first size term ids and weights. The squared weights
+   * of the dropped terms still count in its norm. Returns the number of terms kept.
+   */
+  public static int truncate(int[] termIds, float[] weights, int size, int maxTerms, 
+  		double maxMass, SparseVector result) {
+  	if (!isTruncating(maxTerms, maxMass)) {
+  		result.set(termIds, weights, size, 0.0);
+  		return size;
+  	}
+  	double[] values = new double[size];
+  	for (int i = 0; i < size; ++i) {
+  		values[i] = weights[i];
+  	}
+  	int[] kept = getTruncatedPositions(values, maxTerms, maxMass);
+  	int[] keptTermIds = new int[kept.length];
+  	float[] keptWeights = new float[kept.length];
+  	double droppedSquaredNorm = 0;
+  	for (int i = 0; i < size; ++i) {
+  		droppedSquaredNorm += values[i] * values[i];
+  	}
+  	for (int i = 0; i < kept.length; ++i) {
+  		keptTermIds[i] = termIds[kept[i]];
+  		keptWeights[i] = weights[kept[i]];
+  		droppedSquaredNorm -= values[kept[i]] * values[kept[i]];
+  	}
+  	result.set(keptTermIds, keptWeights, kept.length, Math.max(0.0, droppedSquaredNorm));
+  	return kept.length;
+  }
+  
+  private static HashMap<String, Integer> getTermFrequencies(WikipediaPage page) {
+		String normalizedContent = Normalizer.normalizeNoDelimiters(page.getContent());
+		String[] terms = StringUtils.split(normalizedContent, Normalizer.WHITESPACES);
+		HashMap<String, Integer> termFreq = new HashMap<String, Integer>();
+
+		for (String term: terms) {
+			if (termFreq.containsKey(term)) {
+				termFreq.put(term, termFreq.get(term) + 1);
+			} else {
+				termFreq.put(term, 1);
+			}
+		}
+		return termFreq;
+  }
+
 	private static final String INPUT_OPTION = "input";
 	private static final String DF_INDEX_OPTION = "df_index";
 	private static final String OUTPUT_OPTION = "output";
+	private static final String SPARSE_OPTION = "sparse";
+	private static final String NORMALIZE_OPTION = "normalize";
+	private static final String NORMALIZE_KEY = "EntityTFIDFBuilder.normalize";
+	private static final String MAX_TERMS_OPTION = "max_terms";
+	private static final String MAX_TERMS_KEY = "EntityTFIDFBuilder.maxTerms";
+	private static final String MAX_MASS_OPTION = "max_mass";
+	private static final String MAX_MASS_KEY = "EntityTFIDFBuilder.maxMass";
 	private static final String DEFAULT_DF_INDEX = "/df-index.txt";
 	private static final String DF_INDEX_SYMLINK = "df";
 
@@ -122,6 +331,16 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
 				.hasArg().withDescription("output").create(OUTPUT_OPTION));
 		options.addOption(OptionBuilder.withArgName("path")
 				.hasArg().withDescription("term document frequency index file").create(DF_INDEX_OPTION));
+		options.addOption(OptionBuilder.withDescription(
+				"write SparseVector values of term ids instead of TFIDFEntry").create(SPARSE_OPTION));
+		options.addOption(OptionBuilder.withDescription(
+				"scale every vector to an L2 norm of 1").create(NORMALIZE_OPTION));
+		options.addOption(OptionBuilder.withArgName("count").hasArg().withDescription(
+				"keep at most this many terms of every vector, largest weights first")
+				.create(MAX_TERMS_OPTION));
+		options.addOption(OptionBuilder.withArgName("fraction").hasArg().withDescription(
+				"keep the largest weights of every vector until they hold this fraction of the " +
+				"squared norm").create(MAX_MASS_OPTION));
 
 		CommandLine cmdline;
 		CommandLineParser parser = new GnuParser();
@@ -142,19 +361,43 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
 				getConf(),
 				cmdline.getOptionValue(INPUT_OPTION),
 				cmdline.getOptionValue(DF_INDEX_OPTION, DEFAULT_DF_INDEX),
-				cmdline.getOptionValue(OUTPUT_OPTION, defaultOutput)
+				cmdline.getOptionValue(OUTPUT_OPTION, defaultOutput),
+				cmdline.hasOption(SPARSE_OPTION),
+				cmdline.hasOption(NORMALIZE_OPTION),
+				Integer.parseInt(cmdline.getOptionValue(MAX_TERMS_OPTION, 
+						String.valueOf(Integer.MAX_VALUE))),
+				Double.parseDouble(cmdline.getOptionValue(MAX_MASS_OPTION, "1.0"))
 		);
 
 		return 0;
 	}
 	
-	@SuppressWarnings("deprecation")
 	public void task1(Configuration config, String inputPath, String dfIndexPath, String outputPath) 
 			throws IOException, URISyntaxException {
+		task1(config, inputPath, dfIndexPath, outputPath, false, false);
+	}
+	
+	public void task1(Configuration config, String inputPath, String dfIndexPath, String outputPath,
+			boolean sparse, boolean normalize) throws IOException, URISyntaxException {
+		task1(config, inputPath, dfIndexPath, outputPath, sparse, normalize, Integer.MAX_VALUE, 1.0);
+	}
+	
+	@SuppressWarnings("deprecation")
+	public void task1(Configuration config, String inputPath, String dfIndexPath, String outputPath,
+			boolean sparse, boolean normalize, int maxTerms, double maxMass) 
+			throws IOException, URISyntaxException {
+		if (maxTerms <= 0 || maxMass <= 0 || maxMass > 1) {
+			throw new IllegalArgumentException(
+					"Need max terms > 0 and 0 < max mass <= 1: " + maxTerms + ", " + maxMass);
+		}
 		LOG.info("Extracting TF-IDF vectors for wiki articles...");
 		LOG.info(" - input: " + inputPath);
 		LOG.info(" - df index: " + dfIndexPath);
 		LOG.info(" - output: " + outputPath);
+		LOG.info(" - sparse: " + sparse);
+		LOG.info(" - normalize: " + normalize);
+		LOG.info(" - max terms: " + maxTerms);
+		LOG.info(" - max mass: " + maxMass);
 
 		JobConf conf = new JobConf(config, EntityTFIDFBuilder.class);
 		conf.setJobName(String.format(
@@ -173,9 +416,16 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
 		conf.setOutputFormat(SequenceFileOutputFormat.class);
 		
 		conf.setMapOutputKeyClass(IntWritable.class);
-		conf.setMapOutputValueClass(TFIDFEntry.class);
-		
-		conf.setMapperClass(TFIDFMap.class);
+		conf.setBoolean(NORMALIZE_KEY, normalize);
+		conf.setInt(MAX_TERMS_KEY, maxTerms);
+		conf.set(MAX_MASS_KEY, String.valueOf(maxMass));
+		if (sparse) {
+			conf.setMapOutputValueClass(SparseVector.class);
+			conf.setMapperClass(SparseTFIDFMap.class);
+		} else {
+			conf.setMapOutputValueClass(TFIDFEntry.class);
+			conf.setMapperClass(TFIDFMap.class);
+		}
 		
 		conf.setNumReduceTasks(0);
 
@@ -186,7 +436,12 @@ public class EntityTFIDFBuilder extends Configured implements Tool {
 		DistributedCache.addCacheFile(new URI(dfIndexPath + "#" + DF_INDEX_SYMLINK), conf);
 		conf.set(DF_INDEX_SYMLINK, DF_INDEX_SYMLINK);
 
-		JobClient.runJob(conf);
+		RunningJob job = JobClient.runJob(conf);
+		long total = job.getCounters().getCounter(Counters.TERMS_TOTAL);
+		long kept = job.getCounters().getCounter(Counters.TERMS_KEPT);
+		LOG.info("Kept " + kept + " of " + total + " terms (" + 
+				String.format("%.2f", total > 0 ? 100.0 * kept / total : 100.0) + "%), output size " + 
+				FileSystem.get(conf).getContentSummary(new Path(outputPath)).getLength() + " bytes.");
 	}
 	
 	public EntityTFIDFBuilder() {
@@ -19,6 +19,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
@@ -37,7 +38,6 @@ import org.apache.log4j.Logger;
 
 import com.google.common.base.Joiner;
 
-import data.TFIDFEntry;
 import edu.umd.cloud9.mapred.NoSplitSequenceFileInputFormat;
 
 /**
@@ -56,10 +56,9 @@ public class EntityTFIDFIndexBuilder extends Configured implements Tool {
   };
 
   public static class Map extends MapReduceBase 
-  		implements MapRunnable<IntWritable, TFIDFEntry, IntWritable, Text> {
+  		implements MapRunnable<IntWritable, Writable, IntWritable, Text> {
   	private static final String SEPARATOR = "\t";
   	private static final IntWritable key = new IntWritable();
-  	private static final TFIDFEntry inputValue = new TFIDFEntry();
   	private static final Text outputValue = new Text();
   	private static int fileno;
 
@@ -69,11 +68,13 @@ public class EntityTFIDFIndexBuilder extends Configured implements Tool {
     }
 
   	/**
-  	 * Emits key = wikipedia page id; value = (offset fileno) of tf-idf term vector
+  	 * Emits key = wikipedia page id; value = (offset fileno) of tf-idf term vector.
+  	 * Values are TFIDFEntry or SparseVector, as written by @see EntityTFIDFBuilder .
   	 */
   	@Override
-  	public void run(RecordReader<IntWritable, TFIDFEntry> input, 
+  	public void run(RecordReader<IntWritable, Writable> input, 
   			OutputCollector<IntWritable, Text> output, Reporter reporter) throws IOException {
+  		Writable inputValue = input.createValue();
   		long offset = input.getPos();
   		while (input.next(key, inputValue)) {
   			outputValue.set(Joiner.on(SEPARATOR).join(offset, fileno));
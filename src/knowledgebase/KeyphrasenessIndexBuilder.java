@@ -1,6 +1,9 @@
 package knowledgebase;
 
+import index.AnchorTextDictionary;
 import index.AnchorTextIndex;
+import index.SignedAnchorTextIndex;
+import index.TokenPrefixSet;
 
 import java.io.IOException;
 import java.net.URI;
@@ -56,11 +59,15 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 	private static final String NUM_REDUCERS_OPTION = "num_reducers";
 	private static final String OUTPUT_OPTION = "output";
 	private static final String ANCHOR_TEXT_INDEX_OPTION = "anchor_text";
+	private static final String SIGNED_ANCHOR_TEXT_OPTION = "signed_anchor_text";
+	private static final String PREFIX_SET_OPTION = "prefix_set";
 
 	private static final int DEFAULT_NUM_REDUCERS = 1;
 	private static final String DEFAULT_ANCHOR_TEXT_FILE = "/mention-entity-index.txt";
 	
 	static final String ANCHOR_TEXT_INDEX_SYMLINK = "anchor_file";
+	static final String SIGNED_ANCHOR_TEXT_INDEX = "signed_anchor_text_index";
+	static final String PREFIX_SET_SYMLINK = "prefix_set_file";
 	
 	private static final int NGRAM_SIZE = 11;
 
@@ -68,13 +75,25 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 			Mapper<IntWritable, WikipediaPage, Text, PairOfInts> {
 		private static final Text outputKey = new Text();
 		private static final PairOfInts outputValue = new PairOfInts();
-		private static AnchorTextIndex anchorTextIndex;
+		private static AnchorTextDictionary anchorTextIndex;
+		private static TokenPrefixSet prefixes;
 
+		/**
+		 * The prefix set is only used if one was passed to the job: built here from the anchor
+		 * texts it would take about as much heap again as the anchor text index in every mapper
+		 * JVM, and the keys of a signed index are not stored.
+		 */
 		@Override
 		public void configure(JobConf job) {
 			String anchorTextPath = job.get(ANCHOR_TEXT_INDEX_SYMLINK);
+			String prefixSetPath = job.get(PREFIX_SET_SYMLINK);
 			try {
-				anchorTextIndex = AnchorTextIndex.load(anchorTextPath);
+				if (job.getBoolean(SIGNED_ANCHOR_TEXT_INDEX, false)) {
+					anchorTextIndex = SignedAnchorTextIndex.load(anchorTextPath);
+				} else {
+					anchorTextIndex = AnchorTextIndex.load(anchorTextPath);
+				}
+				prefixes = prefixSetPath != null ? TokenPrefixSet.load(prefixSetPath) : null;
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -93,7 +112,9 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 			reporter.incrCounter(PageTypes.TOTAL, 1);
 			String normalizedContent = Normalizer.normalize(page.getContent());
 			String tokens[] = StringUtils.split(normalizedContent, Normalizer.WHITESPACES);
-			Set<String> ngramsSet = gatherNgramMentions(tokens, NGRAM_SIZE, anchorTextIndex);
+			Set<String> ngramsSet = prefixes != null ?
+					gatherNgramMentions(tokens, NGRAM_SIZE, anchorTextIndex, prefixes) :
+					gatherNgramMentions(tokens, NGRAM_SIZE, anchorTextIndex);
 			
 			HashSet<String> linkedNgrams = new HashSet<String>();
 			for (Link link : page.extractLinks()) {	
@@ -118,7 +139,7 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 		}
 		
 		public static Set<String> gatherNgramMentions(String[] tokens, int size, 
-				AnchorTextIndex anchorTextSet) {
+				AnchorTextDictionary anchorTextSet) {
 			Set<String> ngramsSet = new HashSet<String>();
 
 			StringBuilder ngrams[] = new StringBuilder[size];
@@ -154,6 +175,36 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 			}
 			return ngramsSet;
 		}
+
+		/**
+		 * Same as @see #gatherNgramMentions(String[], int, AnchorTextDictionary) , but an ngram is
+		 * not extended once no anchor text starts with it or it has as many tokens as the longest
+		 * one. The prefix set must be built from the anchor texts of the dictionary.
+		 */
+		public static Set<String> gatherNgramMentions(String[] tokens, int size,
+				AnchorTextDictionary anchorTextSet, TokenPrefixSet prefixes) {
+			Set<String> ngramsSet = new HashSet<String>();
+			int maxSize = Math.min(size, prefixes.getMaxLength());
+			StringBuilder ngram = new StringBuilder();
+			for (int i = 0; i < tokens.length; ++i) {
+				ngram.setLength(0);
+				int node = TokenPrefixSet.ROOT;
+				for (int j = i; j < tokens.length && j - i < maxSize; ++j) {
+					node = prefixes.getChild(node, prefixes.getTokenId(tokens[j]));
+					if (node == TokenPrefixSet.NONE) {
+						break;
+					}
+					ngram.append(ngram.length() > 0 ? " " : "").append(tokens[j]);
+					if (prefixes.isTerminal(node)) {
+						String mention = ngram.toString();
+						if (anchorTextSet.contains(mention)) {
+							ngramsSet.add(mention);
+						}
+					}
+				}
+			}
+			return ngramsSet;
+		}
 	}
 	
 	public static class Reduce extends MapReduceBase
@@ -190,6 +241,12 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 				.hasArg().withDescription("output").create(OUTPUT_OPTION));
 		options.addOption(OptionBuilder.withArgName("path")
 				.hasArg().withDescription("anchor text index").create(ANCHOR_TEXT_INDEX_OPTION));
+		options.addOption(OptionBuilder.withDescription(
+				"anchor text index is built by SignedAnchorTextIndexBuilder")
+				.create(SIGNED_ANCHOR_TEXT_OPTION));
+		options.addOption(OptionBuilder.withArgName("path").hasArg().withDescription(
+				"token prefix set of the anchor texts, built by SignedAnchorTextIndexBuilder")
+				.create(PREFIX_SET_OPTION));
 
 		CommandLine cmdline;
 		CommandLineParser parser = new GnuParser();
@@ -215,19 +272,40 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 				cmdline.getOptionValue(INPUT_OPTION), 
 				cmdline.getOptionValue(OUTPUT_OPTION, tmp), 
 				cmdline.getOptionValue(ANCHOR_TEXT_INDEX_OPTION, DEFAULT_ANCHOR_TEXT_FILE),
+				cmdline.hasOption(SIGNED_ANCHOR_TEXT_OPTION),
+				cmdline.getOptionValue(PREFIX_SET_OPTION),
 				num_reducers
 		);
 
 		return 0;
 	}
 	
+	public void task1(Configuration config, String inputPath, String outputPath,
+			String anchorTextIndexPath, int num_reducers) throws IOException, URISyntaxException {
+		task1(config, inputPath, outputPath, anchorTextIndexPath, false, num_reducers);
+	}
+
+	public void task1(Configuration config, String inputPath, String outputPath,
+			String anchorTextIndexPath, boolean signedAnchorTextIndex, int num_reducers)
+			throws IOException, URISyntaxException {
+		task1(config, inputPath, outputPath, anchorTextIndexPath, signedAnchorTextIndex, null,
+				num_reducers);
+	}
+
+	/**
+	 * @param prefixSetPath prefix set of the anchor texts, or null to extend every ngram up to
+	 * the maximum size
+	 */
 	@SuppressWarnings("deprecation")
 	public void task1(Configuration config, String inputPath, String outputPath, 
-			String anchorTextIndexPath, int num_reducers) throws IOException, URISyntaxException {
+			String anchorTextIndexPath, boolean signedAnchorTextIndex, String prefixSetPath,
+			int num_reducers) throws IOException, URISyntaxException {
 		LOG.info("Extracting keyphraseness index...");
 		LOG.info(" - input: " + inputPath);
 		LOG.info(" - output: " + outputPath);
 		LOG.info(" - anchor text index file: " + anchorTextIndexPath);
+		LOG.info(" - signed anchor text index: " + signedAnchorTextIndex);
+		LOG.info(" - prefix set file: " + prefixSetPath);
 		LOG.info(" - number of reducers: " + num_reducers);
 
 		JobConf conf = new JobConf(config, KeyphrasenessIndexBuilder.class);
@@ -265,6 +343,11 @@ public class KeyphrasenessIndexBuilder extends Configured implements Tool {
 		DistributedCache.addCacheFile(new URI(anchorTextIndexPath + "#" + ANCHOR_TEXT_INDEX_SYMLINK), 
 				conf);
 		conf.set(ANCHOR_TEXT_INDEX_SYMLINK, ANCHOR_TEXT_INDEX_SYMLINK);
+		conf.setBoolean(SIGNED_ANCHOR_TEXT_INDEX, signedAnchorTextIndex);
+		if (prefixSetPath != null) {
+			DistributedCache.addCacheFile(new URI(prefixSetPath + "#" + PREFIX_SET_SYMLINK), conf);
+			conf.set(PREFIX_SET_SYMLINK, PREFIX_SET_SYMLINK);
+		}
 		
 		JobClient.runJob(conf);		
 	}
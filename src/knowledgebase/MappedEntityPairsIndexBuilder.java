@@ -0,0 +1,121 @@
+package knowledgebase;
+
+import index.MappedEntityPairsIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+
+/**
+ * Converts the output of @see EntityPairsRelatednessBuilder into the binary file loaded by
+ * @see index.MappedEntityPairsIndex . Several part files can be given; if a pair occurs more than
+ * once, the last occurrence wins.
+ */
+public class MappedEntityPairsIndexBuilder {
+	private static final int INITIAL_SIZE = 1 << 20;
+
+	private long[] keys = new long[INITIAL_SIZE];
+	private float[] relatedness = new float[INITIAL_SIZE];
+	private int[] cocitation = new int[INITIAL_SIZE];
+	private int count = 0;
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java MappedEntityPairsIndexBuilder <pairs-filename> ... "
+					+ "<output-filename>");
+			return;
+		}
+		MappedEntityPairsIndexBuilder builder = new MappedEntityPairsIndexBuilder();
+		for (int i = 0; i + 1 < args.length; ++i) {
+			builder.read(args[i]);
+		}
+		builder.sort();
+		System.out.println("Read " + builder.count + " pairs.");
+		builder.write(args[args.length - 1]);
+		System.out.println("Wrote " + args[args.length - 1]);
+	}
+
+	private void read(String path) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		String line;
+		for (int counter = 1; (line = in.readLine()) != null; ++counter) {
+			String[] elements = StringUtils.split(line, EntityPairsRelatednessBuilder.SEPARATOR);
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * count);
+				relatedness = Arrays.copyOf(relatedness, 2 * count);
+				cocitation = Arrays.copyOf(cocitation, 2 * count);
+			}
+			keys[count] = MappedEntityPairsIndex.key(
+					Integer.parseInt(elements[0]), Integer.parseInt(elements[1]));
+			relatedness[count] = Float.parseFloat(elements[3]);
+			cocitation[count] = Integer.parseInt(elements[4]);
+			++count;
+			if (counter % 1000000 == 0) {
+				System.out.println("Processed " + counter + " lines.");
+			}
+		}
+		in.close();
+	}
+
+	/**
+	 * Stable sort by key, then drops all but the last of equal keys.
+	 */
+	private void sort() {
+		GenericSorting.mergeSort(0, count, new IntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return keys[a] < keys[b] ? -1 : (keys[a] == keys[b] ? 0 : 1);
+			}
+		}, new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				long key = keys[a]; keys[a] = keys[b]; keys[b] = key;
+				float value = relatedness[a]; relatedness[a] = relatedness[b]; relatedness[b] = value;
+				int frequency = cocitation[a]; cocitation[a] = cocitation[b]; cocitation[b] = frequency;
+			}
+		});
+		int distinct = 0;
+		for (int i = 0; i < count; ++i) {
+			if (i + 1 < count && keys[i] == keys[i + 1]) {
+				continue;
+			}
+			keys[distinct] = keys[i];
+			relatedness[distinct] = relatedness[i];
+			cocitation[distinct] = cocitation[i];
+			++distinct;
+		}
+		count = distinct;
+	}
+
+	private void write(String path) throws IOException {
+		if (8L * count > Integer.MAX_VALUE) {
+			throw new IOException("Too many pairs for a single mapped file: " + count);
+		}
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), 1 << 20));
+		out.writeInt(MappedEntityPairsIndex.MAGIC);
+		out.writeInt(MappedEntityPairsIndex.VERSION);
+		out.writeInt(count);
+		out.writeInt(0);
+		for (int i = 0; i < count; ++i) {
+			out.writeLong(keys[i]);
+		}
+		for (int i = 0; i < count; ++i) {
+			out.writeFloat(relatedness[i]);
+		}
+		for (int i = 0; i < count; ++i) {
+			out.writeInt(cocitation[i]);
+		}
+		out.close();
+	}
+}
@@ -0,0 +1,234 @@
+package knowledgebase;
+
+import index.MappedEntityTFIDFStore;
+import index.TermDocumentFrequencyIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import cern.colt.GenericSorting;
+import cern.colt.Swapper;
+import cern.colt.function.IntComparator;
+import data.MappedSparseVector;
+import data.SparseVector;
+import data.TFIDFEntry;
+
+/**
+ * Packs the entity tf-idf part files written by @see EntityTFIDFBuilder into the single file
+ * loaded by @see index.MappedEntityTFIDFStore .
+ * Collections of SparseVector values are copied as they are. TFIDFEntry (or text) values need the
+ * df index given with -df to map terms to ids; terms missing from it are dropped. If an entity
+ * occurs more than once, the last occurrence wins.
+ */
+public class MappedEntityTFIDFStoreBuilder {
+	private static final int INITIAL_SIZE = 1 << 20;
+
+	private TermDocumentFrequencyIndex dfIndex = null;
+	private int[] docnos = new int[INITIAL_SIZE];
+	private long[] offsets = new long[INITIAL_SIZE];
+	private int count = 0;
+	private long position = 0;
+
+	public static void main(String args[]) throws IOException {
+		MappedEntityTFIDFStoreBuilder builder = new MappedEntityTFIDFStoreBuilder();
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-df")) {
+			builder.dfIndex = TermDocumentFrequencyIndex.load(args[1]);
+			first = 2;
+		}
+		if (args.length - first < 2) {
+			System.out.println("Usage: java MappedEntityTFIDFStoreBuilder [-df <df-index>] " +
+					"<tf-idf-directory-or-part-file> ... <output-filename>");
+			return;
+		}
+		builder.build(Arrays.copyOfRange(args, first, args.length - 1), args[args.length - 1]);
+	}
+
+	private void build(String[] inputs, String output) throws IOException {
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(output), 1 << 20));
+		// Header, written again once the sizes are known.
+		writeHeader(out, 0, 0);
+		for (String input: inputs) {
+			for (String part: getPartFiles(input)) {
+				read(part, out);
+			}
+		}
+		long dataSize = position;
+		sort();
+		for (int i = 0; i < count; ++i) {
+			out.writeInt(docnos[i]);
+		}
+		for (int i = 0; i < count; ++i) {
+			out.writeLong(offsets[i]);
+		}
+		out.close();
+
+		RandomAccessFile file = new RandomAccessFile(output, "rw");
+		writeHeader(file, count, dataSize);
+		file.close();
+		System.out.println("Wrote " + count + " vectors to " + output);
+	}
+
+	private static void writeHeader(DataOutput out, int count, long dataSize)
+			throws IOException {
+		out.writeInt(MappedEntityTFIDFStore.MAGIC);
+		out.writeInt(MappedEntityTFIDFStore.VERSION);
+		out.writeInt(count);
+		out.writeInt(0);
+		out.writeLong(dataSize);
+	}
+
+	private static List<String> getPartFiles(String path) {
+		List<String> result = new ArrayList<String>();
+		File file = new File(path);
+		if (!file.isDirectory()) {
+			result.add(path);
+			return result;
+		}
+		String[] names = file.list();
+		Arrays.sort(names);
+		for (String name: names) {
+			if (name.startsWith("part-")) {
+				result.add(new File(file, name).getPath());
+			}
+		}
+		return result;
+	}
+
+	private void read(String path, DataOutputStream out) throws IOException {
+		Configuration conf = new Configuration();
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+				SequenceFile.Reader.file(new Path(new File(path).getAbsolutePath())));
+		Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+		Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+		SparseVector vector = new SparseVector();
+		while (reader.next(key, value)) {
+			if (value instanceof SparseVector) {
+				vector = (SparseVector) value;
+			} else {
+				toSparseVector(value, vector);
+			}
+			int docno = key instanceof IntWritable ?
+					((IntWritable) key).get() : (int) ((LongWritable) key).get();
+			write(docno, vector, out);
+		}
+		reader.close();
+		System.out.println("Read " + path + ", " + count + " vectors so far.");
+	}
+
+	private void toSparseVector(Writable value, SparseVector vector) {
+		if (dfIndex == null) {
+			throw new IllegalArgumentException(
+					value.getClass().getSimpleName() + " values need the df index, see -df.");
+		}
+		List<String> terms = new ArrayList<String>();
+		List<Double> weights = new ArrayList<Double>();
+		if (value instanceof TFIDFEntry) {
+			for (Map.Entry<String, Double> entry: ((TFIDFEntry) value).entrySet()) {
+				terms.add(entry.getKey());
+				weights.add(entry.getValue());
+			}
+		} else {
+			String[] parts = StringUtils.split(value.toString(), '\t');
+			for (int i = 0; i + 1 < parts.length; i += 2) {
+				terms.add(parts[i]);
+				weights.add(Double.parseDouble(parts[i + 1]));
+			}
+		}
+		int[] termIds = new int[terms.size()];
+		float[] termWeights = new float[terms.size()];
+		int size = 0;
+		for (int i = 0; i < terms.size(); ++i) {
+			int termId = dfIndex.getTermId(terms.get(i));
+			if (termId != TermDocumentFrequencyIndex.UNKNOWN_TERM) {
+				termIds[size] = termId;
+				termWeights[size] = weights.get(i).floatValue();
+				++size;
+			}
+		}
+		vector.set(termIds, termWeights, size, 0.0);
+	}
+
+	/**
+	 * Appends the record, padding first if it would cross a segment boundary.
+	 */
+	private void write(int docno, SparseVector vector, DataOutputStream out)
+			throws IOException {
+		long size = MappedSparseVector.getRecordSize(vector.size());
+		long segmentEnd = (position / MappedEntityTFIDFStore.SEGMENT_SIZE + 1) *
+				MappedEntityTFIDFStore.SEGMENT_SIZE;
+		if (position + size > segmentEnd) {
+			for (; position < segmentEnd; ++position) {
+				out.writeByte(0);
+			}
+		}
+		if (count == docnos.length) {
+			docnos = Arrays.copyOf(docnos, 2 * count);
+			offsets = Arrays.copyOf(offsets, 2 * count);
+		}
+		docnos[count] = docno;
+		offsets[count] = position;
+		++count;
+
+		out.writeDouble(vector.getNorm());
+		out.writeInt(vector.size());
+		for (int i = 0; i < vector.size(); ++i) {
+			out.writeInt(vector.getTermId(i));
+		}
+		for (int i = 0; i < vector.size(); ++i) {
+			out.writeFloat(vector.getWeight(i));
+		}
+		position += size;
+	}
+
+	/**
+	 * Stable sort by docno, then drops all but the last of equal docnos.
+	 */
+	private void sort() {
+		GenericSorting.mergeSort(0, count, new IntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return docnos[a] < docnos[b] ? -1 : (docnos[a] == docnos[b] ? 0 : 1);
+			}
+		}, new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				int docno = docnos[a];
+				docnos[a] = docnos[b];
+				docnos[b] = docno;
+				long offset = offsets[a];
+				offsets[a] = offsets[b];
+				offsets[b] = offset;
+			}
+		});
+		int distinct = 0;
+		for (int i = 0; i < count; ++i) {
+			if (i + 1 < count && docnos[i] == docnos[i + 1]) {
+				continue;
+			}
+			docnos[distinct] = docnos[i];
+			offsets[distinct] = offsets[i];
+			++distinct;
+		}
+		count = distinct;
+	}
+}
@@ -0,0 +1,192 @@
+package knowledgebase;
+
+import index.MappedMentionIndex;
+import index.MentionEntitiesFrequencyIndex;
+import index.MentionIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import data.CandidatesEntry;
+
+/**
+ * Converts a text mention index into the binary format loaded by @see index.MappedMentionIndex .
+ * The input is either the file loaded by @see index.MentionIndex (mention \t linked \t total \t
+ * candidate entities) or, with the -frequencies flag, the file loaded by
+ * @see index.MentionEntitiesFrequencyIndex . Names skipped by those loaders are skipped here too.
+ */
+public class MappedMentionIndexBuilder {
+	public static final String FREQUENCIES_FLAG = "-frequencies";
+
+	private static class Record {
+		byte[] key;
+		int linkedDocs;
+		int totalDocs;
+		int[] value;
+	}
+
+	private static final Comparator<Record> KEY_ORDER = new Comparator<Record>() {
+		@Override
+		public int compare(Record record1, Record record2) {
+			byte[] a = record1.key;
+			byte[] b = record2.key;
+			int common = Math.min(a.length, b.length);
+			for (int i = 0; i < common; ++i) {
+				int difference = (a[i] & 0xff) - (b[i] & 0xff);
+				if (difference != 0) {
+					return difference;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java MappedMentionIndexBuilder <mention-index-filename> "
+					+ "<output-filename> [" + FREQUENCIES_FLAG + "]");
+			return;
+		}
+		boolean frequencies = args.length > 2 && args[2].equals(FREQUENCIES_FLAG);
+		List<Record> records = read(args[0], frequencies);
+		System.out.println("Read " + records.size() + " names.");
+		write(records, frequencies, args[1]);
+		System.out.println("Wrote " + args[1]);
+	}
+
+	private static List<Record> read(String path, boolean frequencies) throws IOException {
+		List<Record> records = new ArrayList<Record>();
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		String line;
+
+		for (int counter = 1; (line = in.readLine()) != null; ++counter) {
+			Record record = frequencies ? parseFrequencyLine(line) : parseLine(line);
+			if (record != null) {
+				records.add(record);
+			}
+			if (counter % 1000000 == 0) {
+				System.out.println("Processed " + counter + " lines.");
+			}
+		}
+		in.close();
+
+		// Stable sort, so the last duplicate wins as it does when loading into a HashMap.
+		Collections.sort(records, KEY_ORDER);
+		List<Record> result = new ArrayList<Record>(records.size());
+		for (int i = 0; i < records.size(); ++i) {
+			if (i + 1 < records.size() && KEY_ORDER.compare(records.get(i), records.get(i + 1)) == 0) {
+				continue;
+			}
+			result.add(records.get(i));
+		}
+		return result;
+	}
+
+	private static Record parseLine(String line) {
+		String[] elements = line.split(MentionIndex.SEPARATOR);
+		int linkedDocs = Integer.parseInt(elements[1]);
+		int totalDocs = Integer.parseInt(elements[2]);
+		if (totalDocs < MentionIndex.MINIMUM_COUNT || linkedDocs == 0) {
+			return null;
+		}
+		Record record = newRecord(elements[0], linkedDocs, totalDocs);
+		record.value = new int[elements.length - 3];
+		for (int i = 3; i < elements.length; ++i) {
+			record.value[i - 3] = Integer.parseInt(elements[i]);
+		}
+		return record;
+	}
+
+	private static Record parseFrequencyLine(String line) {
+		String[] elements = line.split(MentionEntitiesFrequencyIndex.SEPARATOR, 4);
+		int linkedDocs = Integer.parseInt(elements[1]);
+		int totalDocs = Integer.parseInt(elements[2]);
+		if (totalDocs < MentionEntitiesFrequencyIndex.MINIMUM_COUNT || linkedDocs == 0) {
+			return null;
+		}
+		Record record = newRecord(elements[0], linkedDocs, totalDocs);
+		CandidatesEntry candidates = new CandidatesEntry(elements[3]);
+		// Sorted by entity, so frequencies can be binary searched.
+		TreeMap<Integer, Integer> sorted = new TreeMap<Integer, Integer>();
+		for (Integer entity: candidates.getCandidates()) {
+			sorted.put(entity, candidates.getCandidateFrequency(entity));
+		}
+		record.value = new int[1 + 2 * sorted.size()];
+		record.value[0] = candidates.getTotalFrequency();
+		int pos = 1;
+		for (Map.Entry<Integer, Integer> entry: sorted.entrySet()) {
+			record.value[pos++] = entry.getKey();
+			record.value[pos++] = entry.getValue();
+		}
+		return record;
+	}
+
+	private static Record newRecord(String name, int linkedDocs, int totalDocs) {
+		Record record = new Record();
+		record.key = name.getBytes(StandardCharsets.UTF_8);
+		record.linkedDocs = linkedDocs;
+		record.totalDocs = totalDocs;
+		return record;
+	}
+
+	private static void write(List<Record> records, boolean frequencies, String path)
+			throws IOException {
+		long keysLength = 0;
+		long valuesLength = 0;
+		for (Record record: records) {
+			keysLength += record.key.length;
+			valuesLength += 4L * record.value.length;
+		}
+		if (keysLength > Integer.MAX_VALUE || valuesLength > Integer.MAX_VALUE) {
+			throw new IOException("Mention index is too large for a single mapped file.");
+		}
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(path), 1 << 20));
+		out.writeInt(MappedMentionIndex.MAGIC);
+		out.writeInt(MappedMentionIndex.VERSION);
+		out.writeInt(frequencies ? MappedMentionIndex.HAS_FREQUENCIES : 0);
+		out.writeInt(records.size());
+		out.writeLong(keysLength);
+		out.writeLong(valuesLength);
+
+		int offset = 0;
+		out.writeInt(offset);
+		for (Record record: records) {
+			offset += record.key.length;
+			out.writeInt(offset);
+		}
+		offset = 0;
+		out.writeInt(offset);
+		for (Record record: records) {
+			offset += record.value.length;
+			out.writeInt(offset);
+		}
+		for (Record record: records) {
+			out.writeInt(record.linkedDocs);
+		}
+		for (Record record: records) {
+			out.writeInt(record.totalDocs);
+		}
+		for (Record record: records) {
+			out.write(record.key);
+		}
+		for (Record record: records) {
+			for (int value: record.value) {
+				out.writeInt(value);
+			}
+		}
+		out.close();
+	}
+}
@@ -0,0 +1,35 @@
+package knowledgebase;
+
+import index.AnchorTextIndex;
+import index.SignedAnchorTextIndex;
+import index.TokenPrefixSet;
+
+import java.io.IOException;
+
+/**
+ * Converts an anchor text file, as loaded by @see index.AnchorTextIndex , into the binary file
+ * loaded by @see index.SignedAnchorTextIndex . Optionally also writes the
+ * @see index.TokenPrefixSet of the anchor texts, which cannot be built from the signed index.
+ * @see KeyphrasenessIndexBuilder takes it with -prefix_set for either index.
+ */
+public class SignedAnchorTextIndexBuilder {
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java SignedAnchorTextIndexBuilder <anchor-text-filename> "
+					+ "<output-filename> [signature-width] [prefix-set-filename]");
+			return;
+		}
+		int width = args.length > 2 ?
+				Integer.parseInt(args[2]) : SignedAnchorTextIndex.DEFAULT_SIGNATURE_WIDTH;
+		AnchorTextIndex anchorTextIndex = AnchorTextIndex.load(args[0]);
+		System.out.println("Read " + anchorTextIndex.size() + " anchor texts.");
+		SignedAnchorTextIndex index = SignedAnchorTextIndex.build(anchorTextIndex, width);
+		index.save(args[1]);
+		System.out.println("Wrote " + args[1]);
+		if (args.length > 3) {
+			TokenPrefixSet prefixes = new TokenPrefixSet(anchorTextIndex);
+			prefixes.save(args[3]);
+			System.out.println("Wrote " + prefixes.size() + " prefixes to " + args[3]);
+		}
+	}
+}
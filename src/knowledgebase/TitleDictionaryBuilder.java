@@ -0,0 +1,22 @@
+package knowledgebase;
+
+import index.TitleDictionary;
+
+import java.io.IOException;
+
+/**
+ * Converts the titles file produced by @see WikiArticleTitlesIndexBuilder into the binary snapshot
+ * loaded by @see index.TitleDictionary .
+ */
+public class TitleDictionaryBuilder {
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java TitleDictionaryBuilder <titles-filename> <output-filename>");
+			return;
+		}
+		TitleDictionary dictionary = TitleDictionary.load(args[0]);
+		System.out.println("Read " + dictionary.size() + " titles.");
+		dictionary.save(args[1]);
+		System.out.println("Wrote " + args[1]);
+	}
+}
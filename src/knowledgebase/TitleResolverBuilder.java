@@ -0,0 +1,24 @@
+package knowledgebase;
+
+import index.TitleResolver;
+
+import java.io.IOException;
+
+/**
+ * Builds the file loaded by @see index.TitleResolver from the titles file produced by
+ * @see WikiArticleTitlesIndexBuilder (or its @see TitleDictionaryBuilder snapshot) and the redirect
+ * mapping produced by @see PreprocessRedirectMapping .
+ */
+public class TitleResolverBuilder {
+	public static void main(String args[]) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java TitleResolverBuilder <titles-filename> <redirect-filename> "
+					+ "<output-filename>");
+			return;
+		}
+		TitleResolver resolver = TitleResolver.build(args[0], args[1]);
+		System.out.println("Read " + resolver.size() + " titles.");
+		resolver.save(args[2]);
+		System.out.println("Wrote " + args[2]);
+	}
+}
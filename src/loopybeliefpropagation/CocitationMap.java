@@ -1,7 +1,9 @@
 package loopybeliefpropagation;
 
+import index.EntityLinksIndex;
 import index.LinksIndex;
-import index.TitleIDsIndex;
+import index.MappedEntityPairsIndex;
+import index.TitleDictionary;
 
 import java.util.HashMap;
 import java.util.List;
@@ -11,6 +13,8 @@ import md.Mention;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import com.google.common.primitives.Ints;
+
 import edu.umd.cloud9.io.pair.PairOfInts;
  
 public class CocitationMap extends HashMap<PairOfInts, Integer>{
@@ -18,17 +22,37 @@ public class CocitationMap extends HashMap<PairOfInts, Integer>{
 
 	private static final Logger LOG = Logger.getLogger(CocitationMap.class);
 
-	private TitleIDsIndex titleIdsIndex;
+	private TitleDictionary titleIdsIndex;
 	public CocitationMap(List<Mention> mentions, LinksIndex index) {
+		this(mentions, index, null);
+	}
+	
+	/**
+	 * Looks up cocitation in pairsIndex, if not null, before computing it with index. The pairs
+	 * index stores cocitation computed by @see index.EntityLinksIndex .
+	 */
+	public CocitationMap(List<Mention> mentions, EntityLinksIndex index, 
+			MappedEntityPairsIndex pairsIndex) {
+		this(mentions, (LinksIndex) index, pairsIndex);
+	}
+	
+	private CocitationMap(List<Mention> mentions, LinksIndex index, 
+			MappedEntityPairsIndex pairsIndex) {
 		super();
 		LOG.setLevel(Level.INFO);
+		int[][] candidates = new int[mentions.size()][];
+		for (int i = 0; i < mentions.size(); ++i) {
+			candidates[i] = Ints.toArray(mentions.get(i).getCandidateEntities());
+		}
 		for (int i = 0; i < mentions.size(); ++i) {
-			Mention mention1 = mentions.get(i);
 			for (int j = i + 1; j < mentions.size(); ++j) {
-				Mention mention2 = mentions.get(j);
-				for (int candidate1: mention1.getCandidateEntities()) {
-					for (int candidate2: mention2.getCandidateEntities()) {
-						int cocitation = index.getCocitation(candidate1, candidate2);
+				for (int candidate1: candidates[i]) {
+					int[] cocitations = pairsIndex != null ?
+							pairsIndex.getCocitation(candidate1, candidates[j], index) :
+							index.getCocitation(candidate1, candidates[j]);
+					for (int k = 0; k < candidates[j].length; ++k) {
+						int candidate2 = candidates[j][k];
+						int cocitation = cocitations[k];
 						if (cocitation == 0) {
 							continue;
 						}
@@ -55,7 +79,7 @@ public class CocitationMap extends HashMap<PairOfInts, Integer>{
 		return super.get(pair);
 	}
 	
-	public void setTitleIdsIndex(TitleIDsIndex titleIdsIndex) {
+	public void setTitleIdsIndex(TitleDictionary titleIdsIndex) {
 		this.titleIdsIndex = titleIdsIndex;
 	}
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package loopybeliefpropagation;
 
 import iitb.Annotation;
 import iitb.NameAnnotation;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -24,7 +24,7 @@ public class LoopyBeliefPropagation {
 	private List<Mention> mentions;
 	private Scorer scorer;
 	private HashMap<Mention, Integer> solution;
-	private TitleIDsIndex titleIdsIndex;
+	private TitleDictionary titleIdsIndex;
 	public int iterations;
 	
 	public LoopyBeliefPropagation(List<Mention> mentions, int iterations, Scorer scorer) {
@@ -172,7 +172,7 @@ public class LoopyBeliefPropagation {
 		return nameAnnotations;
 	}
 	
-	public void setTitlesIdIndex(TitleIDsIndex titleIdsIndex) {
+	public void setTitlesIdIndex(TitleDictionary titleIdsIndex) {
 		this.titleIdsIndex = titleIdsIndex;
 	}
 }
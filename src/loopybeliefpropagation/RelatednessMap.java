@@ -1,6 +1,7 @@
 package loopybeliefpropagation;
 
 import index.EntityLinksIndex;
+import index.MappedEntityPairsIndex;
 
 import java.util.HashMap;
 import java.util.List;
@@ -9,6 +10,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import md.Mention;
+import com.google.common.primitives.Ints;
 import edu.umd.cloud9.io.pair.PairOfInts;
 import evaluation.VerifyLoopyBeliefPropagation;
 
@@ -19,16 +21,30 @@ public class RelatednessMap extends HashMap<PairOfInts, Double>{
 	public static final double EPS = 0.000001;
 	
 	public RelatednessMap(List<Mention> mentions, EntityLinksIndex index) {
+		this(mentions, index, null);
+	}
+	
+	/**
+	 * Looks up relatedness in pairsIndex, if not null, before computing it with index.
+	 */
+	public RelatednessMap(List<Mention> mentions, EntityLinksIndex index, 
+			MappedEntityPairsIndex pairsIndex) {
 		super();
 		LOG.setLevel(Level.INFO);
+		int[][] candidates = new int[mentions.size()][];
+		for (int i = 0; i < mentions.size(); ++i) {
+			candidates[i] = Ints.toArray(mentions.get(i).getCandidateEntities());
+		}
 		for (int i = 0; i < mentions.size(); ++i) {
-			Mention mention1 = mentions.get(i);
 			for (int j = i + 1; j < mentions.size(); ++j) {
-				Mention mention2 = mentions.get(j);
-				for (int candidate1: mention1.getCandidateEntities()) {
-					for (int candidate2: mention2.getCandidateEntities()) {
+				for (int candidate1: candidates[i]) {
+					double[] relatednessScores = pairsIndex != null ?
+							pairsIndex.getSemanticRelatedness(candidate1, candidates[j], index) :
+							index.getSemanticRelatedness(candidate1, candidates[j]);
+					for (int k = 0; k < candidates[j].length; ++k) {
+						int candidate2 = candidates[j][k];
 						if (candidate1 != candidate2) {
-							double relatedness = index.getSemanticRelatedness(candidate1, candidate2);
+							double relatedness = relatednessScores[k];
 							if (relatedness < EPS) {
 								continue;
 							}
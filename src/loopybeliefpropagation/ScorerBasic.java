@@ -1,7 +1,8 @@
 package loopybeliefpropagation;
 
 import index.EntityLinksIndex;
-import index.TitleIDsIndex;
+import index.MappedEntityPairsIndex;
+import index.TitleDictionary;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -21,12 +22,17 @@ public class ScorerBasic implements Scorer {
 			
 	private List<Mention> mentions;
 	private RelatednessMap relatednessMap;
-	private TitleIDsIndex titleIdsIndex;
+	private TitleDictionary titleIdsIndex;
 	
 	public ScorerBasic(List<Mention> mentions, EntityLinksIndex index) {
+		this(mentions, index, null);
+	}
+	
+	public ScorerBasic(List<Mention> mentions, EntityLinksIndex index, 
+			MappedEntityPairsIndex pairsIndex) {
 		LOG.setLevel(Level.INFO);
 		this.mentions = mentions;
-		relatednessMap = new RelatednessMap(mentions, index);
+		relatednessMap = new RelatednessMap(mentions, index, pairsIndex);
 	}
 
 	@Override
@@ -91,7 +97,7 @@ public class ScorerBasic implements Scorer {
 				localCompatibility.divide(new BigDecimal(l), RoundingMode.HALF_UP));
 	}
 
-	public void setTitlesIdIndex(TitleIDsIndex titleIdsIndex) {
+	public void setTitlesIdIndex(TitleDictionary titleIdsIndex) {
 		this.titleIdsIndex = titleIdsIndex;
 	}
 	
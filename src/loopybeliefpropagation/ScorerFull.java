@@ -1,8 +1,10 @@
 package loopybeliefpropagation;
 
+import index.EntityLinksIndex;
 import index.LinksIndex;
+import index.MappedEntityPairsIndex;
 import index.MentionEntitiesFrequencyIndex;
-import index.TitleIDsIndex;
+import index.TitleDictionary;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -27,7 +29,7 @@ public class ScorerFull implements Scorer {
 	private	LinksIndex index;
 	private MentionEntitiesFrequencyIndex mentionIndex;
 	private CocitationMap cocitationMap;
-	private TitleIDsIndex titleIdsIndex;
+	private TitleDictionary titleIdsIndex;
 	
 	public ScorerFull(List<Mention> mentions, LinksIndex index, 
 			MentionEntitiesFrequencyIndex mentionIndex) {
@@ -37,6 +39,15 @@ public class ScorerFull implements Scorer {
 		this.mentionIndex = mentionIndex;
 		this.cocitationMap = new CocitationMap(mentions, index);
 	}
+	
+	public ScorerFull(List<Mention> mentions, EntityLinksIndex index, 
+			MentionEntitiesFrequencyIndex mentionIndex, MappedEntityPairsIndex pairsIndex) {
+		LOG.setLevel(Level.FATAL);
+		this.mentions = mentions;
+		this.index = index;
+		this.mentionIndex = mentionIndex;
+		this.cocitationMap = new CocitationMap(mentions, index, pairsIndex);
+	}
 
 	
 	public BigDecimal computeMessageScore(Mention from, Mention to, int entityFrom, int entityTo, 
@@ -118,7 +129,7 @@ public class ScorerFull implements Scorer {
 		return (double) cocitation / popularity1 / popularity2 <= (double) PAIRS / LINKS / LINKS;
 	}
 	
-	public void setTitlesIdIndex(TitleIDsIndex titleIdsIndex) {
+	public void setTitlesIdIndex(TitleDictionary titleIdsIndex) {
 		this.titleIdsIndex = titleIdsIndex;
 	}
 	
@@ -1,7 +1,8 @@
 package loopybeliefpropagation;
 
 import index.EntityLinksIndex;
-import index.TitleIDsIndex;
+import index.MappedEntityPairsIndex;
+import index.TitleDictionary;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -22,13 +23,18 @@ public class ScorerMaxEnt implements Scorer {
 	private List<Mention> mentions;
 	private	EntityLinksIndex index;
 	private CocitationMap cocitationMap;
-	private TitleIDsIndex titleIdsIndex;
+	private TitleDictionary titleIdsIndex;
 	
 	public ScorerMaxEnt(List<Mention> mentions, EntityLinksIndex index) {
+		this(mentions, index, null);
+	}
+	
+	public ScorerMaxEnt(List<Mention> mentions, EntityLinksIndex index, 
+			MappedEntityPairsIndex pairsIndex) {
 		LOG.setLevel(Level.FATAL);
 		this.mentions = mentions;
 		this.index = index;
-		this.cocitationMap = new CocitationMap(mentions, index);
+		this.cocitationMap = new CocitationMap(mentions, index, pairsIndex);
 	}
 
 	
@@ -94,7 +100,7 @@ public class ScorerMaxEnt implements Scorer {
 		return Math.log(cocitation) - Math.log(popularity1) - Math.log(popularity2);
 	}
 	
-	public void setTitlesIdIndex(TitleIDsIndex titleIdsIndex) {
+	public void setTitlesIdIndex(TitleDictionary titleIdsIndex) {
 		this.titleIdsIndex = titleIdsIndex;
 	}
 }
@@ -0,0 +1,123 @@
+package md;
+
+import index.TermDocumentFrequencyIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.ArraySparseVector;
+import data.TFIDFEntry;
+
+/**
+ * Term frequencies of the Mention.WINDOW_SIZE tokens around a mention, kept up to date while the
+ * window slides over the document: moving to the next mention only adds the tokens entering the
+ * window and removes the ones leaving it. The squared norm of the tf-idf context vector is
+ * maintained with the frequencies, so mentions sorted by offset cost about one pass over the
+ * tokens in total.
+ * Vectors are the same as @see MentionDetection#getTFIDFContext and
+ * @see MentionDetection#getSparseTFIDFContext of @see Mention#extractContext .
+ */
+public class ContextWindow {
+	private static class Term {
+		int termId;
+		double idf;
+		int tf;
+	}
+
+	private final List<Token> tokens;
+	private final TermDocumentFrequencyIndex dfIndex;
+	private final Map<String, Term> terms = new HashMap<String, Term>();
+	private int from = 0;
+	private int to = 0;
+	private double squaredNorm = 0;
+
+	public ContextWindow(List<Token> tokens, TermDocumentFrequencyIndex dfIndex) {
+		this.tokens = tokens;
+		this.dfIndex = dfIndex;
+	}
+
+	/**
+	 * Moves the window to the context of the mention.
+	 */
+	public void moveTo(Mention mention) {
+		int start = mention.getContextStart(tokens);
+		int end = start + Math.min(tokens.size(), Mention.WINDOW_SIZE);
+		if (start >= to || end <= from) {
+			// No overlap: start over, which also drops the rounding errors of the updates.
+			terms.clear();
+			squaredNorm = 0;
+			from = to = start;
+		}
+		while (from < start) {
+			remove(tokens.get(from++).getToken());
+		}
+		while (from > start) {
+			add(tokens.get(--from).getToken());
+		}
+		while (to < end) {
+			add(tokens.get(to++).getToken());
+		}
+		while (to > end) {
+			remove(tokens.get(--to).getToken());
+		}
+	}
+
+	private void add(String token) {
+		Term term = terms.get(token);
+		if (term == null) {
+			term = new Term();
+			term.termId = dfIndex.getTermId(token);
+			term.idf = dfIndex.getIDF(term.termId);
+			terms.put(token, term);
+		}
+		// (tf + 1)^2 - tf^2 = 2 tf + 1
+		squaredNorm += (2 * term.tf + 1) * term.idf * term.idf;
+		++term.tf;
+	}
+
+	private void remove(String token) {
+		Term term = terms.get(token);
+		--term.tf;
+		squaredNorm -= (2 * term.tf + 1) * term.idf * term.idf;
+		if (term.tf == 0) {
+			terms.remove(token);
+		}
+	}
+
+	/**
+	 * Norm of the tf-idf vector of the window, including terms without an id.
+	 */
+	public double getNorm() {
+		return Math.sqrt(Math.max(0, squaredNorm));
+	}
+
+	public TFIDFEntry getTFIDFContext() {
+		TFIDFEntry result = new TFIDFEntry(terms.size());
+		for (Map.Entry<String, Term> entry: terms.entrySet()) {
+			Term term = entry.getValue();
+			result.put(entry.getKey(), term.tf * term.idf);
+		}
+		return result;
+	}
+
+	public ArraySparseVector getSparseTFIDFContext() {
+		int[] termIds = new int[terms.size()];
+		float[] weights = new float[terms.size()];
+		int size = 0;
+		double unindexedSquaredNorm = 0;
+		for (Term term: terms.values()) {
+			double weight = term.tf * term.idf;
+			if (term.termId == TermDocumentFrequencyIndex.UNKNOWN_TERM) {
+				unindexedSquaredNorm += weight * weight;
+			} else {
+				termIds[size] = term.termId;
+				weights[size] = (float) weight;
+				++size;
+			}
+		}
+		ArraySparseVector result = new ArraySparseVector();
+		result.set(termIds, weights, size, unindexedSquaredNorm);
+		return result;
+	}
+}
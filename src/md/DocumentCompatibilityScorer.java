@@ -0,0 +1,221 @@
+package md;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import data.ArraySparseVector;
+import data.TermIdVector;
+
+/**
+ * Local compatibilities of all the mentions of a document with their candidates as one sparse
+ * matrix product: a mentions x terms matrix of the unit length context vectors times a
+ * terms x candidates matrix of the entity vectors, both in compressed sparse row form.
+ * The entity matrix only has rows for terms of some context. Every row of the product is computed
+ * by scattering the entity rows of its terms into a dense accumulator, in increasing term id
+ * order, so each score is the same double as the dot product of the two vectors.
+ * Blocks of mention rows are computed in parallel.
+ */
+public class DocumentCompatibilityScorer {
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+	// Fewer rows than this are not worth a task.
+	public static final int MIN_BLOCK_ROWS = 16;
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("compatibility-%d").build());
+
+	private final List<Mention> mentions = new ArrayList<Mention>();
+	private final List<Integer[]> mentionCandidates = new ArrayList<Integer[]>();
+	private final List<ArraySparseVector> contexts = new ArrayList<ArraySparseVector>();
+
+	// Sorted distinct candidates, the columns of the product, with their vectors.
+	private int[] entities;
+	private TermIdVector[] entityVectors;
+
+	/**
+	 * Adds a row for the mention, whose context vector must have a norm of 1 (or 0).
+	 */
+	public void addMention(Mention mention, ArraySparseVector normalizedContext,
+			Integer[] candidates) {
+		mentions.add(mention);
+		contexts.add(normalizedContext);
+		mentionCandidates.add(candidates);
+	}
+
+	/**
+	 * Sorted distinct candidates of the mentions added.
+	 */
+	public int[] getEntities() {
+		if (entities == null) {
+			int count = 0;
+			for (Integer[] candidates: mentionCandidates) {
+				count += candidates.length;
+			}
+			int[] result = new int[count];
+			count = 0;
+			for (Integer[] candidates: mentionCandidates) {
+				for (Integer entity: candidates) {
+					result[count++] = entity;
+				}
+			}
+			Arrays.sort(result);
+			int distinct = 0;
+			for (int i = 0; i < result.length; ++i) {
+				if (i == 0 || result[i] != result[i - 1]) {
+					result[distinct++] = result[i];
+				}
+			}
+			entities = Arrays.copyOf(result, distinct);
+			entityVectors = new TermIdVector[distinct];
+		}
+		return entities;
+	}
+
+	/**
+	 * Sets the vector of a candidate returned by @see #getEntities . Candidates without a vector
+	 * get a score of 0.
+	 */
+	public void setEntityVector(int entity, TermIdVector vector) {
+		entityVectors[Arrays.binarySearch(getEntities(), entity)] = vector;
+	}
+
+	/**
+	 * Sets the compatibility score of every mention with each of its candidates.
+	 */
+	public void score() {
+		getEntities();
+		final int[] terms = getContextTerms();
+		final EntityMatrix entityMatrix = new EntityMatrix(terms);
+
+		int rows = mentions.size();
+		int blockRows = Math.max(MIN_BLOCK_ROWS, (rows + THREADS - 1) / THREADS);
+		if (blockRows >= rows) {
+			scoreRows(0, rows, terms, entityMatrix);
+			return;
+		}
+		List<Future<?>> blocks = new ArrayList<Future<?>>();
+		for (int start = 0; start < rows; start += blockRows) {
+			final int from = start;
+			final int to = Math.min(rows, start + blockRows);
+			blocks.add(EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					scoreRows(from, to, terms, entityMatrix);
+				}
+			}));
+		}
+		try {
+			for (Future<?> block: blocks) {
+				block.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while scoring mentions.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Scoring mentions failed.", e.getCause());
+		}
+	}
+
+	/**
+	 * Sorted distinct term ids of the contexts, the rows of the entity matrix.
+	 */
+	private int[] getContextTerms() {
+		int count = 0;
+		for (ArraySparseVector context: contexts) {
+			count += context.size();
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (ArraySparseVector context: contexts) {
+			for (int i = 0; i < context.size(); ++i) {
+				result[count++] = context.getTermId(i);
+			}
+		}
+		Arrays.sort(result);
+		int distinct = 0;
+		for (int i = 0; i < result.length; ++i) {
+			if (i == 0 || result[i] != result[i - 1]) {
+				result[distinct++] = result[i];
+			}
+		}
+		return Arrays.copyOf(result, distinct);
+	}
+
+	/**
+	 * Terms x candidates matrix in compressed sparse row form.
+	 */
+	private class EntityMatrix {
+		final int[] rowStart;
+		final int[] columns;
+		final float[] weights;
+
+		EntityMatrix(int[] terms) {
+			rowStart = new int[terms.length + 1];
+			for (TermIdVector vector: entityVectors) {
+				if (vector == null) {
+					continue;
+				}
+				for (int i = 0; i < vector.size(); ++i) {
+					int row = Arrays.binarySearch(terms, vector.getTermId(i));
+					if (row >= 0) {
+						++rowStart[row + 1];
+					}
+				}
+			}
+			for (int row = 0; row < terms.length; ++row) {
+				rowStart[row + 1] += rowStart[row];
+			}
+			columns = new int[rowStart[terms.length]];
+			weights = new float[rowStart[terms.length]];
+			int[] next = Arrays.copyOf(rowStart, terms.length);
+			for (int column = 0; column < entityVectors.length; ++column) {
+				TermIdVector vector = entityVectors[column];
+				if (vector == null) {
+					continue;
+				}
+				for (int i = 0; i < vector.size(); ++i) {
+					int row = Arrays.binarySearch(terms, vector.getTermId(i));
+					if (row >= 0) {
+						columns[next[row]] = column;
+						weights[next[row]] = vector.getWeight(i);
+						++next[row];
+					}
+				}
+			}
+		}
+	}
+
+	private void scoreRows(int from, int to, int[] terms, EntityMatrix entityMatrix) {
+		double[] dots = new double[entities.length];
+		for (int mention = from; mention < to; ++mention) {
+			ArraySparseVector context = contexts.get(mention);
+			for (int i = 0; i < context.size(); ++i) {
+				int row = Arrays.binarySearch(terms, context.getTermId(i));
+				double weight = context.getWeight(i);
+				for (int k = entityMatrix.rowStart[row]; k < entityMatrix.rowStart[row + 1]; ++k) {
+					dots[entityMatrix.columns[k]] += weight * entityMatrix.weights[k];
+				}
+			}
+			for (Integer entity: mentionCandidates.get(mention)) {
+				int column = Arrays.binarySearch(entities, entity);
+				TermIdVector vector = entityVectors[column];
+				BigDecimal score = vector == null || vector.getNorm() == 0 ? BigDecimal.ZERO :
+						new BigDecimal(dots[column] / vector.getNorm());
+				mentions.get(mention).setEntityCompatibilityScore(entity, score);
+			}
+			// Only columns sharing a term with the context were touched.
+			for (int i = 0; i < context.size(); ++i) {
+				int row = Arrays.binarySearch(terms, context.getTermId(i));
+				for (int k = entityMatrix.rowStart[row]; k < entityMatrix.rowStart[row + 1]; ++k) {
+					dots[entityMatrix.columns[k]] = 0;
+				}
+			}
+		}
+	}
+}
@@ -143,6 +143,21 @@ public class Mention implements Comparable<Mention> {
 	 * @param allContext List of input tokens in ascending order by offset.
 	 */
 	public List<String> extractContext(List<Token> allContext) {
+		int fromIndex = getContextStart(allContext);
+		int toIndex = fromIndex + Math.min(allContext.size(), WINDOW_SIZE);
+
+		ArrayList<String> result = new ArrayList<String>();
+		for (Token token: allContext.subList(fromIndex, toIndex)) {
+			result.add(token.getToken());
+		}
+		return result;
+	}
+	
+	/**
+	 * Index of the first token of the context, which has min(WINDOW_SIZE, tokens) tokens.
+	 * @param allContext List of input tokens in ascending order by offset.
+	 */
+	public int getContextStart(List<Token> allContext) {
 		int start = 0;
 		int end = allContext.size() - 1;
 		int middle = (start + end + 1) / 2;
@@ -157,23 +172,13 @@ public class Mention implements Comparable<Mention> {
 			middle = (start + end + 1) / 2;
 		}
 
-		int fromIndex, toIndex;
 		if (middle - WINDOW_SIZE / 2 < 0) {
-			fromIndex = 0;
-			toIndex = Math.min(allContext.size(), fromIndex + WINDOW_SIZE);
+			return 0;
 		} else if (middle + WINDOW_SIZE / 2 >= allContext.size()){
-			toIndex = allContext.size();
-			fromIndex = Math.max(0, toIndex - WINDOW_SIZE);
+			return Math.max(0, allContext.size() - WINDOW_SIZE);
 		} else {
-			fromIndex = middle - WINDOW_SIZE / 2;
-			toIndex = fromIndex + WINDOW_SIZE;
-		}
-
-		ArrayList<String> result = new ArrayList<String>();
-		for (Token token: allContext.subList(fromIndex, toIndex)) {
-			result.add(token.getToken());
+			return middle - WINDOW_SIZE / 2;
 		}
-		return result;
 	}
 	
 	/**
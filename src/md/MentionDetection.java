@@ -2,6 +2,8 @@ package md;
 
 import index.CandidatesIndex;
 import index.EntityTFIDFIndex;
+import index.MappedEntityEmbeddings;
+import index.MappedEntityTFIDFStore;
 import index.MentionIndex;
 import index.TermDocumentFrequencyIndex;
 
@@ -9,13 +11,23 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.Set;
 
+import data.ArraySparseVector;
+import data.CompactTFIDFEntry;
+import data.MappedSparseVector;
+import data.SparseVector;
+import data.TermIdVector;
 import data.TFIDFEntry;
+import edu.umd.cloud9.io.pair.PairOfInts;
 import knowledgebase.WikiUtils;
 
 public class MentionDetection {
@@ -37,6 +49,10 @@ public class MentionDetection {
 	private String text;
 	private CandidatesIndex mentionIndex;
 	private EntityTFIDFIndex entityTFIDFIndex;
+	private MappedEntityTFIDFStore entityVectorStore;
+	private EntityTFIDFIndex.Prefetch prefetch;
+	private MappedEntityEmbeddings entityEmbeddings;
+	private MentionSpotter spotter;
 	private TermDocumentFrequencyIndex dfIndex;
 		
 	public MentionDetection(String text, CandidatesIndex mentionIndex, 
@@ -47,13 +63,39 @@ public class MentionDetection {
 		this.dfIndex = dfIndex;
 	}
 	
+	/**
+	 * Reads entity vectors from a memory mapped store instead of the tf-idf index, which may then
+	 * be null. Contexts are @see data.ArraySparseVector , so scoring then builds no Writable.
+	 */
+	public void setEntityVectorStore(MappedEntityTFIDFStore entityVectorStore) {
+		this.entityVectorStore = entityVectorStore;
+	}
+	
+	/**
+	 * Approximate mode: local compatibility is the dot product of the entity embedding with the
+	 * context projected the same way, clamped at 0, instead of the tf-idf cosine similarity.
+	 * Entity vectors are then not read at all.
+	 */
+	public void setEntityEmbeddings(MappedEntityEmbeddings entityEmbeddings) {
+		this.entityEmbeddings = entityEmbeddings;
+	}
+	
+	/**
+	 * Finds mentions by walking the spotter's trie instead of looking up every ngram, see
+	 * @see #spotNgrams . The spotter must be built over the keys of the mention index.
+	 */
+	public void setSpotter(MentionSpotter spotter) {
+		this.spotter = spotter;
+	}
+	
 	public void setSkipZeroLocalCompatibility() {
 		skipZeroLocalCompatibility = true;
 	}
 	
 	public List<Mention> solve() throws IOException {
-		List<Token> tokens = tokenizeText(text);
-		List<Ngram> ngrams = gatherNgrams(tokens, NGRAM_SIZE);
+		TokenizedText tokenizedText = TokenizedText.tokenize(text);
+		List<Ngram> ngrams = spotNgrams(tokenizedText);
+		List<Token> tokens = tokenizedText.toTokens();
 		List<Mention> nameMentions = extractMentions(ngrams, tokens);
 		nameMentions = computeLocalCompatibilities(nameMentions, tokens);
 		computeImportance(nameMentions);
@@ -68,8 +110,9 @@ public class MentionDetection {
 	 */
 	public List<Mention> getCandidateMentions(double percentMentions) 
 			throws IOException {
-		List<Token> tokens = tokenizeText(text);
-		List<Ngram> ngrams = gatherNgrams(tokens, NGRAM_SIZE);
+		TokenizedText tokenizedText = TokenizedText.tokenize(text);
+		List<Ngram> ngrams = spotNgrams(tokenizedText);
+		List<Token> tokens = tokenizedText.toTokens();
 		List<Mention> result = extractMentions(ngrams, tokens);
 		for (Mention mention: result) {
 			for (Integer entity: mentionIndex.getCandidateEntities(mention)) {
@@ -79,45 +122,55 @@ public class MentionDetection {
 		return result;
 	}
 	
+	/**
+	 * @see TokenizedText for the tokens as offsets, without a Token per token.
+	 */
 	public static List<Token> tokenizeText(String text) {
-		String delimiters = DELIMITERS + DELIMITERS_KEEP;
-		ArrayList<Token> result = new ArrayList<Token>();
-		StringBuilder token = new StringBuilder("");
-		int offset = -1;
-		
-		// Enforce text ends with a delimiter.
-		text = text + " ";
-		for(int i = 0; i < text.length(); ++i) {
-			char ch = text.charAt(i);
-			if (delimiters.indexOf(ch) == -1) {
-				if (token.length() == 0) {
-					// Start new token.
-					offset = i;
-				}
-				// Append character.
-				token.append(ch);
-			} else {
-				// Add token to results if it is not empty.
-				if (token.length() > 0) {
-					result.add(new Token(token.toString(), offset));
-				}
-				
-				// If delimiter is '.' or '!' etc, add a token for it.
-				if (DELIMITERS_KEEP.indexOf(ch) != -1) {
-					result.add(new Token("" + ch, i));
-				}
-				
-				// Start new token.
-				token = new StringBuilder("");
-			}
+		return TokenizedText.tokenize(text).toTokens();
+	}
+	
+	/**
+	 * Ngrams of at most NGRAM_SIZE tokens to search in the mention index: only the ones in the
+	 * index if a spotter is set, else all of them.
+	 */
+	public List<Ngram> spotNgrams(List<Token> tokens) {
+		if (spotter == null) {
+			return gatherNgrams(tokens, NGRAM_SIZE);
 		}
-		return result;
+		return setOriginalNgrams(spotter.spot(tokens, NGRAM_SIZE));
+	}
+	
+	/**
+	 * Same as @see #spotNgrams(List) . The spotter looks the tokens up without building them,
+	 * the ngrams of all tokens need the @see Token objects.
+	 */
+	public List<Ngram> spotNgrams(TokenizedText tokenizedText) {
+		if (spotter == null) {
+			return gatherNgrams(tokenizedText.toTokens(), NGRAM_SIZE);
+		}
+		return setOriginalNgrams(spotter.spot(tokenizedText, NGRAM_SIZE));
 	}
 	
+	private List<Ngram> setOriginalNgrams(List<Ngram> ngrams) {
+		for (Ngram ngram: ngrams) {
+			ngram.setOriginalNgram(
+					text.substring(ngram.getOffset(), ngram.getOffset() + ngram.getLength()));
+		}
+		return ngrams;
+	}
+	
+	/**
+	 * Ngrams of at most maxSize tokens, by end token, then the single token, then by start token.
+	 * If a spotter is set, an ngram is not extended once no key of the mention index starts with
+	 * it (as it is or with " - " replaced by " "), so only the ngrams that may be keys are kept.
+	 */
 	public ArrayList<Ngram> gatherNgrams(List<Token> tokens, int maxSize) {
 		if (maxSize < 0) {
 			throw new IllegalArgumentException();
 		}
+		if (spotter != null) {
+			return gatherPrefixNgrams(tokens, maxSize);
+		}
 
 		ArrayList<Ngram> result = new ArrayList<Ngram>();
 		Ngram ngrams[] = new Ngram[maxSize];
@@ -157,14 +210,70 @@ public class MentionDetection {
 		}
 		return result;
 	}
+
 	
+	private ArrayList<Ngram> gatherPrefixNgrams(List<Token> tokens, int maxSize) {
+		ArrayList<Ngram> result = new ArrayList<Ngram>();
+		// Ngrams ending in the previous token that keys start with, by start token.
+		List<Ngram> ngrams = new ArrayList<Ngram>();
+		List<MentionSpotter.Path> paths = new ArrayList<MentionSpotter.Path>();
+		List<Ngram> nextNgrams = new ArrayList<Ngram>();
+		List<MentionSpotter.Path> nextPaths = new ArrayList<MentionSpotter.Path>();
+		if (maxSize == 0) {
+			return result;
+		}
+		for (Token token: tokens) {
+			int tokenId = spotter.getTokenId(token.getToken());
+			Ngram single = new Ngram(token);
+			MentionSpotter.Path singlePath = spotter.new Path();
+			boolean singleLive = singlePath.extend(tokenId);
+			if (singlePath.isPrefix()) {
+				result.add(single.copy());
+			}
+			
+			for (int j = 0; j < ngrams.size(); ++j) {
+				Ngram ngram = ngrams.get(j);
+				MentionSpotter.Path path = paths.get(j);
+				ngram.append(token);
+				boolean live = path.extend(tokenId);
+				if (path.isPrefix()) {
+					result.add(ngram.copy());
+				}
+				if (live && path.getLength() < maxSize) {
+					nextNgrams.add(ngram);
+					nextPaths.add(path);
+				}
+			}
+			if (singleLive && maxSize > 1) {
+				nextNgrams.add(single);
+				nextPaths.add(singlePath);
+			}
+			
+			List<Ngram> swapNgrams = ngrams;
+			ngrams = nextNgrams;
+			nextNgrams = swapNgrams;
+			nextNgrams.clear();
+			List<MentionSpotter.Path> swapPaths = paths;
+			paths = nextPaths;
+			nextPaths = swapPaths;
+			nextPaths.clear();
+		}
+
+		for (Ngram ngram: result) {
+			String tokenSpan = text.substring(ngram.getOffset(), ngram.getOffset() + ngram.getLength());
+			ngram.setOriginalNgram(tokenSpan);
+		}
+		return result;
+	}	
 	
 	/*
 	 * Searches the ngrams in the mention index. Ranks them by keyphraseness and returns the top
 	 * scoring x% as a map of (mention, candidate entities array).
 	 */
 	public List<Mention> extractMentions(List<Ngram> ngrams, List<Token> tokens) throws IOException {
-		TreeSet<Mention> keyphrasenessTree = new TreeSet<Mention>(); 
+		List<Mention> aboveThreshold = new ArrayList<Mention>();
+		TopMentions top = useThreshold ?
+				null : new TopMentions(Math.max((int)(tokens.size() * percent), 1));
 		
 		for (Ngram ngram: ngrams) {
 			String normalizedNgram = ngram.getNgram();
@@ -179,48 +288,55 @@ public class MentionDetection {
 					System.out.println("Skipped " + normalizedNgram + " candidates " + candidatesCount);
 					continue;
 				}
-				Mention mention = new Mention(ngram);
-				mention.computeKeyphrasenessAndDF(mentionIndex);
 				if (useThreshold) {
-					rankByThreshold(mention, keyphrasenessTree);
+					Mention mention = new Mention(ngram);
+					mention.computeKeyphrasenessAndDF(mentionIndex);
+					if (mention.getKeyphraseness() >= percent) {
+						aboveThreshold.add(mention);
+					}
 				} else {
-					int toExtract = Math.max((int)(tokens.size() * percent), 1);
-					rankMention(mention, keyphrasenessTree, toExtract);
+					PairOfInts pair = mentionIndex.getKeyphraseness(normalizedNgram);
+					top.offer(ngram, (double) pair.getLeftElement() / pair.getRightElement());
 				}
 			} 
 		}
 		
-		return new ArrayList<Mention>(keyphrasenessTree);
+		if (!useThreshold) {
+			return top.toMentions(mentionIndex);
+		}
+		return sortDistinct(aboveThreshold);
 	}
 	
 	/*
-	 *  If the mention is in the top scoring set, it is added to the tree. At most toExtract elements
-	 *  are added in the tree. 
+	 * Sorts the mentions and keeps the first of the equal ones, as adding them to a TreeSet does.
 	 */
-	public static void rankMention(Mention mention, TreeSet<Mention> tree, int toExtract) {
-		if (tree.size() < toExtract) {
-			tree.add(mention);
-		} else {
-			if (tree.first().getKeyphraseness() < mention.getKeyphraseness()) {
-				tree.remove(tree.first());
-				tree.add(mention);
+	private static List<Mention> sortDistinct(List<Mention> mentions) {
+		Collections.sort(mentions);
+		List<Mention> result = new ArrayList<Mention>(mentions.size());
+		for (Mention mention: mentions) {
+			if (result.isEmpty() || result.get(result.size() - 1).compareTo(mention) != 0) {
+				result.add(mention);
 			}
 		}
-	}	
-	
-	public void rankByThreshold(Mention mention, TreeSet<Mention> tree) {
-		if (mention.getKeyphraseness() >= percent) {
-			tree.add(mention);
-		}
-	}	
+		return result;
+	}
 	
 	public List<Mention>	computeLocalCompatibilities(List<Mention> mentions, List<Token> tokens) {
+		List<Integer[]> candidates = new ArrayList<Integer[]>(mentions.size());
+		Set<Integer> entities = new HashSet<Integer>();
+		for (Mention mention: mentions) {
+			Integer[] mentionCandidates = mentionIndex.getCandidateEntities(mention);
+			candidates.add(mentionCandidates);
+			entities.addAll(Arrays.asList(mentionCandidates));
+		}
+		prefetchCandidates(entities);
+		try {
+			computeLocalCompatibilities(mentions, candidates, tokens);
+		} finally {
+			endPrefetch();
+		}
 		List<Mention> result = new ArrayList<Mention>();
 		for (Mention mention: mentions) {
-			for (Integer entity: mentionIndex.getCandidateEntities(mention)) {
-				BigDecimal score = getLocalMentionEntityCompatibility(mention, entity, tokens);
-				mention.setEntityCompatibilityScore(entity, score);
-			}
 			if (skipZeroLocalCompatibility && 
 					mention.computeSumCompatibilities().compareTo(BigDecimal.ZERO) == 0) {
 				continue;
@@ -230,12 +346,181 @@ public class MentionDetection {
 		return result;
 	}
 	
+	/**
+	 * Sets the compatibility scores of every mention with its candidates. The mentions are visited
+	 * in offset order through one @see ContextWindow , so each context vector is built from the
+	 * previous one and only once per mention. For sparse collections all the scores of the
+	 * document are computed together by a @see DocumentCompatibilityScorer .
+	 */
+	public void computeLocalCompatibilities(final List<Mention> mentions, 
+			List<Integer[]> candidates, List<Token> tokens) {
+		Integer[] order = new Integer[mentions.size()];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(mentions.get(a).getOffset(), mentions.get(b).getOffset());
+			}
+		});
+		ContextWindow window = new ContextWindow(tokens, dfIndex);
+		if (entityEmbeddings != null || !isSparse()) {
+			for (int i: order) {
+				window.moveTo(mentions.get(i));
+				computeLocalCompatibilities(mentions.get(i), candidates.get(i), window);
+			}
+			return;
+		}
+		DocumentCompatibilityScorer scorer = new DocumentCompatibilityScorer();
+		for (int i: order) {
+			window.moveTo(mentions.get(i));
+			ArraySparseVector context = window.getSparseTFIDFContext();
+			context.normalize();
+			scorer.addMention(mentions.get(i), context, candidates.get(i));
+		}
+		for (int entity: scorer.getEntities()) {
+			scorer.setEntityVector(entity, getEntityVector(entity));
+		}
+		scorer.score();
+	}
+	
+	/**
+	 * Sparse vector of the entity from the mapped store or the tf-idf index, null if missing.
+	 */
+	private TermIdVector getEntityVector(int entity) {
+		if (entityVectorStore != null) {
+			return entityVectorStore.getVector(entity);
+		}
+		return prefetch != null ? prefetch.getEntitySparseVector(entity) : 
+				entityTFIDFIndex.getEntitySparseVector(entity);
+	}
+	
+	/**
+	 * Starts reading the vectors of all candidates of a document in the background, see
+	 * @see EntityTFIDFIndex#prefetch . Scoring then waits only for the batch holding each vector
+	 * instead of doing one blocking read per candidate. Nothing to do with a mapped store.
+	 */
+	public void prefetchCandidates(Collection<Integer> entities) {
+		endPrefetch();
+		if (entityVectorStore == null && entityEmbeddings == null) {
+			prefetch = entityTFIDFIndex.prefetch(entities);
+		}
+	}
+	
+	public void endPrefetch() {
+		if (prefetch != null) {
+			prefetch.cancel();
+			prefetch = null;
+		}
+	}
+	
+	/**
+	 * Sets the compatibility score of the mention with each candidate. The context vector is built
+	 * once for all candidates.
+	 */
+	public void computeLocalCompatibilities(Mention mention, Integer[] candidates, 
+			List<Token> tokens) {
+		ContextWindow window = new ContextWindow(tokens, dfIndex);
+		window.moveTo(mention);
+		computeLocalCompatibilities(mention, candidates, window);
+	}
+	
+	/**
+	 * Scores the candidates against the context in the window, which must be at the mention.
+	 */
+	private void computeLocalCompatibilities(Mention mention, Integer[] candidates, 
+			ContextWindow window) {
+		if (entityEmbeddings != null) {
+			float[] context = entityEmbeddings.getProjection().project(window.getSparseTFIDFContext());
+			for (Integer entity: candidates) {
+				mention.setEntityCompatibilityScore(entity, getEmbeddingCompatibility(context, entity));
+			}
+			return;
+		}
+		if (isSparse()) {
+			ArraySparseVector context = window.getSparseTFIDFContext();
+			context.normalize();
+			for (Integer entity: candidates) {
+				mention.setEntityCompatibilityScore(entity, 
+						getLocalMentionEntityCompatibility(context, entity));
+			}
+			return;
+		}
+		TFIDFEntry context = window.getTFIDFContext();
+		double contextNorm = window.getNorm();
+		for (Integer entity: candidates) {
+			mention.setEntityCompatibilityScore(entity, 
+					cosineDistance(context, contextNorm, getCompactEntityTFIDFVector(entity)));
+		}
+	}
+	
 	public BigDecimal getLocalMentionEntityCompatibility(Mention mention, int entity, 
 			List<Token> tokens) {
 		List<String> context = mention.extractContext(tokens);
+		if (entityEmbeddings != null || isSparse()) {
+			return getLocalMentionEntityCompatibility(getNormalizedSparseTFIDFContext(context), entity);
+		}
 		TFIDFEntry tfidfContext = getTFIDFContext(context);
-		TFIDFEntry tfidfEntity = entityTFIDFIndex.getEntityTFIDFVector(entity);
-		return cosineDistance(tfidfContext, tfidfEntity);
+		return cosineDistance(tfidfContext, getNorm(tfidfContext.values()), 
+				getCompactEntityTFIDFVector(entity));
+	}
+	
+	private CompactTFIDFEntry getCompactEntityTFIDFVector(int entity) {
+		return prefetch != null ? prefetch.getCompactEntityTFIDFVector(entity) : 
+				entityTFIDFIndex.getCompactEntityTFIDFVector(entity);
+	}
+		
+	/**
+	 * Cosine similarity of a unit length context vector and the entity vector: one dot product,
+	 * as the entity vector norm is stored with it (and is 1 for normalized collections).
+	 * In approximate mode, the dot product of the projections instead.
+	 */
+	public BigDecimal getLocalMentionEntityCompatibility(ArraySparseVector normalizedContext,
+			int entity) {
+		if (entityEmbeddings != null) {
+			return getEmbeddingCompatibility(
+					entityEmbeddings.getProjection().project(normalizedContext), entity);
+		}
+		if (entityVectorStore != null) {
+			MappedSparseVector tfidfEntity = entityVectorStore.getVector(entity);
+			if (tfidfEntity == null || tfidfEntity.getNorm() == 0) {
+				return BigDecimal.ZERO;
+			}
+			// Called on the entity vector: passing a SparseVector as an ArraySparseVector would make the
+		// verifier load SparseVector, and so Hadoop, even on the store path.
+		return new BigDecimal(tfidfEntity.dot(normalizedContext) / tfidfEntity.getNorm());
+		}
+		SparseVector tfidfEntity = prefetch != null ? prefetch.getEntitySparseVector(entity) : 
+				entityTFIDFIndex.getEntitySparseVector(entity);
+		if (tfidfEntity == null || tfidfEntity.getNorm() == 0) {
+			return BigDecimal.ZERO;
+		}
+		// Called on the entity vector: passing a SparseVector as an ArraySparseVector would make the
+		// verifier load SparseVector, and so Hadoop, even on the store path.
+		return new BigDecimal(tfidfEntity.dot(normalizedContext) / tfidfEntity.getNorm());
+	}
+	
+	/**
+	 * Dot product of the entity embedding with the projected context, clamped at 0; 0 for an entity
+	 * without embedding.
+	 */
+	private BigDecimal getEmbeddingCompatibility(float[] projectedContext, int entity) {
+		int entityId = entityEmbeddings.getEntityId(entity);
+		if (entityId == MappedEntityEmbeddings.NOT_FOUND) {
+			return BigDecimal.ZERO;
+		}
+		return new BigDecimal(Math.max(0, entityEmbeddings.dot(entityId, projectedContext)));
+	}
+	
+	private boolean isSparse() {
+		return entityVectorStore != null || (entityTFIDFIndex != null && entityTFIDFIndex.isSparse());
+	}
+	
+	public ArraySparseVector getNormalizedSparseTFIDFContext(List<String> context) {
+		ArraySparseVector result = getSparseTFIDFContext(context);
+		result.normalize();
+		return result;
 	}
 		
 	public TFIDFEntry getTFIDFContext(List<String> context) {
@@ -249,6 +534,32 @@ public class MentionDetection {
 		return result;
 	}
 	
+	/**
+	 * Context vector over the term ids of the df index. Terms without an id cannot match an entity
+	 * term, they only count in the norm, as in @see #getTFIDFContext .
+	 */
+	public ArraySparseVector getSparseTFIDFContext(List<String> context) {
+		Map<String, Integer> tfContext = getTFContext(context);
+		int[] termIds = new int[tfContext.size()];
+		float[] weights = new float[tfContext.size()];
+		int size = 0;
+		double unindexedSquaredNorm = 0;
+		for (Map.Entry<String, Integer> entry: tfContext.entrySet()) {
+			int termId = dfIndex.getTermId(entry.getKey());
+			double weight = entry.getValue() * dfIndex.getIDF(termId);
+			if (termId == TermDocumentFrequencyIndex.UNKNOWN_TERM) {
+				unindexedSquaredNorm += weight * weight;
+			} else {
+				termIds[size] = termId;
+				weights[size] = (float) weight;
+				++size;
+			}
+		}
+		ArraySparseVector result = new ArraySparseVector();
+		result.set(termIds, weights, size, unindexedSquaredNorm);
+		return result;
+	}
+	
 	public Map<String, Integer> getTFContext(List<String> context) {
 		Map<String, Integer> result = new HashMap<String, Integer>();
 		for (String word: context) {
@@ -262,7 +573,13 @@ public class MentionDetection {
 	}
 	
 	public BigDecimal cosineDistance(Map<String, Double> v1, Map<String, Double> v2) {
-
+		return cosineDistance(v1, getNorm(v1.values()), v2);
+	}
+	
+	/**
+	 * @param v1Norm norm of v1, when it is known already
+	 */
+	public BigDecimal cosineDistance(Map<String, Double> v1, double v1Norm, Map<String, Double> v2) {
 		BigDecimal numerator = new BigDecimal(0);
 		for (String word: v1.keySet()) {
 			if (v2.containsKey(word)) {
@@ -275,10 +592,42 @@ public class MentionDetection {
 		}
 		
 		return numerator
-				.divide(new BigDecimal(getNorm(v1.values())), RoundingMode.HALF_UP)
+				.divide(new BigDecimal(v1Norm), RoundingMode.HALF_UP)
 				.divide(new BigDecimal(getNorm(v2.values())), RoundingMode.HALF_UP);
 	}
 	
+	/**
+	 * Same as @see #cosineDistance(Map, double, Map), walking the terms of the cached entity vector
+	 * instead of building a map of it.
+	 */
+	public BigDecimal cosineDistance(Map<String, Double> v1, double v1Norm, CompactTFIDFEntry v2) {
+		BigDecimal numerator = new BigDecimal(0);
+		double v2Norm = 0;
+		for (int i = 0; i < v2.size(); ++i) {
+			double weight = v2.getWeight(i);
+			v2Norm += weight * weight;
+			Double contextWeight = v1.get(v2.getTerm(i));
+			if (contextWeight != null) {
+				numerator = numerator.add(
+						new BigDecimal(contextWeight).multiply(new BigDecimal(weight)));
+			}
+		}
+		
+		return numerator
+				.divide(new BigDecimal(v1Norm), RoundingMode.HALF_UP)
+				.divide(new BigDecimal(Math.sqrt(v2Norm)), RoundingMode.HALF_UP);
+	}
+	
+	/**
+	 * Cosine similarity of sparse vectors, 0 if a vector is missing or empty.
+	 */
+	public BigDecimal cosineDistance(ArraySparseVector v1, ArraySparseVector v2) {
+		if (v1 == null || v2 == null || v1.getNorm() == 0 || v2.getNorm() == 0) {
+			return BigDecimal.ZERO;
+		}
+		return new BigDecimal(v1.dot(v2) / v1.getNorm() / v2.getNorm());
+	}
+	
 	public double getNorm(Collection<Double> v) {
 		double res = 0;
 		for (Double value: v) {
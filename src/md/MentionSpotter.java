@@ -0,0 +1,202 @@
+package md;
+
+import index.TokenPrefixSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the ngrams of a text that are keys of a mention index without enumerating all of them as
+ * strings: @see #spot walks the @see index.TokenPrefixSet of the keys from every token and stops
+ * at the first token that no key continues with, so only dictionary matches are materialized.
+ * Finds the same ngrams as @see MentionDetection#gatherNgrams filtered by
+ * @see MentionDetection#extractMentions , including the fallback dropping " - " from ngrams that
+ * are not keys.
+ */
+public class MentionSpotter {
+	public static final String DASH = "-";
+
+	private final TokenPrefixSet prefixes;
+	private final int dashId;
+
+	/**
+	 * @param keys normalized mentions, tokens separated by single spaces
+	 */
+	public MentionSpotter(Iterable<?> keys) {
+		this(new TokenPrefixSet(keys));
+	}
+
+	public MentionSpotter(TokenPrefixSet prefixes) {
+		this.prefixes = prefixes;
+		this.dashId = prefixes.getTokenId(DASH);
+	}
+
+	public TokenPrefixSet getPrefixes() {
+		return prefixes;
+	}
+
+	public int getTokenId(String token) {
+		return prefixes.getTokenId(token);
+	}
+
+	/**
+	 * Walk of the ngrams with the same start token, both as they are and with the inner dashes
+	 * dropped as String.replaceAll(" - ", " ") drops them.
+	 */
+	class Path {
+		static final int NO_MATCH = 0;
+		static final int EXACT = 1;
+		static final int DROPPED = 2;
+
+		private int length = 0;
+		private int exact = TokenPrefixSet.ROOT;
+		// Node with the inner dashes dropped, not counting the last token of the ngram.
+		private int dropped = TokenPrefixSet.ROOT;
+		// Node with the inner dashes dropped; the last token is always kept.
+		private int fallback = TokenPrefixSet.NONE;
+		private boolean anyDropped = false;
+		private boolean fallbackDropped = false;
+		private boolean previousDropped = false;
+
+		/**
+		 * Extends the ngram with the token. Returns false if no key starts with a longer ngram,
+		 * in either form.
+		 */
+		boolean extend(int tokenId) {
+			exact = prefixes.getChild(exact, tokenId);
+			fallback = prefixes.getChild(dropped, tokenId);
+			fallbackDropped = anyDropped;
+			boolean droppable = tokenId == dashId && dashId != TokenPrefixSet.NONE && length > 0 &&
+					!previousDropped;
+			if (droppable) {
+				anyDropped = true;
+				previousDropped = true;
+			} else {
+				dropped = fallback;
+				previousDropped = false;
+			}
+			++length;
+			return exact != TokenPrefixSet.NONE || (anyDropped && dropped != TokenPrefixSet.NONE);
+		}
+
+		int getLength() {
+			return length;
+		}
+
+		/**
+		 * Whether a key starts with the ngram, in either form.
+		 */
+		boolean isPrefix() {
+			return exact != TokenPrefixSet.NONE ||
+					(fallbackDropped && fallback != TokenPrefixSet.NONE);
+		}
+
+		int getMatch() {
+			if (prefixes.isTerminal(exact)) {
+				return EXACT;
+			}
+			return fallbackDropped && prefixes.isTerminal(fallback) ? DROPPED : NO_MATCH;
+		}
+	}
+
+	/**
+	 * Ngrams of at most maxSize tokens that are keys, in the order of
+	 * @see MentionDetection#gatherNgrams . An ngram that is not a key but is one once " - " is
+	 * replaced by " " (as String.replaceAll does it) is returned with the replaced text.
+	 * The original text of the ngrams is not set.
+	 */
+	public List<Ngram> spot(List<Token> tokens, int maxSize) {
+		int[] ids = new int[tokens.size()];
+		for (int i = 0; i < ids.length; ++i) {
+			ids[i] = getTokenId(tokens.get(i).getToken());
+		}
+		List<Ngram> result = new ArrayList<Ngram>();
+		for (long[] match: match(ids, maxSize)) {
+			String[] ngramTokens = new String[(int) (match[1] - match[0] + 1)];
+			for (int i = 0; i < ngramTokens.length; ++i) {
+				ngramTokens[i] = tokens.get((int) match[0] + i).getToken();
+			}
+			Token first = tokens.get((int) match[0]);
+			Token last = tokens.get((int) match[1]);
+			result.add(toNgram(ngramTokens, match[2] == 1, first.getOffset(),
+					last.getOffset() + last.getLength()));
+		}
+		return result;
+	}
+
+	/**
+	 * Same as @see #spot(List, int) , but the tokens are looked up by their offsets and hash, so
+	 * strings are only built for the tokens of the returned ngrams.
+	 */
+	public List<Ngram> spot(TokenizedText text, int maxSize) {
+		int[] ids = new int[text.size()];
+		for (int i = 0; i < ids.length; ++i) {
+			ids[i] = text.isRegular(i) ?
+					prefixes.getTokenId(text.getText(), text.getStart(i), text.getEnd(i),
+							text.getHash(i)) :
+					getTokenId(text.getToken(i));
+		}
+		List<Ngram> result = new ArrayList<Ngram>();
+		for (long[] match: match(ids, maxSize)) {
+			String[] ngramTokens = new String[(int) (match[1] - match[0] + 1)];
+			for (int i = 0; i < ngramTokens.length; ++i) {
+				ngramTokens[i] = text.getToken((int) match[0] + i);
+			}
+			result.add(toNgram(ngramTokens, match[2] == 1, text.getStart((int) match[0]),
+					text.getEnd((int) match[1])));
+		}
+		return result;
+	}
+
+	/**
+	 * (start, end, 1 if the dashes are dropped else 0) of the matching ngrams, by end, then the
+	 * single token, then by start.
+	 */
+	private List<long[]> match(int[] ids, int maxSize) {
+		List<long[]> matches = new ArrayList<long[]>();
+		for (int start = 0; start < ids.length; ++start) {
+			Path path = new Path();
+			for (int end = start; end < ids.length && end - start < maxSize; ++end) {
+				boolean live = path.extend(ids[end]);
+				int match = path.getMatch();
+				if (match != Path.NO_MATCH) {
+					matches.add(new long[] {start, end, match == Path.DROPPED ? 1 : 0});
+				}
+				if (!live) {
+					break;
+				}
+			}
+		}
+		Collections.sort(matches, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				if (a[1] != b[1]) {
+					return a[1] < b[1] ? -1 : 1;
+				}
+				boolean aSingle = a[0] == a[1];
+				boolean bSingle = b[0] == b[1];
+				if (aSingle != bSingle) {
+					return aSingle ? -1 : 1;
+				}
+				return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+			}
+		});
+		return matches;
+	}
+
+	private static Ngram toNgram(String[] tokens, boolean dropDashes, int start, int end) {
+		StringBuilder text = new StringBuilder(tokens[0]);
+		boolean previousDropped = false;
+		for (int i = 1; i < tokens.length; ++i) {
+			if (dropDashes && i < tokens.length - 1 && tokens[i].equals(DASH) && !previousDropped) {
+				previousDropped = true;
+				continue;
+			}
+			previousDropped = false;
+			text.append(' ').append(tokens[i]);
+		}
+		return new Ngram(text.toString(), start, end - start);
+	}
+}
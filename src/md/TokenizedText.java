@@ -0,0 +1,157 @@
+package md;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokens of a text as (start, end) offsets into it, with the hash of each lower-cased token.
+ * Tokens are split at @see MentionDetection#DELIMITERS and at
+ * @see MentionDetection#DELIMITERS_KEEP , which are tokens themselves. Characters are classified
+ * through a table and no string is built until a token is asked for, see @see #getToken and the
+ * @see Token adapter @see #toTokens . @see MentionSpotter#spot(TokenizedText, int) looks the
+ * tokens up by offsets and hash.
+ */
+public class TokenizedText {
+	private static final byte TOKEN = 0;
+	private static final byte DELIMITER = 1;
+	private static final byte DELIMITER_KEEP = 2;
+	// Characters String.toLowerCase may not map one by one as Character.toLowerCase does.
+	private static final byte TOKEN_IRREGULAR = 3;
+	private static final byte[] CHAR_CLASSES = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (char ch: MentionDetection.DELIMITERS.toCharArray()) {
+			CHAR_CLASSES[ch] = DELIMITER;
+		}
+		for (char ch: MentionDetection.DELIMITERS_KEEP.toCharArray()) {
+			CHAR_CLASSES[ch] = DELIMITER_KEEP;
+		}
+		for (int ch = Character.MIN_SURROGATE; ch <= Character.MAX_SURROGATE; ++ch) {
+			CHAR_CLASSES[ch] = TOKEN_IRREGULAR;
+		}
+		// Lower-cased to two chars and by context.
+		CHAR_CLASSES['\u0130'] = TOKEN_IRREGULAR;
+		CHAR_CLASSES['\u03a3'] = TOKEN_IRREGULAR;
+	}
+
+	private final String text;
+	private int size = 0;
+	private int[] starts;
+	private int[] ends;
+	private int[] hashes;
+	// Bit i is set if token i has an irregular character.
+	private long[] irregular;
+
+	private TokenizedText(String text) {
+		this.text = text;
+		int capacity = text.length() / 4 + 16;
+		starts = new int[capacity];
+		ends = new int[capacity];
+		hashes = new int[capacity];
+		irregular = new long[(capacity + 63) >>> 6];
+	}
+
+	public static TokenizedText tokenize(String text) {
+		TokenizedText result = new TokenizedText(text);
+		// Turkish, Azeri and Lithuanian lower-case some characters by locale specific rules.
+		String language = Locale.getDefault().getLanguage();
+		boolean localeIrregular =
+				language.equals("tr") || language.equals("az") || language.equals("lt");
+		int start = -1;
+		int hash = 0;
+		boolean tokenIrregular = false;
+		for (int i = 0; i < text.length(); ++i) {
+			char ch = text.charAt(i);
+			byte charClass = CHAR_CLASSES[ch];
+			if (charClass == TOKEN || charClass == TOKEN_IRREGULAR) {
+				if (start == -1) {
+					start = i;
+					hash = 0;
+					tokenIrregular = localeIrregular;
+				}
+				hash = 31 * hash + Character.toLowerCase(ch);
+				tokenIrregular |= charClass == TOKEN_IRREGULAR;
+				continue;
+			}
+			if (start != -1) {
+				result.add(start, i, hash, tokenIrregular);
+				start = -1;
+			}
+			if (charClass == DELIMITER_KEEP) {
+				result.add(i, i + 1, Character.toLowerCase(ch), false);
+			}
+		}
+		if (start != -1) {
+			result.add(start, text.length(), hash, tokenIrregular);
+		}
+		return result;
+	}
+
+	private void add(int start, int end, int hash, boolean tokenIrregular) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * size);
+			ends = Arrays.copyOf(ends, 2 * size);
+			hashes = Arrays.copyOf(hashes, 2 * size);
+			irregular = Arrays.copyOf(irregular, (2 * size + 63) >>> 6);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		hashes[size] = hash;
+		if (tokenIrregular) {
+			irregular[size >>> 6] |= 1L << size;
+		}
+		++size;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	public int getEnd(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * Hash of the token lower-cased char by char, the String.hashCode of @see #getToken except
+	 * for the few characters String.toLowerCase maps by context or to several chars.
+	 */
+	public int getHash(int i) {
+		return hashes[i];
+	}
+
+	/**
+	 * Whether @see #getToken is the token lower-cased char by char, so @see #getHash is its
+	 * String.hashCode . False for the characters String.toLowerCase maps otherwise.
+	 */
+	public boolean isRegular(int i) {
+		return (irregular[i >>> 6] & (1L << i)) == 0;
+	}
+
+	/**
+	 * The lower-cased token, as @see Token#getToken .
+	 */
+	public String getToken(int i) {
+		return text.substring(starts[i], ends[i]).toLowerCase();
+	}
+
+	/**
+	 * The tokens as @see Token objects.
+	 */
+	public List<Token> toTokens() {
+		ArrayList<Token> tokens = new ArrayList<Token>(size);
+		for (int i = 0; i < size; ++i) {
+			tokens.add(new Token(text.substring(starts[i], ends[i]), starts[i]));
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,142 @@
+package md;
+
+import index.CandidatesIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cern.colt.map.OpenIntIntHashMap;
+
+/**
+ * The k ngrams with the highest keyphraseness, kept in a min-heap over parallel arrays with the
+ * order of @see Mention#compareTo , so @see Mention objects are only built for the ngrams left
+ * at the end. Selects the same mentions as a TreeSet<Mention> of at most k elements where an
+ * ngram replaces the first one if its keyphraseness is higher: an ngram equal to one in the set
+ * (same keyphraseness, offset and text) is not added.
+ */
+class TopMentions {
+	private final int k;
+	private final double[] keys;
+	private final int[] offsets;
+	private final Ngram[] ngrams;
+	private int size = 0;
+	// Number of ngrams in the heap by @see #identity , to look for equal ngrams only on a match.
+	private final OpenIntIntHashMap identities = new OpenIntIntHashMap();
+
+	TopMentions(int k) {
+		this.k = k;
+		keys = new double[k];
+		offsets = new int[k];
+		ngrams = new Ngram[k];
+	}
+
+	void offer(Ngram ngram, double keyphraseness) {
+		if (size == k) {
+			if (keys[0] >= keyphraseness) {
+				return;
+			}
+			removeFirst();
+		}
+		if (contains(ngram, keyphraseness)) {
+			return;
+		}
+		int i = size++;
+		keys[i] = keyphraseness;
+		offsets[i] = ngram.getOffset();
+		ngrams[i] = ngram;
+		siftUp(i);
+		int identity = identity(ngram);
+		identities.put(identity, identities.get(identity) + 1);
+	}
+
+	/**
+	 * The mentions in ascending @see Mention#compareTo order. Empties the heap.
+	 */
+	List<Mention> toMentions(CandidatesIndex<?> index) {
+		List<Mention> result = new ArrayList<Mention>(size);
+		while (size > 0) {
+			Mention mention = new Mention(ngrams[0]);
+			mention.computeKeyphrasenessAndDF(index);
+			result.add(mention);
+			removeFirst();
+		}
+		return result;
+	}
+
+	private static int identity(Ngram ngram) {
+		return 31 * ngram.getOffset() + ngram.getNgram().hashCode();
+	}
+
+	private boolean contains(Ngram ngram, double keyphraseness) {
+		if (identities.get(identity(ngram)) == 0) {
+			return false;
+		}
+		for (int i = 0; i < size; ++i) {
+			if (keys[i] == keyphraseness && offsets[i] == ngram.getOffset() &&
+					ngrams[i].getNgram().equals(ngram.getNgram())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeFirst() {
+		int identity = identity(ngrams[0]);
+		identities.put(identity, identities.get(identity) - 1);
+		--size;
+		move(size, 0);
+		ngrams[size] = null;
+		siftDown(0);
+	}
+
+	private int compare(int i, int j) {
+		if (keys[i] != keys[j]) {
+			return keys[i] < keys[j] ? -1 : 1;
+		}
+		if (offsets[i] != offsets[j]) {
+			return offsets[i] < offsets[j] ? -1 : 1;
+		}
+		return ngrams[i].getNgram().compareTo(ngrams[j].getNgram());
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (compare(i, parent) >= 0) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && compare(child + 1, child) < 0) {
+				++child;
+			}
+			if (compare(child, i) >= 0) {
+				return;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void move(int from, int to) {
+		keys[to] = keys[from];
+		offsets[to] = offsets[from];
+		ngrams[to] = ngrams[from];
+	}
+
+	private void swap(int i, int j) {
+		double key = keys[i];
+		int offset = offsets[i];
+		Ngram ngram = ngrams[i];
+		move(j, i);
+		keys[j] = key;
+		offsets[j] = offset;
+		ngrams[j] = ngram;
+	}
+}
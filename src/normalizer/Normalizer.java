@@ -15,6 +15,22 @@ import com.google.common.base.Joiner;
 public class Normalizer {	
 	public static String WHITESPACES = " \t\n\r\f";
 	
+	private static final ThreadLocal<StreamingNormalizer> NORMALIZER =
+			new ThreadLocal<StreamingNormalizer>() {
+		@Override
+		protected StreamingNormalizer initialValue() {
+			return new StreamingNormalizer(true);
+		}
+	};
+	
+	private static final ThreadLocal<StreamingNormalizer> NO_DELIMITERS_NORMALIZER =
+			new ThreadLocal<StreamingNormalizer>() {
+		@Override
+		protected StreamingNormalizer initialValue() {
+			return new StreamingNormalizer(false);
+		}
+	};
+	
 	public static String removeTags(String input, List<String> tags) {
 		for (String tag: tags) {
 			input = input.replaceAll("<" + tag + ">([^<]*)</" + tag + ">", "$1");
@@ -33,49 +49,39 @@ public class Normalizer {
 		return input;
 	}
 	
+	/**
+	 * @see StreamingNormalizer
+	 */
 	public static String normalize(String input) {
-		// Unescape HTML and XML.
-		input = StringEscapeUtils.unescapeXml(input);
-		input = StringEscapeUtils.unescapeHtml4(StringEscapeUtils.unescapeHtml4(input));
-		input = StringEscapeUtils.unescapeXml(input);
-		
-		input = input.toLowerCase();
-		
-		// Remove HTML boilerplate.
-		input = input.replaceAll("<!--([^-]*)-->" , ""); 
-		input = removeTags(input, Arrays.asList("big", "small", "code", "del", "math", "noinclude", 
-				"nowiki", "ref", "s", "sub", "sup", "tt", "u", "var"));
-		input = removeTagsAndProps(input, Arrays.asList("abbr", "span"));
-		input = input.replace("<br>", " ");
-		input = input.replace("<br />", " ");
-		
-		for (int i = 0; i < MentionDetection.DELIMITERS.length(); ++i) {
-			char delimiter = MentionDetection.DELIMITERS.charAt(i);
-			input = input.replace("" + delimiter, " ");
-		}
-		
-		for (int i = 0; i < MentionDetection.DELIMITERS_KEEP.length(); ++i) {
-			char delimiterKeep = MentionDetection.DELIMITERS_KEEP.charAt(i);
-			input = input.replace("" + delimiterKeep, " " + delimiterKeep + " ");
-		}
-		// Remove consecutive spaces.
-		return Joiner.on(" ").join(StringUtils.split(input, " \t\n\r\f"));
+		return NORMALIZER.get().normalize(input);
 	}
 		
 	// Same as normalize but we do not want to keep delimiters.
 	public static String normalizeNoDelimiters(String input) {
-		// Unescape HTML and XML.
+		return NO_DELIMITERS_NORMALIZER.get().normalize(input);
+	}
+	
+	// Unescape HTML and XML.
+	static String unescape(String input) {
 		input = StringEscapeUtils.unescapeXml(input);
 		input = StringEscapeUtils.unescapeHtml4(StringEscapeUtils.unescapeHtml4(input));
-		input = StringEscapeUtils.unescapeXml(input);
+		return StringEscapeUtils.unescapeXml(input);
+	}
+	
+	/**
+	 * Normalization one step at a time over the whole text, the reference for
+	 * @see StreamingNormalizer . Delimiters in MentionDetection.DELIMITERS_KEEP are kept as tokens
+	 * if keepDelimiters is true.
+	 */
+	public static String normalizeMultiPass(String input, boolean keepDelimiters) {
+		input = unescape(input);
 		
 		input = input.toLowerCase();
 		
 		// Remove HTML boilerplate.
 		input = input.replaceAll("<!--([^-]*)-->" , ""); 
-		input = removeTags(input, Arrays.asList("big", "small", "code", "del", "math", "noinclude", 
-				"nowiki", "ref", "s", "sub", "sup", "tt", "u", "var"));
-		input = removeTagsAndProps(input, Arrays.asList("abbr", "span"));
+		input = removeTags(input, StreamingNormalizer.TAGS);
+		input = removeTagsAndProps(input, StreamingNormalizer.TAGS_WITH_PROPS);
 		input = input.replace("<br>", " ");
 		input = input.replace("<br />", " ");
 		
@@ -85,12 +91,11 @@ public class Normalizer {
 		}
 		
 		for (int i = 0; i < MentionDetection.DELIMITERS_KEEP.length(); ++i) {
-			char delimiter = MentionDetection.DELIMITERS_KEEP.charAt(i);
-			input = input.replace("" + delimiter, " ");
+			char delimiterKeep = MentionDetection.DELIMITERS_KEEP.charAt(i);
+			input = input.replace("" + delimiterKeep, keepDelimiters ? " " + delimiterKeep + " " : " ");
 		}
 		// Remove consecutive spaces.
-		return Joiner.on(" "). join(StringUtils.split(input, " \f\n\t\r"));
-			
+		return Joiner.on(" ").join(StringUtils.split(input, WHITESPACES));
 	}
 	
 	public static String processAnchorText(String input) {
@@ -0,0 +1,461 @@
+package normalizer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import md.MentionDetection;
+
+/**
+ * Normalizes text as @see Normalizer#normalizeMultiPass in a single scan into a reused buffer:
+ * entities are unescaped, the text lower-cased, comments and tags removed, delimiters mapped and
+ * whitespace collapsed as the characters are read.
+ * Element tags are removed by the multi pass normalizer one tag at a time, so an element is
+ * removed only if every tag inside it is removed by an earlier pass. The scan looks ahead from
+ * each '<' to find out which pass, if any, removes the element starting there.
+ * Entities that unescape to '<' may start markup, and markup cannot be matched ahead through
+ * entities, so such inputs are unescaped whole first and scanned again with '&' as a plain
+ * character. The few inputs where the passes interact in ways the scan does not follow (entities
+ * next to surrogate pairs, markup formed by joining the text around a removed tag, characters
+ * lower-cased by context) are normalized by the multi pass normalizer instead, so the output is
+ * always the same. See @see #getFallbacks .
+ * Not thread safe.
+ */
+public class StreamingNormalizer {
+	// In the order of the passes of the multi pass normalizer.
+	static final List<String> TAGS = Arrays.asList("big", "small", "code", "del", "math",
+			"noinclude", "nowiki", "ref", "s", "sub", "sup", "tt", "u", "var");
+	static final List<String> TAGS_WITH_PROPS = Arrays.asList("abbr", "span");
+
+	private static final int NOT_REMOVED = Integer.MAX_VALUE;
+	private static final int MAX_NESTING = 64;
+	private static final int MAX_CACHED_ENTITIES = 4096;
+	// Of a closing tag without the '<'.
+	private static final int MAX_TAG_LENGTH = "/noinclude>".length();
+
+	private static final byte TEXT = 0;
+	private static final byte DELIMITER = 1;
+	private static final byte DELIMITER_KEEP = 2;
+	private static final byte[] CHAR_CLASSES = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (char ch: MentionDetection.DELIMITERS.toCharArray()) {
+			CHAR_CLASSES[ch] = DELIMITER;
+		}
+		for (char ch: MentionDetection.DELIMITERS_KEEP.toCharArray()) {
+			CHAR_CLASSES[ch] = DELIMITER_KEEP;
+		}
+	}
+
+	/**
+	 * Thrown when the input needs the multi pass normalizer.
+	 */
+	private static class UnsupportedInputException extends Exception {
+		private static final long serialVersionUID = -2957208771324811570L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final UnsupportedInputException UNSUPPORTED = new UnsupportedInputException();
+	// The input needs to be unescaped before it is scanned.
+	private static final UnsupportedInputException ENTITIES = new UnsupportedInputException();
+
+	private static final AtomicLong UNESCAPED_SCANS = new AtomicLong();
+	private static final AtomicLong FALLBACKS = new AtomicLong();
+
+	private final boolean keepDelimiters;
+	private final StringBuilder output = new StringBuilder();
+	private final Map<String, String> entities = new HashMap<String, String>();
+
+	private String input;
+	// The input is unescaped already, '&' is a plain character.
+	private boolean unescaped;
+	private boolean checkedSurrogates;
+	private boolean pendingSpace;
+	// A '<' was written after the last '>', from the input at openAngleAt.
+	private boolean openAngle;
+	private int openAngleAt;
+	// Closing tags of the removed elements the scan is in, innermost last.
+	private int[] closings = new int[MAX_NESTING];
+	private int[] closingLengths = new int[MAX_NESTING];
+	private int depth;
+
+	// Set by @see #matchElement .
+	private int contentStart;
+	private int closingStart;
+	private int closingLength;
+	// Set by @see #unescapeEntities .
+	private int entitiesEnd;
+
+	/**
+	 * @param keepDelimiters as @see Normalizer#normalize if true, else as
+	 * @see Normalizer#normalizeNoDelimiters
+	 */
+	public StreamingNormalizer(boolean keepDelimiters) {
+		this.keepDelimiters = keepDelimiters;
+	}
+
+	public String normalize(String input) {
+		try {
+			try {
+				scan(input, false);
+			} catch (UnsupportedInputException e) {
+				if (e != ENTITIES) {
+					throw e;
+				}
+				UNESCAPED_SCANS.incrementAndGet();
+				scan(unescape(input), true);
+			}
+		} catch (UnsupportedInputException e) {
+			FALLBACKS.incrementAndGet();
+			return Normalizer.normalizeMultiPass(input, keepDelimiters);
+		} finally {
+			this.input = null;
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Number of inputs normalized by the multi pass normalizer, by all instances.
+	 */
+	public static long getFallbacks() {
+		return FALLBACKS.get();
+	}
+
+	/**
+	 * Number of inputs unescaped whole and scanned again, by all instances.
+	 */
+	public static long getUnescapedScans() {
+		return UNESCAPED_SCANS.get();
+	}
+
+	private void scan(String input, boolean unescaped) throws UnsupportedInputException {
+		this.input = input;
+		this.unescaped = unescaped;
+		output.setLength(0);
+		checkedSurrogates = false;
+		pendingSpace = false;
+		openAngle = false;
+		depth = 0;
+		String language = Locale.getDefault().getLanguage();
+		if (language.equals("tr") || language.equals("az") || language.equals("lt")) {
+			throw UNSUPPORTED;
+		}
+		int length = input.length();
+		int i = 0;
+		while (i < length) {
+			if (depth > 0 && i == closings[depth - 1]) {
+				i += closingLengths[--depth];
+				continue;
+			}
+			char ch = input.charAt(i);
+			if (ch == '&' && !unescaped) {
+				i = scanEntity(i);
+			} else if (ch == '<') {
+				i = scanMarkup(i);
+			} else {
+				int codePoint = input.codePointAt(i);
+				write(toLowerCase(codePoint));
+				i += Character.charCount(codePoint);
+			}
+		}
+	}
+
+	private static int toLowerCase(int codePoint) throws UnsupportedInputException {
+		// Lower-cased depending on the characters around or to two characters by String.
+		if (codePoint == '\u03a3' || codePoint == '\u0130') {
+			throw UNSUPPORTED;
+		}
+		return Character.toLowerCase(codePoint);
+	}
+
+	private void write(int codePoint) {
+		byte charClass = codePoint <= Character.MAX_VALUE ? CHAR_CLASSES[codePoint] : TEXT;
+		if (charClass == DELIMITER || (charClass == DELIMITER_KEEP && !keepDelimiters)) {
+			pendingSpace = true;
+			return;
+		}
+		if ((pendingSpace || charClass == DELIMITER_KEEP) && output.length() > 0) {
+			output.append(' ');
+		}
+		output.appendCodePoint(codePoint);
+		pendingSpace = charClass == DELIMITER_KEEP;
+		if (codePoint == '<') {
+			openAngle = true;
+		} else if (codePoint == '>') {
+			openAngle = false;
+		}
+	}
+
+	/**
+	 * Whether an entity may contain the character. No unescaping pass matches an entity across
+	 * another character, so the entities up to one can be unescaped apart from the rest.
+	 */
+	private static boolean isEntityChar(char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') ||
+				ch == '#' || ch == ';' || ch == '&';
+	}
+
+	/**
+	 * The entities starting at i up to the first character no entity contains, unescaped as by
+	 * @see Normalizer#unescape . Sets @see #entitiesEnd to the position after them.
+	 */
+	private String unescapeEntities(int i) throws UnsupportedInputException {
+		if (!checkedSurrogates) {
+			// StringEscapeUtils loses characters around entities once it has seen a surrogate pair.
+			for (int j = 0; j < input.length(); ++j) {
+				if (Character.isSurrogate(input.charAt(j))) {
+					throw UNSUPPORTED;
+				}
+			}
+			checkedSurrogates = true;
+		}
+		int end = i + 1;
+		while (end < input.length() && isEntityChar(input.charAt(end))) {
+			++end;
+		}
+		entitiesEnd = end;
+		String entity = input.substring(i, end);
+		String unescaped = entities.get(entity);
+		if (unescaped == null) {
+			unescaped = Normalizer.unescape(entity);
+			for (int j = 0; j < unescaped.length(); ++j) {
+				// Seen by the later passes over the whole input.
+				if (Character.isSurrogate(unescaped.charAt(j))) {
+					throw UNSUPPORTED;
+				}
+			}
+			if (entities.size() == MAX_CACHED_ENTITIES) {
+				entities.clear();
+			}
+			entities.put(entity, unescaped);
+		}
+		return unescaped;
+	}
+
+	/**
+	 * The input unescaped as by @see Normalizer#unescape .
+	 */
+	private String unescape(String input) throws UnsupportedInputException {
+		this.input = input;
+		checkedSurrogates = false;
+		StringBuilder result = new StringBuilder(input.length());
+		int i = 0;
+		while (i < input.length()) {
+			int next = input.indexOf('&', i);
+			if (next == -1) {
+				next = input.length();
+			}
+			result.append(input, i, next);
+			if (next == input.length()) {
+				break;
+			}
+			result.append(unescapeEntities(next));
+			i = entitiesEnd;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the entities starting at i, unescaped as by the multi pass normalizer, and returns the
+	 * position after them. A '<' and a '>' are written as they are, and so is an '&', as nothing
+	 * is unescaped twice. A '<' may start markup though, so the input is unescaped first then.
+	 */
+	private int scanEntity(int i) throws UnsupportedInputException {
+		String unescaped = unescapeEntities(i);
+		if (unescaped.indexOf('<') != -1) {
+			throw ENTITIES;
+		}
+		for (int j = 0; j < unescaped.length(); ) {
+			int codePoint = unescaped.codePointAt(j);
+			write(toLowerCase(codePoint));
+			j += Character.charCount(codePoint);
+		}
+		return entitiesEnd;
+	}
+
+	/**
+	 * Markup is matched ahead through the character ch. An entity may unescape to markup, so the
+	 * input must be unescaped first.
+	 */
+	private void checkEntity(char ch) throws UnsupportedInputException {
+		if (ch == '&' && !unescaped) {
+			throw ENTITIES;
+		}
+	}
+
+	/**
+	 * Handles the '<' at i and returns the position to continue from.
+	 */
+	private int scanMarkup(int i) throws UnsupportedInputException {
+		int end = matchComment(i);
+		if (end != -1) {
+			checkJoin(i);
+			return end;
+		}
+		if (matchElement(i, 0) != NOT_REMOVED) {
+			checkJoin(i);
+			if (depth == MAX_NESTING) {
+				throw UNSUPPORTED;
+			}
+			closings[depth] = closingStart;
+			closingLengths[depth] = closingLength;
+			++depth;
+			return contentStart;
+		}
+		end = matchString(i, "<br>");
+		if (end == -1) {
+			end = matchString(i, "<br />");
+		}
+		if (end != -1) {
+			write(' ');
+			return end;
+		}
+		write('<');
+		openAngleAt = i;
+		return i + 1;
+	}
+
+	/**
+	 * Markup is removed at i. Not supported if the text since the last '<' written may become
+	 * the start of markup once joined with the text after the removed markup.
+	 */
+	private void checkJoin(int i) throws UnsupportedInputException {
+		if (!openAngle) {
+			return;
+		}
+		int start = openAngleAt + 1;
+		// Longer than a tag: only comments and properties go on for longer.
+		if (i - start <= MAX_TAG_LENGTH) {
+			throw UNSUPPORTED;
+		}
+		for (int j = start; j <= start + MAX_TAG_LENGTH; ++j) {
+			checkEntity(input.charAt(j));
+		}
+		String prefix = input.substring(start, start + 4).toLowerCase();
+		if (prefix.startsWith("!--")) {
+			for (int j = start + 3; j < i && input.charAt(j) != '-'; ++j) {
+				checkEntity(input.charAt(j));
+				if (j == i - 1) {
+					throw UNSUPPORTED;
+				}
+			}
+		}
+		if (TAGS_WITH_PROPS.contains(prefix)) {
+			throw UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * Whether the character at i lower-cased is ch.
+	 */
+	private boolean charIs(int i, char ch) throws UnsupportedInputException {
+		if (i >= input.length()) {
+			return false;
+		}
+		char inputChar = input.charAt(i);
+		checkEntity(inputChar);
+		return toLowerCase(inputChar) == ch;
+	}
+
+	/**
+	 * Position after s if the input continues with it at i, else -1.
+	 */
+	private int matchString(int i, String s) throws UnsupportedInputException {
+		for (int j = 0; j < s.length(); ++j) {
+			if (!charIs(i + j, s.charAt(j))) {
+				return -1;
+			}
+		}
+		return i + s.length();
+	}
+
+	/**
+	 * Position after the comment starting at i, <!-- without dashes -->, or -1.
+	 */
+	private int matchComment(int i) throws UnsupportedInputException {
+		int end = matchString(i, "<!--");
+		if (end == -1) {
+			return -1;
+		}
+		for (; end < input.length() && input.charAt(end) != '-'; ++end) {
+			checkEntity(input.charAt(end));
+		}
+		return matchString(end, "-->");
+	}
+
+	/**
+	 * Pass of the multi pass normalizer removing the element starting at i, or NOT_REMOVED.
+	 * Comments are removed by pass 0, the tags in @see #TAGS and then @see #TAGS_WITH_PROPS by the
+	 * following ones. Sets the start of the content and of the closing tag if the element is
+	 * removed.
+	 */
+	private int matchElement(int i, int nesting) throws UnsupportedInputException {
+		if (nesting == MAX_NESTING) {
+			throw UNSUPPORTED;
+		}
+		String tag = null;
+		int pass = 0;
+		int start = -1;
+		for (int t = 0; t < TAGS.size() && start == -1; ++t) {
+			start = matchString(i + 1, TAGS.get(t));
+			start = start != -1 && charIs(start, '>') ? start + 1 : -1;
+			tag = TAGS.get(t);
+			pass = t + 1;
+		}
+		for (int t = 0; t < TAGS_WITH_PROPS.size() && start == -1; ++t) {
+			start = matchString(i + 1, TAGS_WITH_PROPS.get(t));
+			if (start == -1) {
+				continue;
+			}
+			// Properties up to the first '>'.
+			for (; start < input.length() && input.charAt(start) != '>'; ++start) {
+				char ch = input.charAt(start);
+				if (ch == '<') {
+					throw UNSUPPORTED;
+				}
+				checkEntity(ch);
+			}
+			if (start == input.length()) {
+				return NOT_REMOVED;
+			}
+			++start;
+			tag = TAGS_WITH_PROPS.get(t);
+			pass = TAGS.size() + t + 1;
+		}
+		if (start == -1) {
+			return NOT_REMOVED;
+		}
+
+		// The content must be left without a '<' by the earlier passes.
+		String closing = "</" + tag + ">";
+		int j = start;
+		while (true) {
+			j = input.indexOf('<', j);
+			if (j == -1) {
+				return NOT_REMOVED;
+			}
+			int end = matchComment(j);
+			if (end != -1) {
+				j = end;
+				continue;
+			}
+			if (matchString(j, closing) != -1) {
+				contentStart = start;
+				closingStart = j;
+				closingLength = closing.length();
+				return pass;
+			}
+			if (matchElement(j, nesting + 1) >= pass) {
+				return NOT_REMOVED;
+			}
+			j = closingStart + closingLength;
+		}
+	}
+}
@@ -5,33 +5,90 @@ import static org.junit.Assert.assertTrue;
 import iitb.Annotation;
 import iitb.IITBDataset;
 import index.AnchorTextIndex;
+import index.EntityTFIDFCache;
+import index.EntityLinksFrequencyIndex;
+import index.EntityLinksIndex;
 import index.EntityTFIDFIndex;
+import index.IndexFiles;
+import index.IndexRegistry;
+import index.MappedEntityEmbeddings;
+import index.MappedEntityPairsIndex;
+import index.MappedEntityTFIDFStore;
+import index.MappedMentionIndex;
+import index.MentionEntitiesFrequencyIndex;
 import index.MentionIndex;
+import index.NewEntityTFIDFIndex;
 import index.RedirectPagesIndex;
+import index.SignedAnchorTextIndex;
 import index.TermDocumentFrequencyIndex;
-import index.TitlesIndex;
+import index.TitleDictionary;
+import index.TitleResolver;
+import index.TokenPrefixSet;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import knowledgebase.EntityEmbeddingsBuilder;
+import knowledgebase.EntityLinksSnapshotBuilder;
+import knowledgebase.EntityTFIDFBuilder;
 import knowledgebase.KeyphrasenessIndexBuilder;
+import knowledgebase.MappedEntityPairsIndexBuilder;
+import knowledgebase.MappedEntityTFIDFStoreBuilder;
+import knowledgebase.MappedMentionIndexBuilder;
+import knowledgebase.SignedAnchorTextIndexBuilder;
+import knowledgebase.TitleDictionaryBuilder;
+import knowledgebase.TitleResolverBuilder;
+import knowledgebase.WikiUtils;
+import md.ContextWindow;
+import md.DocumentCompatibilityScorer;
 import md.Mention;
 import md.MentionDetection;
+import md.MentionSpotter;
 import md.Ngram;
 import md.Token;
+import md.TokenizedText;
+import normalizer.Normalizer;
+import normalizer.StreamingNormalizer;
 
 import org.apache.commons.collections15.CollectionUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
 import org.xml.sax.SAXException;
 
+import data.CompactTFIDFEntry;
+import data.HashedProjection;
+import data.MappedSparseVector;
+import data.SparseVector;
+import data.TFIDFEntry;
+
 public class UnitTests {
 	private static final int NGRAM_SIZE = 3;
 	private static String annotationsFilePath = "/home/marinah/input/CSAW_Annotations.xml";
@@ -44,6 +101,31 @@ public class UnitTests {
 //		printMemoryRequirements();
 //		aux();
 		testMentionDetection();
+		testMappedMentionIndex();
+		testSignedAnchorTextIndex();
+		testEntityLinksIndex();
+		testEntityLinksFrequencyIndex();
+		testMappedEntityPairsIndex();
+		testTitleDictionary();
+		testTitleResolver();
+		testTermDocumentFrequencyIndex();
+		testParseChunks();
+		testIndexRegistry();
+		testNewEntityTFIDFIndex();
+		testEntityTFIDFCache();
+		testCompactCosineDistance();
+		testSparseVector();
+		testMappedEntityTFIDFStore();
+		testEntityTFIDFPrefetch();
+		testEntityVectorTruncation();
+		testContextWindow();
+		testDocumentCompatibilityScorer();
+		testEntityEmbeddings();
+		testMentionSpotter();
+		testTokenPrefixSet();
+		testTokenizedText();
+		testStreamingNormalizer();
+		testTopMentions();
 //		testMentionDetection2();
 //		testAnnotationsParsing();
 	}
@@ -137,12 +219,1089 @@ public class UnitTests {
 		System.out.println("=== testGatherNgrams passed ===");
 	}
 	
+	public static void testMappedMentionIndex() throws IOException {
+		File text = File.createTempFile("mention-index", ".txt");
+		File binary = File.createTempFile("mention-index", ".bin");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("new york\t50\t100\t645042\t8210131");
+		writer.println("z\u00fcrich\t7\t9\t34026");
+		writer.println("rare\t1\t2\t15");
+		writer.println("apple\t0\t20\t856");
+		writer.println("amino acids\t12\t30\t1207");
+		writer.close();
+		MappedMentionIndexBuilder.main(new String[] {text.getPath(), binary.getPath()});
+		
+		MentionIndex expected = MentionIndex.load(text.getPath());
+		MappedMentionIndex index = MappedMentionIndex.load(binary.getPath());
+		assertEquals(expected.size(), index.size());
+		for (String name: expected.keySet()) {
+			assertTrue(Arrays.equals(expected.get(name), index.get(name)));
+			assertEquals(expected.getKeyphraseness(name), index.getKeyphraseness(name));
+			assertTrue(Arrays.equals(
+					expected.getCandidateEntities(name), index.getCandidateEntities(name)));
+			assertEquals(expected.getCandidateEntitiesCount(name), index.getCandidateEntitiesCount(name));
+		}
+		assertTrue(!index.containsKey("rare") && !index.containsKey("apple"));
+		assertTrue(!index.containsKey("new") && !index.containsKey("new york city"));
+		
+		writer = new PrintWriter(text);
+		writer.println("paris\t40\t80\t52\t22989,40\t5410,12");
+		writer.close();
+		MappedMentionIndexBuilder.main(new String[] {text.getPath(), binary.getPath(), 
+				MappedMentionIndexBuilder.FREQUENCIES_FLAG});
+		MentionEntitiesFrequencyIndex expectedFrequencies = 
+				MentionEntitiesFrequencyIndex.load(text.getPath());
+		index = MappedMentionIndex.load(binary.getPath());
+		assertEquals(expectedFrequencies.getMostFrequentEntity("paris"), 
+				index.getMostFrequentEntity("paris"));
+		assertEquals(expectedFrequencies.getCandidateFrequency("paris", 5410), 
+				index.getCandidateFrequency("paris", 5410));
+		assertEquals(expectedFrequencies.getCandidateProbability("paris", 22989), 
+				index.getCandidateProbability("paris", 22989), 0.0);
+		text.delete();
+		binary.delete();
+		System.out.println("=== testMappedMentionIndex passed ===");
+	}
+	
+	public static void testSignedAnchorTextIndex() throws IOException {
+		File text = File.createTempFile("anchor-text", ".txt");
+		File binary = File.createTempFile("anchor-text", ".bin");
+		PrintWriter writer = new PrintWriter(text);
+		for (int i = 0; i < 10000; ++i) {
+			writer.println("anchor " + i + "\t" + i);
+		}
+		writer.println("z\u00fcrich\t34026");
+		writer.close();
+		SignedAnchorTextIndexBuilder.main(new String[] {text.getPath(), binary.getPath()});
+		
+		AnchorTextIndex expected = AnchorTextIndex.load(text.getPath());
+		SignedAnchorTextIndex index = SignedAnchorTextIndex.load(binary.getPath());
+		assertEquals(expected.size(), index.size());
+		for (String anchorText: expected) {
+			assertTrue(index.contains(anchorText));
+		}
+		// False positive rate is 2^-16.
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; ++i) {
+			if (index.contains("not an anchor " + i)) {
+				++falsePositives;
+			}
+		}
+		assertTrue(falsePositives <= 2);
+		assertTrue(!index.contains("anchor") && !index.contains(""));
+		
+		String tokens[] = new String[] {"see", "anchor", "12", "and", "z\u00fcrich"};
+		assertEquals(KeyphrasenessIndexBuilder.Map.gatherNgramMentions(tokens, 4, expected), 
+				KeyphrasenessIndexBuilder.Map.gatherNgramMentions(tokens, 4, index));
+		text.delete();
+		binary.delete();
+		System.out.println("=== testSignedAnchorTextIndex passed ===");
+	}
+	
+	public static void testEntityLinksIndex() throws IOException {
+		File text = File.createTempFile("entity-links", ".txt");
+		File binary = File.createTempFile("entity-links", ".bin");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("12\t3\t5\t7\t9");
+		writer.println("100\t1\t5\t9\t11\t13");
+		writer.println("7\t9\t2");
+		writer.println("3");
+		writer.close();
+		EntityLinksSnapshotBuilder.main(new String[] {text.getPath(), binary.getPath()});
+		
+		EntityLinksIndex index = EntityLinksIndex.load(text.getPath());
+		assertEquals(3, index.size());
+		assertEquals(5, index.getPopularity(12));
+		assertEquals(1, index.getPopularity(3));
+		assertEquals(1, index.getPopularity(1000));
+		assertTrue(Arrays.equals(new int[] {2, 9}, index.getInlinks(7)));
+		assertEquals(2, index.getCocitation(12, 100));
+		assertEquals(1, index.getCocitation(7, 100));
+		assertEquals(6, index.getCocitation(100, 100));
+		assertEquals(0, index.getCocitation(12, 3));
+		assertEquals(0, index.getCocitation(12, 1000));
+		double expected = 1 - (Math.log(5) - Math.log(2)) / 
+				(Math.log(WikiUtils.WIKIPEDIA_ARTICLES_SIZE) - Math.log(4));
+		assertEquals(expected, index.getSemanticRelatedness(12, 100), 1e-12);
+		assertEquals(0.0, index.getSemanticRelatedness(12, 3), 0.0);
+		assertEquals(1.0, index.getSemanticRelatedness(3, 3), 0.0);
+		
+		EntityLinksIndex snapshot = EntityLinksIndex.load(binary.getPath());
+		int entities[] = new int[] {3, 7, 12, 100, 1000};
+		assertEquals(index.size(), snapshot.size());
+		for (int entity1: entities) {
+			assertEquals(index.getPopularity(entity1), snapshot.getPopularity(entity1));
+			for (int entity2: entities) {
+				assertEquals(index.getSemanticRelatedness(entity1, entity2), 
+						snapshot.getSemanticRelatedness(entity1, entity2), 0.0);
+			}
+		}
+		
+		// Hub entity 1 is linked by multiples of 3, so intersections with short lists gallop.
+		writer = new PrintWriter(text);
+		StringBuilder hub = new StringBuilder("1");
+		for (int i = 0; i < 3000; i += 3) {
+			hub.append("\t" + i);
+		}
+		writer.println(hub);
+		writer.println("2\t0\t4\t6\t2997\t2999");
+		writer.println("3\t3\t5\t7");
+		writer.println("4\t2998\t2999\t3000");
+		writer.close();
+		index = EntityLinksIndex.load(text.getPath());
+		int batch[] = new int[] {2, 3, 4, 1, 5};
+		assertTrue(Arrays.equals(new int[] {3, 1, 0, 1001, 0}, index.getCocitation(1, batch)));
+		assertTrue(Arrays.equals(new int[] {3, 1, 0, 1000, 0}, index.intersectSizes(1, batch)));
+		double relatedness[] = index.getSemanticRelatedness(1, batch);
+		for (int i = 0; i < batch.length; ++i) {
+			assertEquals(index.getCocitation(batch[i], 1), index.getCocitation(1, batch[i]));
+			assertEquals(index.getSemanticRelatedness(batch[i], 1), relatedness[i], 0.0);
+		}
+		text.delete();
+		binary.delete();
+		System.out.println("=== testEntityLinksIndex passed ===");
+	}
+	
+	public static void testEntityLinksFrequencyIndex() throws IOException {
+		File text = File.createTempFile("entity-links-frequency", ".txt");
+		File binary = File.createTempFile("entity-links-frequency", ".bin");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("5\t10\t3\t2,4\t1,3\t300,1");
+		writer.println("6\t4\t2\t300,2\t2,1");
+		writer.println("300\t3\t9");
+		writer.println("2\t7\t6");
+		writer.println("1\t1\t4");
+		writer.close();
+		EntityLinksSnapshotBuilder.main(
+				new String[] {"-frequencies", text.getPath(), binary.getPath()});
+
+		EntityLinksFrequencyIndex index = EntityLinksFrequencyIndex.load(text.getPath());
+		EntityLinksFrequencyIndex snapshot = EntityLinksFrequencyIndex.load(binary.getPath());
+		for (EntityLinksFrequencyIndex current: Arrays.asList(index, snapshot)) {
+			assertEquals(5, current.size());
+			assertEquals(11, current.getPopularity(5));
+			assertEquals(1, current.getPopularity(999));
+			assertEquals(9, current.getNoLinks(300));
+			EntityLinksFrequencyIndex.LinksCursor links = current.getLinks(5);
+			assertTrue(links.next());
+			assertEquals(1, links.getEntity());
+			assertEquals(3, links.getFrequency());
+			assertTrue(links.next());
+			assertEquals(2, links.getEntity());
+			assertTrue(links.next());
+			assertEquals(300, links.getEntity());
+			assertEquals(1, links.getFrequency());
+			assertTrue(!links.next());
+			assertTrue(!current.getLinks(999).next());
+			// Sums over every common linking entity: 4 * 1 for entity 2, 1 * 2 for entity 300.
+			assertEquals(6, current.getCocitation(5, 6));
+			assertEquals(6, current.getCocitation(6, 5));
+			assertEquals(9, current.getCocitation(5, 5));
+			assertEquals(0, current.getCocitation(5, 999));
+			assertTrue(Arrays.equals(new int[] {6, 9, 0}, current.getCocitation(5, new int[] {6, 5, 2})));
+			assertEquals(28, current.getConditionalDenominator(5, 6));
+		}
+		text.delete();
+		binary.delete();
+		System.out.println("=== testEntityLinksFrequencyIndex passed ===");
+	}
+	
+	public static void testMappedEntityPairsIndex() throws IOException {
+		File links = File.createTempFile("entity-links", ".txt");
+		File text = File.createTempFile("entity-pairs", ".txt");
+		File binary = File.createTempFile("entity-pairs", ".bin");
+		PrintWriter writer = new PrintWriter(links);
+		writer.println("12\t3\t5\t7\t9");
+		writer.println("100\t1\t5\t9\t11\t13");
+		writer.println("7\t9\t2");
+		writer.close();
+		EntityLinksIndex index = EntityLinksIndex.load(links.getPath());
+		
+		// Relatedness of (7, 100) is stored with a wrong value to check that the table is used.
+		writer = new PrintWriter(text);
+		writer.println("12\t100\t8\t" + index.getSemanticRelatedness(12, 100) + "\t2");
+		writer.println("7\t100\t5\t0.5\t1");
+		writer.println("7\t12\t5\t" + index.getSemanticRelatedness(7, 12) + "\t1");
+		writer.close();
+		MappedEntityPairsIndexBuilder.main(
+				new String[] {text.getPath(), binary.getPath()});
+		
+		MappedEntityPairsIndex pairsIndex = MappedEntityPairsIndex.load(binary.getPath());
+		assertEquals(3, pairsIndex.size());
+		assertEquals(MappedEntityPairsIndex.NOT_FOUND, pairsIndex.find(12, 13));
+		assertEquals(pairsIndex.find(100, 12), pairsIndex.find(12, 100));
+		assertEquals(2, pairsIndex.getCocitation(pairsIndex.find(100, 12)));
+		
+		int entities[] = new int[] {100, 7, 12, 13};
+		double relatedness[] = pairsIndex.getSemanticRelatedness(12, entities, index);
+		double expected[] = index.getSemanticRelatedness(12, entities);
+		for (int i = 0; i < entities.length; ++i) {
+			assertEquals(expected[i], relatedness[i], 1e-6);
+		}
+		assertTrue(Arrays.equals(index.getCocitation(12, entities), 
+				pairsIndex.getCocitation(12, entities, index)));
+		assertEquals(0.5, pairsIndex.getSemanticRelatedness(7, new int[] {100}, index)[0], 0.0);
+		links.delete();
+		text.delete();
+		binary.delete();
+		System.out.println("=== testMappedEntityPairsIndex passed ===");
+	}
+	
+	public static void testTitleDictionary() throws IOException {
+		File text = File.createTempFile("titles", ".txt");
+		File binary = File.createTempFile("titles", ".bin");
+		PrintWriter writer = new PrintWriter(text);
+		for (int i = 0; i < 40; ++i) {
+			writer.println("Title " + (char) ('a' + i % 26) + i + "\t" + (1000 + i));
+		}
+		writer.println("Z\u00fcrich\t7");
+		writer.println("Zurich\t8");
+		writer.println("Title a0\t5");
+		writer.close();
+		TitleDictionaryBuilder.main(new String[] {text.getPath(), binary.getPath()});
+
+		TitleDictionary dictionary = TitleDictionary.load(text.getPath());
+		TitleDictionary snapshot = TitleDictionary.load(binary.getPath());
+		for (TitleDictionary current: Arrays.asList(dictionary, snapshot)) {
+			assertEquals(42, current.size());
+			assertEquals(5, current.getTitleId("Title a0"));
+			assertEquals(1017, current.getTitleId("Title r17"));
+			assertEquals(1039, current.getTitleId("Title n39"));
+			assertEquals(7, current.getTitleId(current.get(7)));
+			assertEquals(8, current.getTitleId("Zurich"));
+			assertEquals(TitleDictionary.NOT_CANONICAL_TITLE, current.getTitleId("Title"));
+			assertEquals(TitleDictionary.NOT_CANONICAL_TITLE, current.getTitleId("A"));
+			assertEquals(TitleDictionary.NOT_CANONICAL_TITLE, current.getTitleId("Zz"));
+			assertEquals("Title r17", current.get(1017));
+			assertEquals(null, current.get(1000));
+			assertEquals(null, current.get(-1));
+			for (int i = 1; i < 40; ++i) {
+				assertEquals(1000 + i, current.getTitleId(current.get(1000 + i)));
+			}
+		}
+		text.delete();
+		binary.delete();
+		System.out.println("=== testTitleDictionary passed ===");
+	}
+	
+	public static void testTitleResolver() throws IOException {
+		File titles = File.createTempFile("titles", ".txt");
+		File redirects = File.createTempFile("redirects", ".txt");
+		File binary = File.createTempFile("resolver", ".bin");
+		PrintWriter writer = new PrintWriter(titles);
+		writer.println("Canonical\t1");
+		writer.println("Other\t2");
+		writer.println("Stale\t3");
+		writer.close();
+		writer = new PrintWriter(redirects);
+		writer.println("One hop\tCanonical");
+		writer.println("Two hops\tOne hop");
+		writer.println("Loop\tLoop back");
+		writer.println("Loop back\tLoop");
+		writer.println("Missing\tNowhere");
+		writer.println("Other\tCanonical");
+		writer.println("Stale\tNowhere");
+		writer.close();
+		TitleResolverBuilder.main(
+				new String[] {titles.getPath(), redirects.getPath(), binary.getPath()});
+
+		TitleResolver built = TitleResolver.build(titles.getPath(), redirects.getPath());
+		TitleResolver loaded = TitleResolver.load(binary.getPath());
+		for (TitleResolver resolver: Arrays.asList(built, loaded)) {
+			assertEquals(5, resolver.size());
+			assertEquals(1, resolver.resolve("Canonical"));
+			assertEquals(1, resolver.resolve("One hop"));
+			assertEquals(1, resolver.resolve("Two hops"));
+			// A redirect entry takes precedence over the canonical title with the same name.
+			assertEquals(1, resolver.resolve("Other"));
+			assertEquals(2, resolver.getTitleId("Other"));
+			assertEquals(TitleResolver.NOT_CANONICAL_TITLE, resolver.resolve("Stale"));
+			assertEquals(3, resolver.getTitleId("Stale"));
+			assertEquals(TitleResolver.NOT_CANONICAL_TITLE, resolver.resolve("Loop"));
+			assertEquals(TitleResolver.NOT_CANONICAL_TITLE, resolver.resolve("Missing"));
+			assertEquals(TitleResolver.NOT_CANONICAL_TITLE, resolver.resolve("Unknown"));
+			assertEquals(1, resolver.getTitleId("Canonical"));
+			assertEquals(TitleResolver.NOT_CANONICAL_TITLE, resolver.getTitleId("One hop"));
+		}
+		// Same as the titles index lookup of the canonical URL, except for chains of several hops.
+		TitleDictionary titleDictionary = TitleDictionary.load(titles.getPath());
+		RedirectPagesIndex redirectIndex = RedirectPagesIndex.load(redirects.getPath());
+		for (String title: Arrays.asList(
+				"Canonical", "One hop", "Other", "Stale", "Loop", "Missing", "Unknown")) {
+			assertEquals(titleDictionary.getTitleId(redirectIndex.getCanonicalURL(title)),
+					loaded.resolve(title));
+		}
+		titles.delete();
+		redirects.delete();
+		binary.delete();
+		System.out.println("=== testTitleResolver passed ===");
+	}
+	
+	public static void testTermDocumentFrequencyIndex() throws IOException {
+		File text = File.createTempFile("df-index", ".txt");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("obama\t9");
+		writer.println("the\t" + (WikiUtils.WIKIPEDIA_DF_SIZE - 1));
+		writer.println("rare\t0");
+		writer.println("obama\t99");
+		writer.close();
+		// Multi byte UTF-8 terms, compared with the stored bytes in place.
+		FileOutputStream out = new FileOutputStream(text, true);
+		out.write("caf\u00e9\t3\n\u4e2d\u6587\t4\n\ud83d\ude00\t5\n".getBytes("UTF-8"));
+		out.close();
+		
+		TermDocumentFrequencyIndex index = TermDocumentFrequencyIndex.load(text.getPath());
+		assertEquals(6, index.size());
+		for (int id = 0; id < index.size(); ++id) {
+			assertEquals(id, index.getTermId(index.getTerm(id)));
+			assertEquals(TermDocumentFrequencyIndex.UNKNOWN_TERM,
+					index.getTermId(index.getTerm(id) + "s"));
+		}
+		int obama = index.getTermId("obama");
+		assertEquals("obama", index.getTerm(obama));
+		assertEquals(TermDocumentFrequencyIndex.UNKNOWN_TERM, index.getTermId("missing"));
+		assertEquals(Math.log10(WikiUtils.WIKIPEDIA_DF_SIZE / 100.0), index.getIDF(obama), 1e-6);
+		assertEquals(0.0, index.getIDF("the"), 0.0);
+		assertEquals(index.getIDF("rare"), index.getIDF("missing"), 0.0);
+		assertEquals(Math.log10(WikiUtils.WIKIPEDIA_DF_SIZE), 
+				index.getIDF(TermDocumentFrequencyIndex.UNKNOWN_TERM), 1e-6);
+		text.delete();
+		System.out.println("=== testTermDocumentFrequencyIndex passed ===");
+	}
+	
+	public static void testParseChunks() throws IOException {
+		File text = File.createTempFile("chunks", ".txt");
+		PrintWriter writer = new PrintWriter(text, "UTF-8");
+		Random random = new Random(5);
+		for (int line = 0; line < 500; ++line) {
+			writer.println(line + "\t" + "caf\u00e9 ".substring(0, random.nextInt(6)) + 
+					Integer.toString(random.nextInt(), 36));
+		}
+		writer.println();
+		writer.print("last line without a line feed");
+		writer.close();
+		
+		IndexFiles.ChunkParser<List<String>> parser = new IndexFiles.ChunkParser<List<String>>() {
+			@Override
+			public List<String> parse(BufferedReader in) throws IOException {
+				List<String> lines = new ArrayList<String>();
+				String line;
+				while ((line = in.readLine()) != null) {
+					lines.add(line);
+				}
+				return lines;
+			}
+		};
+		List<List<String>> single = IndexFiles.parseChunks(text.getPath(), 8, parser);
+		assertEquals(1, single.size());
+		assertEquals(502, single.get(0).size());
+		for (int chunks: new int[] {2, 7, 1000}) {
+			List<List<String>> parts = IndexFiles.parseChunks(text.getPath(), chunks, 1, parser);
+			assertTrue(parts.size() > 1 && parts.size() <= chunks);
+			List<String> merged = new ArrayList<String>();
+			for (List<String> part: parts) {
+				merged.addAll(part);
+			}
+			assertEquals(single.get(0), merged);
+		}
+		text.delete();
+		System.out.println("=== testParseChunks passed ===");
+	}
+	
+	public static void testIndexRegistry() throws Exception {
+		final File text = File.createTempFile("df-index", ".txt");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("obama\t9");
+		writer.close();
+		final IndexRegistry registry = IndexRegistry.getInstance();
+		
+		// Concurrent first requests share one load.
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<TermDocumentFrequencyIndex>> results = 
+				new ArrayList<Future<TermDocumentFrequencyIndex>>();
+		for (int i = 0; i < threads; ++i) {
+			results.add(executor.submit(new Callable<TermDocumentFrequencyIndex>() {
+				@Override
+				public TermDocumentFrequencyIndex call() throws Exception {
+					start.await();
+					return registry.getTermDocumentFrequencyIndex(text.getPath());
+				}
+			}));
+		}
+		start.countDown();
+		TermDocumentFrequencyIndex index = results.get(0).get();
+		for (Future<TermDocumentFrequencyIndex> result: results) {
+			assertTrue(index == result.get());
+		}
+		executor.shutdown();
+		assertEquals(0, index.getTermId("obama"));
+		int loads = 0;
+		for (String key: registry.getLoadTimes().keySet()) {
+			if (key.endsWith(text.getAbsolutePath())) {
+				++loads;
+			}
+		}
+		assertEquals(1, loads);
+		
+		// A failed load surfaces as IOException, also to later callers.
+		File missing = new File(text.getPath() + ".missing");
+		for (int attempt = 0; attempt < 2; ++attempt) {
+			try {
+				registry.getTermDocumentFrequencyIndex(missing.getPath());
+				assertTrue(false);
+			} catch (IOException e) {
+			}
+		}
+		for (String key: registry.getLoadTimes().keySet()) {
+			assertTrue(!key.endsWith(missing.getAbsolutePath()));
+		}
+		text.delete();
+		System.out.println("=== testIndexRegistry passed ===");
+	}
+	
+	/**
+	 * Empty temporary directory for the part files of a tf-idf collection.
+	 */
+	private static File createCollectionDirectory() throws IOException {
+		File collection = File.createTempFile("tf-idf-entity", "");
+		collection.delete();
+		collection.mkdir();
+		return collection;
+	}
+	
+	/**
+	 * Writer of the part file with the given number of the collection, keyed by docno.
+	 */
+	private static SequenceFile.Writer createPartWriter(File collection, int part,
+			Class<?> valueClass) throws IOException {
+		Path path = new Path(collection.getPath(), String.format("part-%05d", part));
+		return SequenceFile.createWriter(new Configuration(), SequenceFile.Writer.file(path),
+				SequenceFile.Writer.keyClass(IntWritable.class),
+				SequenceFile.Writer.valueClass(valueClass));
+	}
+	
+	public static void testNewEntityTFIDFIndex() throws IOException {
+		File collection = createCollectionDirectory();
+		File indexFile = new File(collection, "index.bin");
+		Configuration conf = new Configuration();
+		// Enough records for the file to contain sync markers.
+		int entities = 500;
+		SequenceFile.Writer writer = createPartWriter(collection, 3, TFIDFEntry.class);
+		DataOutputStream index = new DataOutputStream(new FileOutputStream(indexFile));
+		index.writeUTF(NewEntityTFIDFIndex.class.getName());
+		index.writeUTF(collection.getPath());
+		index.writeInt(entities);
+		for (int entity = 0; entity < entities; ++entity) {
+			TFIDFEntry entry = new TFIDFEntry();
+			entry.put("term" + entity, entity + 0.5);
+			index.writeInt(2 * entity);
+			index.writeInt((int) writer.getLength());
+			index.writeShort(3);
+			writer.append(new IntWritable(2 * entity), entry);
+		}
+		writer.close();
+		index.close();
+		
+		NewEntityTFIDFIndex tfidfIndex = new NewEntityTFIDFIndex(conf, collection.getPath());
+		tfidfIndex.load(new Path(indexFile.getPath()));
+		for (int round = 0; round < 2; ++round) {
+			for (int entity = entities - 1; entity >= 0; entity -= 7) {
+				assertEquals(entity + 0.5, 
+						tfidfIndex.getEntityTFIDFVector(2 * entity).get("term" + entity), 0.0);
+			}
+		}
+		assertEquals(null, tfidfIndex.getEntityTFIDFVector(3));
+		tfidfIndex.close();
+		FileUtils.deleteDirectory(collection);
+		System.out.println("=== testNewEntityTFIDFIndex passed ===");
+	}
+	
+	public static void testEntityTFIDFCache() {
+		CompactTFIDFEntry vector = new CompactTFIDFEntry(
+				new String[] {"barack", "obama"}, new double[] {1.5, 2.5});
+		// Room for about four vectors per segment.
+		EntityTFIDFCache<CompactTFIDFEntry> cache = 
+				new EntityTFIDFCache<CompactTFIDFEntry>(16 * 4 * vector.getSizeInBytes() + 16);
+		assertEquals(null, cache.get(1));
+		cache.put(1, vector, vector.getSizeInBytes());
+		assertEquals(2.5, cache.get(1).getWeight(1), 0.0);
+		// Entities seen once do not evict the one hit twice.
+		for (int entity = 2; entity < 2000; ++entity) {
+			cache.put(entity, vector, vector.getSizeInBytes());
+		}
+		assertTrue(cache.get(1) != null);
+		EntityTFIDFCache.Stats stats = cache.getStats();
+		assertEquals(2, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertTrue(stats.getEvictions() > 0);
+		assertEquals(1999 - stats.getEvictions(), stats.getEntries());
+		assertTrue(stats.getBytes() <= 16 * 4 * vector.getSizeInBytes() + 16);
+		assertEquals(2.5, vector.toTFIDFEntry().get("obama"), 0.0);
+		System.out.println("=== testEntityTFIDFCache passed ===");
+	}
+	
+	public static void testCompactCosineDistance() {
+		MentionDetection md = new MentionDetection("", null, null, null);
+		CompactTFIDFEntry entity = new CompactTFIDFEntry(
+				new String[] {"barack", "obama", "president"}, new double[] {1.5, 2.5, 0.5});
+		TFIDFEntry context = new TFIDFEntry();
+		context.put("obama", 2.0);
+		context.put("senate", 1.0);
+		context.put("president", 3.0);
+		double contextNorm = md.getNorm(context.values());
+		assertEquals(md.cosineDistance(context, contextNorm, entity.toTFIDFEntry()).doubleValue(),
+				md.cosineDistance(context, contextNorm, entity).doubleValue(), 1e-12);
+		CompactTFIDFEntry disjoint = 
+				new CompactTFIDFEntry(new String[] {"senator"}, new double[] {1.0});
+		assertEquals(0.0, md.cosineDistance(context, contextNorm, disjoint).doubleValue(), 0.0);
+		System.out.println("=== testCompactCosineDistance passed ===");
+	}
+	
+	public static void testSparseVector() throws IOException {
+		SparseVector vector = new SparseVector(new int[] {300, 2, 70000}, 
+				new float[] {1.5f, 2f, 0.25f}, 3);
+		assertEquals(2, vector.getTermId(0));
+		assertEquals(70000, vector.getTermId(2));
+		SparseVector other = new SparseVector(new int[] {70000, 5, 2}, new float[] {4f, 1f, 3f}, 3);
+		assertEquals(2 * 3 + 0.25 * 4, vector.dot(other), 1e-9);
+		assertEquals(vector.dot(other), other.dot(vector), 0.0);
+		assertEquals(Math.sqrt(1.5 * 1.5 + 2 * 2 + 0.25 * 0.25), vector.getNorm(), 1e-9);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		vector.write(new DataOutputStream(bytes));
+		SparseVector read = new SparseVector();
+		read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(vector, read);
+		assertEquals(vector.getNorm(), read.getNorm(), 0.0);
+
+		// Terms without an id count in the norm only.
+		SparseVector context = new SparseVector();
+		context.set(new int[] {2}, new float[] {3f}, 1, 16.0);
+		assertEquals(5.0, context.getNorm(), 1e-9);
+		context.normalize();
+		assertEquals(1.0, context.getNorm(), 0.0);
+		assertEquals(0.6, context.getWeight(0), 1e-6);
+		assertEquals(0.6 * 3 / other.getNorm(), 
+				context.dot(other) / other.getNorm(), 1e-6);
+		System.out.println("=== testSparseVector passed ===");
+	}
+	
+	public static void testMappedEntityTFIDFStore() throws IOException {
+		File collection = createCollectionDirectory();
+		File store = new File(collection, "store.bin");
+		// Two part files with entities out of order; entity 7 occurs twice, the last one wins.
+		int[][] docnos = {{9, 7, 3}, {7, 5}};
+		for (int part = 0; part < docnos.length; ++part) {
+			SequenceFile.Writer writer = createPartWriter(collection, part, SparseVector.class);
+			for (int docno: docnos[part]) {
+				writer.append(new IntWritable(docno), new SparseVector(
+						new int[] {docno, 100 + part}, new float[] {docno, 0.5f}, 2));
+			}
+			writer.close();
+		}
+		MappedEntityTFIDFStoreBuilder.main(new String[] {collection.getPath(), store.getPath()});
+		
+		MappedEntityTFIDFStore vectors = MappedEntityTFIDFStore.load(store.getPath());
+		assertEquals(4, vectors.size());
+		assertEquals(MappedEntityTFIDFStore.NOT_FOUND, vectors.getEntityId(4));
+		assertEquals(null, vectors.getVector(4));
+		assertEquals(3, vectors.getDocno(0));
+		MappedSparseVector vector = vectors.getVector(7);
+		assertEquals(2, vector.size());
+		assertEquals(101, vector.getTermId(1));
+		assertEquals(Math.sqrt(49 + 0.25), vector.getNorm(), 1e-6);
+		SparseVector context = new SparseVector(new int[] {101, 7}, new float[] {2f, 1f}, 2);
+		assertEquals(7 + 0.5 * 2, vector.dot(context), 1e-6);
+		assertEquals(9.0, vectors.getVector(9).getWeight(0), 0.0);
+		FileUtils.deleteDirectory(collection);
+		System.out.println("=== testMappedEntityTFIDFStore passed ===");
+	}
+	
+	public static void testEntityTFIDFPrefetch() throws IOException {
+		File collection = createCollectionDirectory();
+		File indexFile = new File(collection, "index.bin");
+		Configuration conf = new Configuration();
+		// Entities alternate between two part files, so batches are reordered by file.
+		int entities = 300;
+		SequenceFile.Writer[] writers = new SequenceFile.Writer[2];
+		for (int part = 0; part < writers.length; ++part) {
+			writers[part] = createPartWriter(collection, part, SparseVector.class);
+		}
+		DataOutputStream index = new DataOutputStream(new FileOutputStream(indexFile));
+		index.writeUTF(EntityTFIDFIndex.class.getName());
+		index.writeUTF(collection.getPath());
+		index.writeInt(entities);
+		for (int entity = 0; entity < entities; ++entity) {
+			SequenceFile.Writer writer = writers[entity % 2];
+			index.writeInt(entity);
+			index.writeInt((int) writer.getLength());
+			index.writeShort(entity % 2);
+			writer.append(new IntWritable(entity), 
+					new SparseVector(new int[] {entity}, new float[] {entity + 0.5f}, 1));
+		}
+		for (SequenceFile.Writer writer: writers) {
+			writer.close();
+		}
+		index.close();
+		
+		EntityTFIDFIndex tfidfIndex = new EntityTFIDFIndex(conf, collection.getPath());
+		tfidfIndex.load(new Path(indexFile.getPath()));
+		tfidfIndex.setCacheSize(0);
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int entity = entities + 10; entity >= 0; entity -= 3) {
+			candidates.add(entity);
+			candidates.add(entity);
+		}
+		EntityTFIDFIndex.Prefetch prefetch = tfidfIndex.prefetch(candidates);
+		for (int entity: candidates) {
+			assertEquals(tfidfIndex.getEntitySparseVector(entity), 
+					prefetch.getEntitySparseVector(entity));
+		}
+		// Not prefetched: read on demand.
+		assertEquals(101.5f, prefetch.getEntitySparseVector(101).getWeight(0), 0.0f);
+		assertEquals(null, prefetch.getEntitySparseVector(entities));
+		tfidfIndex.close();
+		FileUtils.deleteDirectory(collection);
+		
+		// TFIDFEntry values, as written by EntityTFIDFBuilder without -sparse.
+		collection = createCollectionDirectory();
+		indexFile = new File(collection, "index.bin");
+		SequenceFile.Writer writer = createPartWriter(collection, 0, TFIDFEntry.class);
+		index = new DataOutputStream(new FileOutputStream(indexFile));
+		index.writeUTF(EntityTFIDFIndex.class.getName());
+		index.writeUTF(collection.getPath());
+		index.writeInt(entities);
+		for (int entity = 0; entity < entities; ++entity) {
+			TFIDFEntry entry = new TFIDFEntry();
+			entry.put("term" + entity, entity + 0.5);
+			entry.put("common", 1.0);
+			index.writeInt(entity);
+			index.writeInt((int) writer.getLength());
+			index.writeShort(0);
+			writer.append(new IntWritable(entity), entry);
+		}
+		writer.close();
+		index.close();
+		tfidfIndex = new EntityTFIDFIndex(conf, collection.getPath());
+		tfidfIndex.load(new Path(indexFile.getPath()));
+		assertEquals(7.5, tfidfIndex.getEntityTFIDFVector(7).get("term7"), 0.0);
+		prefetch = tfidfIndex.prefetch(candidates);
+		CompactTFIDFEntry compact = prefetch.getCompactEntityTFIDFVector(entities - 2);
+		assertEquals(2, compact.size());
+		assertEquals(tfidfIndex.getEntityTFIDFVector(entities - 2), compact.toTFIDFEntry());
+		tfidfIndex.close();
+		FileUtils.deleteDirectory(collection);
+		System.out.println("=== testEntityTFIDFPrefetch passed ===");
+	}
+	
+	public static void testEntityVectorTruncation() {
+		double[] weights = {1, -4, 2, 0.5};
+		assertTrue(Arrays.equals(new int[] {1, 2}, 
+				EntityTFIDFBuilder.getTruncatedPositions(weights, 2, 1.0)));
+		// 16 of 21.25 is less than 0.8 of the squared norm, 20 is more.
+		assertTrue(Arrays.equals(new int[] {1, 2}, 
+				EntityTFIDFBuilder.getTruncatedPositions(weights, 10, 0.8)));
+		assertEquals(4, EntityTFIDFBuilder.getTruncatedPositions(weights, 10, 1.0).length);
+		
+		SparseVector vector = new SparseVector();
+		int size = EntityTFIDFBuilder.truncate(new int[] {7, 3, 5}, new float[] {3f, 4f, 1f}, 3, 
+				2, 1.0, vector);
+		assertEquals(2, size);
+		assertEquals(3, vector.getTermId(0));
+		assertEquals(7, vector.getTermId(1));
+		// The dropped term still counts in the norm.
+		assertEquals(Math.sqrt(26), vector.getNorm(), 1e-6);
+		
+		TFIDFEntry entry = new TFIDFEntry();
+		entry.put("barack", 3.0);
+		entry.put("obama", 4.0);
+		entry.put("the", 0.1);
+		TFIDFEntry truncated = EntityTFIDFBuilder.truncate(entry, 5, 0.9);
+		assertEquals(2, truncated.size());
+		assertEquals(null, truncated.get("the"));
+		assertTrue(entry == EntityTFIDFBuilder.truncate(entry, Integer.MAX_VALUE, 1.0));
+		System.out.println("=== testEntityVectorTruncation passed ===");
+	}
+	
+	public static void testContextWindow() throws IOException {
+		File text = File.createTempFile("df-index", ".txt");
+		PrintWriter writer = new PrintWriter(text);
+		writer.println("obama\t9");
+		writer.println("barack\t20");
+		writer.println("the\t1000");
+		writer.close();
+		TermDocumentFrequencyIndex dfIndex = TermDocumentFrequencyIndex.load(text.getPath());
+		text.delete();
+		
+		int windowSize = Mention.WINDOW_SIZE;
+		Mention.WINDOW_SIZE = 4;
+		String[] words = {"the", "barack", "obama", "missing", "the", "obama", "the", "president", 
+				"barack", "obama", "the"};
+		List<Token> tokens = new ArrayList<Token>();
+		for (int i = 0; i < words.length; ++i) {
+			tokens.add(new Token(words[i], 10 * i));
+		}
+		MentionDetection md = new MentionDetection("", null, null, dfIndex);
+		ContextWindow window = new ContextWindow(tokens, dfIndex);
+		// Forward, backward, and jumps without overlap.
+		for (int position: new int[] {0, 1, 3, 4, 8, 10, 9, 2, 0, 10}) {
+			Mention mention = new Mention(words[position], 10 * position, words[position].length());
+			window.moveTo(mention);
+			List<String> context = mention.extractContext(tokens);
+			TFIDFEntry expected = md.getTFIDFContext(context);
+			assertEquals(expected, window.getTFIDFContext());
+			assertEquals(md.getNorm(expected.values()), window.getNorm(), 1e-9);
+			assertEquals(md.getSparseTFIDFContext(context), window.getSparseTFIDFContext());
+		}
+		// Contexts are plain arrays: the store path must not need the Hadoop jars.
+		assertTrue(!(window.getSparseTFIDFContext() instanceof Writable));
+		Mention.WINDOW_SIZE = windowSize;
+		System.out.println("=== testContextWindow passed ===");
+	}
+	
+	public static void testDocumentCompatibilityScorer() {
+		Random random = new Random(7);
+		int entities = 30;
+		SparseVector[] vectors = new SparseVector[entities];
+		// Entity 0 has no vector.
+		for (int entity = 1; entity < entities; ++entity) {
+			vectors[entity] = randomSparseVector(random, 20);
+		}
+		DocumentCompatibilityScorer scorer = new DocumentCompatibilityScorer();
+		List<Mention> mentions = new ArrayList<Mention>();
+		List<SparseVector> contexts = new ArrayList<SparseVector>();
+		List<Integer[]> candidates = new ArrayList<Integer[]>();
+		for (int i = 0; i < 100; ++i) {
+			Mention mention = new Mention("mention" + i, i, 1);
+			SparseVector context = randomSparseVector(random, 10);
+			context.normalize();
+			Integer[] mentionCandidates = new Integer[1 + random.nextInt(5)];
+			for (int j = 0; j < mentionCandidates.length; ++j) {
+				mentionCandidates[j] = random.nextInt(entities);
+			}
+			mentions.add(mention);
+			contexts.add(context);
+			candidates.add(mentionCandidates);
+			scorer.addMention(mention, context, mentionCandidates);
+		}
+		for (int entity: scorer.getEntities()) {
+			scorer.setEntityVector(entity, vectors[entity]);
+		}
+		scorer.score();
+		for (int i = 0; i < mentions.size(); ++i) {
+			for (int entity: candidates.get(i)) {
+				BigDecimal expected = vectors[entity] == null ? BigDecimal.ZERO : 
+						new BigDecimal(contexts.get(i).dot(vectors[entity]) / vectors[entity].getNorm());
+				assertEquals(expected, mentions.get(i).getEntityCompatibilityScore(entity));
+			}
+		}
+		System.out.println("=== testDocumentCompatibilityScorer passed ===");
+	}
+	
+	private static SparseVector randomSparseVector(Random random, int maxSize) {
+		int size = 1 + random.nextInt(maxSize);
+		Set<Integer> termIds = new HashSet<Integer>();
+		while (termIds.size() < size) {
+			termIds.add(random.nextInt(60));
+		}
+		int[] ids = new int[size];
+		float[] weights = new float[size];
+		int position = 0;
+		for (int termId: termIds) {
+			ids[position] = termId;
+			weights[position] = random.nextFloat();
+			++position;
+		}
+		return new SparseVector(ids, weights, size);
+	}
+	
+	public static void testEntityEmbeddings() throws IOException {
+		File collection = createCollectionDirectory();
+		SequenceFile.Writer writer = createPartWriter(collection, 0, SparseVector.class);
+		Random random = new Random(11);
+		SparseVector[] vectors = new SparseVector[20];
+		for (int docno = 0; docno < vectors.length; ++docno) {
+			vectors[docno] = randomSparseVector(random, 40);
+			writer.append(new IntWritable(docno), vectors[docno]);
+		}
+		writer.close();
+		File store = new File(collection, "store.bin");
+		File embeddingsFile = new File(collection, "embeddings.bin");
+		MappedEntityTFIDFStoreBuilder.main(new String[] {collection.getPath(), store.getPath()});
+		EntityEmbeddingsBuilder.main(new String[] {"-dimensions", "512", store.getPath(), 
+				embeddingsFile.getPath()});
+		
+		MappedEntityEmbeddings embeddings = MappedEntityEmbeddings.load(embeddingsFile.getPath());
+		assertEquals(vectors.length, embeddings.size());
+		assertEquals(512, embeddings.getDimensions());
+		assertEquals(MappedEntityEmbeddings.NOT_FOUND, embeddings.getEntityId(vectors.length));
+		HashedProjection projection = embeddings.getProjection();
+		for (int docno = 0; docno < vectors.length; ++docno) {
+			int entityId = embeddings.getEntityId(docno);
+			assertEquals(1.0, embeddings.dot(entityId, projection.project(vectors[docno])), 1e-5);
+			SparseVector other = vectors[(docno + 1) % vectors.length];
+			double cosine = vectors[docno].dot(other) / vectors[docno].getNorm() / other.getNorm();
+			assertEquals(cosine, embeddings.dot(entityId, projection.project(other)), 0.2);
+		}
+		
+		// Approximate mode needs neither the tf-idf index nor the store.
+		File dfFile = new File(collection, "df-index.txt");
+		PrintWriter dfWriter = new PrintWriter(dfFile);
+		dfWriter.println("a\t3");
+		dfWriter.println("b\t5");
+		dfWriter.close();
+		String text = "a b a";
+		MentionDetection md = new MentionDetection(text, null, null,
+				TermDocumentFrequencyIndex.load(dfFile.getPath()));
+		md.setEntityEmbeddings(embeddings);
+		List<Token> tokens = MentionDetection.tokenizeText(text);
+		Mention mention = new Mention("b", 2, 1);
+		assertTrue(md.getLocalMentionEntityCompatibility(mention, 0, tokens).signum() >= 0);
+		md.computeLocalCompatibilities(mention, new Integer[] {0, vectors.length}, tokens);
+		assertEquals(md.getLocalMentionEntityCompatibility(mention, 0, tokens).doubleValue(),
+				mention.getEntityCompatibilityScore(0).doubleValue(), 1e-6);
+		assertEquals(BigDecimal.ZERO, mention.getEntityCompatibilityScore(vectors.length));
+		FileUtils.deleteDirectory(collection);
+		System.out.println("=== testEntityEmbeddings passed ===");
+	}
+	
+	/**
+	 * Text of the given number of random words separated by spaces.
+	 */
+	private static String randomText(Random random, String[] words, int size) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < size; ++i) {
+			text.append(words[random.nextInt(words.length)]).append(" ");
+		}
+		return text.toString();
+	}
+	
+	/**
+	 * Index of random keys of 1 to maxTokens words, each linked in its only document, or in 0 to 2
+	 * of 2 documents if randomKeyphraseness.
+	 */
+	private static MentionIndex randomMentionIndex(Random random, String[] words, int keys,
+			int maxTokens, boolean randomKeyphraseness) {
+		MentionIndex mentionIndex = new MentionIndex(100);
+		for (int i = 0; i < keys; ++i) {
+			StringBuilder key = new StringBuilder(words[random.nextInt(words.length)]);
+			for (int size = random.nextInt(maxTokens); size > 0; --size) {
+				key.append(" ").append(words[random.nextInt(words.length)]);
+			}
+			mentionIndex.put(key.toString(), randomKeyphraseness ?
+					new Integer[] {random.nextInt(3), 2, 7} : new Integer[] {1, 1, 7});
+		}
+		return mentionIndex;
+	}
+	
+	/**
+	 * The ngrams of at most maxSize tokens that are keys of the index, as
+	 * @see MentionDetection#extractMentions looks them up: with " - " replaced by " " if only that
+	 * is a key.
+	 */
+	private static List<Ngram> keyNgrams(MentionDetection md, List<Token> tokens, int maxSize,
+			MentionIndex mentionIndex) {
+		List<Ngram> result = new ArrayList<Ngram>();
+		for (Ngram ngram: md.gatherNgrams(tokens, maxSize)) {
+			String normalizedNgram = ngram.getNgram();
+			if (normalizedNgram.contains(" - ") && !mentionIndex.containsKey(normalizedNgram)) {
+				ngram.setNgram(normalizedNgram.replaceAll(" - ", " "));
+			}
+			if (mentionIndex.containsKey(ngram.getNgram())) {
+				result.add(ngram);
+			}
+		}
+		return result;
+	}
+	
+	public static void testMentionSpotter() {
+		Random random = new Random(3);
+		String[] words = {"a", "b", "c", "-", ".", ","};
+		String text = randomText(random, words, 3000);
+		MentionIndex mentionIndex = randomMentionIndex(random, words, 60, 5, false);
+		mentionIndex.put("a  b", new Integer[] {1, 1, 7});
+		
+		MentionDetection md = new MentionDetection(text, mentionIndex, null, null);
+		List<Token> tokens = MentionDetection.tokenizeText(text);
+		List<Ngram> expected = keyNgrams(md, tokens, MentionDetection.NGRAM_SIZE, mentionIndex);
+		md.setSpotter(new MentionSpotter(mentionIndex.keySet()));
+		List<Ngram> spotted = md.spotNgrams(tokens);
+		assertEquals(expected, spotted);
+		for (int i = 0; i < spotted.size(); ++i) {
+			assertEquals(expected.get(i).getOriginalNgram(), spotted.get(i).getOriginalNgram());
+		}
+		assertEquals(expected, md.spotNgrams(TokenizedText.tokenize(text)));
+		assertTrue(spotted.size() > 100);
+		System.out.println("=== testMentionSpotter passed ===");
+	}
+	
+	public static void testTokenPrefixSet() throws IOException {
+		Random random = new Random(5);
+		String[] words = {"a", "b", "c", "-", "d", "e"};
+		String text = randomText(random, words, 3000);
+		MentionIndex mentionIndex = randomMentionIndex(random, words, 60, 6, false);
+		AnchorTextIndex anchorTextIndex = new AnchorTextIndex(100);
+		for (String key: mentionIndex.keySet()) {
+			anchorTextIndex.add(key);
+		}
+		
+		// Pruned ngrams keep every ngram that is a key, in the same order.
+		MentionDetection md = new MentionDetection(text, mentionIndex, null, null);
+		List<Token> tokens = MentionDetection.tokenizeText(text);
+		List<Ngram> all = md.gatherNgrams(tokens, MentionDetection.NGRAM_SIZE);
+		md.setSpotter(new MentionSpotter(mentionIndex.keySet()));
+		List<Ngram> pruned = md.gatherNgrams(tokens, MentionDetection.NGRAM_SIZE);
+		assertTrue(pruned.size() < all.size() / 4);
+		List<Mention> mentions = md.extractMentions(pruned, tokens);
+		assertTrue(!mentions.isEmpty());
+		assertEquals(md.extractMentions(all, tokens), mentions);
+		
+		TokenPrefixSet prefixes = new TokenPrefixSet(anchorTextIndex);
+		assertTrue(prefixes.getMaxLength() == 6);
+		File file = File.createTempFile("prefix-set", ".bin");
+		prefixes.save(file.getAbsolutePath());
+		TokenPrefixSet loaded = TokenPrefixSet.load(file.getAbsolutePath());
+		assertEquals(prefixes.size(), loaded.size());
+		String[] textTokens = text.split(" ");
+		Set<String> expected = KeyphrasenessIndexBuilder.Map.gatherNgramMentions(
+				textTokens, MentionDetection.NGRAM_SIZE, anchorTextIndex);
+		assertTrue(expected.size() > 20);
+		assertEquals(expected, KeyphrasenessIndexBuilder.Map.gatherNgramMentions(
+				textTokens, MentionDetection.NGRAM_SIZE, anchorTextIndex, prefixes));
+		assertEquals(expected, KeyphrasenessIndexBuilder.Map.gatherNgramMentions(
+				textTokens, MentionDetection.NGRAM_SIZE, anchorTextIndex, loaded));
+		file.delete();
+		System.out.println("=== testTokenPrefixSet passed ===");
+	}
+	
+	public static void testTokenizedText() {
+		String text = "The U.S.\u00a0Senate\u2014voted: \u201cYes\u201d!a-b (x_y)End";
+		TokenizedText tokenized = TokenizedText.tokenize(text);
+		List<Token> expected = Arrays.asList(
+				new Token("The", 0), new Token("U", 4), new Token(".", 5), new Token("S", 6),
+				new Token(".", 7), new Token("Senate", 9), new Token("voted", 16),
+				new Token(":", 21), new Token("Yes", 24), new Token("!", 28), new Token("a", 29),
+				new Token("-", 30), new Token("b", 31), new Token("x", 34), new Token("y", 36),
+				new Token("End", 38));
+		assertEquals(expected, tokenized.toTokens());
+		assertEquals(expected, MentionDetection.tokenizeText(text));
+		for (int i = 0; i < tokenized.size(); ++i) {
+			assertEquals(expected.get(i).getToken(), tokenized.getToken(i));
+			assertEquals(expected.get(i).getToken().hashCode(), tokenized.getHash(i));
+			assertEquals(expected.get(i).getOffset() + expected.get(i).getLength(),
+					tokenized.getEnd(i));
+		}
+		assertEquals(0, TokenizedText.tokenize(" \t").size());
+		
+		// Looked up by offsets and hash unless String.toLowerCase maps a character otherwise.
+		String irregular = "ABC \u039f\u0394\u039f\u03a3 \u0130x \ud801\udc00 \u00c9cole";
+		tokenized = TokenizedText.tokenize(irregular);
+		MentionSpotter spotter = new MentionSpotter(Arrays.asList("abc",
+				"\u039f\u0394\u039f\u03a3".toLowerCase(), "\u0130x".toLowerCase(),
+				"\ud801\udc00".toLowerCase(), "\u00e9cole"));
+		boolean[] regular = {true, false, false, false, true};
+		for (int i = 0; i < tokenized.size(); ++i) {
+			assertEquals(regular[i], tokenized.isRegular(i));
+		}
+		List<Ngram> spotted = spotter.spot(tokenized, MentionDetection.NGRAM_SIZE);
+		assertEquals(spotter.spot(tokenized.toTokens(), MentionDetection.NGRAM_SIZE), spotted);
+		assertEquals(5, spotted.size());
+		System.out.println("=== testTokenizedText passed ===");
+	}
+	
+	public static void testStreamingNormalizer() {
+		String[] fragments = {"The", "U.S.", "Z\u00fcrich", "\u00c9COLE", "\u0130stanbul", "\u039f\u0394\u039f\u03a3",
+				"a-b", "x:y", "!", " ", " ", "\n", "\t", "\u00a0", "\u2014", "(", ")", "\"", "'", ",", "_",
+				"\ud801\udc00", "\u212a", "<s>", "</s>", "<sub>", "</sub>", "<sup>", "</sup>", "<SUB>",
+				"</SUP>", "<ref>", "</ref>", "<big>", "</big>", "<u>", "</u>", "<nowiki>", "</nowiki>",
+				"<span class=\"x\">", "<span>", "</span>", "<abbr title=a>", "</abbr>", "<br>", "<Br>",
+				"<br />", "<div>", "</div>", "<!--", "-->", "<!-- c -->", "<", ">", "-", "/", "&amp;",
+				"&lt;", "&gt;", "&nbsp;", "&eacute;", "&Eacute;", "&Sigma;", "&#65;", "&#x42;", "&#60;",
+				"&#8212;", "&apos;", "&amp;lt;", "&", ";", "#", "&l", "t;", "&#", "&#1", "<!---->",
+				"<!--->", "<span", "<s", "</", "&lt;s&gt;", "x<y is larger than z",
+				"<span style=a b c d e f g h>", "<!-- long comment with text"};
+		Random random = new Random(11);
+		List<String> pages = new ArrayList<String>(Arrays.asList("", " ", "<s>a</s>",
+				"<sup><sub>x</sub></sup>", "<sub><sup>x</sup></sub>", "<s><s>x</s></s>",
+				"<s>a<!-- c -->b</s>", "<<s>b</s>r>", "<!-<!--a-->-b-->", "<span a<b>x</span>",
+				"&l&#116;;", "&amp;amp;", "AT&T & co", "<ref>a<br>b</ref>"));
+		for (int i = 0; i < 20000; ++i) {
+			StringBuilder page = new StringBuilder();
+			for (int size = random.nextInt(40); size > 0; --size) {
+				page.append(fragments[random.nextInt(fragments.length)]);
+			}
+			pages.add(page.toString());
+		}
+		for (String page: pages) {
+			assertEquals(page, Normalizer.normalizeMultiPass(page, true), Normalizer.normalize(page));
+			assertEquals(page, Normalizer.normalizeMultiPass(page, false),
+					Normalizer.normalizeNoDelimiters(page));
+		}
+		
+		// Entities unescaping to markup characters are normalized by the scan.
+		long fallbacks = StreamingNormalizer.getFallbacks();
+		long unescapedScans = StreamingNormalizer.getUnescapedScans();
+		String page = "Smith &amp; Jones&lt;ref&gt;p. 3&lt;/ref&gt; &lt;br&gt;x &gt; y";
+		assertEquals(Normalizer.normalizeMultiPass(page, true), Normalizer.normalize(page));
+		assertEquals(unescapedScans + 1, StreamingNormalizer.getUnescapedScans());
+		page = "AT&amp;T &amp;amp; x &gt; y";
+		assertEquals(Normalizer.normalizeMultiPass(page, true), Normalizer.normalize(page));
+		assertEquals(unescapedScans + 1, StreamingNormalizer.getUnescapedScans());
+		assertEquals(fallbacks, StreamingNormalizer.getFallbacks());
+		System.out.println("=== testStreamingNormalizer passed ===");
+	}
+
+	public static void testTopMentions() throws IOException {
+		Random random = new Random(11);
+		String[] words = {"a", "b", "c", "-", "d"};
+		String text = randomText(random, words, 2000);
+		// Few distinct keyphraseness values, so ties are broken by offset and text.
+		MentionIndex mentionIndex = randomMentionIndex(random, words, 80, 4, true);
+		mentionIndex.put("a -", new Integer[] {2, 2, 7});
+		
+		// Same mentions, in the same order, as a TreeSet of Mention objects.
+		MentionDetection md = new MentionDetection(text, mentionIndex, null, null);
+		List<Token> tokens = MentionDetection.tokenizeText(text);
+		double[][] settings = {{0.06, 0}, {0.3, 0}, {0.001, 0}, {0.5, 1}, {0, 1}};
+		for (double[] setting: settings) {
+			md.setThreshold(setting[0], setting[1] == 1);
+			List<Mention> mentions = md.extractMentions(md.gatherNgrams(tokens, NGRAM_SIZE), tokens);
+			
+			TreeSet<Mention> tree = new TreeSet<Mention>();
+			int toExtract = Math.max((int)(tokens.size() * setting[0]), 1);
+			for (Ngram ngram: keyNgrams(md, tokens, NGRAM_SIZE, mentionIndex)) {
+				Mention mention = new Mention(ngram);
+				mention.computeKeyphrasenessAndDF(mentionIndex);
+				if (setting[1] == 1) {
+					if (mention.getKeyphraseness() >= setting[0]) {
+						tree.add(mention);
+					}
+				} else if (tree.size() < toExtract) {
+					tree.add(mention);
+				} else if (tree.first().getKeyphraseness() < mention.getKeyphraseness()) {
+					tree.remove(tree.first());
+					tree.add(mention);
+				}
+			}
+			List<Mention> expected = new ArrayList<Mention>(tree);
+			assertTrue(!expected.isEmpty());
+			assertEquals(expected, mentions);
+			for (int i = 0; i < expected.size(); ++i) {
+				assertTrue(expected.get(i).getKeyphraseness() == mentions.get(i).getKeyphraseness());
+				assertEquals(expected.get(i).getOriginalNgram(), mentions.get(i).getOriginalNgram());
+			}
+		}
+		System.out.println("=== testTopMentions passed ===");
+	}
+	
 	@SuppressWarnings("unused")
 	public static void printMemoryRequirements() 
 			throws IOException, ParserConfigurationException, SAXException {
 		long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
 		
-		TitlesIndex titlesIndex = TitlesIndex.load("/home/marinah/wikipedia/enwiki-titles.txt");
+		TitleDictionary titlesIndex = TitleDictionary.load("/home/marinah/wikipedia/enwiki-titles.txt");
 		System.out.println("Loaded titles index.");
 		usedMemory = printMemoryUsage(usedMemory);
 		